@@ -0,0 +1,182 @@
+package ie.ul.routeplanning.benchmarks;
+
+import com.google.gson.Gson;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.DijkstraAlgorithm;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphSnapshot;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.routes.graph.creation.BuilderFactory;
+import ie.ul.routeplanning.routes.waypoints.SourceFactory;
+import ie.ul.routeplanning.routes.waypoints.WaypointException;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class provides the graphs the benchmarks run on. A graph is named either "shipped", for the graph built from the
+ * edges.json and waypoints.json files shipped with the application, or "synthetic-N", for a synthetic multimodal
+ * network of N waypoints generated by the {@link BuilderFactory#synthetic(int, long, Map)} builder, so the benchmarks
+ * can be scaled beyond the shipped graph. Either name can be prefixed with "snapshot-" to route on the graph loaded from
+ * a memory-mapped snapshot of it instead
+ */
+public final class BenchmarkGraphs {
+    /**
+     * The name of the graph built from the shipped files
+     */
+    public static final String SHIPPED = "shipped";
+    /**
+     * The prefix of the names of the synthetic graphs
+     */
+    public static final String SYNTHETIC = "synthetic-";
+    /**
+     * The prefix of the names of graphs loaded from a snapshot of the graph named by the rest of the name
+     */
+    public static final String SNAPSHOT = "snapshot-";
+    /**
+     * The file the shipped edges are read from
+     */
+    public static final String EDGES_FILE = "edges.json";
+    /**
+     * The file the shipped waypoints are read from
+     */
+    public static final String WAYPOINTS_FILE = "waypoints.json";
+    /**
+     * The seed of the random numbers used for the synthetic graphs and queries, so every run uses the same ones
+     */
+    private static final long SEED = 1;
+
+    /**
+     * This class only has static methods
+     */
+    private BenchmarkGraphs() {}
+
+    /**
+     * Get every transport method by its name, as the application loads them into the database
+     * @return the transport methods by name
+     */
+    public static Map<String, TransportMethod> transportMethods() {
+        Map<String, TransportMethod> transportMethods = new HashMap<>();
+
+        for (TransportFactory.TransportMethods method : TransportFactory.TransportMethods.values())
+            transportMethods.put(method.label, TransportFactory.getTransportMethod(method));
+
+        return transportMethods;
+    }
+
+    /**
+     * Read the shipped waypoints. Like the application loading them into the database, only the first waypoint with
+     * each ID is kept
+     * @return the shipped waypoints
+     * @throws WaypointException if the waypoints can't be read
+     */
+    public static List<Waypoint> shippedWaypoints() throws WaypointException {
+        Map<Long, Waypoint> waypoints = new LinkedHashMap<>();
+
+        for (Waypoint waypoint : SourceFactory.fromFile(WAYPOINTS_FILE).getWaypoints())
+            waypoints.putIfAbsent(waypoint.getId(), waypoint);
+
+        return new ArrayList<>(waypoints.values());
+    }
+
+    /**
+     * Load the graph with the provided name and freeze it
+     * @param name the name of the graph, i.e. "shipped" or "synthetic-N", optionally prefixed with "snapshot-"
+     * @return the frozen graph
+     * @throws BuilderException if the graph can't be built
+     * @throws WaypointException if the shipped waypoints can't be read
+     * @throws IOException if the snapshot can't be written
+     */
+    public static Graph load(String name) throws IOException {
+        if (name.startsWith(SNAPSHOT))
+            return loadSnapshot(load(name.substring(SNAPSHOT.length())));
+        else if (name.equals(SHIPPED))
+            return BuilderFactory.fromFile(EDGES_FILE, SourceFactory.fromList(shippedWaypoints()), transportMethods()).buildGraph().freeze();
+        else if (name.startsWith(SYNTHETIC))
+            return BuilderFactory.synthetic(Integer.parseInt(name.substring(SYNTHETIC.length())), SEED, transportMethods()).buildGraph().freeze();
+        else
+            throw new IllegalStateException("Unknown benchmark graph: " + name);
+    }
+
+    /**
+     * Write the provided graph to a temporary snapshot file and load it back
+     * @param graph the graph to snapshot
+     * @return the graph loaded from the snapshot
+     * @throws IOException if the snapshot can't be written or loaded
+     */
+    private static Graph loadSnapshot(Graph graph) throws IOException {
+        File file = File.createTempFile("graph", ".snapshot");
+
+        try {
+            GraphSnapshot.write(graph, file.toPath());
+
+            return BuilderFactory.fromSnapshot(file.toPath(), transportMethods()).buildGraph(); // stays mapped once deleted
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Choose random pairs of waypoints of the graph with a route between them
+     * @param graph the graph to choose the waypoints from
+     * @param count the number of pairs to choose
+     * @return the pairs of start and end waypoints
+     */
+    public static List<Waypoint[]> queries(Graph graph, int count) {
+        Random random = new Random(SEED);
+        CompactGraph compactGraph = graph.compact();
+        List<Waypoint[]> queries = new ArrayList<>();
+
+        for (int attempt = 0; queries.size() < count && attempt < count * 100; attempt++) {
+            Waypoint start = compactGraph.getVertex(random.nextInt(compactGraph.getVertexCount()));
+            Waypoint end = compactGraph.getVertex(random.nextInt(compactGraph.getVertexCount()));
+
+            if (!start.equals(end) && !new DijkstraAlgorithm(start, end).perform(graph).collect().isEmpty())
+                queries.add(new Waypoint[]{start, end});
+        }
+
+        if (queries.isEmpty())
+            throw new IllegalStateException("The benchmark graph has no routes between its waypoints");
+
+        return queries;
+    }
+
+    /**
+     * Write the edges of the provided graph to a file in the format read by the JSON graph builder
+     * @param graph the graph to write the edges of
+     * @param file the file to write the edges to
+     * @throws IOException if the file can't be written
+     */
+    public static void writeEdges(Graph graph, File file) throws IOException {
+        List<Map<String, Object>> edges = new ArrayList<>();
+
+        for (Waypoint waypoint : graph.getVertices()) {
+            for (Edge edge : graph.getNeighbours(waypoint)) {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("start", edge.getStart().getId());
+                json.put("end", edge.getEnd().getId());
+                json.put("transportMethod", edge.getTransportMethod().getName());
+                json.put("distance", edge.getDistance());
+                json.put("bidirectional", false); // the reverse edge is written separately
+
+                edges.add(json);
+            }
+        }
+
+        try (Writer writer = new FileWriter(file)) {
+            new Gson().toJson(edges, writer);
+        }
+    }
+}
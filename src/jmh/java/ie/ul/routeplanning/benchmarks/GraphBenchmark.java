@@ -0,0 +1,117 @@
+package ie.ul.routeplanning.benchmarks;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphSnapshot;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.routes.graph.creation.BuilderFactory;
+import ie.ul.routeplanning.routes.waypoints.SourceFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks building, loading and copying graphs. The synthetic graphs are written to a temporary edges file,
+ * so they are built by the same JSON graph builder as the shipped graph, and every graph is written to a temporary
+ * snapshot file to compare loading it with building it
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+    /**
+     * The name of the graph to build and copy
+     */
+    @Param({BenchmarkGraphs.SHIPPED, "synthetic-10000", "synthetic-100000"})
+    private String graphName;
+    /**
+     * The graph to copy
+     */
+    private Graph graph;
+    /**
+     * The edges file to build the graph from
+     */
+    private File edgesFile;
+    /**
+     * The snapshot file to load the graph from
+     */
+    private File snapshotFile;
+    /**
+     * The waypoints to build the graph from
+     */
+    private List<Waypoint> waypoints;
+    /**
+     * The transport methods to build the graph with
+     */
+    private Map<String, TransportMethod> transportMethods;
+
+    /**
+     * Load the graph and write its edges file if it is synthetic
+     * @throws Exception if the graph can't be loaded or written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        graph = BenchmarkGraphs.load(graphName);
+        transportMethods = BenchmarkGraphs.transportMethods();
+
+        if (graphName.equals(BenchmarkGraphs.SHIPPED)) {
+            edgesFile = new File(BenchmarkGraphs.EDGES_FILE);
+            waypoints = BenchmarkGraphs.shippedWaypoints();
+        } else {
+            edgesFile = File.createTempFile(graphName, ".json");
+            waypoints = new ArrayList<>(graph.getVertices());
+            BenchmarkGraphs.writeEdges(graph, edgesFile);
+        }
+
+        snapshotFile = File.createTempFile(graphName, ".snapshot");
+        GraphSnapshot.write(graph, snapshotFile.toPath());
+    }
+
+    /**
+     * Delete the snapshot file, and the edges file written for a synthetic graph
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (!graphName.equals(BenchmarkGraphs.SHIPPED))
+            edgesFile.delete();
+
+        snapshotFile.delete();
+    }
+
+    /**
+     * Benchmark copying the graph, as done before a graph is modified
+     * @return the copy
+     */
+    @Benchmark
+    public Graph copy() {
+        return graph.copy();
+    }
+
+    /**
+     * Benchmark building the graph from its edges file and waypoints
+     * @return the built graph
+     * @throws BuilderException if the graph can't be built
+     */
+    @Benchmark
+    public Graph buildGraph() throws BuilderException {
+        return BuilderFactory.fromFile(edgesFile, SourceFactory.fromList(waypoints), transportMethods).buildGraph();
+    }
+
+    /**
+     * Benchmark loading the graph from its snapshot file
+     * @return the loaded graph
+     * @throws BuilderException if the graph can't be loaded
+     */
+    @Benchmark
+    public Graph loadSnapshot() throws BuilderException {
+        return BuilderFactory.fromSnapshot(snapshotFile.toPath(), transportMethods).buildGraph();
+    }
+}
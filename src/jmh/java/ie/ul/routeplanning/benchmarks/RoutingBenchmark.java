@@ -0,0 +1,114 @@
+package ie.ul.routeplanning.benchmarks;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.AlgorithmFactory;
+import ie.ul.routeplanning.routes.algorithms.DijkstraAlgorithm;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunctionBuilder;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class benchmarks the routing algorithms and the weight functions with every profile the
+ * {@link WeightFunctionBuilder} can build. Each invocation routes the next of a fixed set of random queries on the graph
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+    /**
+     * The number of queries routed in turn
+     */
+    private static final int QUERIES = 64;
+    /**
+     * The number of routes found by the top K benchmark, as requested by the route service
+     */
+    private static final int ROUTES = 4;
+    /**
+     * The name of the graph to route on
+     */
+    @Param({BenchmarkGraphs.SHIPPED, "synthetic-10000", "synthetic-100000", "snapshot-synthetic-100000"})
+    private String graphName;
+    /**
+     * The profile of the weight function to route with
+     */
+    @Param
+    private WeightProfile profile;
+    /**
+     * The graph to route on
+     */
+    private Graph graph;
+    /**
+     * The weight function built for the profile
+     */
+    private WeightFunction weightFunction;
+    /**
+     * The start and end waypoints of each query
+     */
+    private List<Waypoint[]> queries;
+    /**
+     * The index of the next query to route
+     */
+    private int next;
+
+    /**
+     * Load the graph and choose the queries
+     * @throws Exception if the graph can't be loaded
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        graph = BenchmarkGraphs.load(graphName);
+        weightFunction = new WeightFunctionBuilder().withEmissions(profile.hasEmissions()).withTime(profile.hasTime()).build();
+        queries = BenchmarkGraphs.queries(graph, QUERIES);
+    }
+
+    /**
+     * Get the next query to route
+     * @return the start and end waypoints of the query
+     */
+    private Waypoint[] nextQuery() {
+        Waypoint[] query = queries.get(next);
+        next = (next + 1) % queries.size();
+
+        return query;
+    }
+
+    /**
+     * Benchmark finding the shortest route with Dijkstra's algorithm
+     * @return the routes found
+     */
+    @Benchmark
+    public List<Route> dijkstra() {
+        Waypoint[] query = nextQuery();
+
+        return new DijkstraAlgorithm(query[0], query[1], weightFunction).perform(graph).collect();
+    }
+
+    /**
+     * Benchmark finding the best routes with the top K algorithm, as the route service does
+     * @return the routes found
+     */
+    @Benchmark
+    public List<Route> topK() {
+        Waypoint[] query = nextQuery();
+
+        return AlgorithmFactory.topKPathsAlgorithm(query[0], query[1], weightFunction, ROUTES).perform(graph).collect();
+    }
+
+    /**
+     * Benchmark calculating the weight of every edge of the graph with the weight function
+     * @return the weights calculated
+     */
+    @Benchmark
+    public double[] weights() {
+        return graph.compact().calculateWeights(weightFunction);
+    }
+}
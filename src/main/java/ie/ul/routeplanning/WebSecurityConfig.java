@@ -5,8 +5,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -31,6 +33,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     private static final String REMEMBER_ME_KEY = "route-planning-remember-me";
 
+    /**
+     * True if the metrics endpoint can be scraped without a login, which must be opted into with metrics.public
+     */
+    @Value("${metrics.public:false}")
+    private boolean metricsPublic;
+
+    /**
+     * True if logged in users can reload the graph on request, which must be opted into with graph.reload.endpoint
+     */
+    @Value("${graph.reload.endpoint:false}")
+    private boolean reloadEndpoint;
+
     @Bean
     public BCryptPasswordEncoder bCryptPasswordEncoder() {
         return new BCryptPasswordEncoder();
@@ -39,6 +53,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         if (!SecurityService.BYPASS_AUTH) {
+            if (metricsPublic)
+                http.authorizeRequests().antMatchers(HttpMethod.GET, "/metrics").permitAll();
+
+            if (!reloadEndpoint)
+                http.authorizeRequests().antMatchers("/graph/reload").denyAll(); // any user can register, so a rebuild isn't open to them by default
+
             http.authorizeRequests()
                     .antMatchers("/resources/**", "/css/**", "/js/**", "/registration", "/session-timeout")
                         .permitAll().anyRequest()
@@ -0,0 +1,87 @@
+package ie.ul.routeplanning.controllers;
+
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.services.GraphService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The controller class for inspecting and reloading the graph routes are generated on
+ */
+@Controller
+public class GraphController {
+    /**
+     * The graph service for loading and reloading our graph
+     */
+    private final GraphService graphService;
+
+    /**
+     * The path of the graph endpoints
+     */
+    private static final String GRAPH = "graph";
+
+    /**
+     * The key for an error message in the response
+     */
+    private static final String ERROR = "error";
+
+    /**
+     * Construct a graph controller with the autowired fields
+     * @param graphService the service for loading the graph
+     */
+    @Autowired
+    public GraphController(GraphService graphService) {
+        this.graphService = graphService;
+    }
+
+    /**
+     * The handler for describing the current graph as JSON. The response holds the version of the graph and its number
+     * of vertices and edges
+     * @return the response describing the graph, or an error if it couldn't be loaded
+     */
+    @GetMapping(GRAPH)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> describeGraph() {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        try {
+            CompactGraph graph = graphService.loadGraph().compact();
+
+            body.put("version", graph.getVersion());
+            body.put("vertices", graph.getVertexCount());
+            body.put("edges", graph.getEdgeCount());
+
+            return ResponseEntity.ok(body);
+        } catch (BuilderException ex) {
+            body.put(ERROR, "An error occurred loading the graph, please try again");
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+        }
+    }
+
+    /**
+     * The handler for reloading the graph. The graph is rebuilt in the background, so the response is returned straight
+     * away while routes keep being generated on the current graph until the new one is swapped in. It is forbidden
+     * unless graph.reload.endpoint is set
+     * @return the accepted response
+     */
+    @PostMapping(GRAPH + "/reload")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reloadGraph() {
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        graphService.reloadGraph();
+        body.put("reloading", true);
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+    }
+}
@@ -0,0 +1,46 @@
+package ie.ul.routeplanning.controllers;
+
+import ie.ul.routeplanning.services.MetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * The controller class for scraping the metrics of the application with Prometheus
+ */
+@Controller
+public class MetricsController {
+    /**
+     * The content type of the Prometheus text exposition format
+     */
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The metrics service for writing the metrics
+     */
+    private final MetricsService metricsService;
+
+    /**
+     * Construct a metrics controller with the autowired fields
+     * @param metricsService the service for writing the metrics
+     */
+    @Autowired
+    public MetricsController(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * The handler for scraping the metrics in the Prometheus text format. It requires a login unless metrics.public is set
+     * @return the response holding the metrics, or not found if metrics are disabled
+     */
+    @GetMapping(value = "metrics", produces = PROMETHEUS_CONTENT_TYPE)
+    @ResponseBody
+    public ResponseEntity<String> scrapeMetrics() {
+        if (!metricsService.isEnabled())
+            return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok(metricsService.scrape());
+    }
+}
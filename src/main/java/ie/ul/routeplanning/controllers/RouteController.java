@@ -4,11 +4,14 @@ import ie.ul.routeplanning.constants.Constant;
 import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.SavedRoute;
 import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.SearchTrace;
 import ie.ul.routeplanning.routes.graph.Graph;
 import ie.ul.routeplanning.routes.graph.creation.BuilderException;
 import ie.ul.routeplanning.services.*;
 import ie.ul.routeplanning.users.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -16,8 +19,11 @@ import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -60,6 +66,16 @@ public class RouteController {
      */
     private static final String ROUTES_REDIRECT = "redirect:/" + ROUTES;
 
+    /**
+     * The number of waypoint suggestions returned if no limit is requested
+     */
+    private static final int DEFAULT_SUGGESTIONS = 10;
+
+    /**
+     * The maximum number of waypoint suggestions that can be requested
+     */
+    private static final int MAX_SUGGESTIONS = 50;
+
     /**
      * Construct a route controller with the autowired fields
      * @param graphService the service for loading the graph
@@ -146,11 +162,13 @@ public class RouteController {
      * @param endWaypoint the name of the end waypoint
      * @param ecoFriendly true if the routes are to be filtered by eco friendliness
      * @param time        true if time should be factored into the route duration
+     * @param tradeOffs   true to generate every trade-off between distance, time and emissions rather than the best routes
      * @return the name of the view
      */
     @PostMapping(ROUTES)
     public ModelAndView generateRoutes(RedirectAttributes redirectAttributes, @RequestParam String startWaypoint, @RequestParam String endWaypoint,
-                                       @RequestParam(required=false) boolean ecoFriendly, @RequestParam(required=false) boolean time) {
+                                       @RequestParam(required=false) boolean ecoFriendly, @RequestParam(required=false) boolean time,
+                                       @RequestParam(required=false) boolean tradeOffs) {
         AtomicReference<String> startWayRef = new AtomicReference<>(startWaypoint);
         AtomicReference<String> endWayRef = new AtomicReference<>(endWaypoint);
         AtomicReference<String> errorRef = new AtomicReference<>();
@@ -163,6 +181,7 @@ public class RouteController {
         redirectAttributes.addFlashAttribute("endWaypoint", endWayRef.get());
         redirectAttributes.addFlashAttribute("ecoFriendly", ecoFriendly);
         redirectAttributes.addFlashAttribute("time", time);
+        redirectAttributes.addFlashAttribute("tradeOffs", tradeOffs);
 
         ModelAndView modelAndView = new ModelAndView();
 
@@ -175,7 +194,8 @@ public class RouteController {
             Graph graph = loadGraph();
 
             if (graph != null) {
-                List<Route> routes = routeService.generateRoutes(graph, start, end, ecoFriendly, time);
+                List<Route> routes = (tradeOffs) ? routeService.generateParetoRoutes(graph, start, end, ecoFriendly, time)
+                        :routeService.generateRoutes(graph, start, end, ecoFriendly, time);
 
                 Route bestRoute = (routes.isEmpty()) ? null : routes.remove(0);
 
@@ -194,6 +214,165 @@ public class RouteController {
         return modelAndView;
     }
 
+    /**
+     * The handler for explaining a route query as JSON. The routes are generated as the routes page generates them, but
+     * the query is always computed, and the response holds its execution profile alongside the routes: the algorithm
+     * chosen, the milliseconds taken by each phase from loading the graph to reconstructing the routes, and the vertices
+     * settled, edges relaxed and frontier left by each search. The routes aren't saved or cached, so explaining a query
+     * is safe to repeat and has no IDs to link to
+     * @param startWaypoint the name of the start waypoint
+     * @param endWaypoint the name of the end waypoint
+     * @param ecoFriendly true if the routes are to be filtered by eco friendliness
+     * @param time        true if time should be factored into the route duration
+     * @param tradeOffs   true to generate every trade-off between distance, time and emissions rather than the best routes
+     * @return the response containing the routes and the explanation, or an error
+     */
+    @GetMapping(ROUTES + "/explain")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> explainRoutes(@RequestParam String startWaypoint, @RequestParam String endWaypoint,
+                                                             @RequestParam(required=false) boolean ecoFriendly, @RequestParam(required=false) boolean time,
+                                                             @RequestParam(required=false) boolean tradeOffs) {
+        AtomicReference<String> errorRef = new AtomicReference<>();
+        AtomicReference<Waypoint> startRef = new AtomicReference<>();
+        AtomicReference<Waypoint> endRef = new AtomicReference<>();
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        validateParameters(new AtomicReference<>(startWaypoint), new AtomicReference<>(endWaypoint), errorRef, startRef, endRef);
+
+        if (errorRef.get() != null) {
+            body.put(ERROR, errorRef.get());
+
+            return ResponseEntity.badRequest().body(body);
+        }
+
+        SearchTrace trace = new SearchTrace();
+        long started = System.nanoTime();
+        Graph graph = loadGraph();
+        trace.recordPhase(SearchTrace.GRAPH, System.nanoTime() - started);
+
+        if (graph == null) {
+            body.put(ERROR, "An error occurred loading the graph, please try again");
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+        }
+
+        List<Route> routes = (tradeOffs) ? routeService.generateParetoRoutes(graph, startRef.get(), endRef.get(), ecoFriendly, time, trace)
+                :routeService.generateRoutes(graph, startRef.get(), endRef.get(), ecoFriendly, time, trace);
+        List<Map<String, Object>> routeSummaries = new ArrayList<>();
+
+        for (Route route : routes) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            List<String> waypoints = new ArrayList<>();
+
+            waypoints.add(route.getStart().getName());
+            route.getRouteLegs().forEach(leg -> waypoints.add(leg.getEnd().getName()));
+
+            summary.put("waypoints", waypoints);
+            summary.put("distance", route.calculateDistance());
+            routeSummaries.add(summary);
+        }
+
+        body.put("routes", routeSummaries);
+        body.put("explain", trace);
+
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Find the waypoints with the provided names
+     * @param names the names of the waypoints to find
+     * @param error the reference to set the error message on if a waypoint isn't found
+     * @return the found waypoints, in the order of the names
+     */
+    private List<Waypoint> findWaypoints(List<String> names, AtomicReference<String> error) {
+        List<Waypoint> waypoints = new ArrayList<>();
+
+        for (String name : names) {
+            Waypoint waypoint = waypointService.findWaypoint(Constant.capitalise(name));
+
+            if (waypoint == null) {
+                error.set(String.format("No waypoint found with name %s", name));
+                break;
+            }
+
+            waypoints.add(waypoint);
+        }
+
+        return waypoints;
+    }
+
+    /**
+     * The handler for calculating the weight of the best route from each source waypoint to each target waypoint as JSON.
+     * The response holds the names of the sources and targets and the costs, one row per source with one entry per target,
+     * where an entry is null if the target can't be reached
+     * @param sources the names of the source waypoints
+     * @param targets the names of the target waypoints. If not provided, the sources are used
+     * @param ecoFriendly true if the weights should be CO2 aware
+     * @param time        true if time should be factored into the weights
+     * @return the response containing the distance matrix, or an error
+     */
+    @GetMapping(ROUTES + "/matrix")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> distanceMatrix(@RequestParam List<String> sources, @RequestParam(required=false) List<String> targets,
+                                                              @RequestParam(required=false) boolean ecoFriendly, @RequestParam(required=false) boolean time) {
+        AtomicReference<String> errorRef = new AtomicReference<>();
+        List<Waypoint> sourceWaypoints = findWaypoints(sources, errorRef);
+        List<Waypoint> targetWaypoints = (targets == null) ? sourceWaypoints:findWaypoints(targets, errorRef);
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        if (errorRef.get() != null) {
+            body.put(ERROR, errorRef.get());
+
+            return ResponseEntity.badRequest().body(body);
+        }
+
+        Graph graph = loadGraph();
+
+        if (graph == null) {
+            body.put(ERROR, "An error occurred loading the graph, please try again");
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+        }
+
+        double[][] matrix = routeService.calculateDistanceMatrix(graph, sourceWaypoints, targetWaypoints, ecoFriendly, time);
+        List<List<Double>> costs = new ArrayList<>();
+
+        for (double[] row : matrix) {
+            List<Double> rowCosts = new ArrayList<>();
+
+            for (double cost : row)
+                rowCosts.add(Double.isInfinite(cost) ? null:cost); // JSON has no infinity
+
+            costs.add(rowCosts);
+        }
+
+        body.put("sources", sourceWaypoints.stream().map(Waypoint::getName).toArray());
+        body.put("targets", targetWaypoints.stream().map(Waypoint::getName).toArray());
+        body.put("costs", costs);
+
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * The handler for suggesting waypoints as their names are typed. The response is the names of the waypoints starting
+     * with the prefix, ignoring case, in alphabetical order
+     * @param prefix the prefix typed so far
+     * @param limit the maximum number of names to return, at most MAX_SUGGESTIONS
+     * @return the response containing the names of the waypoints found
+     */
+    @GetMapping(ROUTES + "/waypoints")
+    @ResponseBody
+    public ResponseEntity<List<String>> suggestWaypoints(@RequestParam String prefix,
+                                                         @RequestParam(required=false, defaultValue="" + DEFAULT_SUGGESTIONS) int limit) {
+        if (prefix.isBlank() || limit < 1)
+            return ResponseEntity.ok(new ArrayList<>());
+
+        List<String> names = new ArrayList<>();
+        waypointService.completeWaypoint(prefix, Math.min(limit, MAX_SUGGESTIONS)).forEach(waypoint -> names.add(waypoint.getName()));
+
+        return ResponseEntity.ok(names);
+    }
+
     /**
      * The controller method for accessing a route
      * @param model the model for this request
@@ -0,0 +1,35 @@
+package ie.ul.routeplanning.repositories;
+
+import ie.ul.routeplanning.routes.Route;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.io.Serializable;
+
+/**
+ * This class generates the IDs of routes from a database sequence, or a table on databases without sequences, handing
+ * out blocks of IDs so most IDs are generated without a round trip to the database.
+ *
+ * Unlike the standard generator, a route that already has an ID keeps it when it is inserted. This lets generated routes
+ * be given their IDs up front, so they can be linked to before they are written to the database
+ */
+public class RouteIdGenerator extends SequenceStyleGenerator {
+    /**
+     * The name of the generator, as referenced by the ID mapping of {@link Route}
+     */
+    public static final String NAME = "route_id_generator";
+
+    /**
+     * Generate the ID of the provided route, keeping the ID it already has if any
+     * @param session the session the route is being inserted with
+     * @param object the route being inserted
+     * @return the ID of the route
+     */
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (object instanceof Route && ((Route) object).getId() != null)
+            return ((Route) object).getId();
+
+        return super.generate(session, object);
+    }
+}
@@ -2,9 +2,11 @@ package ie.ul.routeplanning.repositories;
 
 import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.SavedRoute;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +30,13 @@ public interface RouteRepository extends CrudRepository<Route, Long> {
      */
     @Query("SELECT r FROM SavedRoute r JOIN User u ON r.user = u WHERE u.username = ?1 AND r.saved = True AND r.savedRoute.id = ?2")
     Optional<SavedRoute> findSavedRouteByUserAndRoute(String username, Long routeId);
+
+    /**
+     * Finds the stored routes with any of the provided hashes. The legs of the routes are fetched with them, since the
+     * routes are displayed after the session they were found in has closed
+     * @param hashes the hashes of the leg sequences of the routes to find
+     * @return the routes found, at most one per hash
+     */
+    @EntityGraph(attributePaths="routeLegs")
+    List<Route> findByHashIn(Collection<String> hashes);
 }
@@ -40,6 +40,6 @@ public class WaypointsLoader implements CommandLineRunner {
         Consumer<Waypoint> saveIfNotExists = w -> waypointRepository.findById(w.getId())
         .orElseGet(() -> waypointRepository.save(w));
 
-        source.getWaypoints().forEach(saveIfNotExists);
+        source.forEachWaypoint(saveIfNotExists);
     }
 }
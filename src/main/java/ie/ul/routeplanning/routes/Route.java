@@ -1,6 +1,13 @@
 package ie.ul.routeplanning.routes;
 
+import ie.ul.routeplanning.repositories.RouteIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,10 +18,15 @@ import java.util.List;
 @Entity
 public class Route {
     /**
-     * The ID of this Route
+     * The ID of this Route. Generated routes are given their ID before they are written to the database
      */
     @Id
-    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @GeneratedValue(generator=RouteIdGenerator.NAME)
+    @GenericGenerator(name=RouteIdGenerator.NAME, strategy="ie.ul.routeplanning.repositories.RouteIdGenerator", parameters={
+            @Parameter(name="sequence_name", value="route_sequence"),
+            @Parameter(name="increment_size", value="50"),
+            @Parameter(name="optimizer", value="pooled-lo")
+    })
     private Long id;
     /**
      * A Route will have a list of one or more RouteLeg objects.
@@ -25,6 +37,12 @@ public class Route {
      * Determines if this route is saved or not
      */
     protected boolean saved;
+    /**
+     * The hash of the leg sequence of this route, identifying identical routes so each is only stored once. Null until
+     * the route is stored, and for saved routes, which have no legs of their own
+     */
+    @Column(unique=true, length=64)
+    private String hash;
 
     /**
      * Constructor for Route class that initializes a list of RouteLegs
@@ -58,6 +76,50 @@ public class Route {
         this.id = id;
     }
 
+    /**
+     * Retrieve the hash identifying the leg sequence of this route
+     * @return the hash of this route, or null if it hasn't been set
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Set the hash identifying the leg sequence of this route
+     * @param hash the hash calculated by calculateHash()
+     */
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Calculate the canonical hash of the leg sequence of this route, i.e. the SHA-256 of the start and end waypoint IDs,
+     * transport method and distance of each leg in order. Two routes have the same hash if and only if (barring
+     * collisions) they travel the same legs in the same way, so one stored row can stand in for both
+     * @return the hash as 64 hexadecimal characters
+     */
+    public String calculateHash() {
+        StringBuilder canonical = new StringBuilder();
+
+        for (RouteLeg leg : routeLegs) {
+            canonical.append(leg.getStart().getId()).append('>').append(leg.getEnd().getId())
+                    .append(':').append(leg.getTransportMethod().getName())
+                    .append(':').append(Double.doubleToLongBits(leg.getDistance())).append(';');
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+
+            for (byte b : digest)
+                hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex); // every Java platform is required to support it
+        }
+    }
+
     /**
      * Adds a route leg to the list of route legs.
      * @param routeLeg route leg connecting two points
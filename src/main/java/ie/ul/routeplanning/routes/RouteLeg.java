@@ -20,10 +20,11 @@ import java.util.Objects;
 @Entity
 public class RouteLeg implements Edge {
 	/**
-	 * The id of this routeleg
+	 * The id of this routeleg. It is generated from a sequence rather than by the database, so legs can be inserted in batches
 	 */
 	@Id
-	@GeneratedValue(strategy=GenerationType.IDENTITY)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="route_leg_sequence")
+	@SequenceGenerator(name="route_leg_sequence", sequenceName="route_leg_sequence", allocationSize=50)
 	private Long id;
 	/**
 	 * The start of the RouteLeg
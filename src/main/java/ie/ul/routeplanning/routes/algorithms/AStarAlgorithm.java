@@ -0,0 +1,63 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+
+/**
+ * This class represents the A* shortest path algorithm. It is Dijkstra's algorithm directed towards the end waypoint by
+ * a lower bound of the remaining weight, derived from the great-circle distance between the coordinates of a waypoint and
+ * the end waypoint.
+ *
+ * The great-circle distance is a lower bound of the distance still to be travelled, which is converted into a lower
+ * bound of weight using {@link WeightFunction#minimumWeightPerKm(java.util.List)}. That way the heuristic is scaled to
+ * the weight function, e.g. a time weight uses the fastest transport method of the graph and an emissions weight uses
+ * the lowest emitting one. If any waypoint has no coordinates, the heuristic is 0 and the search is the same as Dijkstra's
+ */
+public class AStarAlgorithm extends DijkstraAlgorithm {
+    /**
+     * The factor the heuristic is scaled down by so that floating point error in the great-circle distance can't make
+     * the heuristic overestimate
+     */
+    private static final double ROUNDING_MARGIN = 1 - 1e-9;
+
+    /**
+     * Constructs the A* algorithm with the provided start and end waypoints and the weight function for calculating
+     * the weight of an edge
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     */
+    public AStarAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        super(start, end, weightFunction);
+    }
+
+    /**
+     * Constructs the A* algorithm with the default weight function
+     * @param start the start waypoint
+     * @param end the end waypoint
+     */
+    public AStarAlgorithm(Waypoint start, Waypoint end) {
+        super(start, end);
+    }
+
+    /**
+     * Create the heuristic estimating the remaining weight from the great-circle distance to the target. The distance is
+     * multiplied by the minimum ratio of edge distance to great-circle distance of the graph, so it is still a lower bound
+     * if the edge distances are shorter than the coordinates suggest, and then by the minimum weight per km of the weight
+     * function
+     * @param graph the compact graph being searched
+     * @param target the vertex the search is finding the path to
+     * @return the heuristic to use, or null if there is no useful lower bound
+     */
+    @Override
+    protected Heuristic createHeuristic(CompactGraph graph, int target) {
+        double weightPerKm = weightFunction.minimumWeightPerKm(graph.getTransportMethods()) * graph.getMinimumDistanceRatio()
+                * ROUNDING_MARGIN;
+
+        if (!(weightPerKm > 0) || Double.isInfinite(weightPerKm))
+            return null;
+
+        return vertex -> weightPerKm * graph.greatCircleDistance(vertex, target);
+    }
+}
@@ -13,4 +13,20 @@ public interface Algorithm<T> {
      * @return the result of the algorithm
      */
     Result<T> perform(Graph graph);
+
+    /**
+     * Get the statistics of the searches this algorithm has performed, e.g. to monitor the work done by queries
+     * @return the search statistics, or null if the algorithm doesn't record them
+     */
+    default SearchStatistics getStatistics() {
+        return null;
+    }
+
+    /**
+     * Give the algorithm a trace to record the phases and searches of its next performance in, to explain a query. The
+     * default does nothing, for algorithms that can't be traced
+     * @param trace the trace to record in, or null to stop tracing
+     */
+    default void setTrace(SearchTrace trace) {
+    }
 }
@@ -4,78 +4,60 @@ import ie.ul.routeplanning.routes.graph.Graph;
 
 /**
  * This class provides the context for working with the algorithms package.
- * It provides the "context" component of the Strategy pattern
+ * It provides the "context" component of the Strategy pattern.
+ *
+ * A context binds one algorithm to one graph and cannot be changed afterwards, so each query creates its own context
+ * and concurrent queries never share mutable state through it
  * @param <T> the type of algorithm this context is working on
  */
 public class AlgorithmContext<T> {
 	/**
 	 * The algorithm the context will delegate to
 	 */
-	private Algorithm<T> algorithm;
+	private final Algorithm<T> algorithm;
 	/**
 	 * The graph the context will delegate to
 	 */
-	private Graph graph;
-
-	/**
-	 * Create a default context
-	 */
-	public AlgorithmContext() {
-		this(null, null);
-	}
+	private final Graph graph;
 
 	/**
 	 * Create an AlgorithmContext with the provided algorithm and graph
 	 * @param algorithm the algorithm the context will operate with
 	 * @param graph the graph to delegate the algorithm call on
+	 * @throws IllegalStateException if either algorithm or graph is null
 	 */
 	public AlgorithmContext(Algorithm<T> algorithm, Graph graph) {
-		this.algorithm = algorithm;
-		this.graph = graph;
-	}
+		if (algorithm == null)
+			throw new IllegalStateException("The algorithm of an AlgorithmContext cannot be null");
 
-	/**
-	 * Set the algorithm to use on the graph
-	 * @param algorithm the algorithm to delegate to
-	 */
-	public void setAlgorithm(Algorithm<T> algorithm) {
-		this.algorithm = algorithm;
-	}
+		if (graph == null)
+			throw new IllegalStateException("The graph of an AlgorithmContext cannot be null");
 
-	/**
-	 * Set the graph to pass to the algorithm
-	 * @param graph the graph to pass into the algorithm
-	 */
-	public void setGraph(Graph graph) {
+		this.algorithm = algorithm;
 		this.graph = graph;
 	}
 
 	/**
-	 * Resets the context to an empty context, i.e. algorithm and graph is null afterwards
+	 * Get the algorithm the context delegates to
+	 * @return the algorithm of the context
 	 */
-	public void reset() {
-		algorithm = null;
-		graph = null;
+	public Algorithm<T> getAlgorithm() {
+		return algorithm;
 	}
 
 	/**
-	 * Validates that neither the algorithm or graph is null
+	 * Get the graph the algorithm is performed on
+	 * @return the graph of the context
 	 */
-	private void validate() {
-		if (algorithm == null)
-			throw new IllegalStateException("The algorithm cannot be null. Call setAlgorithm with a non-null algorithm");
-
-		if (graph == null)
-			throw new IllegalStateException("The graph cannot be null. Call setGraph with a non-null graph");
+	public Graph getGraph() {
+		return graph;
 	}
 
 	/**
-	 * Perform the operation provided by the given algorithm on the set graph
+	 * Perform the operation provided by the given algorithm on the graph
 	 * @return the result of the operation
-	 * @throws IllegalStateException if either algorithm or graph is null
 	 */
 	public Result<T> perform() {
-		validate();
 		return algorithm.perform(graph);
 	}
 }
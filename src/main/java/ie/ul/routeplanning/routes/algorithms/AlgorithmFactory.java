@@ -4,6 +4,8 @@ import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.Waypoint;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
 
+import java.util.List;
+
 /**
  * A factory for creating algorithms
  */
@@ -19,6 +21,52 @@ public class AlgorithmFactory {
         return new DijkstraAlgorithm(start, end, weightFunction);
     }
 
+    /**
+     * Create an algorithm that implements Dijkstra's shortest path algorithm searching from both the start and the end,
+     * which is an alternative to dijkstraAlgorithm exploring fewer vertices on long routes
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @return the algorithm implementing bidirectional Dijkstra's
+     */
+    public static Algorithm<Route> bidirectionalDijkstraAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        return new BidirectionalDijkstraAlgorithm(start, end, weightFunction);
+    }
+
+    /**
+     * Create an algorithm that queries the contraction hierarchy of the graph for the profile of the weight function,
+     * which is built the first time it is queried
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @return the algorithm implementing contraction hierarchy queries
+     */
+    public static Algorithm<Route> contractionHierarchyAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        return new ContractionHierarchyAlgorithm(start, end, weightFunction);
+    }
+
+    /**
+     * Create an algorithm that implements the A* shortest path algorithm, directed by the great-circle distance to the end
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @return the algorithm implementing A*
+     */
+    public static Algorithm<Route> aStarAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        return new AStarAlgorithm(start, end, weightFunction);
+    }
+
+    /**
+     * Create an algorithm that implements A* directed by the lower bounds of the landmarks of the graph (ALT)
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @return the algorithm implementing ALT
+     */
+    public static Algorithm<Route> landmarkAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        return new LandmarkAlgorithm(start, end, weightFunction);
+    }
+
     /**
      * Create an algorithm that implements an algorithm that returns the top numRoutes shortest paths
      * @param start the start waypoint
@@ -30,4 +78,40 @@ public class AlgorithmFactory {
     public static Algorithm<Route> topKPathsAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction, int numRoutes) {
         return new TopKAlgorithm(start, end, weightFunction, numRoutes);
     }
+
+    /**
+     * Create an algorithm that implements Yen's algorithm to return the numRoutes shortest loopless paths
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @param numRoutes the number of routes to generate
+     * @return the algorithm implementing Yen's k shortest paths
+     */
+    public static Algorithm<Route> kShortestPathsAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction, int numRoutes) {
+        return new YenAlgorithm(start, end, weightFunction, numRoutes);
+    }
+
+    /**
+     * Create an algorithm that returns the Pareto front of routes over distance, time and emissions, i.e. every route
+     * that no other route beats in all three, ordered by the weight function
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to order the routes on the front
+     * @return the algorithm implementing the multi-criteria Pareto search
+     */
+    public static Algorithm<Route> paretoAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        return new ParetoAlgorithm(start, end, weightFunction);
+    }
+
+    /**
+     * Create an algorithm that calculates the weight of the shortest path from each source to each target, with one
+     * search per source rather than one per pair
+     * @param sources the source waypoints, one for each row of the matrix
+     * @param targets the target waypoints, one for each column of the matrix
+     * @param weightFunction the weight function used to calculate the weights of the edges
+     * @return the algorithm calculating the distance matrix
+     */
+    public static Algorithm<double[]> distanceMatrixAlgorithm(List<Waypoint> sources, List<Waypoint> targets, WeightFunction weightFunction) {
+        return new DistanceMatrixAlgorithm(sources, targets, weightFunction);
+    }
 }
@@ -0,0 +1,165 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.GraphMask;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a bidirectional variant of Dijkstra's algorithm. One search runs forward from the start waypoint
+ * and another runs backward from the end waypoint over the incoming edges of each vertex. Each step advances the search
+ * with the lower queue cost, so both searches grow to roughly half the radius a single search would need.
+ *
+ * Every time an edge is relaxed into a vertex the other search has already reached, the length of the path through that
+ * vertex is compared to the best path found so far. The searches stop once the lowest costs in the two queues add up
+ * to at least the best path, since no path found from then on can be shorter
+ */
+public class BidirectionalDijkstraAlgorithm extends DijkstraAlgorithm {
+    /**
+     * Constructs the bidirectional algorithm with the provided start and end waypoints and the weight function for
+     * calculating the weight of an edge
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     */
+    public BidirectionalDijkstraAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        super(start, end, weightFunction);
+    }
+
+    /**
+     * Constructs the bidirectional algorithm with the default weight function
+     * @param start the start waypoint
+     * @param end the end waypoint
+     */
+    public BidirectionalDijkstraAlgorithm(Waypoint start, Waypoint end) {
+        super(start, end);
+    }
+
+    /**
+     * Find the shortest path from the source vertex to the target vertex of the compact graph by searching from both ends
+     * @param graph the compact graph to search
+     * @param source the vertex to start from
+     * @param target the vertex to find the path to
+     * @param mask the mask of edges and vertices that cannot be travelled. May be null if nothing is excluded
+     * @return the edge indices of the shortest path, or null if the target cannot be reached
+     */
+    @Override
+    protected int[] shortestPath(CompactGraph graph, int source, int target, GraphMask mask) {
+        if (source == target)
+            return new int[0];
+
+        int vertices = graph.getVertexCount();
+        double[] forwardDistances = new double[vertices], backwardDistances = new double[vertices];
+        int[] forwardEdges = new int[vertices], backwardEdges = new int[vertices]; // the edge into (forward) or out of (backward) each vertex on its path
+        boolean[] forwardSettled = new boolean[vertices], backwardSettled = new boolean[vertices];
+        IndexedHeap forwardHeap = new IndexedHeap(vertices), backwardHeap = new IndexedHeap(vertices);
+        double[] weights = getWeights(graph);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        long settled = 0, relaxed = 0, pushed = 2;
+
+        Arrays.fill(forwardDistances, Double.POSITIVE_INFINITY); // a finite distance plus MAX_VALUE rounds to MAX_VALUE, so unreached vertices would look like meetings
+        Arrays.fill(backwardDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(forwardEdges, -1);
+        Arrays.fill(backwardEdges, -1);
+
+        forwardDistances[source] = 0;
+        backwardDistances[target] = 0;
+        forwardHeap.update(source, 0);
+        backwardHeap.update(target, 0);
+
+        try {
+            while (true) {
+                double forwardCost = forwardHeap.peekKey(), backwardCost = backwardHeap.peekKey();
+
+                if (forwardCost + backwardCost >= best || Double.isInfinite(Math.min(forwardCost, backwardCost)))
+                    break; // no path through an unsettled vertex can be shorter than the best path
+
+                settled++;
+
+                if (forwardCost <= backwardCost) {
+                    int u = forwardHeap.poll();
+                    forwardSettled[u] = true;
+
+                    for (int edge = graph.getEdgesStart(u), last = graph.getEdgesEnd(u); edge < last; edge++) {
+                        int v = graph.getTarget(edge);
+
+                        if (!forwardSettled[v] && (mask == null || mask.allows(edge, v))) {
+                            double newDistance = forwardDistances[u] + calculateWeight(graph, weights, edge);
+                            relaxed++;
+
+                            if (newDistance < forwardDistances[v]) {
+                                forwardDistances[v] = newDistance;
+                                forwardEdges[v] = edge;
+                                forwardHeap.update(v, newDistance);
+                                pushed++;
+
+                                if (newDistance + backwardDistances[v] < best) {
+                                    best = newDistance + backwardDistances[v];
+                                    meeting = v;
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    int u = backwardHeap.poll();
+                    backwardSettled[u] = true;
+
+                    for (int i = graph.getReverseEdgesStart(u), last = graph.getReverseEdgesEnd(u); i < last; i++) {
+                        int edge = graph.getReverseEdge(i), v = graph.getSource(edge);
+
+                        if (!backwardSettled[v] && (mask == null || (mask.allows(edge, u) && (v == source || !mask.isVertexExcluded(v))))) {
+                            double newDistance = backwardDistances[u] + calculateWeight(graph, weights, edge);
+                            relaxed++;
+
+                            if (newDistance < backwardDistances[v]) {
+                                backwardDistances[v] = newDistance;
+                                backwardEdges[v] = edge;
+                                backwardHeap.update(v, newDistance);
+                                pushed++;
+
+                                if (forwardDistances[v] + newDistance < best) {
+                                    best = forwardDistances[v] + newDistance;
+                                    meeting = v;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            return (meeting == -1) ? null:joinPaths(graph, forwardEdges, backwardEdges, meeting);
+        } finally {
+            statistics.record(settled, relaxed, pushed);
+        }
+    }
+
+    /**
+     * Join the forward path from the source to the meeting vertex with the backward path from the meeting vertex to the
+     * target
+     * @param graph the compact graph that was searched
+     * @param forwardEdges the edge into each vertex found by the forward search
+     * @param backwardEdges the edge out of each vertex found by the backward search
+     * @param meeting the vertex where the two searches met
+     * @return the edge indices of the joined path
+     */
+    private int[] joinPaths(CompactGraph graph, int[] forwardEdges, int[] backwardEdges, int meeting) {
+        int[] forwardPath = tracePath(graph, forwardEdges, meeting);
+        int length = forwardPath.length;
+
+        for (int vertex = meeting; backwardEdges[vertex] != -1; vertex = graph.getTarget(backwardEdges[vertex]))
+            length++;
+
+        int[] path = Arrays.copyOf(forwardPath, length);
+
+        for (int i = forwardPath.length, vertex = meeting; i < length; i++) {
+            path[i] = backwardEdges[vertex];
+            vertex = graph.getTarget(path[i]);
+        }
+
+        return path;
+    }
+}
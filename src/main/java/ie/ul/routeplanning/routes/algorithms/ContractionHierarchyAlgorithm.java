@@ -0,0 +1,151 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.GraphMask;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+import ie.ul.routeplanning.routes.graph.hierarchy.ContractionHierarchy;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a shortest path query on the {@link ContractionHierarchy} of the graph for the profile of the
+ * weight function. A forward search from the start only travels arcs upwards in rank, and a backward search from the end
+ * only travels arcs downwards in rank in reverse, so both searches only settle a small part of the graph. The shortest
+ * path goes through the vertex where the searches meet with the lowest total distance, and its shortcuts are unpacked
+ * back into the edges of the graph, so the route is the same as one found by Dijkstra's.
+ *
+ * The hierarchy of a graph is built the first time it is queried with each profile. If the weight function doesn't
+ * match a {@link WeightProfile} or the search is masked, there is no hierarchy to use, so the query falls back to
+ * Dijkstra's algorithm
+ */
+public class ContractionHierarchyAlgorithm extends DijkstraAlgorithm {
+    /**
+     * Constructs the algorithm with the provided start and end waypoints and the weight function for calculating the
+     * weight of an edge
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     */
+    public ContractionHierarchyAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        super(start, end, weightFunction);
+    }
+
+    /**
+     * Constructs the algorithm with the default weight function
+     * @param start the start waypoint
+     * @param end the end waypoint
+     */
+    public ContractionHierarchyAlgorithm(Waypoint start, Waypoint end) {
+        super(start, end);
+    }
+
+    /**
+     * Find the shortest path from the source vertex to the target vertex using the contraction hierarchy
+     * @param graph the compact graph to search
+     * @param source the vertex to start from
+     * @param target the vertex to find the path to
+     * @param mask the mask of edges and vertices that cannot be travelled. May be null if nothing is excluded
+     * @return the edge indices of the shortest path, or null if the target cannot be reached
+     */
+    @Override
+    protected int[] shortestPath(CompactGraph graph, int source, int target, GraphMask mask) {
+        if (profile == null || mask != null)
+            return super.shortestPath(graph, source, target, mask); // shortcuts can't be masked or re-weighted
+
+        ContractionHierarchy hierarchy = ContractionHierarchy.forGraph(graph, profile);
+        int vertices = graph.getVertexCount();
+        double[] forwardDistances = new double[vertices], backwardDistances = new double[vertices];
+        int[] forwardArcs = new int[vertices], backwardArcs = new int[vertices];
+        IndexedHeap forwardHeap = new IndexedHeap(vertices), backwardHeap = new IndexedHeap(vertices);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        long settled = 0, relaxed = 0, pushed = 2;
+
+        Arrays.fill(forwardDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(backwardDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(forwardArcs, -1);
+        Arrays.fill(backwardArcs, -1);
+
+        forwardDistances[source] = 0;
+        backwardDistances[target] = 0;
+        forwardHeap.update(source, 0);
+        backwardHeap.update(target, 0);
+
+        try {
+            while (Math.min(forwardHeap.peekKey(), backwardHeap.peekKey()) < best) { // otherwise everything left is further than the best path
+                boolean forward = forwardHeap.peekKey() <= backwardHeap.peekKey();
+                IndexedHeap heap = (forward) ? forwardHeap:backwardHeap;
+                int u = heap.poll();
+                settled++;
+
+                double[] distances = (forward) ? forwardDistances:backwardDistances;
+                double[] otherDistances = (forward) ? backwardDistances:forwardDistances;
+                int[] parentArcs = (forward) ? forwardArcs:backwardArcs;
+
+                if (distances[u] + otherDistances[u] < best) {
+                    best = distances[u] + otherDistances[u];
+                    meeting = u;
+                }
+
+                int first = (forward) ? hierarchy.getUpwardStart(u):hierarchy.getDownwardStart(u);
+                int last = (forward) ? hierarchy.getUpwardEnd(u):hierarchy.getDownwardEnd(u);
+
+                for (int i = first; i < last; i++) {
+                    int arc = (forward) ? hierarchy.getUpwardArc(i):hierarchy.getDownwardArc(i);
+                    int v = (forward) ? hierarchy.getArcTarget(arc):hierarchy.getArcSource(arc);
+                    double newDistance = distances[u] + hierarchy.getArcWeight(arc);
+                    relaxed++;
+
+                    if (newDistance < distances[v]) {
+                        distances[v] = newDistance;
+                        parentArcs[v] = arc;
+                        heap.update(v, newDistance);
+                        pushed++;
+                    }
+                }
+            }
+
+            return (meeting == -1) ? null:hierarchy.unpack(joinArcs(hierarchy, forwardArcs, backwardArcs, meeting));
+        } finally {
+            statistics.record(settled, relaxed, pushed); // counted even if the search throws
+        }
+    }
+
+    /**
+     * Join the upward arcs from the source to the meeting vertex with the downward arcs from the meeting vertex to the
+     * target
+     * @param hierarchy the hierarchy that was searched
+     * @param forwardArcs the arc into each vertex found by the forward search
+     * @param backwardArcs the arc out of each vertex found by the backward search
+     * @param meeting the vertex where the two searches met
+     * @return the arcs of the path in order
+     */
+    private int[] joinArcs(ContractionHierarchy hierarchy, int[] forwardArcs, int[] backwardArcs, int meeting) {
+        int forwardLength = 0, length;
+
+        for (int vertex = meeting; forwardArcs[vertex] != -1; vertex = hierarchy.getArcSource(forwardArcs[vertex]))
+            forwardLength++;
+
+        length = forwardLength;
+
+        for (int vertex = meeting; backwardArcs[vertex] != -1; vertex = hierarchy.getArcTarget(backwardArcs[vertex]))
+            length++;
+
+        int[] arcs = new int[length];
+
+        for (int i = forwardLength - 1, vertex = meeting; i >= 0; i--) {
+            arcs[i] = forwardArcs[vertex];
+            vertex = hierarchy.getArcSource(arcs[i]);
+        }
+
+        for (int i = forwardLength, vertex = meeting; i < length; i++) {
+            arcs[i] = backwardArcs[vertex];
+            vertex = hierarchy.getArcTarget(arcs[i]);
+        }
+
+        return arcs;
+    }
+}
@@ -2,16 +2,31 @@ package ie.ul.routeplanning.routes.algorithms;
 
 import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
 import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphMask;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class represents the Dijkstra's shortest path algorithm for finding the shortest path based on the provided weight
- * function
+ * function.
+ *
+ * The heap and arrays of a search are kept and re-used by the next search of the same algorithm, which only resets the
+ * vertices the previous search reached, so algorithms performing many searches per query, such as the top k and Yen's
+ * algorithms, don't allocate arrays the size of the graph for each one
  */
 public class DijkstraAlgorithm extends PathFindingAlgorithm {
+    /**
+     * The search spaces not being used by a search. Yen's algorithm performs its spur searches in parallel, so each
+     * search running at the same time takes a search space of its own
+     */
+    private final Queue<SearchSpace> searchSpaces = new ConcurrentLinkedQueue<>();
+
     /**
      * Constructs Dijkstra's algorithm with the provided start and end waypoints and the weight function for calculating
      * the weight of an edge
@@ -33,79 +48,149 @@ public class DijkstraAlgorithm extends PathFindingAlgorithm {
     }
 
     /**
-     * Perform the dijkstra's after all the necessary data structures have been initialised
-     * @param adjacencyList the generated adjacency list
-     * @param distances the distances map to keep track of distance costs
-     * @param priorityQueue the priority queue backing the algorithm
-     * @param visited the set of visited waypoints
-     * @return the generated route
+     * Create the heuristic used to direct the search towards the target. Dijkstra's algorithm has no sense of
+     * direction, so this returns null and vertices are explored in order of their distance from the source only.
+     * Subclasses can return a heuristic to turn the search into A*, as long as the heuristic never overestimates and
+     * estimate(u) is at most the weight of an edge from u to v plus estimate(v)
+     * @param graph the compact graph being searched
+     * @param target the vertex the search is finding the path to
+     * @return the heuristic to use, or null if the search is not directed
      */
-    private Route doDijkstra(Map<Waypoint, List<Node>> adjacencyList, Map<Waypoint, Double> distances,
-                             PriorityQueue<Node> priorityQueue, Set<Waypoint> visited) {
-        int vertices = adjacencyList.size();
+    protected Heuristic createHeuristic(CompactGraph graph, int target) {
+        return null;
+    }
 
-        Node target = null;
+    /**
+     * Find the shortest path from the source vertex to the target vertex of the compact graph
+     * @param graph the compact graph to search
+     * @param source the vertex to start from
+     * @param target the vertex to find the path to
+     * @param mask the mask of edges and vertices that cannot be travelled. May be null if nothing is excluded
+     * @return the edge indices of the shortest path, or null if the target cannot be reached
+     */
+    protected int[] shortestPath(CompactGraph graph, int source, int target, GraphMask mask) {
+        SearchSpace space = acquireSearchSpace(graph.getVertexCount());
 
-        while (visited.size() != vertices && !priorityQueue.isEmpty()) {
-            Node node = priorityQueue.remove();
-            Waypoint u = node.node;
-            double uDist = distances.get(u);
+        try {
+            return shortestPath(graph, source, target, mask, space);
+        } finally {
+            space.reset();
+            searchSpaces.offer(space);
+        }
+    }
 
-            if (u.equals(end)) {
-                target = node;
-                break; // we found our end node. Since Dijkstra's always follows the shortest path, we can break after the end is reached
-            }
+    /**
+     * Take a search space for a graph with the provided number of vertices, creating one if none is free. A free search
+     * space for a different number of vertices, e.g. after the graph was reloaded, is dropped
+     * @param vertices the number of vertices of the graph being searched
+     * @return the search space, with every vertex unreached
+     */
+    private SearchSpace acquireSearchSpace(int vertices) {
+        SearchSpace space;
 
-            if (node.cost > uDist)
-                continue;
+        while ((space = searchSpaces.poll()) != null) {
+            if (space.distances.length == vertices)
+                return space;
+        }
+
+        return new SearchSpace(vertices);
+    }
+
+    /**
+     * Find the shortest path from the source vertex to the target vertex of the compact graph in the provided search
+     * space
+     * @param graph the compact graph to search
+     * @param source the vertex to start from
+     * @param target the vertex to find the path to
+     * @param mask the mask of edges and vertices that cannot be travelled. May be null if nothing is excluded
+     * @param space the search space to search in, with every vertex unreached
+     * @return the edge indices of the shortest path, or null if the target cannot be reached
+     */
+    private int[] shortestPath(CompactGraph graph, int source, int target, GraphMask mask, SearchSpace space) {
+        long started = startPhase();
+        double[] distances = space.distances;
+        int[] parentEdges = space.parentEdges;
+        boolean[] visited = space.visited;
+        IndexedHeap heap = space.heap;
+        Heuristic heuristic = createHeuristic(graph, target);
+        double[] weights = getWeights(graph);
+        long settled = 0, relaxed = 0, pushed = 1; // the source is queued before the loop
+        boolean found = false;
+
+        distances[source] = 0; // no cost to travel to start
+        space.reach(source);
+        heap.update(source, 0);
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+
+            visited[u] = true;
+            settled++;
+
+            if (u == target) {
+                found = true;
+                break; // since Dijkstra's always follows the shortest path, we can stop once the target is reached
+            }
 
-            visited.add(u);
+            double uDist = distances[u];
 
-            double edgeDistance, newDistance;
+            for (int edge = graph.getEdgesStart(u), last = graph.getEdgesEnd(u); edge < last; edge++) {
+                int v = graph.getTarget(edge);
 
-            List<Node> adjacentNodes = adjacencyList.get(u);
+                if (!visited[v] && (mask == null || mask.allows(edge, v))) {
+                    double newDistance = uDist + calculateWeight(graph, weights, edge);
+                    relaxed++;
 
-            for (Node adjacent : adjacentNodes) {
-                if (!visited.contains(adjacent.node)) {
-                    edgeDistance = adjacent.cost;
-                    newDistance = uDist + edgeDistance;
+                    if (newDistance < distances[v]) {
+                        if (parentEdges[v] == -1)
+                            space.reach(v); // only the first time, so each vertex is reset once
 
-                    if (newDistance < distances.get(adjacent.node)) {
-                        distances.put(adjacent.node, newDistance);
-                        adjacent.parent = node;
-                        priorityQueue.add(adjacent);
+                        distances[v] = newDistance;
+                        parentEdges[v] = edge;
+                        heap.update(v, (heuristic == null) ? newDistance:newDistance + heuristic.estimate(v)); // decreases the key if v is already queued
+                        pushed++;
                     }
                 }
             }
         }
 
-        if (target != null) {
-            List<Node> path = constructPath(target);
+        statistics.record(settled, relaxed, pushed);
 
-            return convertPathToRoute(path);
-        } else {
-            return null;
+        if (trace != null) {
+            long nanos = System.nanoTime() - started;
+
+            traceSearch(nanos, new SearchTrace.Search(settled, relaxed, pushed, found, nanos, heap.size(), SearchTrace.frontierOf(graph, heap)));
         }
+
+        return (found) ? tracePath(graph, parentEdges, target):null;
+    }
+
+    /**
+     * Record a completed search in the trace and add its time to the search phase. This is only called if the query is
+     * being traced
+     * @param nanos the time taken by the search in nanoseconds
+     * @param search the completed search
+     */
+    protected void traceSearch(long nanos, SearchTrace.Search search) {
+        trace.recordPhase(SearchTrace.SEARCH, nanos);
+        trace.recordSearch(search);
     }
 
     /**
      * Generate the route using dijkstra's algorithm
-     * @param graph the graph to use for route generation
-     * @return the generated route
+     * @param graph the compact graph to use for route generation
+     * @param mask the mask of edges and vertices that cannot be travelled. May be null if nothing is excluded
+     * @return the generated route, or null if no route exists
      */
-    protected Route dijkstra(Graph graph) {
-        Map<Waypoint, List<Node>> adjacencyList = generateAdjacencyList(graph);
-        int vertices = adjacencyList.size(); // the number of vertices in the graph
-        Map<Waypoint, Double> distances = new HashMap<>();
-        Set<Waypoint> visited = new HashSet<>();
-        PriorityQueue<Node> priorityQueue = new PriorityQueue<>(vertices, new Node());
+    protected Route dijkstra(CompactGraph graph, GraphMask mask) {
+        int source = graph.indexOf(start), target = graph.indexOf(end);
 
-        adjacencyList.keySet().forEach(k -> distances.put(k, Double.MAX_VALUE)); // initialise the distances to infinity
+        if (source == -1 || target == -1)
+            return null;
 
-        priorityQueue.add(new Node(start, 0, 0, null)); // no cost to travel to start
-        distances.put(start, 0.0);
+        int[] path = shortestPath(graph, source, target, mask);
 
-        return doDijkstra(adjacencyList, distances, priorityQueue, visited);
+        return (path == null) ? null:convertPathToRoute(graph, path);
     }
 
     /**
@@ -117,11 +202,79 @@ public class DijkstraAlgorithm extends PathFindingAlgorithm {
     @Override
     public Result<Route> perform(Graph graph) {
         Result<Route> routeResult = new ListResult<>();
-        Route route = dijkstra(graph);
+        Route route = dijkstra(compact(graph), null);
 
         if (route != null)
             routeResult.addItem(route);
 
         return routeResult;
     }
+
+    /**
+     * The heap and arrays of a search, which are reset after the search by only resetting the vertices it reached
+     */
+    private static class SearchSpace {
+        /**
+         * The distance of each vertex from the source, or infinity if it hasn't been reached
+         */
+        private final double[] distances;
+        /**
+         * The edge into each vertex on its shortest path, or -1 if it hasn't been reached
+         */
+        private final int[] parentEdges;
+        /**
+         * True for each vertex that has been settled
+         */
+        private final boolean[] visited;
+        /**
+         * The queue of the search
+         */
+        private final IndexedHeap heap;
+        /**
+         * The vertices reached by the search, in the order they were reached
+         */
+        private final int[] reached;
+        /**
+         * The number of vertices in reached
+         */
+        private int reachedCount;
+
+        /**
+         * Construct a search space with every vertex unreached
+         * @param vertices the number of vertices of the graph
+         */
+        private SearchSpace(int vertices) {
+            this.distances = new double[vertices];
+            this.parentEdges = new int[vertices];
+            this.visited = new boolean[vertices];
+            this.heap = new IndexedHeap(vertices);
+            this.reached = new int[vertices];
+
+            Arrays.fill(distances, Double.MAX_VALUE); // initialise the distances to infinity
+            Arrays.fill(parentEdges, -1);
+        }
+
+        /**
+         * Record that the provided vertex has been reached, so it is reset after the search
+         * @param vertex the vertex reached
+         */
+        private void reach(int vertex) {
+            reached[reachedCount++] = vertex;
+        }
+
+        /**
+         * Reset every reached vertex and clear the heap, in time proportional to the vertices reached
+         */
+        private void reset() {
+            for (int i = 0; i < reachedCount; i++) {
+                int vertex = reached[i];
+                distances[vertex] = Double.MAX_VALUE;
+                parentEdges[vertex] = -1;
+                visited[vertex] = false;
+            }
+
+            reachedCount = 0;
+            heap.clear();
+        }
+    }
 }
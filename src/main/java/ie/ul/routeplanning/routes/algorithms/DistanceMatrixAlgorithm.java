@@ -0,0 +1,191 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunctionBuilder;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class calculates the weight of the shortest path from each of a set of source waypoints to each of a set of
+ * target waypoints. Rather than a search per pair, one Dijkstra search runs from each source until every target is
+ * settled, so the matrix costs one search per source and no routes are built. If there are fewer targets than sources,
+ * the searches run backwards from each target over the incoming edges instead.
+ *
+ * The result holds one row per source, in the order of the sources, each holding the weight to each target in the
+ * order of the targets. A target that can't be reached from a source, or a waypoint that isn't in the graph, has a
+ * weight of infinity
+ */
+public class DistanceMatrixAlgorithm implements Algorithm<double[]> {
+    /**
+     * The source waypoints, one for each row of the matrix
+     */
+    private final List<Waypoint> sources;
+    /**
+     * The target waypoints, one for each column of the matrix
+     */
+    private final List<Waypoint> targets;
+    /**
+     * The weight function to use for calculating weights
+     */
+    private final WeightFunction weightFunction;
+    /**
+     * The profile of the weight function, or null if it doesn't match a profile
+     */
+    private final WeightProfile profile;
+    /**
+     * The statistics of the searches performed by this algorithm
+     */
+    private final SearchStatistics statistics = new SearchStatistics();
+
+    /**
+     * Construct the algorithm with the provided sources and targets and the weight function for calculating the weight
+     * of an edge
+     * @param sources the source waypoints, one for each row of the matrix
+     * @param targets the target waypoints, one for each column of the matrix
+     * @param weightFunction the weight function for calculating the edge weights
+     */
+    public DistanceMatrixAlgorithm(List<Waypoint> sources, List<Waypoint> targets, WeightFunction weightFunction) {
+        this.sources = new ArrayList<>(sources);
+        this.targets = new ArrayList<>(targets);
+        this.weightFunction = weightFunction;
+        this.profile = weightFunction.getProfile();
+    }
+
+    /**
+     * Construct the algorithm with the default weight function
+     * @param sources the source waypoints, one for each row of the matrix
+     * @param targets the target waypoints, one for each column of the matrix
+     */
+    public DistanceMatrixAlgorithm(List<Waypoint> sources, List<Waypoint> targets) {
+        this(sources, targets, WeightFunctionBuilder.DEFAULT);
+    }
+
+    /**
+     * Get the statistics of the searches this algorithm has performed
+     * @return the search statistics
+     */
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Get the vertex index of each of the provided waypoints
+     * @param graph the graph to find the waypoints in
+     * @param waypoints the waypoints to find
+     * @return the index of each waypoint, or -1 for waypoints not in the graph
+     */
+    private static int[] indicesOf(CompactGraph graph, List<Waypoint> waypoints) {
+        int[] indices = new int[waypoints.size()];
+
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = graph.indexOf(waypoints.get(i));
+
+        return indices;
+    }
+
+    /**
+     * Search from the provided vertex until all the provided vertices are settled, filling in their distances
+     * @param graph the graph to search
+     * @param weights the weight of each edge
+     * @param origin the vertex to search from
+     * @param destinations the vertices to find the distances of, -1 for those not in the graph
+     * @param reverse true to search over the incoming edges, finding the distances from each destination to the origin
+     * @param distances the array to use for the tentative distances of the search, reset by this method
+     * @param heap the heap to use for the search, which must be empty
+     * @param found the array to fill with the distance of each destination
+     */
+    private void search(CompactGraph graph, double[] weights, int origin, int[] destinations, boolean reverse,
+                        double[] distances, IndexedHeap heap, double[] found) {
+        Arrays.fill(found, Double.POSITIVE_INFINITY);
+
+        if (origin == -1)
+            return;
+
+        boolean[] isDestination = new boolean[graph.getVertexCount()];
+        int remaining = 0;
+        long settled = 0, relaxed = 0, pushed = 1;
+
+        for (int destination : destinations) {
+            if (destination != -1 && !isDestination[destination]) {
+                isDestination[destination] = true;
+                remaining++;
+            }
+        }
+
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[origin] = 0;
+        heap.update(origin, 0);
+
+        while (!heap.isEmpty() && remaining > 0) {
+            int u = heap.poll();
+            settled++;
+
+            if (isDestination[u])
+                remaining--;
+
+            int first = (reverse) ? graph.getReverseEdgesStart(u):graph.getEdgesStart(u);
+            int last = (reverse) ? graph.getReverseEdgesEnd(u):graph.getEdgesEnd(u);
+
+            for (int i = first; i < last; i++) {
+                int edge = (reverse) ? graph.getReverseEdge(i):i;
+                int v = (reverse) ? graph.getSource(edge):graph.getTarget(edge);
+                double distance = distances[u] + ((weights != null) ? weights[edge]:weightFunction.calculate(graph.getEdge(edge)));
+                relaxed++;
+
+                if (distance < distances[v]) {
+                    distances[v] = distance;
+                    heap.update(v, distance);
+                    pushed++;
+                }
+            }
+        }
+
+        heap.clear(); // the search may stop with vertices still queued once every destination is settled
+        statistics.record(settled, relaxed, pushed);
+
+        for (int i = 0; i < destinations.length; i++) {
+            if (destinations[i] != -1)
+                found[i] = distances[destinations[i]];
+        }
+    }
+
+    /**
+     * Perform the algorithm on the provided graph
+     *
+     * @param graph the graph to perform the algorithm on
+     * @return the result of the algorithm, containing one row of weights for each source
+     */
+    @Override
+    public Result<double[]> perform(Graph graph) {
+        CompactGraph compactGraph = graph.compact();
+        int[] sourceIndices = indicesOf(compactGraph, sources), targetIndices = indicesOf(compactGraph, targets);
+        double[] weights = (profile == null) ? null:compactGraph.getWeights(profile);
+        double[] distances = new double[compactGraph.getVertexCount()];
+        IndexedHeap heap = new IndexedHeap(compactGraph.getVertexCount());
+        double[][] matrix = new double[sources.size()][targets.size()];
+
+        if (targetIndices.length < sourceIndices.length) {
+            double[] column = new double[sourceIndices.length];
+
+            for (int j = 0; j < targetIndices.length; j++) {
+                search(compactGraph, weights, targetIndices[j], sourceIndices, true, distances, heap, column);
+
+                for (int i = 0; i < column.length; i++)
+                    matrix[i][j] = column[i];
+            }
+        } else {
+            for (int i = 0; i < sourceIndices.length; i++)
+                search(compactGraph, weights, sourceIndices[i], targetIndices, false, distances, heap, matrix[i]);
+        }
+
+        return new ListResult<>(Arrays.asList(matrix));
+    }
+}
@@ -0,0 +1,15 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+/**
+ * This interface represents a heuristic estimating the remaining weight from a vertex to the target of a search.
+ * For a search to still find the shortest path, the estimate must never be more than the actual remaining weight
+ */
+@FunctionalInterface
+public interface Heuristic {
+    /**
+     * Estimate the weight of the shortest path from the provided vertex to the target
+     * @param vertex the index of the vertex
+     * @return the lower bound of the remaining weight
+     */
+    double estimate(int vertex);
+}
@@ -0,0 +1,54 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.landmarks.Landmarks;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+/**
+ * This class represents the A* algorithm directed by landmark lower bounds (ALT). The remaining weight from a vertex to
+ * the end is bounded with the triangle inequality using the precomputed distances of the {@link Landmarks} of the graph.
+ * The bounds come from the edge weights themselves, so they stay valid even where the coordinates of the waypoints don't
+ * match the edge distances.
+ *
+ * The landmarks of a graph are selected once per weight profile. If the weight function doesn't match a
+ * {@link WeightProfile}, there are no landmarks to use and the search is the same as Dijkstra's
+ */
+public class LandmarkAlgorithm extends DijkstraAlgorithm {
+    /**
+     * Constructs the ALT algorithm with the provided start and end waypoints and the weight function for calculating
+     * the weight of an edge
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     */
+    public LandmarkAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        super(start, end, weightFunction);
+    }
+
+    /**
+     * Constructs the ALT algorithm with the default weight function
+     * @param start the start waypoint
+     * @param end the end waypoint
+     */
+    public LandmarkAlgorithm(Waypoint start, Waypoint end) {
+        super(start, end);
+    }
+
+    /**
+     * Create the heuristic bounding the remaining weight to the target using the landmarks of the graph
+     * @param graph the compact graph being searched
+     * @param target the vertex the search is finding the path to
+     * @return the heuristic to use, or null if the weight function has no landmarks
+     */
+    @Override
+    protected Heuristic createHeuristic(CompactGraph graph, int target) {
+        if (profile == null)
+            return null;
+
+        Landmarks.LowerBound lowerBound = Landmarks.forGraph(graph, profile).lowerBound(target);
+
+        return lowerBound::from;
+    }
+}
@@ -0,0 +1,369 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This class represents a multi-criteria label setting search returning the Pareto front of routes between the start
+ * and end waypoints over distance, travel time and CO2 emissions. A route is on the front if no other route is at least
+ * as good in all three criteria, so the front holds every trade-off between the criteria in one search, rather than one
+ * search per combination of criteria summed into a single weight.
+ *
+ * Each vertex keeps a set of labels, one for each non-dominated path to it found so far. Labels are settled in
+ * lexicographic order of their costs, a new label is dropped if it is dominated by a label of its vertex or of the end,
+ * and it removes any labels of its vertex it dominates. To bound the work on large graphs, each vertex keeps at most
+ * maxLabels labels and further non-dominated labels are dropped, in which case the front returned may be incomplete.
+ *
+ * The routes on the front are ordered by the weight function, so the first route is the best by the weight function
+ */
+public class ParetoAlgorithm extends PathFindingAlgorithm {
+    /**
+     * The maximum number of labels kept per vertex by default
+     */
+    public static final int DEFAULT_MAX_LABELS = 16;
+    /**
+     * The number of criteria of each label, i.e. distance, time and emissions
+     */
+    private static final int CRITERIA = 3;
+    /**
+     * The maximum number of labels kept per vertex
+     */
+    private final int maxLabels;
+
+    /**
+     * Constructs the algorithm with the provided start and end waypoints, the weight function for ordering the routes
+     * found and the maximum number of labels kept per vertex
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to order the routes on the front
+     * @param maxLabels the maximum number of labels kept per vertex
+     */
+    public ParetoAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction, int maxLabels) {
+        super(start, end, weightFunction);
+
+        if (maxLabels < 1)
+            throw new IllegalStateException("At least one label must be kept per vertex");
+
+        this.maxLabels = maxLabels;
+    }
+
+    /**
+     * Constructs the algorithm with the provided start and end waypoints and the weight function for ordering the routes
+     * found, keeping the default number of labels per vertex
+     * @param start the start waypoint
+     * @param end the end waypoint
+     * @param weightFunction the weight function used to order the routes on the front
+     */
+    public ParetoAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction) {
+        this(start, end, weightFunction, DEFAULT_MAX_LABELS);
+    }
+
+    /**
+     * Constructs the algorithm with the default weight function and number of labels per vertex
+     * @param start the start waypoint
+     * @param end the end waypoint
+     */
+    public ParetoAlgorithm(Waypoint start, Waypoint end) {
+        super(start, end);
+        this.maxLabels = DEFAULT_MAX_LABELS;
+    }
+
+    /**
+     * Get the maximum number of labels kept per vertex
+     * @return the maximum number of labels
+     */
+    public int getMaxLabels() {
+        return maxLabels;
+    }
+
+    /**
+     * Get the criteria of every edge of the graph, calculating them the first time they are requested for the graph
+     * @param graph the graph to get the criteria of
+     * @return the distance, time and emissions of each edge, in that order, CRITERIA entries per edge
+     */
+    private static double[] getCriteria(CompactGraph graph) {
+        return graph.getEdgeValues(ParetoAlgorithm.class, CRITERIA, ParetoAlgorithm::calculateCriteria);
+    }
+
+    /**
+     * Calculate the criteria of a range of edges of the graph in the same units as a {@link Route}, i.e. the distance in
+     * km, the time in hours and the emissions in grams
+     * @param graph the graph to calculate the criteria of
+     * @param from the first edge to calculate the criteria of
+     * @param to the edge after the last edge to calculate the criteria of
+     * @param criteria the array to store the distance, time and emissions of each edge in, CRITERIA entries per edge
+     */
+    private static void calculateCriteria(CompactGraph graph, int from, int to, double[] criteria) {
+        for (int edge = from; edge < to; edge++) {
+            double distance = graph.getDistance(edge);
+            TransportMethod transportMethod = graph.getTransportMethod(edge);
+
+            criteria[edge * CRITERIA] = distance;
+            criteria[edge * CRITERIA + 1] = distance / transportMethod.getAverageSpeed();
+            criteria[edge * CRITERIA + 2] = transportMethod.getCO2EmissionsPerKm() * distance;
+        }
+    }
+
+    /**
+     * Determines if any of the provided labels is at least as good as the provided costs in every criterion
+     * @param labels the labels to check, may be null
+     * @param costs the costs to check
+     * @return true if the costs are dominated, false if not
+     */
+    private static boolean isDominated(List<Label> labels, double[] costs) {
+        if (labels != null) {
+            for (Label label : labels) {
+                if (label.dominates(costs))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add the label to the labels of its vertex if it isn't dominated by any of them, removing the labels it dominates
+     * @param labels the labels of each vertex
+     * @param label the label to add
+     * @return true if the label was added, false if it was dropped
+     */
+    private boolean addLabel(List<List<Label>> labels, Label label) {
+        List<Label> vertexLabels = labels.get(label.vertex);
+
+        if (vertexLabels == null) {
+            vertexLabels = new ArrayList<>();
+            labels.set(label.vertex, vertexLabels);
+        } else if (isDominated(vertexLabels, label.costs)) {
+            return false;
+        }
+
+        vertexLabels.removeIf(existing -> {
+            if (label.dominates(existing.costs)) {
+                existing.dominated = true; // any copy of it left in the queue is skipped
+                return true;
+            }
+
+            return false;
+        });
+
+        if (vertexLabels.size() >= maxLabels)
+            return false;
+
+        vertexLabels.add(label);
+
+        return true;
+    }
+
+    /**
+     * Trace the edges of the path of the provided label back to the source
+     * @param label the label at the end of the path
+     * @return the edge indices of the path in order from the source
+     */
+    private int[] tracePath(Label label) {
+        int length = 0;
+
+        for (Label current = label; current.parent != null; current = current.parent)
+            length++;
+
+        int[] path = new int[length];
+        Label current = label;
+
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = current.edge;
+            current = current.parent;
+        }
+
+        return path;
+    }
+
+    /**
+     * Calculate the weight of the provided path using the weight function
+     * @param graph the graph the path was found on
+     * @param weights the weights returned by getWeights
+     * @param path the edge indices of the path
+     * @return the weight of the path
+     */
+    private double pathWeight(CompactGraph graph, double[] weights, int[] path) {
+        double weight = 0;
+
+        for (int edge : path)
+            weight += calculateWeight(graph, weights, edge);
+
+        return weight;
+    }
+
+    /**
+     * Find the Pareto front of paths from the source vertex to the target vertex
+     * @param graph the compact graph to search
+     * @param source the vertex to start from
+     * @param target the vertex to find the paths to
+     * @return the labels of the target, one for each path on the front
+     */
+    private List<Label> paretoFront(CompactGraph graph, int source, int target) {
+        long started = startPhase();
+        double[] criteria = getCriteria(graph);
+        List<List<Label>> labels = new ArrayList<>(Collections.nCopies(graph.getVertexCount(), null)); // a vertex has no list until it is labelled
+        PriorityQueue<Label> queue = new PriorityQueue<>();
+        long settled = 0, relaxed = 0, pushed = 1;
+
+        Label initial = new Label(source, -1, null, new double[CRITERIA]);
+        addLabel(labels, initial);
+        queue.add(initial);
+
+        while (!queue.isEmpty()) {
+            Label label = queue.remove();
+
+            if (label.dominated)
+                continue; // a label that was dominated after it was queued
+
+            settled++;
+
+            if (label.vertex == target)
+                continue; // any path continuing through the target is dominated by the label itself
+
+            for (int edge = graph.getEdgesStart(label.vertex), last = graph.getEdgesEnd(label.vertex); edge < last; edge++) {
+                double[] costs = new double[CRITERIA];
+                relaxed++;
+
+                for (int i = 0; i < CRITERIA; i++)
+                    costs[i] = label.costs[i] + criteria[edge * CRITERIA + i];
+
+                if (isDominated(labels.get(target), costs))
+                    continue; // no path through this label can improve on a path already found to the target
+
+                Label next = new Label(graph.getTarget(edge), edge, label, costs);
+
+                if (addLabel(labels, next)) {
+                    queue.add(next);
+                    pushed++;
+                }
+            }
+        }
+
+        statistics.record(settled, relaxed, pushed);
+
+        if (trace != null) { // the search runs until its queue is empty, so it leaves no frontier
+            long nanos = System.nanoTime() - started;
+
+            trace.recordPhase(SearchTrace.SEARCH, nanos);
+            trace.recordSearch(new SearchTrace.Search(settled, relaxed, pushed, labels.get(target) != null, nanos, 0, new ArrayList<>()));
+        }
+
+        return (labels.get(target) == null) ? new ArrayList<>():labels.get(target);
+    }
+
+    /**
+     * Perform the algorithm on the provided graph
+     *
+     * @param graph the graph to perform the algorithm on
+     * @return the result of the algorithm, containing the routes on the Pareto front ordered by the weight function
+     */
+    @Override
+    public Result<Route> perform(Graph graph) {
+        CompactGraph compactGraph = compact(graph);
+        int source = compactGraph.indexOf(start), target = compactGraph.indexOf(end);
+
+        if (source == -1 || target == -1)
+            return new ListResult<>();
+
+        double[] weights = getWeights(compactGraph);
+        List<int[]> paths = new ArrayList<>();
+        List<Label> front = paretoFront(compactGraph, source, target);
+        long started = startPhase();
+
+        for (Label label : front)
+            paths.add(tracePath(label));
+
+        endPhase(SearchTrace.RECONSTRUCTION, started);
+
+        paths.sort(Comparator.comparingDouble(path -> pathWeight(compactGraph, weights, path)));
+
+        List<Route> routes = new ArrayList<>();
+
+        for (int[] path : paths)
+            routes.add(convertPathToRoute(compactGraph, path));
+
+        return new ListResult<>(routes);
+    }
+
+    /**
+     * A label of a vertex, representing one path from the source to the vertex and its costs
+     */
+    private static class Label implements Comparable<Label> {
+        /**
+         * The vertex the path ends at
+         */
+        private final int vertex;
+        /**
+         * The edge into the vertex, or -1 for the source
+         */
+        private final int edge;
+        /**
+         * The label of the path without its last edge, or null for the source
+         */
+        private final Label parent;
+        /**
+         * The distance, time and emissions of the path
+         */
+        private final double[] costs;
+        /**
+         * True if the label has been removed from the labels of its vertex by a label dominating it
+         */
+        private boolean dominated;
+
+        /**
+         * Construct a label with the provided parameters
+         * @param vertex the vertex the path ends at
+         * @param edge the edge into the vertex, or -1 for the source
+         * @param parent the label of the path without its last edge, or null for the source
+         * @param costs the costs of the path
+         */
+        private Label(int vertex, int edge, Label parent, double[] costs) {
+            this.vertex = vertex;
+            this.edge = edge;
+            this.parent = parent;
+            this.costs = costs;
+        }
+
+        /**
+         * Determines if this label is at least as good as the provided costs in every criterion
+         * @param other the costs to compare with
+         * @return true if this label dominates the costs, false if not
+         */
+        private boolean dominates(double[] other) {
+            for (int i = 0; i < CRITERIA; i++) {
+                if (costs[i] > other[i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Compare the costs of this label to the other label lexicographically
+         * @param o the other label
+         * @return the comparison of the two labels
+         */
+        @Override
+        public int compareTo(Label o) {
+            for (int i = 0; i < CRITERIA; i++) {
+                int comparison = Double.compare(costs[i], o.costs[i]);
+
+                if (comparison != 0)
+                    return comparison;
+            }
+
+            return 0;
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package ie.ul.routeplanning.routes.algorithms;
 
 import ie.ul.routeplanning.routes.Route;
-import ie.ul.routeplanning.routes.RouteLeg;
 import ie.ul.routeplanning.routes.Waypoint;
-import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
 import ie.ul.routeplanning.routes.graph.Graph;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunctionBuilder;
-import ie.ul.routeplanning.transport.TransportMethod;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
 
-import java.util.*;
+import java.util.List;
 
 /**
  * An abstract class that is the base of all path finding algorithms.
@@ -27,6 +26,18 @@ public abstract class PathFindingAlgorithm implements Algorithm<Route> {
      * The weight function to use for calculating weights
      */
     protected final WeightFunction weightFunction;
+    /**
+     * The profile of the weight function, or null if it doesn't match a profile
+     */
+    protected final WeightProfile profile;
+    /**
+     * The statistics of the searches performed by this algorithm
+     */
+    protected final SearchStatistics statistics = new SearchStatistics();
+    /**
+     * The trace the phases and searches are recorded in, or null if the query isn't being explained
+     */
+    protected SearchTrace trace;
 
     /**
      * Construct an algorithm for path finding with the provided parameters
@@ -38,6 +49,7 @@ public abstract class PathFindingAlgorithm implements Algorithm<Route> {
         this.start = start;
         this.end = end;
         this.weightFunction = weightFunction;
+        this.profile = weightFunction.getProfile();
     }
 
     /**
@@ -83,90 +95,125 @@ public abstract class PathFindingAlgorithm implements Algorithm<Route> {
     }
 
     /**
-     * Generate the adjacency list for the provided graph. It also uses the weight function to calculate the nodes cost.
-     * Any subclass of this algorithm that requires the concept of cost (i.e. shortest path), should use this
-     * function and the return value for path finding
-     * @param graph the graph to generate the adjacency list for
-     * @return adjacency list
+     * Get the statistics of the searches this algorithm has performed, e.g. to compare the number of vertices settled
+     * by different algorithms on the same query
+     * @return the search statistics
      */
-    protected Map<Waypoint, List<Node>> generateAdjacencyList(Graph graph) {
-        Map<Waypoint, List<Node>> adjacencyList = new HashMap<>();
+    @Override
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
 
-        for (Waypoint vertex : graph.getVertices()) {
-            List<Node> adjacentNodes = new ArrayList<>();
-            adjacencyList.put(vertex, adjacentNodes);
+    /**
+     * Give the algorithm a trace to record the phases and searches of its next performance in, to explain a query
+     * @param trace the trace to record in, or null to stop tracing
+     */
+    @Override
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
 
-            // for each neighbour of this vertex create a node for it
-            graph.getNeighbours(vertex)
-                    .stream()
-                    .map(Node::new)
-                    .forEach(adjacentNodes::add);
-        }
+    /**
+     * Get the time a traced phase starts at
+     * @return the current time in nanoseconds, or 0 without reading the clock if the query isn't being traced
+     */
+    protected long startPhase() {
+        return (trace == null) ? 0:System.nanoTime();
+    }
 
-        return adjacencyList;
+    /**
+     * Record the time taken by a phase in the trace, if the query is being traced
+     * @param phase the name of the phase
+     * @param started the time returned by startPhase when the phase started
+     */
+    protected void endPhase(String phase, long started) {
+        if (trace != null)
+            trace.recordPhase(phase, System.nanoTime() - started);
     }
 
     /**
-     * Sets the route legs information from the node
-     * @param node the node to retrieve info from
-     * @param routeLeg the route leg to set information on
+     * Get the compact graph of the provided graph to search, along with its weights for the weight function, so the
+     * time taken to derive them is traced apart from the search
+     * @param graph the graph to search
+     * @return the compact graph
      */
-    protected void setRouteLegFromNode(Node node, RouteLeg routeLeg) {
-        routeLeg.setEnd(node.node);
-        routeLeg.setDistance(node.distance);
-        routeLeg.setTransportMethod(node.transportMethod);
+    protected CompactGraph compact(Graph graph) {
+        long started = startPhase();
+        CompactGraph compactGraph = graph.compact();
+
+        if (trace != null) {
+            getWeights(compactGraph); // derives the weights if this is the first query on the graph
+            endPhase(SearchTrace.ADJACENCY, started);
+        }
+
+        return compactGraph;
     }
 
     /**
-     * Convert the provided path to a route
-     * @param path the path to convert
-     * @return the converted path
+     * Get the precomputed weights of the edges of the compact graph for the profile of the weight function
+     * @param graph the compact graph being searched
+     * @return the weight of each edge, or null if the weight function doesn't match a profile and weights have to be
+     * calculated by calculateWeight
      */
-    protected Route convertPathToRoute(List<Node> path) {
-        Route converted = new Route();
+    protected double[] getWeights(CompactGraph graph) {
+        return (profile == null) ? null:graph.getWeights(profile);
+    }
 
-        int pathSize = path.size();
+    /**
+     * Calculate the weight of the provided edge of the compact graph using the weight function. Any subclass of this
+     * algorithm that requires the concept of cost (i.e. shortest path), should use this function for edge costs
+     * @param graph the compact graph the edge belongs to
+     * @param weights the weights returned by getWeights, which are read instead of calling the weight function if not null
+     * @param edge the index of the edge
+     * @return the weight of the edge
+     */
+    protected double calculateWeight(CompactGraph graph, double[] weights, int edge) {
+        return (weights != null) ? weights[edge]:weightFunction.calculate(graph.getEdge(edge));
+    }
 
-        RouteLeg routeLeg = new RouteLeg();
-        routeLeg.setStart(start);
+    /**
+     * Trace the path to the target vertex back to the source by following the parent edge of each vertex
+     * @param graph the compact graph that was searched
+     * @param parentEdges the edge used to reach each vertex, or -1 for the source or unreached vertices
+     * @param target the target vertex of the path
+     * @return the edge indices of the path in order from the source to the target
+     */
+    protected int[] tracePath(CompactGraph graph, int[] parentEdges, int target) {
+        long started = startPhase();
+        int length = 0;
 
-        if (pathSize == 2) { // here, we only have one leg in the route, so construct the route leg from it
-            Node node = path.get(1);
-            setRouteLegFromNode(node, routeLeg);
-            converted.addRouteLeg(routeLeg);
-        } else if (pathSize > 1) {
-            for (int i = 1; i < pathSize - 1; i++) {
-                Node node = path.get(i);
-                if (routeLeg.getStart() != null) {
-                    setRouteLegFromNode(node, routeLeg);
-                    converted.addRouteLeg(routeLeg);
-                    routeLeg = new RouteLeg();
+        for (int vertex = target; parentEdges[vertex] != -1; vertex = graph.getSource(parentEdges[vertex]))
+            length++;
 
-                }
-                routeLeg.setStart(node.node);
-                node = path.get(i + 1);
-                setRouteLegFromNode(node, routeLeg);
-                converted.addRouteLeg(routeLeg);
+        int[] path = new int[length];
+        int vertex = target;
 
-                routeLeg = new RouteLeg();
-            }
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = parentEdges[vertex];
+            vertex = graph.getSource(path[i]);
         }
 
-        return converted;
+        endPhase(SearchTrace.RECONSTRUCTION, started);
+
+        return path;
     }
 
     /**
-     * Construct the target node path from the given target
-     * @param target the target node which should represent the end waypoint
-     * @return the list representing the path
+     * Convert the provided path to a route
+     * @param graph the compact graph the path was found on
+     * @param path the edge indices of the path to convert
+     * @return the converted path
      */
-    protected List<Node> constructPath(Node target) {
-        List<Node> path = new ArrayList<>(); // the list that will trace the path
+    protected Route convertPathToRoute(CompactGraph graph, int[] path) {
+        long started = startPhase();
+        Route converted = new Route();
 
-        for (Node node = target; node != null; node = node.parent)
-            path.add(0, node);
+        for (int edge : path)
+            converted.addRouteLeg(graph.toRouteLeg(edge));
 
-        return path;
+        endPhase(SearchTrace.RECONSTRUCTION, started);
+
+        return converted;
     }
 
     /**
@@ -177,90 +224,4 @@ public abstract class PathFindingAlgorithm implements Algorithm<Route> {
      */
     @Override
     public abstract Result<Route> perform(Graph graph);
-
-    /**
-     * A node for path finding
-     */
-    protected class Node implements Comparator<Node> {
-        /**
-         * The waypoint node behind this priority queue node
-         */
-        protected Waypoint node;
-        /**
-         * The calculated cost for this node
-         */
-        protected double cost;
-        /**
-         * The original distance without a cost function added on
-         */
-        protected double distance;
-        /**
-         * The original transport method for the node
-         */
-        protected TransportMethod transportMethod;
-        /**
-         * The parent node
-         */
-        protected Node parent;
-
-        /**
-         * An empty constructor to allow default initialization
-         */
-        protected Node() { }
-
-        /**
-         * Constructs the node from the provided edge, using the PathFindingAlgorithm's weight function to calculate the cost
-         * @param edge the edge to calculate the cost from
-         */
-        protected Node(Edge edge) {
-            this(edge.getEnd(), weightFunction.calculate(edge), edge.getDistance(), edge.getTransportMethod());
-        }
-
-        /**
-         * Construct a Node with the provided backing waypoint and the calculated cost
-         * @param node the node waypoint backing the priority queue node
-         * @param cost the calculated cost for this node
-         * @param distance the distance without time/eco friendly penalties added on etc.
-         * @param transportMethod the original transport method
-         */
-        protected Node(Waypoint node, double cost, double distance, TransportMethod transportMethod) {
-            this.node = node;
-            this.cost = cost;
-            this.distance = distance;
-            this.transportMethod = transportMethod;
-        }
-
-        /**
-         * Compare the two nodes
-         */
-        @Override
-        public int compare(Node o1, Node o2) {
-            return Double.compare(o1.cost, o2.cost);
-        }
-
-        /**
-         * Checks if the provided object equals this node
-         * @param o the other object to check
-         * @return true if equal, false if not
-         */
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Node node1 = (Node) o;
-            return Double.compare(node1.cost, cost) == 0 &&
-                    Double.compare(node1.distance, distance) == 0 &&
-                    Objects.equals(node, node1.node) &&
-                    Objects.equals(transportMethod, node1.transportMethod);
-        }
-
-        /**
-         * Generate the hashcode for this object
-         * @return generated hashcode
-         */
-        @Override
-        public int hashCode() {
-            return Objects.hash(node, cost, distance, transportMethod);
-        }
-    }
 }
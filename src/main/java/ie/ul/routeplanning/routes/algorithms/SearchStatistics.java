@@ -0,0 +1,105 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records counters of the work done by the searches of a path finding algorithm, so that different
+ * algorithms can be compared on the same query. A search counts its work in local variables and records them once it
+ * completes, so the statistics don't slow down the search loop and can be updated by searches running in parallel (e.g.
+ * the spur searches of Yen's algorithm)
+ */
+public class SearchStatistics {
+    /**
+     * The number of searches performed
+     */
+    private final LongAdder searches = new LongAdder();
+    /**
+     * The number of vertices settled, i.e. removed from the queue with their final cost
+     */
+    private final LongAdder settled = new LongAdder();
+    /**
+     * The number of edges relaxed
+     */
+    private final LongAdder relaxed = new LongAdder();
+    /**
+     * The number of vertices pushed onto the queue, including pushes that decreased the key of a queued vertex
+     */
+    private final LongAdder pushed = new LongAdder();
+
+    /**
+     * Record the counters of a completed search
+     * @param settled the number of vertices the search settled
+     * @param relaxed the number of edges the search relaxed
+     * @param pushed the number of vertices the search pushed onto its queue
+     */
+    public void record(long settled, long relaxed, long pushed) {
+        this.searches.increment();
+        this.settled.add(settled);
+        this.relaxed.add(relaxed);
+        this.pushed.add(pushed);
+    }
+
+    /**
+     * Add the counters of the provided statistics to these statistics, e.g. to total the statistics of many queries
+     * @param statistics the statistics to add
+     */
+    public void add(SearchStatistics statistics) {
+        this.searches.add(statistics.getSearches());
+        this.settled.add(statistics.getSettled());
+        this.relaxed.add(statistics.getRelaxed());
+        this.pushed.add(statistics.getPushed());
+    }
+
+    /**
+     * Get the number of searches performed
+     * @return the number of searches
+     */
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Get the total number of vertices settled by all searches
+     * @return the number of settled vertices
+     */
+    public long getSettled() {
+        return settled.sum();
+    }
+
+    /**
+     * Get the total number of edges relaxed by all searches
+     * @return the number of relaxed edges
+     */
+    public long getRelaxed() {
+        return relaxed.sum();
+    }
+
+    /**
+     * Get the total number of vertices pushed onto the queues of all searches
+     * @return the number of pushed vertices
+     */
+    public long getPushed() {
+        return pushed.sum();
+    }
+
+    /**
+     * Reset all the counters to 0
+     */
+    public void reset() {
+        searches.reset();
+        settled.reset();
+        relaxed.reset();
+        pushed.reset();
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d searches settling %d vertices, relaxing %d edges and pushing %d vertices", getSearches(),
+                getSettled(), getRelaxed(), getPushed());
+    }
+}
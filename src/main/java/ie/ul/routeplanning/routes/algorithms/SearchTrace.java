@@ -0,0 +1,294 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the execution profile of a route query, recorded when the query is explained. It holds the algorithm
+ * that answered the query, the time taken by each phase of the query, and each search the algorithm performed with
+ * the vertices left on its frontier when it stopped.
+ *
+ * A query is only traced if it is given a trace, and the algorithms check for one once per search rather than in their
+ * loops, so queries that aren't explained don't pay for it. The trace can be recorded by searches running in parallel
+ */
+public class SearchTrace {
+    /**
+     * The phase loading the graph the query runs on
+     */
+    public static final String GRAPH = "graph";
+    /**
+     * The phase getting the adjacency arrays and edge weights of the graph
+     */
+    public static final String ADJACENCY = "adjacency";
+    /**
+     * The phase searching the graph
+     */
+    public static final String SEARCH = "search";
+    /**
+     * The phase tracing the paths found back to their source and converting them to routes
+     */
+    public static final String RECONSTRUCTION = "reconstruction";
+    /**
+     * The maximum number of frontier vertices kept for each search, nearest first
+     */
+    public static final int MAX_FRONTIER = 10;
+    /**
+     * The name of the algorithm that answered the query
+     */
+    private String algorithm;
+    /**
+     * The nanoseconds taken by each phase, in the order the phases were first recorded
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    /**
+     * The searches performed, in the order they completed
+     */
+    private final List<Search> searches = new ArrayList<>();
+
+    /**
+     * Get the name of the algorithm that answered the query
+     * @return the name of the algorithm, or null if it hasn't been recorded
+     */
+    public synchronized String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Set the name of the algorithm that answered the query
+     * @param algorithm the name of the algorithm
+     */
+    public synchronized void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Add the provided time to the time taken by a phase. A phase recorded more than once, e.g. the searches of a
+     * query finding several routes, is the sum of its times
+     * @param phase the name of the phase
+     * @param nanos the time taken in nanoseconds
+     */
+    public synchronized void recordPhase(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Get the time taken by the provided phase
+     * @param phase the name of the phase
+     * @return the time taken in nanoseconds, or 0 if the phase wasn't recorded
+     */
+    public synchronized long getPhaseNanos(String phase) {
+        return phases.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Get the time taken by each phase in milliseconds
+     * @return the milliseconds of each phase, in the order the phases were first recorded
+     */
+    public synchronized Map<String, Double> getPhaseMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        phases.forEach((phase, nanos) -> millis.put(phase, nanos / 1e6));
+
+        return millis;
+    }
+
+    /**
+     * Record a completed search
+     * @param search the search to record
+     */
+    public synchronized void recordSearch(Search search) {
+        searches.add(search);
+    }
+
+    /**
+     * Get the searches performed, e.g. one for each route found by the top k algorithm
+     * @return the searches in the order they completed
+     */
+    public synchronized List<Search> getSearches() {
+        return new ArrayList<>(searches);
+    }
+
+    /**
+     * Get the vertices left in the provided heap, nearest first, up to MAX_FRONTIER of them
+     * @param graph the graph that was searched
+     * @param heap the heap of the search
+     * @return the frontier vertices
+     */
+    static List<FrontierVertex> frontierOf(CompactGraph graph, IndexedHeap heap) {
+        List<FrontierVertex> frontier = new ArrayList<>();
+
+        for (int vertex : heap.toArray())
+            frontier.add(new FrontierVertex(graph.getVertex(vertex), heap.getKey(vertex)));
+
+        frontier.sort(Comparator.comparingDouble(FrontierVertex::getCost));
+
+        return (frontier.size() > MAX_FRONTIER) ? new ArrayList<>(frontier.subList(0, MAX_FRONTIER)):frontier;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("Trace of %s with %d searches taking %s ms", algorithm, searches.size(), getPhaseMillis());
+    }
+
+    /**
+     * The counters of one completed search
+     */
+    public static class Search {
+        /**
+         * The number of vertices the search settled
+         */
+        private final long settled;
+        /**
+         * The number of edges the search relaxed
+         */
+        private final long relaxed;
+        /**
+         * The number of vertices the search pushed onto its queue
+         */
+        private final long pushed;
+        /**
+         * True if the search found a path to its target
+         */
+        private final boolean found;
+        /**
+         * The time taken by the search in nanoseconds
+         */
+        private final long nanos;
+        /**
+         * The number of vertices left on the queue when the search stopped
+         */
+        private final int frontierSize;
+        /**
+         * The nearest vertices left on the queue, up to MAX_FRONTIER of them
+         */
+        private final List<FrontierVertex> frontier;
+
+        /**
+         * Construct a search with the provided counters
+         * @param settled the number of vertices the search settled
+         * @param relaxed the number of edges the search relaxed
+         * @param pushed the number of vertices the search pushed onto its queue
+         * @param found true if the search found a path to its target
+         * @param nanos the time taken by the search in nanoseconds
+         * @param frontierSize the number of vertices left on the queue when the search stopped
+         * @param frontier the nearest vertices left on the queue
+         */
+        public Search(long settled, long relaxed, long pushed, boolean found, long nanos, int frontierSize, List<FrontierVertex> frontier) {
+            this.settled = settled;
+            this.relaxed = relaxed;
+            this.pushed = pushed;
+            this.found = found;
+            this.nanos = nanos;
+            this.frontierSize = frontierSize;
+            this.frontier = Collections.unmodifiableList(frontier);
+        }
+
+        /**
+         * Get the number of vertices the search settled
+         * @return the number of settled vertices
+         */
+        public long getSettled() {
+            return settled;
+        }
+
+        /**
+         * Get the number of edges the search relaxed
+         * @return the number of relaxed edges
+         */
+        public long getRelaxed() {
+            return relaxed;
+        }
+
+        /**
+         * Get the number of vertices the search pushed onto its queue
+         * @return the number of pushed vertices
+         */
+        public long getPushed() {
+            return pushed;
+        }
+
+        /**
+         * Determines if the search found a path to its target
+         * @return true if found, false if not
+         */
+        public boolean isFound() {
+            return found;
+        }
+
+        /**
+         * Get the time taken by the search in milliseconds
+         * @return the milliseconds taken
+         */
+        public double getMillis() {
+            return nanos / 1e6;
+        }
+
+        /**
+         * Get the number of vertices left on the queue when the search stopped
+         * @return the size of the frontier
+         */
+        public int getFrontierSize() {
+            return frontierSize;
+        }
+
+        /**
+         * Get the nearest vertices left on the queue when the search stopped
+         * @return the frontier vertices, nearest first
+         */
+        public List<FrontierVertex> getFrontier() {
+            return frontier;
+        }
+    }
+
+    /**
+     * A vertex left on the queue of a search, with the cost it was queued with
+     */
+    public static class FrontierVertex {
+        /**
+         * The waypoint of the vertex
+         */
+        private final String waypoint;
+        /**
+         * The cost the vertex was queued with
+         */
+        private final double cost;
+
+        /**
+         * Construct a frontier vertex
+         * @param waypoint the waypoint of the vertex
+         * @param cost the cost the vertex was queued with
+         */
+        public FrontierVertex(Waypoint waypoint, double cost) {
+            this.waypoint = waypoint.getName();
+            this.cost = cost;
+        }
+
+        /**
+         * Get the name of the waypoint of the vertex
+         * @return the name of the waypoint
+         */
+        public String getWaypoint() {
+            return waypoint;
+        }
+
+        /**
+         * Get the cost the vertex was queued with
+         * @return the cost of the vertex
+         */
+        public double getCost() {
+            return cost;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package ie.ul.routeplanning.routes.algorithms;
 
 import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
 import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphMask;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
 
 import java.util.ArrayList;
@@ -44,37 +46,38 @@ public class TopKAlgorithm extends DijkstraAlgorithm {
     }
 
     /**
-     * Perform the algorithm on the provided graph
+     * Perform the algorithm on the provided graph. After each route is found, its first edge is disconnected so that
+     * dijkstra's can try and find a new route the next time. Edges are disconnected by excluding them in a per-query
+     * mask rather than removing them from the graph, so the same graph can be shared by concurrent queries
      *
      * @param graph the graph to perform the algorithm on
      * @return the result of the algorithm
      */
     @Override
     public Result<Route> perform(Graph graph) {
-       List<Route> generatedRoutes = new ArrayList<>();
+        CompactGraph compactGraph = compact(graph);
+        List<Route> generatedRoutes = new ArrayList<>();
+        int source = compactGraph.indexOf(start), target = compactGraph.indexOf(end);
 
-       while (generatedRoutes.size() < numRoutes) {
-           Route route = dijkstra(graph);
+        if (source == -1 || target == -1)
+            return new ListResult<>(generatedRoutes);
 
-           if (route == null)
-               break;
+        GraphMask mask = new GraphMask(compactGraph);
 
-           disconnectRouteEdge(graph, route);
-           generatedRoutes.add(route);
-       }
+        while (generatedRoutes.size() < numRoutes) {
+            int[] path = shortestPath(compactGraph, source, target, mask);
 
-       return new ListResult<>(generatedRoutes);
-    }
+            if (path == null)
+                break;
 
-    /**
-     * Removes the first edge of the provided route from the graph, essentially disconnected the connection that allowed
-     * a route to be generated. This is so that dijkstra's can try and find a new route the other time.
-     *
-     * The graph should be copied before passing it into this algorithm
-     * @param graph the graph to remove the edge from
-     * @param route the route to remove the edge from
-     */
-    private void disconnectRouteEdge(Graph graph, Route route) {
-        graph.removeEdge(route.getRouteLegs().get(0));
+            generatedRoutes.add(convertPathToRoute(compactGraph, path));
+
+            if (path.length == 0)
+                break; // the start is the end, so there are no edges to disconnect for another route
+
+            mask.excludeEdge(path[0]);
+        }
+
+        return new ListResult<>(generatedRoutes);
     }
 }
@@ -0,0 +1,294 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphMask;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class implements Yen's algorithm for finding the k shortest loopless paths between the start and end waypoints.
+ *
+ * Each new path is found by deviating from the previous path at one of its vertices (the spur vertex). The part of the
+ * previous path up to the spur vertex (the root path) is re-used as is, and only the rest of the path (the spur path) is
+ * searched for with the edges of already found paths sharing that root masked out. The spur searches of an iteration are
+ * independent of each other, so they are performed in parallel on a fork-join pool.
+ *
+ * Spur vertices before the point where the previous path deviated from its own parent are skipped (Lawler's
+ * modification), since their root paths and masks are the same as when the parent was processed
+ */
+public class YenAlgorithm extends DijkstraAlgorithm {
+    /**
+     * The number of routes to generate
+     */
+    private final int numRoutes;
+    /**
+     * The pool the spur searches are performed on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs the algorithm with the provided start and end waypoints, the weight function for calculating the
+     * weight of an edge and the pool to run spur searches on
+     *
+     * @param start          the start waypoint
+     * @param end            the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     * @param numRoutes      the number of routes (at most) that should be generated
+     * @param pool           the fork-join pool to perform the spur searches of each iteration on
+     */
+    public YenAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction, int numRoutes, ForkJoinPool pool) {
+        super(start, end, weightFunction);
+        this.numRoutes = numRoutes;
+        this.pool = pool;
+    }
+
+    /**
+     * Constructs the algorithm performing spur searches on the common fork-join pool
+     *
+     * @param start          the start waypoint
+     * @param end            the end waypoint
+     * @param weightFunction the weight function for calculating the edge weights
+     * @param numRoutes      the number of routes (at most) that should be generated
+     */
+    public YenAlgorithm(Waypoint start, Waypoint end, WeightFunction weightFunction, int numRoutes) {
+        this(start, end, weightFunction, numRoutes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculate the total weight of the provided path
+     * @param graph the graph the path is on
+     * @param path the edge indices of the path
+     * @return the total weight of the path
+     */
+    private double calculateWeight(CompactGraph graph, int[] path) {
+        double[] weights = getWeights(graph);
+        double weight = 0;
+
+        for (int edge : path)
+            weight += calculateWeight(graph, weights, edge);
+
+        return weight;
+    }
+
+    /**
+     * Search for the spur path deviating from the previous path at the provided index and join it onto the root path
+     * @param graph the graph being searched
+     * @param found the paths found so far
+     * @param previous the previously found path
+     * @param prefixWeights the weight of each root path of the previous path, i.e. prefixWeights[i] is the weight of the first i edges
+     * @param spurIndex the index into the previous path of the spur vertex
+     * @param target the target vertex
+     * @return the candidate path, or null if there is no spur path
+     */
+    private Path spur(CompactGraph graph, List<Path> found, Path previous, double[] prefixWeights, int spurIndex, int target) {
+        int[] previousEdges = previous.edges;
+        int spurVertex = graph.getSource(previousEdges[spurIndex]);
+        GraphMask mask = new GraphMask(graph);
+
+        for (Path path : found) {
+            if (path.edges.length > spurIndex && path.sharesRoot(previousEdges, spurIndex))
+                mask.excludeEdge(path.edges[spurIndex]); // don't allow the same deviation as an already found path
+        }
+
+        for (int i = 0; i < spurIndex; i++)
+            mask.excludeVertex(graph.getSource(previousEdges[i])); // the spur path cannot loop back into the root path
+
+        int[] spurPath = shortestPath(graph, spurVertex, target, mask);
+
+        if (spurPath == null)
+            return null;
+
+        int[] edges = Arrays.copyOf(previousEdges, spurIndex + spurPath.length);
+        System.arraycopy(spurPath, 0, edges, spurIndex, spurPath.length);
+
+        return new Path(edges, prefixWeights[spurIndex] + calculateWeight(graph, spurPath), spurIndex);
+    }
+
+    /**
+     * Perform the spur searches for each spur vertex of the previous path, in parallel if there is more than one
+     * @param graph the graph being searched
+     * @param found the paths found so far
+     * @param previous the previously found path
+     * @param target the target vertex
+     * @return the list of candidate paths found by the searches
+     */
+    private List<Path> spurSearches(CompactGraph graph, List<Path> found, Path previous, int target) {
+        int[] previousEdges = previous.edges;
+        double[] weights = getWeights(graph), prefixWeights = new double[previousEdges.length + 1];
+
+        for (int i = 0; i < previousEdges.length; i++)
+            prefixWeights[i + 1] = prefixWeights[i] + calculateWeight(graph, weights, previousEdges[i]);
+
+        List<Path> candidates = new ArrayList<>();
+
+        if (previous.deviation == previousEdges.length - 1) {
+            candidates.add(spur(graph, found, previous, prefixWeights, previous.deviation, target)); // only one search, so no need to fork
+            return candidates;
+        }
+
+        List<Callable<Path>> searches = new ArrayList<>();
+
+        for (int i = previous.deviation; i < previousEdges.length; i++) {
+            final int spurIndex = i;
+            searches.add(() -> spur(graph, found, previous, prefixWeights, spurIndex, target));
+        }
+
+        try {
+            for (Future<Path> future : pool.invokeAll(searches))
+                candidates.add(future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching for spur paths", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Failed to search for a spur path", ex.getCause());
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Record a completed search in the trace without adding its time to the search phase. The spur searches of an
+     * iteration run in parallel, so the sum of their times can be more than the time the iteration took. The search
+     * phase is recorded around the first search and each iteration instead
+     * @param nanos the time taken by the search in nanoseconds
+     * @param search the completed search
+     */
+    @Override
+    protected void traceSearch(long nanos, SearchTrace.Search search) {
+        trace.recordSearch(search);
+    }
+
+    /**
+     * Perform the algorithm on the provided graph
+     *
+     * @param graph the graph to perform the algorithm on
+     * @return the result of the algorithm
+     */
+    @Override
+    public Result<Route> perform(Graph graph) {
+        CompactGraph compactGraph = compact(graph);
+        List<Route> generatedRoutes = new ArrayList<>();
+        int source = compactGraph.indexOf(start), target = compactGraph.indexOf(end);
+
+        if (numRoutes < 1 || source == -1 || target == -1)
+            return new ListResult<>(generatedRoutes);
+
+        long started = startPhase();
+        int[] shortest = shortestPath(compactGraph, source, target, null);
+        endPhase(SearchTrace.SEARCH, started);
+
+        if (shortest == null)
+            return new ListResult<>(generatedRoutes);
+
+        List<Path> found = new ArrayList<>();
+        PriorityQueue<Path> candidates = new PriorityQueue<>();
+        Set<Path> seen = new HashSet<>();
+        Path path = new Path(shortest, calculateWeight(compactGraph, shortest), 0);
+
+        found.add(path);
+        seen.add(path);
+
+        while (found.size() < numRoutes) {
+            started = startPhase();
+            List<Path> spurred = spurSearches(compactGraph, found, path, target);
+            endPhase(SearchTrace.SEARCH, started);
+
+            for (Path candidate : spurred) {
+                if (candidate != null && seen.add(candidate))
+                    candidates.add(candidate);
+            }
+
+            if (candidates.isEmpty())
+                break;
+
+            path = candidates.remove();
+            found.add(path);
+        }
+
+        for (Path p : found)
+            generatedRoutes.add(convertPathToRoute(compactGraph, p.edges));
+
+        return new ListResult<>(generatedRoutes);
+    }
+
+    /**
+     * A path found by the algorithm with its total weight
+     */
+    private static class Path implements Comparable<Path> {
+        /**
+         * The edge indices of the path
+         */
+        private final int[] edges;
+        /**
+         * The total weight of the path
+         */
+        private final double weight;
+        /**
+         * The index of the edge where this path deviated from the path it was spurred from
+         */
+        private final int deviation;
+
+        /**
+         * Construct a path
+         * @param edges the edge indices of the path
+         * @param weight the total weight of the path
+         * @param deviation the index of the edge where the path deviates from the path it was spurred from
+         */
+        private Path(int[] edges, double weight, int deviation) {
+            this.edges = edges;
+            this.weight = weight;
+            this.deviation = deviation;
+        }
+
+        /**
+         * Determines if this path starts with the first length edges of the provided root
+         * @param root the edges of the root path
+         * @param length the number of edges to compare
+         * @return true if this path has the same root, false if not
+         */
+        private boolean sharesRoot(int[] root, int length) {
+            return Arrays.equals(edges, 0, length, root, 0, length);
+        }
+
+        /**
+         * Compare the weight of this path to the other path, preferring paths with fewer edges on equal weights
+         * @param o the other path
+         * @return the comparison of the two paths
+         */
+        @Override
+        public int compareTo(Path o) {
+            int compare = Double.compare(weight, o.weight);
+
+            return (compare != 0) ? compare:Integer.compare(edges.length, o.edges.length);
+        }
+
+        /**
+         * Checks if the provided object is the same path
+         * @param o the other object to check
+         * @return true if equal, false if not
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.equals(edges, ((Path) o).edges);
+        }
+
+        /**
+         * Generate the hashcode for this path
+         * @return generated hashcode
+         */
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+}
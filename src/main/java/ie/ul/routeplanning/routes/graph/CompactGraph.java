@@ -0,0 +1,654 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * This class represents a frozen, int-indexed version of a {@link Graph} in compressed sparse row (CSR) form.
+ *
+ * Vertices are numbered from 0 to n - 1 and the outgoing edges of vertex v occupy the edge indices from offsets[v]
+ * (inclusive) to offsets[v + 1] (exclusive). Each edge index refers into primitive arrays holding the source, target,
+ * distance and transport mode of that edge, so path finding algorithms can relax edges without hashing waypoints.
+ *
+ * A graph loaded from a {@link GraphSnapshot} file reads its sections straight from the memory-mapped file instead of
+ * arrays, by overriding the accessors of this class. Anything calculated once per graph therefore goes through the
+ * accessors, while the accessors of this class read the arrays directly for the searches.
+ *
+ * A CompactGraph cannot be modified once built, so it can be shared between any number of searches. Changing its edges
+ * with {@link #update(EdgeUpdate)} creates a new version instead, which shares the unchanged edges with this graph and
+ * only holds the outgoing edges of the vertices the update changed. The edge indices of an updated version aren't
+ * dense: an edge the update replaced keeps its index but is no longer in the range of its source vertex, which
+ * {@link #isRemoved(int)} determines. Anything going over every edge rather than the edges of each vertex has to skip
+ * these, or use {@link #flatten()}
+ */
+public class CompactGraph {
+    /**
+     * The last version given to a compact graph
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    /**
+     * The version of this graph, unique to each compact graph built, so results calculated on a graph can be told apart
+     * from results calculated on any other graph, including an earlier compact form of the same modified graph
+     */
+    private final long version = VERSIONS.incrementAndGet();
+    /**
+     * The waypoint for each vertex index
+     */
+    private final Waypoint[] vertices;
+    /**
+     * The latitude of each vertex in degrees, or NaN if the waypoint has no coordinates
+     */
+    private final double[] latitudes;
+    /**
+     * The longitude of each vertex in degrees, or NaN if the waypoint has no coordinates
+     */
+    private final double[] longitudes;
+    /**
+     * Mapping of the waypoint id to the vertex index
+     */
+    private final Map<Long, Integer> indices;
+    /**
+     * The offset of the first edge of each vertex. The array has one more element than there are vertices so that
+     * offsets[v + 1] is always the end of the edges of v
+     */
+    private final int[] offsets;
+    /**
+     * The source vertex index of each edge
+     */
+    private final int[] sources;
+    /**
+     * The target vertex index of each edge
+     */
+    private final int[] targets;
+    /**
+     * The km distance of each edge
+     */
+    private final double[] distances;
+    /**
+     * The index into transportMethods of the transport method travelling each edge
+     */
+    private final int[] modes;
+    /**
+     * The distinct transport methods used by the edges of this graph
+     */
+    private final TransportMethod[] transportMethods;
+    /**
+     * The original edge for each edge index
+     */
+    private final Edge[] edges;
+    /**
+     * The lower bound of edge distance to great-circle distance, lazily calculated by getMinimumDistanceRatio()
+     */
+    private volatile double minimumDistanceRatio = -1;
+    /**
+     * The incoming edges of each vertex, lazily built by reverse() for searches travelling edges backwards
+     */
+    private volatile ReverseAdjacency reverseAdjacency;
+    /**
+     * Data that algorithms derived from this graph, e.g. preprocessed hierarchies, keyed by what was derived
+     */
+    private final Map<Object, Derived<?>> derived = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a CompactGraph from the already built arrays
+     * @param vertices the waypoint for each vertex index
+     * @param offsets the offset of the first edge of each vertex, with a trailing offset equal to the number of edges
+     * @param sources the source vertex of each edge
+     * @param targets the target vertex of each edge
+     * @param distances the km distance of each edge
+     * @param modes the index of the transport method for each edge
+     * @param transportMethods the distinct transport methods referred to by modes
+     * @param edges the original edge for each edge index
+     */
+    protected CompactGraph(Waypoint[] vertices, int[] offsets, int[] sources, int[] targets, double[] distances,
+                           int[] modes, TransportMethod[] transportMethods, Edge[] edges) {
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.distances = distances;
+        this.modes = modes;
+        this.transportMethods = transportMethods;
+        this.edges = edges;
+        this.indices = new HashMap<>();
+        this.latitudes = new double[vertices.length];
+        this.longitudes = new double[vertices.length];
+
+        for (int i = 0; i < vertices.length; i++) {
+            Waypoint vertex = vertices[i];
+            indices.put(vertex.getId(), i);
+            latitudes[i] = (vertex.getLatitude() == null) ? Double.NaN:vertex.getLatitude();
+            longitudes[i] = (vertex.getLongitude() == null) ? Double.NaN:vertex.getLongitude();
+        }
+    }
+
+    /**
+     * Construct a CompactGraph of the provided vertices whose edges and coordinates are provided by a subclass overriding
+     * the accessors of the edges and coordinates
+     * @param vertices the waypoint for each vertex index
+     * @param transportMethods the distinct transport methods referred to by the modes of the edges
+     */
+    protected CompactGraph(Waypoint[] vertices, TransportMethod[] transportMethods) {
+        this.vertices = vertices;
+        this.transportMethods = transportMethods;
+        this.offsets = this.sources = this.targets = this.modes = null;
+        this.distances = this.latitudes = this.longitudes = null;
+        this.edges = null;
+        this.indices = new HashMap<>();
+
+        for (int i = 0; i < vertices.length; i++)
+            indices.put(vertices[i].getId(), i);
+    }
+
+    /**
+     * Construct a CompactGraph with the same vertices as the provided graph whose edges and coordinates are provided by a
+     * subclass overriding the accessors of the edges and coordinates. The vertices are shared rather than copied
+     * @param graph the graph to share the vertices of
+     * @param transportMethods the distinct transport methods referred to by the modes of the edges
+     */
+    protected CompactGraph(CompactGraph graph, TransportMethod[] transportMethods) {
+        this.vertices = graph.vertices;
+        this.indices = graph.indices;
+        this.transportMethods = transportMethods;
+        this.offsets = this.sources = this.targets = this.modes = null;
+        this.distances = this.latitudes = this.longitudes = null;
+        this.edges = null;
+    }
+
+    /**
+     * Builds the compact form of the provided graph
+     * @param graph the graph to compact
+     * @return the compacted graph
+     */
+    public static CompactGraph fromGraph(Graph graph) {
+        Waypoint[] vertices = graph.getVertices().toArray(new Waypoint[0]);
+        Map<Long, Integer> indices = new HashMap<>();
+
+        int edgeCount = 0;
+
+        for (int i = 0; i < vertices.length; i++) {
+            indices.put(vertices[i].getId(), i);
+            edgeCount += graph.getNeighbours(vertices[i]).size();
+        }
+
+        int[] offsets = new int[vertices.length + 1];
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        double[] distances = new double[edgeCount];
+        int[] modes = new int[edgeCount];
+        Edge[] edges = new Edge[edgeCount];
+        Map<TransportMethod, Integer> transportMethods = new IdentityHashMap<>(); // transport methods don't have a reliable equals
+
+        int edge = 0;
+
+        for (int i = 0; i < vertices.length; i++) {
+            offsets[i] = edge;
+
+            for (Edge e : graph.getNeighbours(vertices[i])) {
+                Integer target = indices.get(e.getEnd().getId());
+
+                if (target == null)
+                    throw new IllegalStateException("The end of the edge " + e + " is not a vertex in the graph");
+
+                sources[edge] = i;
+                targets[edge] = target;
+                distances[edge] = e.getDistance();
+                modes[edge] = transportMethods.computeIfAbsent(e.getTransportMethod(), t -> transportMethods.size());
+                edges[edge] = e;
+                edge++;
+            }
+        }
+
+        offsets[vertices.length] = edge;
+
+        TransportMethod[] methods = new TransportMethod[transportMethods.size()];
+        transportMethods.forEach((method, index) -> methods[index] = method);
+
+        return new CompactGraph(vertices, offsets, sources, targets, distances, modes, methods, edges);
+    }
+
+    /**
+     * Get the version of this graph, which is different for every compact graph built, so it changes whenever the
+     * graph snapshot being searched changes
+     * @return the version of this graph
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the number of vertices in this graph
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Get the number of edges in this graph
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Retrieve the waypoint at the provided vertex index
+     * @param vertex the index of the vertex
+     * @return the waypoint of that vertex
+     */
+    public Waypoint getVertex(int vertex) {
+        return vertices[vertex];
+    }
+
+    /**
+     * Get the latitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the latitude in degrees, or NaN if the vertex has no coordinates
+     */
+    public double getLatitude(int vertex) {
+        return latitudes[vertex];
+    }
+
+    /**
+     * Get the longitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the longitude in degrees, or NaN if the vertex has no coordinates
+     */
+    public double getLongitude(int vertex) {
+        return longitudes[vertex];
+    }
+
+    /**
+     * Calculate the great-circle distance between the coordinates of the two vertices
+     * @param vertex the first vertex
+     * @param vertex1 the second vertex
+     * @return the great-circle distance in km, or NaN if either vertex has no coordinates
+     */
+    public double greatCircleDistance(int vertex, int vertex1) {
+        return GraphUtils.greatCircleDistance(getLatitude(vertex), getLongitude(vertex), getLatitude(vertex1), getLongitude(vertex1));
+    }
+
+    /**
+     * Get the largest ratio r such that the distance of every edge is at least r times the great-circle distance between
+     * its ends. By the triangle inequality, any path between two vertices is then at least r times the great-circle
+     * distance between them, so this calibrates coordinates that don't match the edge distances into a valid lower bound.
+     * This is 0 if there is no such bound, e.g. if a vertex has no coordinates
+     * @return the minimum ratio of edge distance to great-circle distance
+     */
+    public double getMinimumDistanceRatio() {
+        double ratio = minimumDistanceRatio;
+
+        if (ratio < 0) {
+            ratio = Double.POSITIVE_INFINITY;
+
+            for (int edge = 0; edge < getEdgeCount(); edge++) {
+                if (isRemoved(edge))
+                    continue;
+
+                double greatCircle = greatCircleDistance(getSource(edge), getTarget(edge));
+
+                if (Double.isNaN(greatCircle)) {
+                    ratio = 0;
+                    break;
+                } else if (greatCircle > 0) {
+                    ratio = Math.min(ratio, getDistance(edge) / greatCircle);
+                }
+            }
+
+            ratio = (Double.isInfinite(ratio)) ? 0:ratio;
+            minimumDistanceRatio = ratio; // the calculation is idempotent, so a race between threads is harmless
+        }
+
+        return ratio;
+    }
+
+    /**
+     * Get the data derived from this graph under the provided key, deriving it with the provided function the first time
+     * it is requested. The data is derived at most once per graph, and concurrent requests for the same key wait for it
+     * to be derived rather than deriving it again. Since a CompactGraph is never modified, the data never needs to be
+     * invalidated, and a new graph starts without any derived data
+     * @param key the key identifying the derived data. It must implement equals and hashCode
+     * @param function the function deriving the data from this graph
+     * @param <T> the type of the derived data
+     * @return the derived data
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getDerived(Object key, Function<CompactGraph, T> function) {
+        Derived<T> data = (Derived<T>) derived.computeIfAbsent(key, k -> new Derived<>());
+
+        return data.get(this, function);
+    }
+
+    /**
+     * Get the data derived from only the vertices of this graph under the provided key, e.g. an index of their names,
+     * deriving it with the provided function the first time it is requested. An update only changes edges, so the
+     * versions updated from this graph share the data rather than deriving it again
+     * @param key the key identifying the derived data. It must implement equals and hashCode
+     * @param function the function deriving the data from the vertices of this graph
+     * @param <T> the type of the derived data
+     * @return the derived data
+     */
+    public <T> T getVertexDerived(Object key, Function<CompactGraph, T> function) {
+        return getDerived(key, function);
+    }
+
+    /**
+     * Get the values derived for every edge under the provided key, width values per edge starting at edge * width,
+     * calculating them the first time they are requested. A version updated from this graph only calculates the values of
+     * the edges the update added, sharing the rest. The returned array is shared and must not be modified, and may be
+     * longer than the edges of this graph, in which case the values past them must be ignored
+     * @param key the key identifying the values. It must implement equals and hashCode
+     * @param width the number of values of each edge
+     * @param function the function calculating the values of a range of edges
+     * @return the values of each edge
+     */
+    public double[] getEdgeValues(Object key, int width, EdgeValues function) {
+        return getDerived(key, graph -> {
+            double[] values = new double[graph.getEdgeCount() * width];
+            function.calculate(graph, 0, graph.getEdgeCount(), values);
+
+            return values;
+        });
+    }
+
+    /**
+     * Get the weight of every edge for the provided profile, indexed by edge. The weights are calculated once per graph
+     * and profile, so searches can read edge costs from the array rather than calling the weight function for each edge
+     * they relax. The returned array is shared and must not be modified
+     * @param profile the profile of the weights
+     * @return the weight of each edge
+     */
+    public double[] getWeights(WeightProfile profile) {
+        return getEdgeValues(Arrays.asList(WeightProfile.class, profile), 1, (graph, from, to, values) -> {
+            WeightFunction weightFunction = profile.createWeightFunction();
+
+            for (int edge = from; edge < to; edge++)
+                values[edge] = weightFunction.calculate(graph.getEdge(edge));
+        });
+    }
+
+    /**
+     * Calculate the weight of every edge with the provided weight function
+     * @param weightFunction the weight function to calculate the weights with
+     * @return a new array of the weight of each edge
+     */
+    public double[] calculateWeights(WeightFunction weightFunction) {
+        double[] weights = new double[getEdgeCount()];
+
+        for (int edge = 0; edge < weights.length; edge++)
+            weights[edge] = weightFunction.calculate(getEdge(edge));
+
+        return weights;
+    }
+
+    /**
+     * Find the vertex index of the provided waypoint
+     * @param waypoint the waypoint to find
+     * @return the index of the waypoint, or -1 if it is not a vertex in this graph
+     */
+    public int indexOf(Waypoint waypoint) {
+        Integer index = (waypoint == null || waypoint.getId() == null) ? null:indices.get(waypoint.getId());
+
+        return (index == null) ? -1:index;
+    }
+
+    /**
+     * Get the index of the first outgoing edge of the provided vertex
+     * @param vertex the vertex to retrieve edges for
+     * @return the first edge index of the vertex
+     */
+    public int getEdgesStart(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * Get the index after the last outgoing edge of the provided vertex, i.e. the edges of the vertex are in the range
+     * getEdgesStart(vertex) inclusive to getEdgesEnd(vertex) exclusive
+     * @param vertex the vertex to retrieve edges for
+     * @return the exclusive end edge index of the vertex
+     */
+    public int getEdgesEnd(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * Determines if the provided edge was replaced by an update, so it is no longer an outgoing edge of its source vertex
+     * and must not be travelled. This is only true for versions created by {@link #update(EdgeUpdate)}
+     * @param edge the edge index
+     * @return true if the edge was removed, false if not
+     */
+    public boolean isRemoved(int edge) {
+        return false;
+    }
+
+    /**
+     * Get the reverse adjacency of this graph, building it on first use
+     * @return the incoming edges of each vertex
+     */
+    private ReverseAdjacency reverse() {
+        ReverseAdjacency reverse = reverseAdjacency;
+
+        if (reverse == null) {
+            reverse = new ReverseAdjacency(this);
+            reverseAdjacency = reverse; // building is idempotent, so a race between threads is harmless
+        }
+
+        return reverse;
+    }
+
+    /**
+     * Get the position of the first incoming edge of the provided vertex. The incoming edges of a vertex are in the range
+     * getReverseEdgesStart(vertex) inclusive to getReverseEdgesEnd(vertex) exclusive and are retrieved with getReverseEdge
+     * @param vertex the vertex to retrieve incoming edges for
+     * @return the first position of the incoming edges of the vertex
+     */
+    public int getReverseEdgesStart(int vertex) {
+        return reverse().offsets[vertex];
+    }
+
+    /**
+     * Get the position after the last incoming edge of the provided vertex
+     * @param vertex the vertex to retrieve incoming edges for
+     * @return the exclusive end position of the incoming edges of the vertex
+     */
+    public int getReverseEdgesEnd(int vertex) {
+        return reverse().offsets[vertex + 1];
+    }
+
+    /**
+     * Get the edge index at the provided position of the reverse adjacency
+     * @param position the position between getReverseEdgesStart and getReverseEdgesEnd of a vertex
+     * @return the index of the incoming edge
+     */
+    public int getReverseEdge(int position) {
+        return reverse().edges[position];
+    }
+
+    /**
+     * Get the source vertex of the provided edge
+     * @param edge the edge index
+     * @return the source vertex index
+     */
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    /**
+     * Get the target vertex of the provided edge
+     * @param edge the edge index
+     * @return the target vertex index
+     */
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * Get the km distance of the provided edge
+     * @param edge the edge index
+     * @return the distance of the edge
+     */
+    public double getDistance(int edge) {
+        return distances[edge];
+    }
+
+    /**
+     * Get the mode of the provided edge. This is an index into the transport methods of this graph
+     * @param edge the edge index
+     * @return the mode of the edge
+     */
+    public int getMode(int edge) {
+        return modes[edge];
+    }
+
+    /**
+     * Get the transport method travelling the provided edge
+     * @param edge the edge index
+     * @return the transport method of the edge
+     */
+    public TransportMethod getTransportMethod(int edge) {
+        return transportMethods[modes[edge]];
+    }
+
+    /**
+     * Get the distinct transport methods used in this graph, indexed by mode
+     * @return the list of transport methods
+     */
+    public List<TransportMethod> getTransportMethods() {
+        return Collections.unmodifiableList(Arrays.asList(transportMethods));
+    }
+
+    /**
+     * Get the original edge the provided edge index was built from
+     * @param edge the edge index
+     * @return the original edge
+     */
+    public Edge getEdge(int edge) {
+        return edges[edge];
+    }
+
+    /**
+     * Create a RouteLeg travelling the provided edge
+     * @param edge the edge index
+     * @return the route leg for the edge
+     */
+    public RouteLeg toRouteLeg(int edge) {
+        return new RouteLeg(vertices[getSource(edge)], vertices[getTarget(edge)], getTransportMethod(edge), getDistance(edge));
+    }
+
+    /**
+     * Create a new version of this graph with the provided update applied to its edges. The new version shares the edges
+     * of every vertex the update doesn't change with this graph, so it takes memory in proportion to the outgoing edges
+     * of the changed vertices, and this graph is unchanged. Once the changed edges of the versions updated one after
+     * another make up a large part of the graph, the new version is flattened into the same form as a built graph
+     * @param update the update to apply
+     * @return the new version of the graph
+     * @throws IllegalStateException if the update refers to waypoints that aren't vertices, or edges that don't exist
+     */
+    public CompactGraph update(EdgeUpdate update) {
+        return PatchedCompactGraph.update(this, update);
+    }
+
+    /**
+     * Get this graph in dense form, i.e. without edges removed by an update, with each edge index in the range of its
+     * source vertex. This is this graph unless it was created by an update
+     * @return the dense form of this graph
+     */
+    public CompactGraph flatten() {
+        return this;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return String.format("CompactGraph of %d vertices and %d edges", getVertexCount(), getEdgeCount());
+    }
+
+    /**
+     * The incoming edges of each vertex in compressed sparse row form, i.e. the incoming edges of vertex v are
+     * edges[offsets[v]] to edges[offsets[v + 1] - 1]
+     */
+    private static class ReverseAdjacency {
+        /**
+         * The offset of the first incoming edge of each vertex, with a trailing offset equal to the number of edges
+         */
+        private final int[] offsets;
+        /**
+         * The edge indices grouped by target vertex
+         */
+        private final int[] edges;
+
+        /**
+         * Build the reverse adjacency by counting sort of the edges on their target vertex
+         * @param graph the graph to build the reverse adjacency of
+         */
+        private ReverseAdjacency(CompactGraph graph) {
+            int vertexCount = graph.getVertexCount();
+            this.offsets = new int[vertexCount + 1];
+            this.edges = new int[graph.getEdgeCount()];
+
+            for (int edge = 0; edge < edges.length; edge++)
+                offsets[graph.getTarget(edge) + 1]++;
+
+            for (int i = 0; i < vertexCount; i++)
+                offsets[i + 1] += offsets[i];
+
+            int[] next = Arrays.copyOf(offsets, vertexCount);
+
+            for (int edge = 0; edge < edges.length; edge++)
+                edges[next[graph.getTarget(edge)]++] = edge;
+        }
+    }
+
+    /**
+     * A function calculating values for a range of edges, used to derive edge values with getEdgeValues
+     */
+    @FunctionalInterface
+    public interface EdgeValues {
+        /**
+         * Calculate the values of the edges from the first edge to the end edge, storing the values of each edge at
+         * edge * width in the values array
+         * @param graph the graph of the edges
+         * @param from the first edge to calculate the values of
+         * @param to the edge after the last edge to calculate the values of
+         * @param values the array to store the values in
+         */
+        void calculate(CompactGraph graph, int from, int to, double[] values);
+    }
+
+    /**
+     * A holder of data derived from the graph, deriving it on the first request
+     * @param <T> the type of the derived data
+     */
+    private static class Derived<T> {
+        /**
+         * The derived data, or null if not yet derived
+         */
+        private T value;
+
+        /**
+         * Get the derived data, deriving it if this is the first request
+         * @param graph the graph to derive the data from
+         * @param function the function deriving the data
+         * @return the derived data
+         */
+        private synchronized T get(CompactGraph graph, Function<CompactGraph, T> function) {
+            if (value == null)
+                value = function.apply(graph);
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.*;
+
+/**
+ * This class represents a batch of changes to the edges of a frozen graph, e.g. a new bus link, a cancelled ferry or a
+ * repriced road. It is applied with {@link Graph#update(EdgeUpdate)}, which creates a new version of the graph and
+ * leaves the updated graph unchanged, so searches already running on it aren't affected.
+ *
+ * Edges are closed and repriced by their start and end waypoint IDs and the name of their transport method. Repricing
+ * an edge gives it a new distance, which every weight function prices the edge from. The changes to the edges of each
+ * waypoint are applied in the order they were made
+ */
+public class EdgeUpdate {
+    /**
+     * The changes to the outgoing edges of each start waypoint, keyed by the ID of the waypoint
+     */
+    private final Map<Long, List<Change>> changes = new LinkedHashMap<>();
+    /**
+     * The start waypoint of each ID in changes
+     */
+    private final Map<Long, Waypoint> starts = new LinkedHashMap<>();
+    /**
+     * The number of directed changes in this update
+     */
+    private int size;
+
+    /**
+     * Add the provided edge. If bidirectional, the reverse of the edge is added too
+     * @param edge the edge to add
+     * @param bidirectional true if it is a bidirectional edge, false if not
+     * @return this update to allow chaining
+     */
+    public EdgeUpdate addEdge(Edge edge, boolean bidirectional) {
+        return change(Change.Kind.ADD, edge, bidirectional);
+    }
+
+    /**
+     * Add the provided edge in both directions
+     * @param edge the edge to add
+     * @return this update to allow chaining
+     */
+    public EdgeUpdate addEdge(Edge edge) {
+        return addEdge(edge, true);
+    }
+
+    /**
+     * Close the edges from the start waypoint to the end waypoint travelled by the provided transport method, e.g. to
+     * cancel a ferry. If bidirectional, the edges from the end waypoint to the start waypoint are closed too
+     * @param start the start waypoint of the edges
+     * @param end the end waypoint of the edges
+     * @param transportMethod the transport method travelling the edges
+     * @param bidirectional true to close the edges in both directions, false if not
+     * @return this update to allow chaining
+     */
+    public EdgeUpdate closeEdge(Waypoint start, Waypoint end, TransportMethod transportMethod, boolean bidirectional) {
+        return change(Change.Kind.CLOSE, new RouteLeg(start, end, transportMethod, 0.0), bidirectional);
+    }
+
+    /**
+     * Give the edges from the start waypoint to the end waypoint travelled by the provided transport method a new
+     * distance. If bidirectional, the edges from the end waypoint to the start waypoint are repriced too
+     * @param start the start waypoint of the edges
+     * @param end the end waypoint of the edges
+     * @param transportMethod the transport method travelling the edges
+     * @param distance the new km distance of the edges
+     * @param bidirectional true to reprice the edges in both directions, false if not
+     * @return this update to allow chaining
+     */
+    public EdgeUpdate repriceEdge(Waypoint start, Waypoint end, TransportMethod transportMethod, double distance, boolean bidirectional) {
+        return change(Change.Kind.REPRICE, new RouteLeg(start, end, transportMethod, distance), bidirectional);
+    }
+
+    /**
+     * Record a change of the provided edge, and of its reverse if bidirectional
+     * @param kind the kind of the change
+     * @param edge the edge to add, or the edge matching the edges to change
+     * @param bidirectional true to change the edges in both directions
+     * @return this update to allow chaining
+     */
+    private EdgeUpdate change(Change.Kind kind, Edge edge, boolean bidirectional) {
+        add(new Change(kind, edge));
+
+        if (bidirectional)
+            add(new Change(kind, edge.reverse()));
+
+        return this;
+    }
+
+    /**
+     * Record the provided change under its start waypoint
+     * @param change the change to record
+     */
+    private void add(Change change) {
+        Waypoint start = change.edge.getStart();
+
+        if (start == null || start.getId() == null || change.edge.getEnd() == null || change.edge.getEnd().getId() == null)
+            throw new IllegalStateException("The edge " + change.edge + " must start and end at waypoints with IDs");
+
+        starts.putIfAbsent(start.getId(), start);
+        changes.computeIfAbsent(start.getId(), id -> new ArrayList<>()).add(change);
+        size++;
+    }
+
+    /**
+     * Determines if this update has no changes
+     * @return true if there are no changes, false if not
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of changes in this update, counting each direction of a bidirectional change
+     * @return the number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the start waypoints whose outgoing edges this update changes
+     * @return the changed start waypoints
+     */
+    Collection<Waypoint> getStarts() {
+        return starts.values();
+    }
+
+    /**
+     * Apply the changes of the provided start waypoint to its outgoing edges
+     * @param start the start waypoint of the edges
+     * @param edges the outgoing edges of the start waypoint before the update
+     * @return a new list of the outgoing edges after the update
+     * @throws IllegalStateException if an edge to close or reprice doesn't exist
+     */
+    List<Edge> apply(Waypoint start, List<Edge> edges) {
+        List<Edge> updated = new ArrayList<>(edges);
+
+        for (Change change : changes.getOrDefault(start.getId(), Collections.emptyList())) {
+            if (change.kind == Change.Kind.ADD) {
+                if (!updated.contains(change.edge))
+                    updated.add(change.edge);
+
+                continue;
+            }
+
+            boolean matched = false;
+
+            for (ListIterator<Edge> iterator = updated.listIterator(); iterator.hasNext();) {
+                Edge edge = iterator.next();
+
+                if (change.matches(edge)) {
+                    matched = true;
+
+                    if (change.kind == Change.Kind.CLOSE)
+                        iterator.remove();
+                    else
+                        iterator.set(new RouteLeg(edge.getStart(), edge.getEnd(), edge.getTransportMethod(), change.edge.getDistance()));
+                }
+            }
+
+            if (!matched)
+                throw new IllegalStateException("There is no edge matching " + change.edge + " to " + change.kind.name().toLowerCase(Locale.ROOT));
+        }
+
+        return updated;
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return String.format("EdgeUpdate of %d changes to the edges of %d waypoints", size, starts.size());
+    }
+
+    /**
+     * A change to the edges leaving one waypoint
+     */
+    private static class Change {
+        /**
+         * The kinds of change that can be made to an edge
+         */
+        private enum Kind {
+            /**
+             * The edge is added
+             */
+            ADD,
+            /**
+             * The matching edges are removed
+             */
+            CLOSE,
+            /**
+             * The matching edges are given the distance of the edge
+             */
+            REPRICE
+        }
+
+        /**
+         * The kind of this change
+         */
+        private final Kind kind;
+        /**
+         * The edge to add, or the edge matching the edges to close or reprice
+         */
+        private final Edge edge;
+
+        /**
+         * Construct a change
+         * @param kind the kind of the change
+         * @param edge the edge to add, or the edge matching the edges to close or reprice
+         */
+        private Change(Kind kind, Edge edge) {
+            this.kind = kind;
+            this.edge = edge;
+        }
+
+        /**
+         * Determines if the provided edge leaving the start of this change is changed by it, i.e. it has the same end
+         * waypoint ID and transport method name
+         * @param other the edge to check
+         * @return true if the edge is changed, false if not
+         */
+        private boolean matches(Edge other) {
+            return other.getEnd().getId().equals(edge.getEnd().getId())
+                    && Objects.equals(other.getTransportMethod().getName(), edge.getTransportMethod().getName());
+        }
+    }
+}
@@ -10,6 +10,11 @@ import java.util.*;
  *
  * This treats waypoints as vertices and RouteLegs as edges. From here, waypoints are known as vertices and routelegs are
  * edges
+ *
+ * A graph can be frozen with {@link #freeze()}, after which it can no longer be modified and can be safely shared between
+ * threads. A graph created from a compact graph, e.g. one loaded from a {@link GraphSnapshot}, is frozen from the start
+ * and has no edge lists of its own; its neighbours are read from the compact graph when they are requested. A frozen
+ * graph's edges can still be changed by {@link #update(EdgeUpdate)}, which creates a new version of the graph
  */
 public class Graph {
     /**
@@ -17,9 +22,18 @@ public class Graph {
      */
     private final Map<Long, Waypoint> vertices;
     /**
-     * This holds all the edges for each vertex in the Graph with each vertex mapping to a neighbour
+     * This holds all the edges for each vertex in the Graph with each vertex mapping to a neighbour, or null if the graph
+     * was created from a compact graph
      */
     private final Map<Waypoint, List<Edge>> edges;
+    /**
+     * The compact form of this graph, lazily built by compact() and discarded whenever the graph is modified
+     */
+    private CompactGraph compact;
+    /**
+     * Determines if this graph has been frozen and can no longer be modified
+     */
+    private boolean frozen;
 
     /**
      * Constructs an empty Graph with no vertices and edges
@@ -39,6 +53,33 @@ public class Graph {
         this.edges = edges;
     }
 
+    /**
+     * Construct a frozen graph from the provided compact graph
+     * @param vertices the mapping of the waypoint id to the waypoint of each vertex of the compact graph
+     * @param compact the compact graph this graph is created from
+     */
+    private Graph(Map<Long, Waypoint> vertices, CompactGraph compact) {
+        this.vertices = vertices;
+        this.edges = null;
+        this.compact = compact;
+        this.frozen = true;
+    }
+
+    /**
+     * Create a frozen graph from the provided compact graph, e.g. one loaded from a snapshot, without creating its edges
+     * up front. The compact graph becomes the compact form of the graph
+     * @param compact the compact graph to create the graph from
+     * @return the created graph
+     */
+    public static Graph fromCompact(CompactGraph compact) {
+        Map<Long, Waypoint> vertices = new HashMap<>();
+
+        for (int vertex = 0; vertex < compact.getVertexCount(); vertex++)
+            vertices.put(compact.getVertex(vertex).getId(), compact.getVertex(vertex));
+
+        return new Graph(vertices, compact);
+    }
+
     /**
      * Gets a set of all the vertices in the graph
      * @return the set of vertices in the graph
@@ -52,7 +93,9 @@ public class Graph {
      * @param v the vertex to add
      */
     public void addVertex(Waypoint v) {
-        if (!vertices.containsValue(v)) {
+        checkModifiable();
+
+        if (!edges.containsKey(v)) { // every vertex has an edge list, and looking it up doesn't scan every vertex
             Long vertexNumber = v.getId();
 
             if (vertexNumber == null) {
@@ -62,6 +105,7 @@ public class Graph {
 
             vertices.put(vertexNumber, v);
             edges.put(v, new ArrayList<>());
+            compact = null;
         }
     }
 
@@ -80,7 +124,21 @@ public class Graph {
      * @return an unmodifiable list of edges, or null if the vertex is not in the graph
      */
     public List<Edge> getNeighbours(Waypoint waypoint) {
-        return edges.get(waypoint);
+        if (edges != null)
+            return edges.get(waypoint);
+
+        int vertex = compact.indexOf(waypoint);
+
+        if (vertex == -1)
+            return null;
+
+        int first = compact.getEdgesStart(vertex), last = compact.getEdgesEnd(vertex);
+        List<Edge> neighbours = new ArrayList<>(last - first);
+
+        for (int edge = first; edge < last; edge++)
+            neighbours.add(compact.getEdge(edge));
+
+        return Collections.unmodifiableList(neighbours);
     }
 
     /**
@@ -88,7 +146,10 @@ public class Graph {
      * @param edge the edge to remove
      */
     public void removeEdge(Edge edge) {
-        edges.get(edge.getStart()).remove(edge);
+        checkModifiable();
+
+        if (edges.get(edge.getStart()).remove(edge))
+            compact = null;
     }
 
     /**
@@ -99,7 +160,7 @@ public class Graph {
     public boolean containsEdge(Edge edge) {
         Waypoint u = edge.getStart();
         List<Edge> edges;
-        return (edges = this.edges.get(u)) != null && edges.contains(edge);
+        return (edges = getNeighbours(u)) != null && edges.contains(edge);
     }
 
     /**
@@ -109,12 +170,14 @@ public class Graph {
      * @param bidirectional true if it is a bidirectional edge, false if not
      */
     public void addEdge(Edge edge, boolean bidirectional) {
+        checkModifiable();
+
         if (!containsEdge(edge)) {
             Waypoint u = edge.getStart(), v = edge.getEnd();
-            if (!vertices.containsValue(u))
+            if (!edges.containsKey(u))
                 addVertex(u);
 
-            if (!vertices.containsValue(v))
+            if (!edges.containsKey(v))
                 addVertex(v);
 
             edges.get(u).add(edge); // v has been added as a neighbour of u, so there is now an edge between them
@@ -122,6 +185,8 @@ public class Graph {
             if (bidirectional) {
                 edges.get(v).add(edge.reverse());
             }
+
+            compact = null;
         }
     }
 
@@ -134,12 +199,74 @@ public class Graph {
     }
 
     /**
-     * Creates a deep copy of this graph
+     * Retrieve the compact (CSR) form of this graph for path finding. The compact form is built once and re-used until
+     * this graph is next modified
+     * @return the compact form of this graph
+     */
+    public CompactGraph compact() {
+        if (compact == null)
+            compact = CompactGraph.fromGraph(this);
+
+        return compact;
+    }
+
+    /**
+     * Freezes this graph so that it can no longer be modified. The compact form is built straight away, so a frozen graph
+     * is immutable and can be shared between any number of threads once it has been safely published.
+     * Any attempt to modify the graph afterwards throws an IllegalStateException. Use {@link #copy()} to get a modifiable
+     * graph
+     * @return this graph to allow chaining
+     */
+    public Graph freeze() {
+        if (!frozen) {
+            edges.replaceAll((vertex, neighbours) -> Collections.unmodifiableList(neighbours));
+            compact();
+            frozen = true;
+        }
+
+        return this;
+    }
+
+    /**
+     * Create a new frozen version of this graph with the provided update applied to its edges. The new version shares
+     * the vertices and the unchanged edges with this graph, so the update costs time and memory in proportion to the
+     * edges of the waypoints it changes. This graph is unchanged, so searches already running on it aren't affected
+     * @param update the update to apply
+     * @return the updated graph
+     * @throws IllegalStateException if this graph isn't frozen, or the update refers to waypoints that aren't vertices
+     * or edges that don't exist
+     */
+    public Graph update(EdgeUpdate update) {
+        if (!frozen)
+            throw new IllegalStateException("Only a frozen graph can be updated. Modify the graph directly instead");
+
+        return new Graph(vertices, compact().update(update)); // the vertices of a frozen graph are never modified
+    }
+
+    /**
+     * Determines if this graph has been frozen
+     * @return true if frozen and can't be modified, false if not
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Validates that this graph can be modified
+     * @throws IllegalStateException if the graph has been frozen
+     */
+    private void checkModifiable() {
+        if (frozen)
+            throw new IllegalStateException("The graph has been frozen and cannot be modified. Call copy() to get a modifiable graph");
+    }
+
+    /**
+     * Creates a deep copy of this graph. The copy is never frozen
      * @return the copied graph
      */
     public Graph copy() {
         Map<Long, Waypoint> vertices = new HashMap<>(this.vertices.size());
-        Map<Waypoint, List<Edge>> edges = new HashMap<>(this.edges.size());
+        Map<Waypoint, List<Edge>> edges = new HashMap<>(this.vertices.size());
 
         for (Map.Entry<Long, Waypoint> e : this.vertices.entrySet()) {
             Long id = e.getKey();
@@ -148,9 +275,8 @@ public class Graph {
             vertices.put(id, new Waypoint(vertex.getId(), vertex.getName(), vertex.getLatitude(), vertex.getLongitude()));
         }
 
-        for (Map.Entry<Waypoint, List<Edge>> e : this.edges.entrySet()) {
-            Waypoint key = e.getKey();
-            List<Edge> edgeList = e.getValue();
+        for (Waypoint key : this.vertices.values()) {
+            List<Edge> edgeList = getNeighbours(key);
 
             Waypoint copied = vertices.get(key.getId());
 
@@ -174,7 +300,12 @@ public class Graph {
     @Override
     public String toString() {
         int[] edgeSize = new int[]{0};
-        edges.forEach((k, v) -> edgeSize[0] += v.size());
+
+        if (edges == null)
+            edgeSize[0] = compact.getEdgeCount();
+        else
+            edges.forEach((k, v) -> edgeSize[0] += v.size());
+
         return String.format("Graph of %d vertices and %d edges", vertices.size(), edgeSize[0]);
     }
 }
@@ -0,0 +1,153 @@
+package ie.ul.routeplanning.routes.graph;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a per-query overlay on a {@link CompactGraph} that excludes edges and vertices from a search
+ * without modifying the graph itself. Exclusions are kept as bitsets keyed by edge and vertex index, so a mask costs
+ * one bit per edge, and one bit per vertex once a vertex has been excluded.
+ *
+ * A mask is intended to be used by a single query at a time and is not thread-safe, but any number of masks can be
+ * used concurrently against the same graph
+ */
+public class GraphMask {
+    /**
+     * The number of bits in each word of the bitsets
+     */
+    private static final int WORD_BITS = 64;
+    /**
+     * The number of edges the mask covers
+     */
+    private final int edgeCount;
+    /**
+     * The number of vertices the mask covers
+     */
+    private final int vertexCount;
+    /**
+     * The bitset of excluded edges
+     */
+    private final long[] edges;
+    /**
+     * The bitset of excluded vertices. This is only allocated once the first vertex is excluded
+     */
+    private long[] vertices;
+
+    /**
+     * Construct an empty mask for the provided graph
+     * @param graph the graph this mask is applied to
+     */
+    public GraphMask(CompactGraph graph) {
+        this(graph.getEdgeCount(), graph.getVertexCount());
+    }
+
+    /**
+     * Construct an empty mask covering the provided number of edges and vertices
+     * @param edgeCount the number of edges in the masked graph
+     * @param vertexCount the number of vertices in the masked graph
+     */
+    public GraphMask(int edgeCount, int vertexCount) {
+        this.edgeCount = edgeCount;
+        this.vertexCount = vertexCount;
+        this.edges = new long[words(edgeCount)];
+    }
+
+    /**
+     * Calculate the number of words needed for a bitset of the provided size
+     * @param bits the number of bits in the bitset
+     * @return the number of words needed
+     */
+    private static int words(int bits) {
+        return (bits + WORD_BITS - 1) / WORD_BITS;
+    }
+
+    /**
+     * Exclude the provided edge from searches using this mask
+     * @param edge the index of the edge to exclude
+     */
+    public void excludeEdge(int edge) {
+        edges[edge >>> 6] |= 1L << edge;
+    }
+
+    /**
+     * Include the provided edge again if it was excluded
+     * @param edge the index of the edge to include
+     */
+    public void includeEdge(int edge) {
+        edges[edge >>> 6] &= ~(1L << edge);
+    }
+
+    /**
+     * Determines if the provided edge has been excluded
+     * @param edge the index of the edge to check
+     * @return true if excluded, false if not
+     */
+    public boolean isEdgeExcluded(int edge) {
+        return (edges[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    /**
+     * Exclude the provided vertex from searches using this mask, i.e. no edge leading into the vertex can be travelled
+     * @param vertex the index of the vertex to exclude
+     */
+    public void excludeVertex(int vertex) {
+        if (vertices == null)
+            vertices = new long[words(vertexCount)];
+
+        vertices[vertex >>> 6] |= 1L << vertex;
+    }
+
+    /**
+     * Include the provided vertex again if it was excluded
+     * @param vertex the index of the vertex to include
+     */
+    public void includeVertex(int vertex) {
+        if (vertices != null)
+            vertices[vertex >>> 6] &= ~(1L << vertex);
+    }
+
+    /**
+     * Determines if the provided vertex has been excluded
+     * @param vertex the index of the vertex to check
+     * @return true if excluded, false if not
+     */
+    public boolean isVertexExcluded(int vertex) {
+        return vertices != null && (vertices[vertex >>> 6] & (1L << vertex)) != 0;
+    }
+
+    /**
+     * Determines if the provided edge into the target vertex can be travelled, i.e. neither the edge nor the vertex it
+     * leads to has been excluded
+     * @param edge the index of the edge
+     * @param target the index of the vertex the edge leads to
+     * @return true if the edge can be travelled, false if not
+     */
+    public boolean allows(int edge, int target) {
+        return !isEdgeExcluded(edge) && !isVertexExcluded(target);
+    }
+
+    /**
+     * Remove all exclusions from this mask so that it can be re-used
+     */
+    public void clear() {
+        Arrays.fill(edges, 0);
+
+        if (vertices != null)
+            Arrays.fill(vertices, 0);
+    }
+
+    /**
+     * Get the number of edges covered by this mask
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Get the number of vertices covered by this mask
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+}
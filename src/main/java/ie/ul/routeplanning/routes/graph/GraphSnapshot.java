@@ -0,0 +1,323 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class writes the compact form of a graph to a binary snapshot file and loads graphs from snapshot files, so a
+ * graph can be loaded without parsing the edges and creating an object for every edge.
+ *
+ * A snapshot is little-endian and consists of a header followed by the sections of the compact graph, longest element
+ * first so every section is aligned to the size of its elements:
+ * <ol>
+ *     <li>The header: the magic number, the format version, the number of vertices V, edges E and transport methods
+ *     M, the length in bytes of the names, and 2 reserved ints</li>
+ *     <li>The waypoint ID of each vertex as V longs</li>
+ *     <li>The latitude and longitude of each vertex as V doubles each, NaN if the waypoint has no coordinates</li>
+ *     <li>The distance of each edge as E doubles</li>
+ *     <li>The CSR offsets as V + 1 ints, and the source, target and mode of each edge as E ints each</li>
+ *     <li>The offset of the name of each vertex, followed by the name of each transport method, in the names as
+ *     V + M + 1 ints</li>
+ *     <li>The names, UTF-8 encoded. A waypoint without a name has an empty name</li>
+ * </ol>
+ * Loading a snapshot memory-maps each section and the loaded compact graph reads its edges and coordinates straight from
+ * the mapped sections, so only the waypoints and transport methods are created on the heap
+ */
+public final class GraphSnapshot {
+    /**
+     * The magic number identifying a snapshot file
+     */
+    public static final int MAGIC = 0x52504753;
+    /**
+     * The version of the snapshot format written by this class
+     */
+    public static final int VERSION = 1;
+    /**
+     * The length in bytes of the header
+     */
+    private static final int HEADER_SIZE = 8 * Integer.BYTES;
+    /**
+     * The size of the buffer the snapshot is written through
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * This class only has static methods
+     */
+    private GraphSnapshot() {}
+
+    /**
+     * Write the compact form of the provided graph to a snapshot file, replacing the file if it exists
+     * @param graph the graph to write
+     * @param file the file to write the snapshot to
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        CompactGraph compact = graph.compact().flatten(); // an updated graph has removed edges between its edges
+        int vertexCount = compact.getVertexCount(), edgeCount = compact.getEdgeCount();
+        List<TransportMethod> transportMethods = compact.getTransportMethods();
+        byte[][] names = new byte[vertexCount + transportMethods.size()][];
+        int namesLength = 0;
+
+        for (int i = 0; i < names.length; i++) {
+            String name = (i < vertexCount) ? compact.getVertex(i).getName():transportMethods.get(i - vertexCount).getName();
+            names[i] = (name == null) ? new byte[0]:name.getBytes(StandardCharsets.UTF_8);
+            namesLength += names[i].length;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter writer = new SectionWriter(channel);
+
+            for (int value : new int[]{MAGIC, VERSION, vertexCount, edgeCount, transportMethods.size(), namesLength, 0, 0})
+                writer.buffer(Integer.BYTES).putInt(value);
+
+            for (int vertex = 0; vertex < vertexCount; vertex++)
+                writer.buffer(Long.BYTES).putLong(compact.getVertex(vertex).getId());
+
+            for (int vertex = 0; vertex < vertexCount; vertex++)
+                writer.buffer(Double.BYTES).putDouble(compact.getLatitude(vertex));
+
+            for (int vertex = 0; vertex < vertexCount; vertex++)
+                writer.buffer(Double.BYTES).putDouble(compact.getLongitude(vertex));
+
+            for (int edge = 0; edge < edgeCount; edge++)
+                writer.buffer(Double.BYTES).putDouble(compact.getDistance(edge));
+
+            for (int vertex = 0; vertex <= vertexCount; vertex++)
+                writer.buffer(Integer.BYTES).putInt((vertex < vertexCount) ? compact.getEdgesStart(vertex):edgeCount);
+
+            for (int edge = 0; edge < edgeCount; edge++)
+                writer.buffer(Integer.BYTES).putInt(compact.getSource(edge));
+
+            for (int edge = 0; edge < edgeCount; edge++)
+                writer.buffer(Integer.BYTES).putInt(compact.getTarget(edge));
+
+            for (int edge = 0; edge < edgeCount; edge++)
+                writer.buffer(Integer.BYTES).putInt(compact.getMode(edge));
+
+            int nameOffset = 0;
+
+            for (byte[] name : names) {
+                writer.buffer(Integer.BYTES).putInt(nameOffset);
+                nameOffset += name.length;
+            }
+
+            writer.buffer(Integer.BYTES).putInt(nameOffset);
+
+            for (byte[] name : names)
+                writer.write(name);
+
+            writer.flush();
+        }
+    }
+
+    /**
+     * Load the graph from the provided snapshot file. The loaded graph is frozen, and its compact form reads the edges
+     * from the memory-mapped file, which stays mapped for as long as the graph is reachable
+     * @param file the snapshot file to load
+     * @param transportMethods a map mapping name to transport methods. Expected to have every transport method in the snapshot
+     * @return the loaded graph
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    public static Graph load(Path file, Map<String, TransportMethod> transportMethods) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SectionReader reader = new SectionReader(channel);
+            ByteBuffer header = reader.next(HEADER_SIZE);
+            int magic = header.getInt(), version = header.getInt();
+
+            if (magic != MAGIC)
+                throw new IOException(file + " is not a graph snapshot");
+
+            if (version != VERSION)
+                throw new IOException("Unsupported graph snapshot version " + version + " in: " + file);
+
+            int vertexCount = header.getInt(), edgeCount = header.getInt(), methodCount = header.getInt(), namesLength = header.getInt();
+            long size = HEADER_SIZE + (long) vertexCount * (Long.BYTES + 2 * Double.BYTES) + (long) edgeCount * (Double.BYTES + 3 * Integer.BYTES)
+                    + (long) (vertexCount + 1) * Integer.BYTES + (long) (vertexCount + methodCount + 1) * Integer.BYTES + namesLength;
+
+            if (vertexCount < 0 || edgeCount < 0 || methodCount < 0 || namesLength < 0 || channel.size() != size)
+                throw new IOException("The graph snapshot " + file + " is truncated or corrupt");
+
+            ByteBuffer ids = reader.next((long) vertexCount * Long.BYTES);
+            ByteBuffer latitudes = reader.next((long) vertexCount * Double.BYTES);
+            ByteBuffer longitudes = reader.next((long) vertexCount * Double.BYTES);
+            ByteBuffer distances = reader.next((long) edgeCount * Double.BYTES);
+            ByteBuffer offsets = reader.next((long) (vertexCount + 1) * Integer.BYTES);
+            ByteBuffer sources = reader.next((long) edgeCount * Integer.BYTES);
+            ByteBuffer targets = reader.next((long) edgeCount * Integer.BYTES);
+            ByteBuffer modes = reader.next((long) edgeCount * Integer.BYTES);
+            ByteBuffer nameOffsets = reader.next((long) (vertexCount + methodCount + 1) * Integer.BYTES);
+            ByteBuffer names = reader.next(namesLength);
+
+            Waypoint[] vertices = new Waypoint[vertexCount];
+
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                double latitude = latitudes.getDouble(vertex * Double.BYTES), longitude = longitudes.getDouble(vertex * Double.BYTES);
+                String name = readName(names, nameOffsets, vertex);
+
+                vertices[vertex] = new Waypoint(ids.getLong(vertex * Long.BYTES), name.isEmpty() ? null:name,
+                        Double.isNaN(latitude) ? null:latitude, Double.isNaN(longitude) ? null:longitude);
+            }
+
+            TransportMethod[] methods = new TransportMethod[methodCount];
+
+            for (int method = 0; method < methodCount; method++) {
+                String name = readName(names, nameOffsets, vertexCount + method);
+                methods[method] = transportMethods.get(name);
+
+                if (methods[method] == null)
+                    throw new IllegalStateException("No TransportMethod instance available for: " + name);
+            }
+
+            CompactGraph compact = new MappedCompactGraph(vertices, methods, latitudes.asDoubleBuffer(), longitudes.asDoubleBuffer(),
+                    offsets.asIntBuffer(), sources.asIntBuffer(), targets.asIntBuffer(), distances.asDoubleBuffer(), modes.asIntBuffer());
+
+            return Graph.fromCompact(compact);
+        }
+    }
+
+    /**
+     * Read the name with the provided index
+     * @param names the names section
+     * @param nameOffsets the name offsets section
+     * @param index the index of the name, i.e. a vertex index or the number of vertices plus a mode
+     * @return the decoded name
+     */
+    private static String readName(ByteBuffer names, ByteBuffer nameOffsets, int index) {
+        int start = nameOffsets.getInt(index * Integer.BYTES), end = nameOffsets.getInt((index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+
+        names.duplicate().position(start).get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the sections of a snapshot one after another. A file small enough to be mapped at once is mapped once and the
+     * sections are slices of that mapping, since every mapping lasts until its buffer is garbage collected; larger
+     * files have each section mapped separately
+     */
+    private static class SectionReader {
+        /**
+         * The channel of the file being read
+         */
+        private final FileChannel channel;
+        /**
+         * The mapping of the whole file, or null if the file is too large to be mapped at once
+         */
+        private final ByteBuffer file;
+        /**
+         * The position of the next section in the file
+         */
+        private long position;
+
+        /**
+         * Create a reader mapping the sections of the provided channel from the start of the file
+         * @param channel the channel to map the sections of
+         * @throws IOException if the file can't be mapped
+         */
+        private SectionReader(FileChannel channel) throws IOException {
+            long size = channel.size();
+
+            this.channel = channel;
+            this.file = (size <= Integer.MAX_VALUE) ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size):null;
+        }
+
+        /**
+         * Map the next section of the file as a read-only buffer
+         * @param size the size of the section in bytes
+         * @return the mapped section in the byte order of snapshots
+         * @throws IOException if the section can't be mapped or is past the end of the file
+         */
+        private ByteBuffer next(long size) throws IOException {
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("A section of the graph snapshot is too large to be mapped");
+
+            if (position + size > channel.size())
+                throw new IOException("The graph snapshot is truncated");
+
+            ByteBuffer section;
+
+            if (file != null)
+                section = file.duplicate().position((int) position).limit((int) (position + size)).slice();
+            else
+                section = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+
+            position += size;
+
+            return section.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Writes the sections of a snapshot through a buffer, so the snapshot is never held in memory
+     */
+    private static class SectionWriter {
+        /**
+         * The channel of the file being written
+         */
+        private final FileChannel channel;
+        /**
+         * The buffer of bytes not yet written to the channel
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Create a writer writing to the provided channel
+         * @param channel the channel to write to
+         */
+        private SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Get the buffer to put the next value in, writing the buffered bytes first if it doesn't have enough room
+         * @param bytes the number of bytes about to be put
+         * @return the buffer to put the value in
+         * @throws IOException if the buffered bytes can't be written
+         */
+        private ByteBuffer buffer(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+
+            return buffer;
+        }
+
+        /**
+         * Write the provided bytes after the buffered bytes
+         * @param bytes the bytes to write
+         * @throws IOException if the bytes can't be written
+         */
+        private void write(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(buffer(1).remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Write the buffered bytes to the channel
+         * @throws IOException if the bytes can't be written
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+
+            buffer.clear();
+        }
+    }
+}
@@ -16,6 +16,11 @@ public class GraphUtils {
      */
     public static final double DISTANCE_FACTOR = 60 * 1.1515;
 
+    /**
+     * The mean radius of the earth in kilometres
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
     /**
      * Calculates the kilometre distance between the coordinates of the 2 provided waypoints
      * @param w1 the first waypoint
@@ -38,4 +43,24 @@ public class GraphUtils {
             return Math.toDegrees(distance) * DISTANCE_FACTOR * KM_CONVERSION;
         }
     }
+
+    /**
+     * Calculates the great-circle distance in kilometres between the provided coordinates using the haversine formula.
+     * Unlike {@link #kilometreDistance(Waypoint, Waypoint)}, this is a true distance metric, so it satisfies the
+     * triangle inequality and can be used to bound path lengths
+     * @param latitude the latitude of the first coordinate in degrees
+     * @param longitude the longitude of the first coordinate in degrees
+     * @param latitude1 the latitude of the second coordinate in degrees
+     * @param longitude1 the longitude of the second coordinate in degrees
+     * @return the great-circle distance between the coordinates in kilometres
+     */
+    public static double greatCircleDistance(double latitude, double longitude, double latitude1, double longitude1) {
+        double latitudeDelta = Math.toRadians(latitude1 - latitude);
+        double longitudeDelta = Math.toRadians(longitude1 - longitude);
+        double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(latitude1))
+                * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
 }
@@ -0,0 +1,250 @@
+package ie.ul.routeplanning.routes.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class represents a min priority queue of int vertices with double keys, implemented as a 4-ary heap in primitive
+ * arrays. Unlike {@link java.util.PriorityQueue}, each vertex is in the heap at most once and its key can be changed in
+ * place, so a search never queues stale entries and never allocates an object per relaxed edge.
+ *
+ * Vertices must be in the range 0 to capacity - 1. A heap is not thread-safe and is intended to be used by one search at
+ * a time, but it can be cleared and re-used by the next search in time proportional to the vertices left in it
+ */
+public class IndexedHeap {
+    /**
+     * The number of children of each node of the heap. A 4-ary heap is shallower than a binary heap and the children of
+     * a node share a cache line, which suits the many decrease-key operations of a shortest path search
+     */
+    private static final int ARITY = 4;
+    /**
+     * The vertex at each position of the heap
+     */
+    private final int[] vertices;
+    /**
+     * The key at each position of the heap
+     */
+    private final double[] keys;
+    /**
+     * The position of each vertex in the heap, or -1 if the vertex is not in the heap
+     */
+    private final int[] positions;
+    /**
+     * The number of vertices in the heap
+     */
+    private int size;
+
+    /**
+     * Create an empty heap for vertices from 0 to capacity - 1
+     * @param capacity the number of vertices
+     */
+    public IndexedHeap(int capacity) {
+        this.vertices = new int[capacity];
+        this.keys = new double[capacity];
+        this.positions = new int[capacity];
+
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Determines if the heap is empty
+     * @return true if empty, false if not
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of vertices in the heap
+     * @return the number of vertices
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of vertices this heap can hold
+     * @return the capacity of the heap
+     */
+    public int getCapacity() {
+        return positions.length;
+    }
+
+    /**
+     * Determines if the provided vertex is in the heap
+     * @param vertex the vertex to check
+     * @return true if in the heap, false if not
+     */
+    public boolean contains(int vertex) {
+        return positions[vertex] != -1;
+    }
+
+    /**
+     * Get the key of the provided vertex
+     * @param vertex the vertex, which must be in the heap
+     * @return the key of the vertex
+     */
+    public double getKey(int vertex) {
+        return keys[positions[vertex]];
+    }
+
+    /**
+     * Add the provided vertex with the provided key, or change its key if it is already in the heap. The key may be
+     * increased as well as decreased
+     * @param vertex the vertex to add or update
+     * @param key the key of the vertex
+     */
+    public void update(int vertex, double key) {
+        int position = positions[vertex];
+
+        if (position == -1) {
+            position = size++;
+            vertices[position] = vertex;
+            keys[position] = key;
+            positions[vertex] = position;
+            siftUp(position);
+        } else if (key < keys[position]) {
+            keys[position] = key;
+            siftUp(position);
+        } else {
+            keys[position] = key;
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Add the provided vertex with the provided key, or decrease its key if it is already in the heap with a larger key
+     * @param vertex the vertex to add or update
+     * @param key the key of the vertex
+     * @return true if the vertex was added or its key decreased, false if it already had a key no larger than key
+     */
+    public boolean decreaseKey(int vertex, double key) {
+        int position = positions[vertex];
+
+        if (position != -1 && keys[position] <= key)
+            return false;
+
+        update(vertex, key);
+
+        return true;
+    }
+
+    /**
+     * Get the vertex with the smallest key without removing it
+     * @return the vertex with the smallest key
+     */
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty");
+
+        return vertices[0];
+    }
+
+    /**
+     * Get the smallest key in the heap
+     * @return the smallest key, or infinity if the heap is empty
+     */
+    public double peekKey() {
+        return (size == 0) ? Double.POSITIVE_INFINITY:keys[0];
+    }
+
+    /**
+     * Remove and return the vertex with the smallest key
+     * @return the vertex with the smallest key
+     */
+    public int poll() {
+        int vertex = peek();
+        int last = --size;
+
+        positions[vertex] = -1;
+
+        if (last > 0) {
+            move(vertices[last], keys[last], 0);
+            siftDown(0);
+        }
+
+        return vertex;
+    }
+
+    /**
+     * Get the vertices in the heap, e.g. to inspect the frontier of a search that stopped early
+     * @return a new array of the vertices, in no particular order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(vertices, size);
+    }
+
+    /**
+     * Remove every vertex from the heap so it can be re-used
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[vertices[i]] = -1;
+
+        size = 0;
+    }
+
+    /**
+     * Place the provided vertex and key at the provided position
+     * @param vertex the vertex to place
+     * @param key the key of the vertex
+     * @param position the position to place it at
+     */
+    private void move(int vertex, double key, int position) {
+        vertices[position] = vertex;
+        keys[position] = key;
+        positions[vertex] = position;
+    }
+
+    /**
+     * Move the entry at the provided position up until its parent has a key no larger than it
+     * @param position the position of the entry
+     */
+    private void siftUp(int position) {
+        int vertex = vertices[position];
+        double key = keys[position];
+
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+
+            if (keys[parent] <= key)
+                break;
+
+            move(vertices[parent], keys[parent], position);
+            position = parent;
+        }
+
+        move(vertex, key, position);
+    }
+
+    /**
+     * Move the entry at the provided position down until none of its children has a smaller key
+     * @param position the position of the entry
+     */
+    private void siftDown(int position) {
+        int vertex = vertices[position];
+        double key = keys[position];
+
+        while (true) {
+            int first = position * ARITY + 1;
+
+            if (first >= size)
+                break;
+
+            int smallest = first;
+
+            for (int child = first + 1, last = Math.min(first + ARITY, size); child < last; child++) {
+                if (keys[child] < keys[smallest])
+                    smallest = child;
+            }
+
+            if (keys[smallest] >= key)
+                break;
+
+            move(vertices[smallest], keys[smallest], position);
+            position = smallest;
+        }
+
+        move(vertex, key, position);
+    }
+}
@@ -0,0 +1,185 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class is a compact graph loaded from a {@link GraphSnapshot}, reading its coordinates and edges straight from
+ * the buffers of the memory-mapped snapshot file rather than from arrays on the heap. Only the waypoints and transport
+ * methods are held on the heap, and the edges are created as route legs when they are requested.
+ *
+ * The buffers are only read with absolute gets, which don't change their positions, so the graph can be shared between
+ * any number of searches like any other compact graph
+ */
+final class MappedCompactGraph extends CompactGraph {
+    /**
+     * The latitude of each vertex in degrees, or NaN if the waypoint has no coordinates
+     */
+    private final DoubleBuffer latitudes;
+    /**
+     * The longitude of each vertex in degrees, or NaN if the waypoint has no coordinates
+     */
+    private final DoubleBuffer longitudes;
+    /**
+     * The offset of the first edge of each vertex, with a trailing offset equal to the number of edges
+     */
+    private final IntBuffer offsets;
+    /**
+     * The source vertex index of each edge
+     */
+    private final IntBuffer sources;
+    /**
+     * The target vertex index of each edge
+     */
+    private final IntBuffer targets;
+    /**
+     * The km distance of each edge
+     */
+    private final DoubleBuffer distances;
+    /**
+     * The index into transportMethods of the transport method travelling each edge
+     */
+    private final IntBuffer modes;
+    /**
+     * The distinct transport methods used by the edges of this graph
+     */
+    private final TransportMethod[] transportMethods;
+
+    /**
+     * Construct a MappedCompactGraph from the sections of a mapped snapshot
+     * @param vertices the waypoint for each vertex index
+     * @param transportMethods the distinct transport methods referred to by modes
+     * @param latitudes the latitude of each vertex, or NaN if it has no coordinates
+     * @param longitudes the longitude of each vertex, or NaN if it has no coordinates
+     * @param offsets the offset of the first edge of each vertex, with a trailing offset equal to the number of edges
+     * @param sources the source vertex of each edge
+     * @param targets the target vertex of each edge
+     * @param distances the km distance of each edge
+     * @param modes the index of the transport method for each edge
+     */
+    MappedCompactGraph(Waypoint[] vertices, TransportMethod[] transportMethods, DoubleBuffer latitudes, DoubleBuffer longitudes,
+                       IntBuffer offsets, IntBuffer sources, IntBuffer targets, DoubleBuffer distances, IntBuffer modes) {
+        super(vertices, transportMethods);
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.distances = distances;
+        this.modes = modes;
+        this.transportMethods = transportMethods;
+    }
+
+    /**
+     * Get the number of edges in this graph
+     * @return the number of edges
+     */
+    @Override
+    public int getEdgeCount() {
+        return targets.limit();
+    }
+
+    /**
+     * Get the latitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the latitude in degrees, or NaN if the vertex has no coordinates
+     */
+    @Override
+    public double getLatitude(int vertex) {
+        return latitudes.get(vertex);
+    }
+
+    /**
+     * Get the longitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the longitude in degrees, or NaN if the vertex has no coordinates
+     */
+    @Override
+    public double getLongitude(int vertex) {
+        return longitudes.get(vertex);
+    }
+
+    /**
+     * Get the index of the first outgoing edge of the provided vertex
+     * @param vertex the vertex to retrieve edges for
+     * @return the first edge index of the vertex
+     */
+    @Override
+    public int getEdgesStart(int vertex) {
+        return offsets.get(vertex);
+    }
+
+    /**
+     * Get the index after the last outgoing edge of the provided vertex
+     * @param vertex the vertex to retrieve edges for
+     * @return the exclusive end edge index of the vertex
+     */
+    @Override
+    public int getEdgesEnd(int vertex) {
+        return offsets.get(vertex + 1);
+    }
+
+    /**
+     * Get the source vertex of the provided edge
+     * @param edge the edge index
+     * @return the source vertex index
+     */
+    @Override
+    public int getSource(int edge) {
+        return sources.get(edge);
+    }
+
+    /**
+     * Get the target vertex of the provided edge
+     * @param edge the edge index
+     * @return the target vertex index
+     */
+    @Override
+    public int getTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    /**
+     * Get the km distance of the provided edge
+     * @param edge the edge index
+     * @return the distance of the edge
+     */
+    @Override
+    public double getDistance(int edge) {
+        return distances.get(edge);
+    }
+
+    /**
+     * Get the mode of the provided edge. This is an index into the transport methods of this graph
+     * @param edge the edge index
+     * @return the mode of the edge
+     */
+    @Override
+    public int getMode(int edge) {
+        return modes.get(edge);
+    }
+
+    /**
+     * Get the transport method travelling the provided edge
+     * @param edge the edge index
+     * @return the transport method of the edge
+     */
+    @Override
+    public TransportMethod getTransportMethod(int edge) {
+        return transportMethods[modes.get(edge)];
+    }
+
+    /**
+     * Get the edge at the provided edge index. The snapshot doesn't hold the original edges, so a new route leg
+     * travelling the edge is returned
+     * @param edge the edge index
+     * @return the route leg travelling the edge
+     */
+    @Override
+    public Edge getEdge(int edge) {
+        return toRouteLeg(edge);
+    }
+}
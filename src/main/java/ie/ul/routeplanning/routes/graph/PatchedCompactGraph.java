@@ -0,0 +1,756 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * This class is a version of a compact graph created by {@link CompactGraph#update(EdgeUpdate)}. It overlays the root
+ * graph the first of a run of updates was applied to: a vertex whose outgoing edges no update has changed reads them
+ * from the root, while the outgoing edges of each changed vertex are appended after the edges of the root, so their
+ * indices start at the edge count of the root. The incoming edges of the vertices whose incoming edges changed are
+ * appended after the reverse adjacency of the root in the same way.
+ *
+ * The appended edges are kept in arrays shared by the versions updated one after another, which are only ever appended
+ * to, so each version reads them up to its own number of appended edges and is never affected by later versions. An
+ * update therefore only copies the edges of the vertices it changes and the table of changed vertices, rather than the
+ * graph. Updating a version that has already been updated copies its appended edges instead of appending to them.
+ *
+ * Like every compact graph, a version cannot be modified once created, so it can be shared between any number of searches
+ */
+final class PatchedCompactGraph extends CompactGraph {
+    /**
+     * The versions are flattened once the appended edges outnumber the edges of the root divided by this, since searches
+     * read the edges of changed vertices more slowly and the removed edges are still held
+     */
+    private static final int FLATTEN_DIVISOR = 4;
+    /**
+     * The graph this version overlays
+     */
+    private final CompactGraph root;
+    /**
+     * The number of edges of the root, which is the index of the first appended edge
+     */
+    private final int rootEdgeCount;
+    /**
+     * The appended edges shared with the versions updated from this one
+     */
+    private final Appended appended;
+    /**
+     * The number of appended edges in this version
+     */
+    private final int appendedEdgeCount;
+    /**
+     * The number of appended incoming edge positions in this version
+     */
+    private final int appendedReverseCount;
+    /**
+     * The source vertex of each appended edge
+     */
+    private final int[] sources;
+    /**
+     * The target vertex of each appended edge
+     */
+    private final int[] targets;
+    /**
+     * The km distance of each appended edge
+     */
+    private final double[] distances;
+    /**
+     * The index into transportMethods of the transport method travelling each appended edge
+     */
+    private final int[] modes;
+    /**
+     * The original edge of each appended edge
+     */
+    private final Edge[] edges;
+    /**
+     * The incoming edges appended for the vertices whose incoming edges changed
+     */
+    private final int[] reverseEdges;
+    /**
+     * The transport methods of the root followed by those only used by appended edges
+     */
+    private final TransportMethod[] transportMethods;
+    /**
+     * The vertices whose outgoing edges changed, in ascending order
+     */
+    private final int[] changedVertices;
+    /**
+     * The first and the end edge index of the outgoing edges of each changed vertex, two entries per vertex
+     */
+    private final int[] changedRanges;
+    /**
+     * The vertices whose incoming edges changed, in ascending order
+     */
+    private final int[] reverseChangedVertices;
+    /**
+     * The first and the end position of the incoming edges of each vertex whose incoming edges changed, two entries per
+     * vertex
+     */
+    private final int[] reverseChangedRanges;
+
+    /**
+     * Construct a version of the root graph from the appended edges and the tables of the changed vertices
+     * @param root the graph the version overlays
+     * @param transportMethods the transport methods of the root followed by those only used by appended edges
+     * @param appended the appended edges, which must already hold the edges of this version
+     * @param changedVertices the vertices whose outgoing edges changed in ascending order
+     * @param changedRanges the range of edges of each changed vertex
+     * @param reverseChangedVertices the vertices whose incoming edges changed in ascending order
+     * @param reverseChangedRanges the range of incoming edge positions of each of these vertices
+     */
+    private PatchedCompactGraph(CompactGraph root, TransportMethod[] transportMethods, Appended appended, int[] changedVertices,
+                                int[] changedRanges, int[] reverseChangedVertices, int[] reverseChangedRanges) {
+        super(root, transportMethods);
+        this.root = root;
+        this.rootEdgeCount = root.getEdgeCount();
+        this.appended = appended;
+        this.appendedEdgeCount = appended.edgeCount;
+        this.appendedReverseCount = appended.reverseCount;
+        this.sources = appended.sources;
+        this.targets = appended.targets;
+        this.distances = appended.distances;
+        this.modes = appended.modes;
+        this.edges = appended.edges;
+        this.reverseEdges = appended.reverseEdges;
+        this.transportMethods = transportMethods;
+        this.changedVertices = changedVertices;
+        this.changedRanges = changedRanges;
+        this.reverseChangedVertices = reverseChangedVertices;
+        this.reverseChangedRanges = reverseChangedRanges;
+    }
+
+    /**
+     * Create a new version of the provided graph with the update applied, flattening it if the appended edges have grown
+     * too large
+     * @param graph the graph to update, which is a root or a version
+     * @param update the update to apply
+     * @return the new version of the graph
+     * @throws IllegalStateException if the update refers to waypoints that aren't vertices, or edges that don't exist
+     */
+    static CompactGraph update(CompactGraph graph, EdgeUpdate update) {
+        PatchedCompactGraph previous = (graph instanceof PatchedCompactGraph) ? (PatchedCompactGraph) graph:null;
+        CompactGraph root = (previous == null) ? graph:previous.root;
+        SortedMap<Integer, List<Edge>> rows = new TreeMap<>();
+        List<TransportMethod> transportMethods = new ArrayList<>(graph.getTransportMethods());
+        int added = 0;
+
+        for (Waypoint start : update.getStarts()) {
+            int vertex = graph.indexOf(start);
+
+            if (vertex == -1)
+                throw new IllegalStateException("The waypoint " + start + " is not a vertex in the graph");
+
+            List<Edge> row = new ArrayList<>(graph.getEdgesEnd(vertex) - graph.getEdgesStart(vertex));
+
+            for (int edge = graph.getEdgesStart(vertex); edge < graph.getEdgesEnd(vertex); edge++)
+                row.add(graph.getEdge(edge));
+
+            row = update.apply(start, row);
+
+            for (Edge edge : row)
+                targetOf(graph, edge); // validates the edges before anything is appended
+
+            rows.put(vertex, row);
+            added += row.size();
+        }
+
+        int appendedEdgeCount = (previous == null) ? 0:previous.appendedEdgeCount;
+
+        if (appendedEdgeCount + added > root.getEdgeCount() / FLATTEN_DIVISOR)
+            return flatten(graph, rows, transportMethods);
+
+        Appended staged = new Appended();
+        int[] changedVertices = new int[rows.size()], changedRanges = new int[rows.size() * 2];
+        SortedMap<Integer, List<Integer>> incoming = new TreeMap<>();
+        int changed = 0;
+
+        for (Map.Entry<Integer, List<Edge>> row : rows.entrySet()) {
+            int source = row.getKey();
+            changedVertices[changed] = source;
+            changedRanges[changed * 2] = root.getEdgeCount() + appendedEdgeCount + staged.edgeCount;
+
+            for (Edge edge : row.getValue()) {
+                int target = targetOf(graph, edge);
+                incoming.computeIfAbsent(target, t -> new ArrayList<>()).add(root.getEdgeCount() + appendedEdgeCount + staged.edgeCount);
+                staged.append(source, target, edge.getDistance(), modeOf(transportMethods, edge.getTransportMethod()),
+                        vertexEdge(graph, source, target, edge));
+            }
+
+            changedRanges[changed * 2 + 1] = root.getEdgeCount() + appendedEdgeCount + staged.edgeCount;
+            changed++;
+        }
+
+        for (int source : rows.keySet()) {
+            for (int edge = graph.getEdgesStart(source); edge < graph.getEdgesEnd(source); edge++)
+                incoming.putIfAbsent(graph.getTarget(edge), Collections.emptyList()); // the vertices the removed edges led to
+        }
+
+        int appendedReverseCount = (previous == null) ? 0:previous.appendedReverseCount;
+        int[] reverseChangedVertices = new int[incoming.size()], reverseChangedRanges = new int[incoming.size() * 2];
+        changed = 0;
+
+        for (Map.Entry<Integer, List<Integer>> target : incoming.entrySet()) {
+            int vertex = target.getKey();
+            reverseChangedVertices[changed] = vertex;
+            reverseChangedRanges[changed * 2] = root.getEdgeCount() + appendedReverseCount + staged.reverseCount;
+
+            for (int position = graph.getReverseEdgesStart(vertex); position < graph.getReverseEdgesEnd(vertex); position++) {
+                int edge = graph.getReverseEdge(position);
+
+                if (!rows.containsKey(graph.getSource(edge))) // the edges of the changed vertices were all appended again
+                    staged.appendReverse(edge);
+            }
+
+            for (int edge : target.getValue())
+                staged.appendReverse(edge);
+
+            reverseChangedRanges[changed * 2 + 1] = root.getEdgeCount() + appendedReverseCount + staged.reverseCount;
+            changed++;
+        }
+
+        Appended appended = (previous == null) ? new Appended():previous.appended;
+
+        synchronized (appended) {
+            if (previous != null && (appended.edgeCount != appendedEdgeCount || appended.reverseCount != appendedReverseCount))
+                appended = appended.copy(appendedEdgeCount, appendedReverseCount); // a later version has appended to it
+
+            appended.appendAll(staged);
+
+            int[][] outgoing = (previous == null) ? new int[][]{changedVertices, changedRanges}
+                    :merge(previous.changedVertices, previous.changedRanges, changedVertices, changedRanges);
+            int[][] reverse = (previous == null) ? new int[][]{reverseChangedVertices, reverseChangedRanges}
+                    :merge(previous.reverseChangedVertices, previous.reverseChangedRanges, reverseChangedVertices, reverseChangedRanges);
+
+            return new PatchedCompactGraph(root, transportMethods.toArray(new TransportMethod[0]), appended,
+                    outgoing[0], outgoing[1], reverse[0], reverse[1]);
+        }
+    }
+
+    /**
+     * Build the dense form of the provided graph with the outgoing edges of the provided vertices replaced
+     * @param graph the graph to flatten
+     * @param rows the new outgoing edges of each changed vertex
+     * @param transportMethods the transport methods of the graph, which transport methods new to the graph are added to
+     * @return the dense graph
+     */
+    private static CompactGraph flatten(CompactGraph graph, Map<Integer, List<Edge>> rows, List<TransportMethod> transportMethods) {
+        int vertexCount = graph.getVertexCount(), edgeCount = 0;
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            List<Edge> row = rows.get(vertex);
+            edgeCount += (row == null) ? graph.getEdgesEnd(vertex) - graph.getEdgesStart(vertex):row.size();
+        }
+
+        Waypoint[] vertices = new Waypoint[vertexCount];
+        int[] offsets = new int[vertexCount + 1];
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        double[] distances = new double[edgeCount];
+        int[] modes = new int[edgeCount];
+        Edge[] edges = new Edge[edgeCount];
+        int edge = 0;
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            List<Edge> row = rows.get(vertex);
+            vertices[vertex] = graph.getVertex(vertex);
+            offsets[vertex] = edge;
+
+            if (row == null) {
+                for (int e = graph.getEdgesStart(vertex); e < graph.getEdgesEnd(vertex); e++, edge++) {
+                    sources[edge] = vertex;
+                    targets[edge] = graph.getTarget(e);
+                    distances[edge] = graph.getDistance(e);
+                    modes[edge] = graph.getMode(e); // the transport methods of the graph come first, so its modes are unchanged
+                    edges[edge] = graph.getEdge(e);
+                }
+            } else {
+                for (Edge e : row) {
+                    int target = targetOf(graph, e);
+                    sources[edge] = vertex;
+                    targets[edge] = target;
+                    distances[edge] = e.getDistance();
+                    modes[edge] = modeOf(transportMethods, e.getTransportMethod());
+                    edges[edge++] = vertexEdge(graph, vertex, target, e);
+                }
+            }
+        }
+
+        offsets[vertexCount] = edge;
+
+        return new CompactGraph(vertices, offsets, sources, targets, distances, modes,
+                transportMethods.toArray(new TransportMethod[0]), edges);
+    }
+
+    /**
+     * Find the target vertex of the provided edge
+     * @param graph the graph of the edge
+     * @param edge the edge to find the target of
+     * @return the index of the target vertex
+     * @throws IllegalStateException if the end of the edge isn't a vertex in the graph
+     */
+    private static int targetOf(CompactGraph graph, Edge edge) {
+        int target = graph.indexOf(edge.getEnd());
+
+        if (target == -1)
+            throw new IllegalStateException("The end of the edge " + edge + " is not a vertex in the graph");
+
+        return target;
+    }
+
+    /**
+     * Find the mode of the provided transport method, adding it to the transport methods if no transport method has its
+     * name
+     * @param transportMethods the transport methods indexed by mode
+     * @param transportMethod the transport method to find
+     * @return the mode of the transport method
+     */
+    private static int modeOf(List<TransportMethod> transportMethods, TransportMethod transportMethod) {
+        for (int mode = 0; mode < transportMethods.size(); mode++) {
+            TransportMethod method = transportMethods.get(mode);
+
+            if (method == transportMethod || Objects.equals(method.getName(), transportMethod.getName()))
+                return mode;
+        }
+
+        transportMethods.add(transportMethod);
+
+        return transportMethods.size() - 1;
+    }
+
+    /**
+     * Get the provided edge with the waypoints of the graph's vertices, so that the edges of a version refer to the same
+     * waypoints as the rest of the graph even if the update was made with other instances of them
+     * @param graph the graph of the edge
+     * @param source the source vertex of the edge
+     * @param target the target vertex of the edge
+     * @param edge the edge
+     * @return the edge, or a copy of it between the vertices of the graph
+     */
+    private static Edge vertexEdge(CompactGraph graph, int source, int target, Edge edge) {
+        Waypoint start = graph.getVertex(source), end = graph.getVertex(target);
+
+        return (edge.getStart() == start && edge.getEnd() == end) ? edge
+                :new RouteLeg(start, end, edge.getTransportMethod(), edge.getDistance());
+    }
+
+    /**
+     * Merge the tables of changed vertices of a previous version with the vertices changed by an update, the ranges of
+     * the update replacing those of the previous version
+     * @param vertices the changed vertices of the previous version in ascending order
+     * @param ranges the ranges of the changed vertices of the previous version
+     * @param updatedVertices the vertices changed by the update in ascending order
+     * @param updatedRanges the ranges of the vertices changed by the update
+     * @return the merged vertices followed by the merged ranges
+     */
+    private static int[][] merge(int[] vertices, int[] ranges, int[] updatedVertices, int[] updatedRanges) {
+        int[] mergedVertices = new int[vertices.length + updatedVertices.length];
+        int[] mergedRanges = new int[mergedVertices.length * 2];
+        int i = 0, j = 0, merged = 0;
+
+        while (i < vertices.length || j < updatedVertices.length) {
+            boolean updated = i == vertices.length || (j < updatedVertices.length && updatedVertices[j] <= vertices[i]);
+
+            if (updated && i < vertices.length && vertices[i] == updatedVertices[j])
+                i++; // replaced by the update
+
+            int[] from = (updated) ? updatedRanges:ranges;
+            int index = (updated) ? j++:i++;
+            mergedVertices[merged] = (updated) ? updatedVertices[index]:vertices[index];
+            mergedRanges[merged * 2] = from[index * 2];
+            mergedRanges[merged * 2 + 1] = from[index * 2 + 1];
+            merged++;
+        }
+
+        return new int[][]{Arrays.copyOf(mergedVertices, merged), Arrays.copyOf(mergedRanges, merged * 2)};
+    }
+
+    /**
+     * Get the number of edges in this graph, including the edges removed by updates
+     * @return the number of edges
+     */
+    @Override
+    public int getEdgeCount() {
+        return rootEdgeCount + appendedEdgeCount;
+    }
+
+    /**
+     * Get the latitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the latitude in degrees, or NaN if the vertex has no coordinates
+     */
+    @Override
+    public double getLatitude(int vertex) {
+        return root.getLatitude(vertex);
+    }
+
+    /**
+     * Get the longitude of the provided vertex
+     * @param vertex the index of the vertex
+     * @return the longitude in degrees, or NaN if the vertex has no coordinates
+     */
+    @Override
+    public double getLongitude(int vertex) {
+        return root.getLongitude(vertex);
+    }
+
+    /**
+     * Get the data derived from only the vertices of this graph, which is shared with the root
+     * @param key the key identifying the derived data. It must implement equals and hashCode
+     * @param function the function deriving the data from the vertices of this graph
+     * @param <T> the type of the derived data
+     * @return the derived data
+     */
+    @Override
+    public <T> T getVertexDerived(Object key, Function<CompactGraph, T> function) {
+        return root.getVertexDerived(key, function);
+    }
+
+    /**
+     * Get the values derived for every edge under the provided key. The values of the root's edges and of the edges
+     * appended by earlier versions are shared, so only the values of the edges appended since are calculated
+     * @param key the key identifying the values. It must implement equals and hashCode
+     * @param width the number of values of each edge
+     * @param function the function calculating the values of a range of edges
+     * @return the values of each edge, which may continue past the edges of this version
+     */
+    @Override
+    public double[] getEdgeValues(Object key, int width, EdgeValues function) {
+        return getDerived(key, graph -> appended.values(key, width, function, this));
+    }
+
+    /**
+     * Determines if the provided edge was replaced by an update, i.e. it isn't in the range of its source vertex
+     * @param edge the edge index
+     * @return true if the edge was removed, false if not
+     */
+    @Override
+    public boolean isRemoved(int edge) {
+        int source = getSource(edge);
+
+        return edge < getEdgesStart(source) || edge >= getEdgesEnd(source);
+    }
+
+    /**
+     * Get the index of the first outgoing edge of the provided vertex
+     * @param vertex the vertex to retrieve edges for
+     * @return the first edge index of the vertex
+     */
+    @Override
+    public int getEdgesStart(int vertex) {
+        int changed = Arrays.binarySearch(changedVertices, vertex);
+
+        return (changed < 0) ? root.getEdgesStart(vertex):changedRanges[changed * 2];
+    }
+
+    /**
+     * Get the index after the last outgoing edge of the provided vertex
+     * @param vertex the vertex to retrieve edges for
+     * @return the exclusive end edge index of the vertex
+     */
+    @Override
+    public int getEdgesEnd(int vertex) {
+        int changed = Arrays.binarySearch(changedVertices, vertex);
+
+        return (changed < 0) ? root.getEdgesEnd(vertex):changedRanges[changed * 2 + 1];
+    }
+
+    /**
+     * Get the position of the first incoming edge of the provided vertex
+     * @param vertex the vertex to retrieve incoming edges for
+     * @return the first position of the incoming edges of the vertex
+     */
+    @Override
+    public int getReverseEdgesStart(int vertex) {
+        int changed = Arrays.binarySearch(reverseChangedVertices, vertex);
+
+        return (changed < 0) ? root.getReverseEdgesStart(vertex):reverseChangedRanges[changed * 2];
+    }
+
+    /**
+     * Get the position after the last incoming edge of the provided vertex
+     * @param vertex the vertex to retrieve incoming edges for
+     * @return the exclusive end position of the incoming edges of the vertex
+     */
+    @Override
+    public int getReverseEdgesEnd(int vertex) {
+        int changed = Arrays.binarySearch(reverseChangedVertices, vertex);
+
+        return (changed < 0) ? root.getReverseEdgesEnd(vertex):reverseChangedRanges[changed * 2 + 1];
+    }
+
+    /**
+     * Get the edge index at the provided position of the reverse adjacency
+     * @param position the position between getReverseEdgesStart and getReverseEdgesEnd of a vertex
+     * @return the index of the incoming edge
+     */
+    @Override
+    public int getReverseEdge(int position) {
+        return (position < rootEdgeCount) ? root.getReverseEdge(position):reverseEdges[position - rootEdgeCount];
+    }
+
+    /**
+     * Get the source vertex of the provided edge
+     * @param edge the edge index
+     * @return the source vertex index
+     */
+    @Override
+    public int getSource(int edge) {
+        return (edge < rootEdgeCount) ? root.getSource(edge):sources[edge - rootEdgeCount];
+    }
+
+    /**
+     * Get the target vertex of the provided edge
+     * @param edge the edge index
+     * @return the target vertex index
+     */
+    @Override
+    public int getTarget(int edge) {
+        return (edge < rootEdgeCount) ? root.getTarget(edge):targets[edge - rootEdgeCount];
+    }
+
+    /**
+     * Get the km distance of the provided edge
+     * @param edge the edge index
+     * @return the distance of the edge
+     */
+    @Override
+    public double getDistance(int edge) {
+        return (edge < rootEdgeCount) ? root.getDistance(edge):distances[edge - rootEdgeCount];
+    }
+
+    /**
+     * Get the mode of the provided edge. This is an index into the transport methods of this graph
+     * @param edge the edge index
+     * @return the mode of the edge
+     */
+    @Override
+    public int getMode(int edge) {
+        return (edge < rootEdgeCount) ? root.getMode(edge):modes[edge - rootEdgeCount];
+    }
+
+    /**
+     * Get the transport method travelling the provided edge
+     * @param edge the edge index
+     * @return the transport method of the edge
+     */
+    @Override
+    public TransportMethod getTransportMethod(int edge) {
+        return transportMethods[getMode(edge)];
+    }
+
+    /**
+     * Get the original edge the provided edge index was built from
+     * @param edge the edge index
+     * @return the original edge
+     */
+    @Override
+    public Edge getEdge(int edge) {
+        return (edge < rootEdgeCount) ? root.getEdge(edge):edges[edge - rootEdgeCount];
+    }
+
+    /**
+     * Get this version in dense form, with the removed edges left out and the edges of each vertex numbered in order
+     * @return the dense form of this graph
+     */
+    @Override
+    public CompactGraph flatten() {
+        return flatten(this, Collections.emptyMap(), new ArrayList<>(getTransportMethods()));
+    }
+
+    /**
+     * The edges appended by a run of versions, and the values derived for them. The arrays are only ever appended to,
+     * and are replaced by larger copies when full, so the arrays a version captured are never changed below its own
+     * number of appended edges. Guarded by this
+     */
+    private static final class Appended {
+        /**
+         * The capacity of new arrays
+         */
+        private static final int INITIAL_CAPACITY = 16;
+        /**
+         * The source vertex of each appended edge
+         */
+        private int[] sources = new int[INITIAL_CAPACITY];
+        /**
+         * The target vertex of each appended edge
+         */
+        private int[] targets = new int[INITIAL_CAPACITY];
+        /**
+         * The km distance of each appended edge
+         */
+        private double[] distances = new double[INITIAL_CAPACITY];
+        /**
+         * The mode of each appended edge
+         */
+        private int[] modes = new int[INITIAL_CAPACITY];
+        /**
+         * The original edge of each appended edge
+         */
+        private Edge[] edges = new Edge[INITIAL_CAPACITY];
+        /**
+         * The number of appended edges
+         */
+        private int edgeCount;
+        /**
+         * The appended incoming edges
+         */
+        private int[] reverseEdges = new int[INITIAL_CAPACITY];
+        /**
+         * The number of appended incoming edges
+         */
+        private int reverseCount;
+        /**
+         * The edge values derived under each key
+         */
+        private final Map<Object, Values> values = new HashMap<>();
+
+        /**
+         * Append an edge
+         * @param source the source vertex of the edge
+         * @param target the target vertex of the edge
+         * @param distance the km distance of the edge
+         * @param mode the mode of the edge
+         * @param edge the original edge
+         */
+        private void append(int source, int target, double distance, int mode, Edge edge) {
+            ensureEdgeCapacity(edgeCount + 1);
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            distances[edgeCount] = distance;
+            modes[edgeCount] = mode;
+            edges[edgeCount++] = edge;
+        }
+
+        /**
+         * Append an incoming edge
+         * @param edge the index of the incoming edge
+         */
+        private void appendReverse(int edge) {
+            ensureReverseCapacity(reverseCount + 1);
+            reverseEdges[reverseCount++] = edge;
+        }
+
+        /**
+         * Append the edges and incoming edges of the provided staged edges
+         * @param staged the edges to append
+         */
+        private void appendAll(Appended staged) {
+            ensureEdgeCapacity(edgeCount + staged.edgeCount);
+            System.arraycopy(staged.sources, 0, sources, edgeCount, staged.edgeCount);
+            System.arraycopy(staged.targets, 0, targets, edgeCount, staged.edgeCount);
+            System.arraycopy(staged.distances, 0, distances, edgeCount, staged.edgeCount);
+            System.arraycopy(staged.modes, 0, modes, edgeCount, staged.edgeCount);
+            System.arraycopy(staged.edges, 0, edges, edgeCount, staged.edgeCount);
+            edgeCount += staged.edgeCount;
+
+            ensureReverseCapacity(reverseCount + staged.reverseCount);
+            System.arraycopy(staged.reverseEdges, 0, reverseEdges, reverseCount, staged.reverseCount);
+            reverseCount += staged.reverseCount;
+        }
+
+        /**
+         * Copy the first of the appended edges and incoming edges
+         * @param edgeCount the number of edges to copy
+         * @param reverseCount the number of incoming edges to copy
+         * @return the copied edges
+         */
+        private Appended copy(int edgeCount, int reverseCount) {
+            Appended copy = new Appended();
+            copy.ensureEdgeCapacity(edgeCount);
+            copy.ensureReverseCapacity(reverseCount);
+            copy.edgeCount = edgeCount;
+            copy.reverseCount = reverseCount;
+            System.arraycopy(sources, 0, copy.sources, 0, edgeCount);
+            System.arraycopy(targets, 0, copy.targets, 0, edgeCount);
+            System.arraycopy(distances, 0, copy.distances, 0, edgeCount);
+            System.arraycopy(modes, 0, copy.modes, 0, edgeCount);
+            System.arraycopy(edges, 0, copy.edges, 0, edgeCount);
+            System.arraycopy(reverseEdges, 0, copy.reverseEdges, 0, reverseCount);
+
+            return copy;
+        }
+
+        /**
+         * Replace the edge arrays with larger copies if they can't hold the provided number of edges
+         * @param capacity the number of edges the arrays must hold
+         */
+        private void ensureEdgeCapacity(int capacity) {
+            if (capacity > sources.length) {
+                int length = Math.max(capacity, sources.length * 2);
+                sources = Arrays.copyOf(sources, length);
+                targets = Arrays.copyOf(targets, length);
+                distances = Arrays.copyOf(distances, length);
+                modes = Arrays.copyOf(modes, length);
+                edges = Arrays.copyOf(edges, length);
+            }
+        }
+
+        /**
+         * Replace the incoming edge array with a larger copy if it can't hold the provided number of incoming edges
+         * @param capacity the number of incoming edges the array must hold
+         */
+        private void ensureReverseCapacity(int capacity) {
+            if (capacity > reverseEdges.length)
+                reverseEdges = Arrays.copyOf(reverseEdges, Math.max(capacity, reverseEdges.length * 2));
+        }
+
+        /**
+         * Get the values of the edges of the provided version under the provided key, copying the values of the root the
+         * first time and then only calculating the values of the edges appended since they were last requested
+         * @param key the key identifying the values
+         * @param width the number of values of each edge
+         * @param function the function calculating the values of a range of edges
+         * @param graph the version to get the values of
+         * @return the values, which may continue past the edges of the version
+         */
+        private synchronized double[] values(Object key, int width, EdgeValues function, PatchedCompactGraph graph) {
+            Values derived = values.get(key);
+            int edgeCount = graph.getEdgeCount();
+
+            if (derived == null) {
+                double[] rootValues = graph.root.getEdgeValues(key, width, function);
+                derived = new Values(Arrays.copyOf(rootValues, (graph.rootEdgeCount + sources.length) * width), graph.rootEdgeCount);
+                values.put(key, derived);
+            }
+
+            if (derived.edgeCount < edgeCount) {
+                if (derived.values.length < edgeCount * width) // copied, so the values other versions hold are unchanged
+                    derived.values = Arrays.copyOf(derived.values, (graph.rootEdgeCount + sources.length) * width);
+
+                function.calculate(graph, derived.edgeCount, edgeCount, derived.values);
+                derived.edgeCount = edgeCount;
+            }
+
+            return derived.values;
+        }
+    }
+
+    /**
+     * The values derived for the edges under one key
+     */
+    private static final class Values {
+        /**
+         * The values of each edge, width values per edge
+         */
+        private double[] values;
+        /**
+         * The number of edges whose values have been calculated
+         */
+        private int edgeCount;
+
+        /**
+         * Construct the values
+         * @param values the values of each edge
+         * @param edgeCount the number of edges whose values have been calculated
+         */
+        private Values(double[] values, int edgeCount) {
+            this.values = values;
+            this.edgeCount = edgeCount;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ie.ul.routeplanning.routes.waypoints.WaypointSource;
 import ie.ul.routeplanning.transport.TransportMethod;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
@@ -33,4 +34,38 @@ public final class BuilderFactory {
     public static GraphBuilder fromFile(File file, WaypointSource waypointSource, Map<String, TransportMethod> transportMethods) {
         return fromFile(file.getAbsolutePath(), waypointSource, transportMethods);
     }
+
+    /**
+     * Construct a GraphBuilder loading a graph from the provided snapshot file, as written by
+     * {@link ie.ul.routeplanning.routes.graph.GraphSnapshot}
+     * @param file the snapshot file
+     * @param transportMethods a map mapping name to transport methods. Expected to have all the transport methods in the snapshot
+     * @return the GraphBuilder to load the graph from the snapshot
+     */
+    public static GraphBuilder fromSnapshot(Path file, Map<String, TransportMethod> transportMethods) {
+        return new SnapshotGraphBuilder(file, transportMethods);
+    }
+
+    /**
+     * Construct a GraphBuilder generating a synthetic multimodal network with the provided number of waypoints. The same
+     * number of waypoints and seed always generate the same graph
+     * @param vertices the number of waypoints in the graph
+     * @param seed the seed of the random numbers generating the graph
+     * @param transportMethods a map mapping name to transport methods. Expected to have all the supported transport methods
+     * @return the GraphBuilder generating the synthetic network
+     */
+    public static GraphBuilder synthetic(int vertices, long seed, Map<String, TransportMethod> transportMethods) {
+        return new SyntheticGraphBuilder(vertices, seed, transportMethods);
+    }
+
+    /**
+     * Construct a GraphBuilder generating a synthetic multimodal network with the provided number of waypoints, using
+     * new transport methods rather than those in the database
+     * @param vertices the number of waypoints in the graph
+     * @param seed the seed of the random numbers generating the graph
+     * @return the GraphBuilder generating the synthetic network
+     */
+    public static GraphBuilder synthetic(int vertices, long seed) {
+        return new SyntheticGraphBuilder(vertices, seed);
+    }
 }
@@ -1,8 +1,7 @@
 package ie.ul.routeplanning.routes.graph.creation;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import ie.ul.routeplanning.routes.RouteLeg;
 import ie.ul.routeplanning.routes.Waypoint;
 import ie.ul.routeplanning.routes.waypoints.WaypointException;
@@ -13,26 +12,19 @@ import ie.ul.routeplanning.transport.TransportMethod;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
- * This class reads edges from a JSON file and constructs a graph from it
+ * This class reads edges from a JSON file and constructs a graph from it. The file is read a token at a time, and each
+ * edge is validated and added to the graph as soon as it is read, so the edges are never all held in memory at once
+ * alongside the graph, and files much larger than the graph they describe can be loaded
  */
 public class JSONGraphBuilder implements GraphBuilder {
 	/**
 	 * The JSONFile containing the edges
 	 */
 	private final String jsonFile;
-	/**
-	 * The GSON object to read out edges file
-	 */
-	private final Gson gson;
 	/**
 	 * The JSONGraphBuilder requires waypoints to parse the vertices, so it uses a WaypointSource
 	 */
@@ -50,35 +42,27 @@ public class JSONGraphBuilder implements GraphBuilder {
 	 */
 	public JSONGraphBuilder(String jsonFile, WaypointSource waypointSource, Map<String, TransportMethod> transportMethods) {
 		this.jsonFile = jsonFile;
-		this.gson = new Gson();
 		this.waypointSource = waypointSource;
 		this.transportMethods = transportMethods;
 	}
 
 	/**
-	 * Construct an edge from start to end. It checks if a vertex has already been created for start and end using the
-	 * createdVertices map. If not, it creates a vertex using the corresponding waypoint, else, it uses the existing vertec
-	 * @param createdVertices the map of vertices creating for that waypoint ID
+	 * Construct an edge from the start to the end waypoint of the provided edge
 	 * @param waypoints the map of waypoints and their IDs
 	 * @param jsonEdge the json parsed edge
 	 * @return the constructed edge
+	 * @throws BuilderException if the start or end waypoint doesn't exist
 	 */
-	private RouteLeg constructEdge(Map<Long, Waypoint> createdVertices, Map<Long, Waypoint> waypoints, JSONEdge jsonEdge) {
-		long start = jsonEdge.start, end = jsonEdge.end;
+	private RouteLeg constructEdge(Map<Long, Waypoint> waypoints, JSONEdge jsonEdge) throws BuilderException {
+		Waypoint startPoint = waypoints.get(jsonEdge.start);
 
-		Waypoint startPoint = createdVertices.get(start);
-
-		if (startPoint == null) {
-			startPoint = waypoints.get(start);
-			createdVertices.put(start, startPoint);
-		}
+		if (startPoint == null)
+			throw new BuilderException("No Waypoint with ID: " + jsonEdge.start + " exists");
 
-		Waypoint endPoint = createdVertices.get(end);
+		Waypoint endPoint = waypoints.get(jsonEdge.end);
 
-		if (endPoint == null) {
-			endPoint = waypoints.get(end);
-			createdVertices.put(end, endPoint);
-		}
+		if (endPoint == null)
+			throw new BuilderException("No Waypoint with ID: " + jsonEdge.end + " exists");
 
 		TransportMethod transportMethod = transportMethods.get(jsonEdge.transportMethod);
 
@@ -89,51 +73,101 @@ public class JSONGraphBuilder implements GraphBuilder {
 	}
 
 	/**
-	 * Reads the edges ensuring each edge has corresponding waypoints and then constructs an edge
+	 * Reads the edges one at a time, ensuring each edge has corresponding waypoints, and adds each to the graph as it
+	 * is read
 	 * @param graph the graph to add new edges to
-	 * @param edges the list of read edges
+	 * @param reader the reader positioned at the start of the array of edges
 	 * @param waypoints the map of waypoints read from the waypoint source
+	 * @throws IOException if the file can't be read or isn't valid JSON
 	 * @throws BuilderException if the graph has inconsistencies (undefined waypoints etc.)
 	 */
-	private void buildGraph(Graph graph, List<JSONEdge> edges, Map<Long, Waypoint> waypoints) throws BuilderException {
-		Map<Long, Waypoint> createdVertices = new HashMap<>();
+	private void buildGraph(Graph graph, JsonReader reader, Map<Long, Waypoint> waypoints) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_ARRAY)
+			throw new BuilderException("The edges in: " + jsonFile + " must be a JSON array");
 
-		for (JSONEdge edge : edges) {
-			long start = edge.start, end = edge.end;
+		reader.beginArray();
 
-			if (!waypoints.containsKey(start))
-				throw new BuilderException("No Waypoint with ID: " + start + " exists");
+		while (reader.hasNext()) {
+			JSONEdge edge = readEdge(reader);
+			graph.addEdge(constructEdge(waypoints, edge), edge.bidirectional);
+		}
 
-			if (!waypoints.containsKey(end))
-				throw new BuilderException("No Waypoint with ID: " + start + " exists");
+		reader.endArray();
+	}
 
-			graph.addEdge(constructEdge(createdVertices, waypoints, edge), edge.isBidirectional());
+	/**
+	 * Read the next edge object from the provided reader. Unknown properties are skipped
+	 * @param reader the reader positioned at the start of the edge
+	 * @return the read edge
+	 * @throws IOException if the file can't be read or isn't valid JSON
+	 * @throws BuilderException if the edge is malformed or missing one of its required properties
+	 */
+	private JSONEdge readEdge(JsonReader reader) throws IOException {
+		String path = reader.getPath();
+		Long start = null, end = null;
+		String transportMethod = null;
+		Double distance = null;
+		boolean bidirectional = true;
+
+		try {
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				String property = reader.nextName();
+
+				if (reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if (property.equals("start")) {
+					start = reader.nextLong();
+				} else if (property.equals("end")) {
+					end = reader.nextLong();
+				} else if (property.equals("transportMethod")) {
+					transportMethod = reader.nextString();
+				} else if (property.equals("distance")) {
+					distance = reader.nextDouble();
+				} else if (property.equals("bidirectional")) {
+					bidirectional = reader.nextBoolean();
+				} else {
+					reader.skipValue();
+				}
+			}
+
+			reader.endObject();
+		} catch (IllegalStateException | NumberFormatException ex) {
+			throw new BuilderException("Malformed edge at " + path + " in: " + jsonFile, ex);
 		}
+
+		if (start == null || end == null || transportMethod == null || distance == null)
+			throw new BuilderException("The edge at " + path + " in: " + jsonFile + " must have a start, end, transportMethod and distance");
+
+		return new JSONEdge(start, end, transportMethod, distance, bidirectional);
 	}
 
 	/**
-	 * Builds and returns the constructed graph by using the waypoint source and edges JSON file
+	 * Builds and returns the constructed graph by using the waypoint source and edges JSON file. Where the waypoint
+	 * source has several waypoints with the same ID, the first is used
 	 * @return the constructed graph
 	 * @throws BuilderException if an error occurs building the graph
 	 */
 	@Override
 	public Graph buildGraph() throws BuilderException {
-		try (BufferedReader reader = new BufferedReader(new FileReader(jsonFile))) {
-			Map<Long, Waypoint> waypoints = waypointSource.getWaypoints().stream()
-					.collect(Collectors.toMap(Waypoint::getId, Function.identity()));
-			Type edgeListType = new TypeToken<ArrayList<JSONEdge>>(){}.getType();
-			ArrayList<JSONEdge> edges = gson.fromJson(reader, edgeListType);
+		Map<Long, Waypoint> waypoints = new HashMap<>();
+
+		try {
+			waypointSource.forEachWaypoint(waypoint -> waypoints.putIfAbsent(waypoint.getId(), waypoint));
+		} catch (WaypointException ex) {
+			throw new BuilderException("Failed to build graph", ex);
+		}
 
+		try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(jsonFile)))) {
 			Graph graph = new Graph();
-			buildGraph(graph, edges, waypoints);
+			buildGraph(graph, reader, waypoints);
 
 			return graph;
-		} catch (WaypointException ex) {
-			throw new BuilderException("Failed to build graph", ex);
+		} catch (BuilderException ex) {
+			throw ex;
 		} catch (IOException ex) {
 			throw new BuilderException("Failed to read edges JSON file: " + jsonFile, ex);
-		} catch (JsonParseException ex) {
-			throw new BuilderException("Failed to read JSON", ex);
 		}
 	}
 
@@ -160,7 +194,7 @@ public class JSONGraphBuilder implements GraphBuilder {
 		/**
 		 * Indicates that the edge is bidirectional. The default is true
 		 */
-		private final Boolean bidirectional;
+		private final boolean bidirectional;
 
 		/**
 		 * Constructs a JSONEdge with the provided parameters
@@ -170,31 +204,12 @@ public class JSONGraphBuilder implements GraphBuilder {
 		 * @param distance the distance between the start and end in km
 		 * @param bidirectional true if the edge is bidirectional, false if it is only one way
 		 */
-		private JSONEdge(long start, long end, String transportMethod, double distance, Boolean bidirectional) {
+		private JSONEdge(long start, long end, String transportMethod, double distance, boolean bidirectional) {
 			this.start = start;
 			this.end = end;
 			this.transportMethod = transportMethod;
 			this.distance = distance;
-			this.bidirectional = bidirectional == null || bidirectional;
-		}
-
-		/**
-		 * Constructs a bidirectional JSONEdge with the provided parameters
-		 * @param start the start vertex waypoint ID
-		 * @param end the end vertex waypoint ID
-		 * @param transportMethod the transport method travelling this edge
-		 * @param distance the distance between the start and end in km
-		 */
-		private JSONEdge(long start, long end, String transportMethod, float distance) {
-			this(start, end, transportMethod, distance, true);
-		}
-
-		/**
-		 * This should be called rather than directly accessing the property
-		 * @return true if bidirectional, false if not. If null, the default true is returned
-		 */
-		private boolean isBidirectional() {
-			return bidirectional == null || bidirectional;
+			this.bidirectional = bidirectional;
 		}
 	}
 }
@@ -0,0 +1,48 @@
+package ie.ul.routeplanning.routes.graph.creation;
+
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphSnapshot;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * This class loads a graph from a binary snapshot file written by {@link GraphSnapshot#write(Graph, Path)}. The file is
+ * memory-mapped rather than parsed, so the graph is loaded without creating its edges
+ */
+public class SnapshotGraphBuilder implements GraphBuilder {
+	/**
+	 * The snapshot file to load
+	 */
+	private final Path snapshotFile;
+	/**
+	 * A map of transport method names to the corresponding instances
+	 */
+	private final Map<String, TransportMethod> transportMethods;
+
+	/**
+	 * Constructs a builder loading the provided snapshot file
+	 * @param snapshotFile the snapshot file to load
+	 * @param transportMethods a map mapping name to transport methods. Expected to have all the transport methods in the snapshot
+	 */
+	public SnapshotGraphBuilder(Path snapshotFile, Map<String, TransportMethod> transportMethods) {
+		this.snapshotFile = snapshotFile;
+		this.transportMethods = transportMethods;
+	}
+
+	/**
+	 * Loads and returns the graph from the snapshot file. The graph is already frozen
+	 * @return the loaded graph
+	 * @throws BuilderException if the snapshot can't be read or isn't a valid snapshot
+	 */
+	@Override
+	public Graph buildGraph() throws BuilderException {
+		try {
+			return GraphSnapshot.load(snapshotFile, transportMethods);
+		} catch (IOException ex) {
+			throw new BuilderException("Failed to load graph snapshot: " + snapshotFile, ex);
+		}
+	}
+}
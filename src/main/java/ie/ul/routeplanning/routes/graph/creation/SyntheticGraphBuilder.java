@@ -0,0 +1,215 @@
+package ie.ul.routeplanning.routes.graph.creation;
+
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphUtils;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class generates a synthetic multimodal travel network of any size, so the routing can be tested and benchmarked
+ * at a scale the shipped network doesn't reach. The same size and seed always generate the same graph.
+ *
+ * The waypoints are laid out on a jittered square grid. Every waypoint has a road to the waypoints next to it in its row
+ * and column, travelled by car, and some roads also have a bus service, so the road network is always connected. Sparse
+ * overlays are then added on top of the roads:
+ * <ul>
+ *     <li>Every STATION_SPACING rows and columns, a waypoint is a station, with rail lines to the next stations along
+ *     its row and column</li>
+ *     <li>Every FERRY_SPACING rows, ferries cross between waypoints far apart in the row</li>
+ *     <li>Every AIRPORT_SPACING rows and columns, a waypoint is an airport, with flights to other random airports</li>
+ * </ul>
+ * Distances are the great circle distances between the waypoints, stretched by a random factor for roads and ferries
+ * since they don't travel in straight lines
+ */
+public class SyntheticGraphBuilder implements GraphBuilder {
+	/**
+	 * The spacing in degrees between neighbouring waypoints, unless the grid would be too big to fit in the latitudes
+	 */
+	public static final double SPACING = 0.05;
+	/**
+	 * The maximum span in degrees of the grid along each side
+	 */
+	public static final double MAX_SPAN = 120.0;
+	/**
+	 * The number of rows and columns between stations
+	 */
+	public static final int STATION_SPACING = 10;
+	/**
+	 * The number of rows between rows with ferries
+	 */
+	public static final int FERRY_SPACING = 25;
+	/**
+	 * The number of rows and columns between airports
+	 */
+	public static final int AIRPORT_SPACING = 50;
+	/**
+	 * The number of flights from each airport to other airports
+	 */
+	public static final int FLIGHTS_PER_AIRPORT = 3;
+	/**
+	 * The probability of a road also having a bus service
+	 */
+	public static final double BUS_PROBABILITY = 0.3;
+	/**
+	 * The number of waypoints in the graph
+	 */
+	private final int vertices;
+	/**
+	 * The seed of the random numbers generating the graph
+	 */
+	private final long seed;
+	/**
+	 * The transport method of each kind of leg, by the name of the transport method
+	 */
+	private final Map<String, TransportMethod> transportMethods;
+
+	/**
+	 * Construct a builder generating a graph with the provided number of waypoints from the provided seed
+	 * @param vertices the number of waypoints in the graph
+	 * @param seed the seed of the random numbers generating the graph
+	 * @param transportMethods a map mapping name to transport methods. Expected to have every method of
+	 *                         {@link TransportFactory.TransportMethods}
+	 */
+	public SyntheticGraphBuilder(int vertices, long seed, Map<String, TransportMethod> transportMethods) {
+		if (vertices < 1)
+			throw new IllegalStateException("A synthetic graph must have at least 1 waypoint");
+
+		this.vertices = vertices;
+		this.seed = seed;
+		this.transportMethods = transportMethods;
+	}
+
+	/**
+	 * Construct a builder generating a graph with the provided number of waypoints from the provided seed, using new
+	 * transport methods from the {@link TransportFactory}
+	 * @param vertices the number of waypoints in the graph
+	 * @param seed the seed of the random numbers generating the graph
+	 */
+	public SyntheticGraphBuilder(int vertices, long seed) {
+		this(vertices, seed, createTransportMethods());
+	}
+
+	/**
+	 * Create one of each transport method
+	 * @return the transport methods by name
+	 */
+	private static Map<String, TransportMethod> createTransportMethods() {
+		Map<String, TransportMethod> transportMethods = new HashMap<>();
+
+		for (TransportFactory.TransportMethods method : TransportFactory.TransportMethods.values())
+			transportMethods.put(method.label, TransportFactory.getTransportMethod(method));
+
+		return transportMethods;
+	}
+
+	/**
+	 * Get the transport method for the provided kind of leg
+	 * @param method the kind of transport
+	 * @return the transport method
+	 */
+	private TransportMethod getTransportMethod(TransportFactory.TransportMethods method) {
+		TransportMethod transportMethod = transportMethods.get(method.label);
+
+		if (transportMethod == null)
+			throw new IllegalStateException("No TransportMethod instance available for: " + method.label);
+
+		return transportMethod;
+	}
+
+	/**
+	 * Add a leg in both directions between the provided waypoints
+	 * @param graph the graph to add the leg to
+	 * @param start the start of the leg
+	 * @param end the end of the leg
+	 * @param method the kind of transport of the leg
+	 * @param stretch the factor the straight line distance between the waypoints is multiplied by
+	 */
+	private void addLeg(Graph graph, Waypoint start, Waypoint end, TransportFactory.TransportMethods method, double stretch) {
+		double distance = GraphUtils.greatCircleDistance(start.getLatitude(), start.getLongitude(), end.getLatitude(), end.getLongitude());
+
+		graph.addEdge(new RouteLeg(start, end, getTransportMethod(method), distance * stretch), true);
+	}
+
+	/**
+	 * Generate the graph
+	 * @return the generated graph
+	 */
+	@Override
+	public Graph buildGraph() {
+		Random random = new Random(seed);
+		int side = (int) Math.ceil(Math.sqrt(vertices));
+		double spacing = Math.min(SPACING, MAX_SPAN / side);
+		double origin = -side * spacing / 2; // the grid is centred on the equator and prime meridian
+		Waypoint[] waypoints = new Waypoint[vertices];
+		Graph graph = new Graph();
+
+		for (int i = 0; i < vertices; i++) {
+			double latitude = origin + (i / side + 0.3 * random.nextDouble()) * spacing;
+			double longitude = origin + (i % side + 0.3 * random.nextDouble()) * spacing;
+
+			waypoints[i] = new Waypoint((long) i + 1, "Synthetic " + (i + 1), latitude, longitude);
+			graph.addVertex(waypoints[i]);
+		}
+
+		for (int i = 0; i < vertices; i++) { // roads
+			for (int j : new int[]{i + 1, i + side}) {
+				if (j < vertices && (j != i + 1 || j % side != 0)) {
+					double stretch = 1.1 + 0.4 * random.nextDouble();
+					addLeg(graph, waypoints[i], waypoints[j], TransportFactory.TransportMethods.CAR, stretch);
+
+					if (random.nextDouble() < BUS_PROBABILITY)
+						addLeg(graph, waypoints[i], waypoints[j], TransportFactory.TransportMethods.BUS, stretch);
+				}
+			}
+		}
+
+		for (int i = 0; i < vertices; i += STATION_SPACING) { // rail lines between the stations along each row and column
+			if ((i / side) % STATION_SPACING != 0 || (i % side) % STATION_SPACING != 0)
+				continue;
+
+			int right = i + STATION_SPACING, below = i + STATION_SPACING * side;
+
+			if (right < vertices && right / side == i / side)
+				addLeg(graph, waypoints[i], waypoints[right], TransportFactory.TransportMethods.TRAIN, 1.05);
+
+			if (below < vertices)
+				addLeg(graph, waypoints[i], waypoints[below], TransportFactory.TransportMethods.TRAIN, 1.05);
+		}
+
+		for (int row = 0; row * side < vertices; row += FERRY_SPACING) { // ferry crossings within the rows
+			int rowStart = row * side, rowLength = Math.min(side, vertices - rowStart);
+
+			for (int crossing = 0; crossing < rowLength / (2 * FERRY_SPACING); crossing++) {
+				int from = random.nextInt(rowLength), to = random.nextInt(rowLength);
+
+				if (Math.abs(from - to) >= FERRY_SPACING)
+					addLeg(graph, waypoints[rowStart + from], waypoints[rowStart + to], TransportFactory.TransportMethods.FERRY, 1.2);
+			}
+		}
+
+		int[] airports = new int[vertices];
+		int airportCount = 0;
+
+		for (int i = 0; i < vertices; i++) {
+			if ((i / side) % AIRPORT_SPACING == 0 && (i % side) % AIRPORT_SPACING == 0)
+				airports[airportCount++] = i;
+		}
+
+		for (int a = 0; a < airportCount && airportCount > 1; a++) { // flights between random airports
+			for (int flight = 0; flight < FLIGHTS_PER_AIRPORT; flight++) {
+				int b = random.nextInt(airportCount);
+
+				if (b != a)
+					addLeg(graph, waypoints[airports[a]], waypoints[airports[b]], TransportFactory.TransportMethods.PLANE, 1.0);
+			}
+		}
+
+		return graph;
+	}
+}
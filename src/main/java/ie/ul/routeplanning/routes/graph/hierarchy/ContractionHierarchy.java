@@ -0,0 +1,317 @@
+package ie.ul.routeplanning.routes.graph.hierarchy;
+
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * This class represents a contraction hierarchy over a {@link CompactGraph} for one {@link WeightProfile}.
+ *
+ * Every vertex has a rank in the order it was contracted in, and the hierarchy holds the arcs of the graph plus the
+ * shortcuts added while contracting. Arc indices below the edge count of the graph are the edges of the graph, and higher
+ * indices are shortcuts, which each replace a pair of arcs through a lower ranked vertex. The shortest path between any
+ * two vertices can be found by searching only upwards in rank from the source and only upwards in rank, over reversed
+ * arcs, from the target.
+ *
+ * A hierarchy is immutable once built, so it can be shared between any number of queries. Use
+ * {@link #forGraph(CompactGraph, WeightProfile)} to get the hierarchy built once per graph and profile
+ */
+public class ContractionHierarchy {
+    /**
+     * The graph this hierarchy was built over
+     */
+    private final CompactGraph graph;
+    /**
+     * The profile of the weights this hierarchy was built with
+     */
+    private final WeightProfile profile;
+    /**
+     * The rank of each vertex, i.e. the order it was contracted in
+     */
+    private final int[] ranks;
+    /**
+     * The source vertex of each arc
+     */
+    private final int[] arcSources;
+    /**
+     * The target vertex of each arc
+     */
+    private final int[] arcTargets;
+    /**
+     * The weight of each arc
+     */
+    private final double[] arcWeights;
+    /**
+     * The first of the two arcs each shortcut replaces, indexed by arc minus the edge count of the graph
+     */
+    private final int[] firstChildren;
+    /**
+     * The second of the two arcs each shortcut replaces, indexed by arc minus the edge count of the graph
+     */
+    private final int[] secondChildren;
+    /**
+     * The offset into upwardArcs of the first upward arc of each vertex, with a trailing offset equal to its length
+     */
+    private final int[] upwardOffsets;
+    /**
+     * The arcs leading to a higher ranked vertex, grouped by source vertex
+     */
+    private final int[] upwardArcs;
+    /**
+     * The offset into downwardArcs of the first downward arc of each vertex, with a trailing offset equal to its length
+     */
+    private final int[] downwardOffsets;
+    /**
+     * The arcs leading from a higher ranked vertex, grouped by target vertex
+     */
+    private final int[] downwardArcs;
+
+    /**
+     * Construct a hierarchy from the contraction order and arcs produced by a {@link ContractionHierarchyBuilder}
+     * @param graph the graph the hierarchy was built over
+     * @param profile the profile of the weights the hierarchy was built with
+     * @param ranks the rank of each vertex
+     * @param obsolete the arcs that are only kept for unpacking shortcuts and are not travelled by queries
+     * @param arcSources the source vertex of each arc
+     * @param arcTargets the target vertex of each arc
+     * @param arcWeights the weight of each arc
+     * @param firstChildren the first arc replaced by each shortcut
+     * @param secondChildren the second arc replaced by each shortcut
+     */
+    ContractionHierarchy(CompactGraph graph, WeightProfile profile, int[] ranks, BitSet obsolete, int[] arcSources,
+                         int[] arcTargets, double[] arcWeights, int[] firstChildren, int[] secondChildren) {
+        this.graph = graph;
+        this.profile = profile;
+        this.ranks = ranks;
+        this.arcSources = arcSources;
+        this.arcTargets = arcTargets;
+        this.arcWeights = arcWeights;
+        this.firstChildren = firstChildren;
+        this.secondChildren = secondChildren;
+
+        int vertices = ranks.length;
+        this.upwardOffsets = new int[vertices + 1];
+        this.downwardOffsets = new int[vertices + 1];
+
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            if (obsolete.get(arc))
+                continue;
+
+            if (isUpward(arc))
+                upwardOffsets[arcSources[arc] + 1]++;
+            else
+                downwardOffsets[arcTargets[arc] + 1]++;
+        }
+
+        for (int i = 0; i < vertices; i++) {
+            upwardOffsets[i + 1] += upwardOffsets[i];
+            downwardOffsets[i + 1] += downwardOffsets[i];
+        }
+
+        this.upwardArcs = new int[upwardOffsets[vertices]];
+        this.downwardArcs = new int[downwardOffsets[vertices]];
+        int[] nextUpward = Arrays.copyOf(upwardOffsets, vertices), nextDownward = Arrays.copyOf(downwardOffsets, vertices);
+
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            if (obsolete.get(arc))
+                continue;
+
+            if (isUpward(arc))
+                upwardArcs[nextUpward[arcSources[arc]]++] = arc;
+            else
+                downwardArcs[nextDownward[arcTargets[arc]]++] = arc;
+        }
+    }
+
+    /**
+     * Get the hierarchy of the provided graph and profile, building it the first time it is requested for the graph
+     * @param graph the graph to get the hierarchy of
+     * @param profile the profile of the weights to get the hierarchy for
+     * @return the contraction hierarchy
+     */
+    public static ContractionHierarchy forGraph(CompactGraph graph, WeightProfile profile) {
+        return graph.getDerived(Arrays.asList(ContractionHierarchy.class, profile),
+                g -> new ContractionHierarchyBuilder(g, profile).build());
+    }
+
+    /**
+     * Determines if the provided arc leads from a lower ranked vertex to a higher ranked vertex
+     * @param arc the arc to check
+     * @return true if the arc leads upwards, false if downwards
+     */
+    private boolean isUpward(int arc) {
+        return ranks[arcSources[arc]] < ranks[arcTargets[arc]];
+    }
+
+    /**
+     * Get the graph this hierarchy was built over
+     * @return the graph of the hierarchy
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Get the profile of the weights this hierarchy was built with
+     * @return the weight profile
+     */
+    public WeightProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Get the rank of the provided vertex
+     * @param vertex the vertex index
+     * @return the rank of the vertex
+     */
+    public int getRank(int vertex) {
+        return ranks[vertex];
+    }
+
+    /**
+     * Get the number of arcs in the hierarchy, i.e. the edges of the graph plus the shortcuts
+     * @return the number of arcs
+     */
+    public int getArcCount() {
+        return arcSources.length;
+    }
+
+    /**
+     * Get the number of shortcuts added to the graph
+     * @return the number of shortcuts
+     */
+    public int getShortcutCount() {
+        return firstChildren.length;
+    }
+
+    /**
+     * Get the source vertex of the provided arc
+     * @param arc the arc index
+     * @return the source vertex index
+     */
+    public int getArcSource(int arc) {
+        return arcSources[arc];
+    }
+
+    /**
+     * Get the target vertex of the provided arc
+     * @param arc the arc index
+     * @return the target vertex index
+     */
+    public int getArcTarget(int arc) {
+        return arcTargets[arc];
+    }
+
+    /**
+     * Get the weight of the provided arc
+     * @param arc the arc index
+     * @return the weight of the arc
+     */
+    public double getArcWeight(int arc) {
+        return arcWeights[arc];
+    }
+
+    /**
+     * Get the position of the first arc leading upwards from the provided vertex. The upward arcs of a vertex are in the
+     * range getUpwardStart(vertex) inclusive to getUpwardEnd(vertex) exclusive and are retrieved with getUpwardArc
+     * @param vertex the vertex index
+     * @return the first position of the upward arcs of the vertex
+     */
+    public int getUpwardStart(int vertex) {
+        return upwardOffsets[vertex];
+    }
+
+    /**
+     * Get the position after the last arc leading upwards from the provided vertex
+     * @param vertex the vertex index
+     * @return the exclusive end position of the upward arcs of the vertex
+     */
+    public int getUpwardEnd(int vertex) {
+        return upwardOffsets[vertex + 1];
+    }
+
+    /**
+     * Get the arc at the provided position of the upward arcs
+     * @param position the position between getUpwardStart and getUpwardEnd of a vertex
+     * @return the arc index
+     */
+    public int getUpwardArc(int position) {
+        return upwardArcs[position];
+    }
+
+    /**
+     * Get the position of the first arc leading downwards into the provided vertex. Travelling these arcs backwards
+     * from the target of a query leads upwards in rank. The downward arcs of a vertex are in the range
+     * getDownwardStart(vertex) inclusive to getDownwardEnd(vertex) exclusive and are retrieved with getDownwardArc
+     * @param vertex the vertex index
+     * @return the first position of the downward arcs into the vertex
+     */
+    public int getDownwardStart(int vertex) {
+        return downwardOffsets[vertex];
+    }
+
+    /**
+     * Get the position after the last arc leading downwards into the provided vertex
+     * @param vertex the vertex index
+     * @return the exclusive end position of the downward arcs into the vertex
+     */
+    public int getDownwardEnd(int vertex) {
+        return downwardOffsets[vertex + 1];
+    }
+
+    /**
+     * Get the arc at the provided position of the downward arcs
+     * @param position the position between getDownwardStart and getDownwardEnd of a vertex
+     * @return the arc index
+     */
+    public int getDownwardArc(int position) {
+        return downwardArcs[position];
+    }
+
+    /**
+     * Unpack the provided arcs into the edges of the graph they stand for, replacing each shortcut by the arcs it was
+     * made from until only edges are left
+     * @param arcs the arcs of a path in order
+     * @return the edge indices of the path in order
+     */
+    public int[] unpack(int[] arcs) {
+        int edgeCount = graph.getEdgeCount();
+        int[] edges = new int[arcs.length];
+        int length = 0;
+        Deque<Integer> stack = new ArrayDeque<>();
+
+        for (int arc : arcs) {
+            stack.push(arc);
+
+            while (!stack.isEmpty()) {
+                int current = stack.pop();
+
+                if (current < edgeCount) {
+                    if (length == edges.length)
+                        edges = Arrays.copyOf(edges, edges.length * 2);
+
+                    edges[length++] = current;
+                } else {
+                    stack.push(secondChildren[current - edgeCount]); // pushed first so the first child is unpacked first
+                    stack.push(firstChildren[current - edgeCount]);
+                }
+            }
+        }
+
+        return Arrays.copyOf(edges, length);
+    }
+
+    /**
+     * Returns a string representation of the object.
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return String.format("ContractionHierarchy of %d vertices with %d shortcuts for %s", ranks.length, getShortcutCount(), profile);
+    }
+}
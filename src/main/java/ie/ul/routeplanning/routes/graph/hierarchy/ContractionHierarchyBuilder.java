@@ -0,0 +1,429 @@
+package ie.ul.routeplanning.routes.graph.hierarchy;
+
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class builds a {@link ContractionHierarchy} by contracting the vertices of a graph one at a time.
+ *
+ * Contracting a vertex v removes it from the remaining graph. For each pair of arcs u to v and v to x, a witness search
+ * looks for a path from u to x avoiding v that is no longer than going through v. If there is none, a shortcut from u to
+ * x is added so that the distances between the remaining vertices don't change.
+ *
+ * The order vertices are contracted in is chosen by a priority queue of the edge difference (the shortcuts contracting
+ * the vertex would add minus the arcs it would remove) plus the number of already contracted neighbours, which spreads
+ * contraction evenly across the graph. The priorities of the neighbours of a vertex are updated when it is contracted,
+ * and a vertex's priority is recalculated when it reaches the head of the queue, so it is moved back if it has changed
+ * for any other reason
+ */
+public class ContractionHierarchyBuilder {
+    /**
+     * The maximum number of vertices a witness search settles before giving up and assuming there is no witness. Giving
+     * up early only adds unnecessary shortcuts, it never makes the hierarchy incorrect
+     */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    /**
+     * The settle limit of the witness searches used to count the shortcuts for a vertex's priority. This is only an
+     * estimate, so a cheaper search is used
+     */
+    private static final int SIMULATION_SETTLE_LIMIT = 50;
+    /**
+     * The graph being contracted
+     */
+    private final CompactGraph graph;
+    /**
+     * The profile of the weights being contracted with
+     */
+    private final WeightProfile profile;
+    /**
+     * The number of arcs added so far, including the edges of the graph
+     */
+    private int arcCount;
+    /**
+     * The source vertex of each arc
+     */
+    private int[] arcSources;
+    /**
+     * The target vertex of each arc
+     */
+    private int[] arcTargets;
+    /**
+     * The weight of each arc
+     */
+    private double[] arcWeights;
+    /**
+     * The first arc replaced by each arc, or -1 for the edges of the graph
+     */
+    private int[] firstChildren;
+    /**
+     * The second arc replaced by each arc, or -1 for the edges of the graph
+     */
+    private int[] secondChildren;
+    /**
+     * The arcs that are no longer travelled, i.e. loops and arcs replaced by a shorter shortcut between the same vertices.
+     * They are kept in the hierarchy since other shortcuts may still unpack into them
+     */
+    private final BitSet obsolete = new BitSet();
+    /**
+     * The outgoing arcs of each vertex
+     */
+    private final int[][] outgoing;
+    /**
+     * The number of outgoing arcs of each vertex
+     */
+    private final int[] outgoingCounts;
+    /**
+     * The incoming arcs of each vertex
+     */
+    private final int[][] incoming;
+    /**
+     * The number of incoming arcs of each vertex
+     */
+    private final int[] incomingCounts;
+    /**
+     * True for each vertex that has been contracted
+     */
+    private final boolean[] contracted;
+    /**
+     * The number of neighbours of each vertex that have been contracted
+     */
+    private final int[] contractedNeighbours;
+    /**
+     * The tentative distance of each vertex in the current witness search
+     */
+    private final double[] witnessDistances;
+    /**
+     * The witness search each entry of witnessDistances was set by, so the distances don't need resetting between searches
+     */
+    private final int[] witnessSearches;
+    /**
+     * The number of the current witness search
+     */
+    private int witnessSearch;
+    /**
+     * The queue of the witness searches, reused by every search
+     */
+    private final IndexedHeap witnessHeap;
+
+    /**
+     * Create a builder contracting the provided graph with the weights of the provided profile
+     * @param graph the graph to build the hierarchy over
+     * @param profile the profile of the weights to build the hierarchy with
+     */
+    public ContractionHierarchyBuilder(CompactGraph graph, WeightProfile profile) {
+        this.graph = graph;
+        this.profile = profile;
+
+        int vertices = graph.getVertexCount(), edges = graph.getEdgeCount();
+        this.arcSources = new int[edges * 2 + 1];
+        this.arcTargets = new int[arcSources.length];
+        this.arcWeights = new double[arcSources.length];
+        this.firstChildren = new int[arcSources.length];
+        this.secondChildren = new int[arcSources.length];
+        this.outgoing = new int[vertices][];
+        this.outgoingCounts = new int[vertices];
+        this.incoming = new int[vertices][];
+        this.incomingCounts = new int[vertices];
+        this.contracted = new boolean[vertices];
+        this.contractedNeighbours = new int[vertices];
+        this.witnessDistances = new double[vertices];
+        this.witnessSearches = new int[vertices];
+        this.witnessHeap = new IndexedHeap(vertices);
+
+        for (int v = 0; v < vertices; v++) {
+            outgoing[v] = new int[4];
+            incoming[v] = new int[4];
+        }
+
+        double[] weights = graph.getWeights(profile);
+
+        for (int edge = 0; edge < edges; edge++) {
+            if (graph.isRemoved(edge))
+                obsolete.set(arcCount++); // keeps the arc of each edge at the index of the edge without travelling it
+            else
+                addArc(graph.getSource(edge), graph.getTarget(edge), weights[edge], -1, -1);
+        }
+    }
+
+    /**
+     * Add an arc to the hierarchy
+     * @param source the source vertex of the arc
+     * @param target the target vertex of the arc
+     * @param weight the weight of the arc
+     * @param firstChild the first arc the arc replaces, or -1 if it is an edge of the graph
+     * @param secondChild the second arc the arc replaces, or -1 if it is an edge of the graph
+     */
+    private void addArc(int source, int target, double weight, int firstChild, int secondChild) {
+        if (arcCount == arcSources.length) {
+            int length = arcCount * 2;
+            arcSources = Arrays.copyOf(arcSources, length);
+            arcTargets = Arrays.copyOf(arcTargets, length);
+            arcWeights = Arrays.copyOf(arcWeights, length);
+            firstChildren = Arrays.copyOf(firstChildren, length);
+            secondChildren = Arrays.copyOf(secondChildren, length);
+        }
+
+        int arc = arcCount++;
+        arcSources[arc] = source;
+        arcTargets[arc] = target;
+        arcWeights[arc] = weight;
+        firstChildren[arc] = firstChild;
+        secondChildren[arc] = secondChild;
+
+        if (source == target) {
+            obsolete.set(arc); // a loop can never be part of a shortest path, so it isn't travelled
+        } else {
+            if (outgoingCounts[source] == outgoing[source].length)
+                outgoing[source] = Arrays.copyOf(outgoing[source], outgoing[source].length * 2);
+
+            if (incomingCounts[target] == incoming[target].length)
+                incoming[target] = Arrays.copyOf(incoming[target], incoming[target].length * 2);
+
+            outgoing[source][outgoingCounts[source]++] = arc;
+            incoming[target][incomingCounts[target]++] = arc;
+        }
+    }
+
+    /**
+     * Remove the arcs from the source vertex to the target vertex from the remaining graph. This is used when a shortcut
+     * between the two is added, which the witness search has shown is shorter than any existing arc between them
+     * @param source the source vertex of the arcs
+     * @param target the target vertex of the arcs
+     */
+    private void removeArcs(int source, int target) {
+        int remaining = 0;
+
+        for (int i = 0; i < outgoingCounts[source]; i++) {
+            int arc = outgoing[source][i];
+
+            if (arcTargets[arc] == target)
+                obsolete.set(arc);
+            else
+                outgoing[source][remaining++] = arc;
+        }
+
+        if (remaining == outgoingCounts[source])
+            return;
+
+        outgoingCounts[source] = remaining;
+        remaining = 0;
+
+        for (int i = 0; i < incomingCounts[target]; i++) {
+            int arc = incoming[target][i];
+
+            if (!obsolete.get(arc))
+                incoming[target][remaining++] = arc;
+        }
+
+        incomingCounts[target] = remaining;
+    }
+
+    /**
+     * Search for the distances from the provided source to the vertices of the remaining graph without passing through
+     * the vertex being contracted. Vertices further away than the provided limit are not reached, and vertices beyond the
+     * settle limit may be left with a tentative distance, which is still the weight of a real path
+     * @param source the vertex to search from
+     * @param avoid the vertex being contracted
+     * @param limit the largest distance of interest
+     * @param settleLimit the maximum number of vertices to settle
+     */
+    private void witnessSearch(int source, int avoid, double limit, int settleLimit) {
+        witnessSearch++;
+        witnessDistances[source] = 0;
+        witnessSearches[source] = witnessSearch;
+
+        witnessHeap.clear(); // the previous search may have stopped at its settle limit with vertices still queued
+        witnessHeap.update(source, 0);
+        int settled = 0;
+
+        while (!witnessHeap.isEmpty() && settled < settleLimit) {
+            int u = witnessHeap.poll();
+            settled++;
+
+            for (int i = 0; i < outgoingCounts[u]; i++) {
+                int arc = outgoing[u][i], v = arcTargets[arc];
+
+                if (v != avoid && !contracted[v]) {
+                    double distance = witnessDistances[u] + arcWeights[arc];
+
+                    if (distance <= limit && distance < witnessDistance(v)) {
+                        witnessDistances[v] = distance;
+                        witnessSearches[v] = witnessSearch;
+                        witnessHeap.update(v, distance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the distance of the provided vertex found by the current witness search
+     * @param vertex the vertex index
+     * @return the distance found, or infinity if the vertex wasn't reached
+     */
+    private double witnessDistance(int vertex) {
+        return (witnessSearches[vertex] == witnessSearch) ? witnessDistances[vertex]:Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Find the shortcuts needed to contract the provided vertex, adding them to the hierarchy if requested
+     * @param vertex the vertex to contract
+     * @param add true to add the shortcuts, false to only count them
+     * @return the number of shortcuts needed
+     */
+    private int contract(int vertex, boolean add) {
+        int shortcuts = 0;
+        int incomingCount = incomingCounts[vertex], outgoingCount = outgoingCounts[vertex]; // shortcuts never touch the vertex itself
+
+        for (int i = 0; i < incomingCount; i++) {
+            int in = incoming[vertex][i], u = arcSources[in];
+
+            if (contracted[u])
+                continue;
+
+            double limit = -1;
+
+            for (int j = 0; j < outgoingCount; j++) {
+                int out = outgoing[vertex][j], x = arcTargets[out];
+
+                if (!contracted[x] && x != u)
+                    limit = Math.max(limit, arcWeights[in] + arcWeights[out]);
+            }
+
+            if (limit < 0)
+                continue;
+
+            witnessSearch(u, vertex, limit, (add) ? WITNESS_SETTLE_LIMIT:SIMULATION_SETTLE_LIMIT);
+
+            for (int j = 0; j < outgoingCount; j++) {
+                int out = outgoing[vertex][j], x = arcTargets[out];
+                double weight = arcWeights[in] + arcWeights[out];
+
+                if (!contracted[x] && x != u && witnessDistance(x) > weight) {
+                    shortcuts++;
+
+                    if (add) {
+                        removeArcs(u, x);
+                        addArc(u, x, weight, in, out);
+                        witnessDistances[x] = weight; // the shortcut is a witness for any parallel arcs through the vertex
+                        witnessSearches[x] = witnessSearch;
+                    }
+                }
+            }
+        }
+
+        return shortcuts;
+    }
+
+    /**
+     * Count the arcs between the provided vertex and vertices that have not been contracted
+     * @param vertex the vertex index
+     * @return the number of remaining arcs of the vertex
+     */
+    private int remainingArcs(int vertex) {
+        int arcs = 0;
+
+        for (int i = 0; i < outgoingCounts[vertex]; i++)
+            arcs += contracted[arcTargets[outgoing[vertex][i]]] ? 0:1;
+
+        for (int i = 0; i < incomingCounts[vertex]; i++)
+            arcs += contracted[arcSources[incoming[vertex][i]]] ? 0:1;
+
+        return arcs;
+    }
+
+    /**
+     * Calculate the contraction priority of the provided vertex. Vertices with a lower priority are contracted first
+     * @param vertex the vertex index
+     * @return the priority of the vertex
+     */
+    private int priority(int vertex) {
+        return contract(vertex, false) - remainingArcs(vertex) + contractedNeighbours[vertex];
+    }
+
+    /**
+     * Update a neighbour of a vertex that was just contracted. The arcs to contracted vertices are removed from its
+     * adjacency, since they are never travelled again while contracting, and its priority is recalculated
+     * @param vertex the neighbour of the contracted vertex
+     * @param contractions the number of vertices contracted so far
+     * @param queue the queue of vertices to contract
+     * @param updated the number of contractions when each vertex was last updated, so each neighbour is only updated once
+     */
+    private void updateNeighbour(int vertex, int contractions, IndexedHeap queue, int[] updated) {
+        if (contracted[vertex] || updated[vertex] == contractions)
+            return;
+
+        updated[vertex] = contractions;
+        contractedNeighbours[vertex]++;
+        outgoingCounts[vertex] = removeContracted(outgoing[vertex], outgoingCounts[vertex], arcTargets);
+        incomingCounts[vertex] = removeContracted(incoming[vertex], incomingCounts[vertex], arcSources);
+
+        queue.update(vertex, priority(vertex));
+    }
+
+    /**
+     * Remove the arcs leading to or from contracted vertices from an adjacency list
+     * @param arcs the adjacency list
+     * @param count the number of arcs in the list
+     * @param ends the vertex at the other end of each arc
+     * @return the number of arcs left in the list
+     */
+    private int removeContracted(int[] arcs, int count, int[] ends) {
+        int remaining = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (!contracted[ends[arcs[i]]])
+                arcs[remaining++] = arcs[i];
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Contract every vertex of the graph and build the hierarchy
+     * @return the built contraction hierarchy
+     */
+    public ContractionHierarchy build() {
+        int vertices = graph.getVertexCount(), edges = graph.getEdgeCount();
+        int[] ranks = new int[vertices];
+        int[] updated = new int[vertices];
+        Arrays.fill(updated, -1);
+        IndexedHeap queue = new IndexedHeap(vertices);
+
+        for (int v = 0; v < vertices; v++)
+            queue.update(v, priority(v));
+
+        int rank = 0;
+
+        while (!queue.isEmpty()) {
+            int v = queue.peek();
+            int priority = priority(v);
+
+            if (priority != queue.getKey(v)) {
+                queue.update(v, priority); // the priority was out of date, so contract it when it comes up again
+                continue;
+            }
+
+            queue.poll();
+            contract(v, true);
+            contracted[v] = true;
+            ranks[v] = rank++;
+
+            for (int i = 0; i < outgoingCounts[v]; i++)
+                updateNeighbour(arcTargets[outgoing[v][i]], rank, queue, updated);
+
+            for (int i = 0; i < incomingCounts[v]; i++)
+                updateNeighbour(arcSources[incoming[v][i]], rank, queue, updated);
+        }
+
+        int shortcuts = arcCount - edges;
+
+        return new ContractionHierarchy(graph, profile, ranks, obsolete, Arrays.copyOf(arcSources, arcCount),
+                Arrays.copyOf(arcTargets, arcCount), Arrays.copyOf(arcWeights, arcCount),
+                Arrays.copyOfRange(firstChildren, edges, edges + shortcuts), Arrays.copyOfRange(secondChildren, edges, edges + shortcuts));
+    }
+}
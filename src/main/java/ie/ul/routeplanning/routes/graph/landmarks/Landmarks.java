@@ -0,0 +1,226 @@
+package ie.ul.routeplanning.routes.graph.landmarks;
+
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.IndexedHeap;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+
+import java.util.Arrays;
+
+/**
+ * This class holds a set of landmark vertices of a {@link CompactGraph} and the precomputed weights of the shortest paths
+ * from every landmark to every vertex and from every vertex to every landmark, for one {@link WeightProfile}.
+ *
+ * By the triangle inequality, for any landmark L the shortest path from v to t weighs at least d(L, t) - d(L, v) and at
+ * least d(v, L) - d(t, L). The largest of these over all landmarks is a lower bound that only depends on the edge
+ * weights, so unlike a bound from coordinates it holds however the coordinates relate to the weights (the ALT bound).
+ *
+ * Landmarks are selected by the farthest point strategy: each new landmark is the vertex furthest from the landmarks
+ * selected so far, so the landmarks end up spread around the edge of the graph, where they give the best bounds.
+ * Landmarks are immutable once built and are shared by all queries on the same graph
+ */
+public class Landmarks {
+    /**
+     * The number of landmarks selected by default
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 8;
+    /**
+     * The profile of the weights the distances were calculated with
+     */
+    private final WeightProfile profile;
+    /**
+     * The vertex index of each landmark
+     */
+    private final int[] landmarks;
+    /**
+     * The weight of the shortest path from each landmark to each vertex, or infinity if there is none
+     */
+    private final double[][] fromLandmarks;
+    /**
+     * The weight of the shortest path from each vertex to each landmark, or infinity if there is none
+     */
+    private final double[][] toLandmarks;
+
+    /**
+     * Select the landmarks of the provided graph and calculate their distances
+     * @param graph the graph to select landmarks from
+     * @param profile the profile of the weights to calculate distances with
+     * @param count the maximum number of landmarks to select
+     */
+    public Landmarks(CompactGraph graph, WeightProfile profile, int count) {
+        int vertices = graph.getVertexCount();
+        count = Math.min(count, vertices);
+
+        this.profile = profile;
+        this.landmarks = new int[count];
+        this.fromLandmarks = new double[count][];
+        this.toLandmarks = new double[count][];
+
+        double[] weights = graph.getWeights(profile);
+        double[] separation = new double[vertices]; // the round trip of each vertex to its closest landmark so far
+        Arrays.fill(separation, Double.POSITIVE_INFINITY);
+
+        int next = (vertices == 0) ? 0:farthest(shortestDistances(graph, weights, 0, false), null);
+
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = next;
+            fromLandmarks[i] = shortestDistances(graph, weights, next, false);
+            toLandmarks[i] = shortestDistances(graph, weights, next, true);
+
+            for (int v = 0; v < vertices; v++)
+                separation[v] = Math.min(separation[v], fromLandmarks[i][v] + toLandmarks[i][v]);
+
+            next = farthest(separation, landmarks);
+        }
+    }
+
+    /**
+     * Get the landmarks of the provided graph and profile, selecting them the first time they are requested for the graph
+     * @param graph the graph to get the landmarks of
+     * @param profile the profile of the weights to get the landmarks for
+     * @return the landmarks of the graph
+     */
+    public static Landmarks forGraph(CompactGraph graph, WeightProfile profile) {
+        return graph.getDerived(Arrays.asList(Landmarks.class, profile), g -> new Landmarks(g, profile, DEFAULT_LANDMARK_COUNT));
+    }
+
+    /**
+     * Find the vertex with the largest distance, preferring unreachable vertices so that every part of a disconnected
+     * graph gets a landmark
+     * @param distances the distance of each vertex
+     * @param selected the vertices already selected, which are skipped. May be null
+     * @return the index of the farthest vertex
+     */
+    private static int farthest(double[] distances, int[] selected) {
+        int farthest = 0;
+        double max = -1;
+
+        for (int v = 0; v < distances.length; v++) {
+            if (distances[v] > max && (selected == null || !contains(selected, v))) {
+                max = distances[v];
+                farthest = v;
+            }
+        }
+
+        return farthest;
+    }
+
+    /**
+     * Determines if the array contains the provided value
+     * @param array the array to search
+     * @param value the value to find
+     * @return true if found, false if not
+     */
+    private static boolean contains(int[] array, int value) {
+        for (int element : array) {
+            if (element == value)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Calculate the weight of the shortest path between the provided vertex and every other vertex
+     * @param graph the graph to search
+     * @param weights the weight of each edge
+     * @param source the vertex to search from
+     * @param reverse true to calculate the paths from every vertex to the source, false for the paths from the source
+     * @return the weight of the shortest path between the source and each vertex, or infinity if there is none
+     */
+    private static double[] shortestDistances(CompactGraph graph, double[] weights, int source, boolean reverse) {
+        double[] distances = new double[graph.getVertexCount()];
+        IndexedHeap heap = new IndexedHeap(distances.length);
+
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[source] = 0;
+        heap.update(source, 0);
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            int first = (reverse) ? graph.getReverseEdgesStart(u):graph.getEdgesStart(u);
+            int last = (reverse) ? graph.getReverseEdgesEnd(u):graph.getEdgesEnd(u);
+
+            for (int i = first; i < last; i++) {
+                int edge = (reverse) ? graph.getReverseEdge(i):i;
+                int v = (reverse) ? graph.getSource(edge):graph.getTarget(edge);
+                double distance = distances[u] + weights[edge];
+
+                if (distance < distances[v]) {
+                    distances[v] = distance;
+                    heap.update(v, distance);
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    /**
+     * Create the lower bound of the weight of the shortest path from any vertex to the provided target
+     * @param target the vertex index of the target
+     * @return the lower bound for the target
+     */
+    public LowerBound lowerBound(int target) {
+        int count = landmarks.length;
+        double[] fromLandmarkToTarget = new double[count], fromTargetToLandmark = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            fromLandmarkToTarget[i] = fromLandmarks[i][target];
+            fromTargetToLandmark[i] = toLandmarks[i][target];
+        }
+
+        return vertex -> {
+            double bound = 0;
+
+            for (int i = 0; i < count; i++) {
+                double fromLandmark = fromLandmarks[i][vertex], toLandmark = toLandmarks[i][vertex];
+
+                if (fromLandmark < Double.POSITIVE_INFINITY && fromLandmarkToTarget[i] < Double.POSITIVE_INFINITY)
+                    bound = Math.max(bound, fromLandmarkToTarget[i] - fromLandmark);
+
+                if (toLandmark < Double.POSITIVE_INFINITY && fromTargetToLandmark[i] < Double.POSITIVE_INFINITY)
+                    bound = Math.max(bound, toLandmark - fromTargetToLandmark[i]);
+            }
+
+            return bound;
+        };
+    }
+
+    /**
+     * Get the profile of the weights the distances were calculated with
+     * @return the weight profile
+     */
+    public WeightProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Get the number of landmarks
+     * @return the number of landmarks
+     */
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Get the vertex index of the provided landmark
+     * @param landmark the index of the landmark
+     * @return the vertex index of the landmark
+     */
+    public int getLandmark(int landmark) {
+        return landmarks[landmark];
+    }
+
+    /**
+     * A lower bound of the weight of the shortest path from any vertex to a fixed target
+     */
+    @FunctionalInterface
+    public interface LowerBound {
+        /**
+         * Calculate the lower bound from the provided vertex to the target
+         * @param vertex the vertex index
+         * @return the lower bound of the weight of the shortest path
+         */
+        double from(int vertex);
+    }
+}
@@ -1,6 +1,9 @@
 package ie.ul.routeplanning.routes.graph.weights;
 
 import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.List;
 
 /**
  * This class is a decorator for adding CO2 emissions to the weight
@@ -26,4 +29,31 @@ public class CO2WeightDecorator extends WeightDecorator {
         double emissions = (edge.getTransportMethod().getCO2EmissionsPerKm() / 100) * edge.getDistance(); // divide emissions by 100 to create an emissions factor
         return weightFunction.calculate(edge) + emissions;
     }
+
+    /**
+     * Calculate the lower bound of the weight per km, adding on the emissions factor of the lowest emitting transport method
+     * @param transportMethods the transport methods that edges may be travelled by
+     * @return the lower bound of the weight per km
+     */
+    @Override
+    public double minimumWeightPerKm(List<TransportMethod> transportMethods) {
+        double lowestEmissions = transportMethods.stream()
+                .mapToDouble(TransportMethod::getCO2EmissionsPerKm)
+                .min()
+                .orElse(0);
+
+        return weightFunction.minimumWeightPerKm(transportMethods) + lowestEmissions / 100;
+    }
+
+    /**
+     * Get the profile this weight function calculates weights for, which is the profile of the decorated weight function
+     * with emissions added on
+     * @return the profile of this weight function, or null if the decorated weight function already includes emissions
+     */
+    @Override
+    public WeightProfile getProfile() {
+        WeightProfile profile = weightFunction.getProfile();
+
+        return (profile == null || profile.hasEmissions()) ? null:WeightProfile.of(true, profile.hasTime());
+    }
 }
@@ -1,6 +1,9 @@
 package ie.ul.routeplanning.routes.graph.weights;
 
 import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.List;
 
 /**
  * This class represents the simplest weight function, that is, using the distance as the weight
@@ -14,4 +17,23 @@ public class DistanceWeightFunction implements WeightFunction {
     public double calculate(Edge edge) {
         return edge.getDistance();
     }
+
+    /**
+     * The weight of an edge is its distance, so each km weighs exactly 1
+     * @param transportMethods the transport methods that edges may be travelled by
+     * @return the lower bound of the weight per km
+     */
+    @Override
+    public double minimumWeightPerKm(List<TransportMethod> transportMethods) {
+        return 1;
+    }
+
+    /**
+     * Get the profile this weight function calculates weights for
+     * @return the distance profile
+     */
+    @Override
+    public WeightProfile getProfile() {
+        return WeightProfile.DISTANCE;
+    }
 }
@@ -1,6 +1,9 @@
 package ie.ul.routeplanning.routes.graph.weights;
 
 import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.List;
 
 /**
  * This class represents a decorator that adds time onto the weight
@@ -26,4 +29,31 @@ public class TimeWeightDecorator extends WeightDecorator {
         double factor = edge.getDistance() / kmHour;
         return weightFunction.calculate(edge) + factor;
     }
+
+    /**
+     * Calculate the lower bound of the weight per km, adding on the time per km of the fastest transport method
+     * @param transportMethods the transport methods that edges may be travelled by
+     * @return the lower bound of the weight per km
+     */
+    @Override
+    public double minimumWeightPerKm(List<TransportMethod> transportMethods) {
+        double fastest = transportMethods.stream()
+                .mapToDouble(TransportMethod::getAverageSpeed)
+                .max()
+                .orElse(Double.POSITIVE_INFINITY);
+
+        return weightFunction.minimumWeightPerKm(transportMethods) + 1 / fastest;
+    }
+
+    /**
+     * Get the profile this weight function calculates weights for, which is the profile of the decorated weight function
+     * with time added on
+     * @return the profile of this weight function, or null if the decorated weight function already includes time
+     */
+    @Override
+    public WeightProfile getProfile() {
+        WeightProfile profile = weightFunction.getProfile();
+
+        return (profile == null || profile.hasTime()) ? null:WeightProfile.of(profile.hasEmissions(), true);
+    }
 }
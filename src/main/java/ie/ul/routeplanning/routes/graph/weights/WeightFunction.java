@@ -1,6 +1,9 @@
 package ie.ul.routeplanning.routes.graph.weights;
 
 import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.transport.TransportMethod;
+
+import java.util.List;
 
 /**
  * This interface represents a weight/cost function for an edge
@@ -12,4 +15,25 @@ public interface WeightFunction {
      * @return the weight of this edge, i.e. the cost it takes to go from A to B via this edge
      */
     double calculate(Edge edge);
+
+    /**
+     * Calculate a lower bound of the weight per km of any edge travelled by one of the provided transport methods, i.e.
+     * calculate(edge) is at least minimumWeightPerKm(transportMethods) * edge.getDistance() for every such edge.
+     * Goal directed algorithms use this to turn a lower bound of distance into a lower bound of weight.
+     * The default is 0, which is always a valid bound
+     * @param transportMethods the transport methods that edges may be travelled by
+     * @return the lower bound of the weight per km
+     */
+    default double minimumWeightPerKm(List<TransportMethod> transportMethods) {
+        return 0;
+    }
+
+    /**
+     * Get the profile this weight function calculates weights for, so that data derived from the weights can be shared
+     * between weight functions calculating the same weights
+     * @return the profile of this weight function, or null if its weights don't match any profile
+     */
+    default WeightProfile getProfile() {
+        return null;
+    }
 }
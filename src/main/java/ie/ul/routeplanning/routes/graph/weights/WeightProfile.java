@@ -0,0 +1,83 @@
+package ie.ul.routeplanning.routes.graph.weights;
+
+/**
+ * This enum represents the weight functions that can be built with a {@link WeightFunctionBuilder}, i.e. the distance
+ * weight with time and/or emissions added on. Data derived from edge weights, such as preprocessed hierarchies, depends
+ * on the weight function, so it is kept once per profile
+ */
+public enum WeightProfile {
+    /**
+     * The weight is the distance of the edge
+     */
+    DISTANCE(false, false),
+    /**
+     * The weight is the distance of the edge with time added on
+     */
+    TIME(false, true),
+    /**
+     * The weight is the distance of the edge with emissions added on
+     */
+    EMISSIONS(true, false),
+    /**
+     * The weight is the distance of the edge with both emissions and time added on
+     */
+    TIME_AND_EMISSIONS(true, true);
+
+    /**
+     * True if emissions are added on to the weight
+     */
+    private final boolean emissions;
+    /**
+     * True if time is added on to the weight
+     */
+    private final boolean time;
+
+    /**
+     * Construct a profile
+     * @param emissions true if emissions are added on to the weight
+     * @param time true if time is added on to the weight
+     */
+    WeightProfile(boolean emissions, boolean time) {
+        this.emissions = emissions;
+        this.time = time;
+    }
+
+    /**
+     * Get the profile with the provided parameters, in the same way as they are passed to a WeightFunctionBuilder
+     * @param emissions true if emissions are added on to the weight
+     * @param time true if time is added on to the weight
+     * @return the matching profile
+     */
+    public static WeightProfile of(boolean emissions, boolean time) {
+        for (WeightProfile profile : values()) {
+            if (profile.emissions == emissions && profile.time == time)
+                return profile;
+        }
+
+        throw new IllegalStateException("No weight profile exists with emissions " + emissions + " and time " + time); // unreachable, every combination has a profile
+    }
+
+    /**
+     * Determines if emissions are added on to the weight
+     * @return true if emissions are included, false if not
+     */
+    public boolean hasEmissions() {
+        return emissions;
+    }
+
+    /**
+     * Determines if time is added on to the weight
+     * @return true if time is included, false if not
+     */
+    public boolean hasTime() {
+        return time;
+    }
+
+    /**
+     * Build a weight function calculating the weights of this profile
+     * @return the weight function of this profile
+     */
+    public WeightFunction createWeightFunction() {
+        return new WeightFunctionBuilder().withEmissions(emissions).withTime(time).build();
+    }
+}
@@ -1,25 +1,21 @@
 package ie.ul.routeplanning.routes.waypoints;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import ie.ul.routeplanning.routes.Waypoint;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * This class represents a waypoint source that reads waypoints from a JSON file
+ * This class represents a waypoint source that reads waypoints from a JSON file. The file is read a token at a time,
+ * so each waypoint is validated and passed on as soon as it is read, and the file is never held in memory
  */
 public class JSONWaypointSource implements WaypointSource {
-	/**
-	 * The GSON instance to read the json file
-	 */
-	private final Gson gson;
 	/**
 	 * The filename to the Waypoints JSON file
 	 */
@@ -30,7 +26,6 @@ public class JSONWaypointSource implements WaypointSource {
 	 * @param jsonFile the file containing the JSON waypoint data
 	 */
 	public JSONWaypointSource(String jsonFile) {
-		this.gson = new Gson();
 		this.jsonFile = jsonFile;
 	}
 
@@ -43,13 +38,79 @@ public class JSONWaypointSource implements WaypointSource {
 	 */
 	@Override
 	public List<Waypoint> getWaypoints() throws WaypointException {
-		try (BufferedReader reader = new BufferedReader(new FileReader(jsonFile))) {
-			Type waypointListType = new TypeToken<ArrayList<Waypoint>>(){}.getType();
-			return gson.fromJson(reader, waypointListType);
+		List<Waypoint> waypoints = new ArrayList<>();
+		forEachWaypoint(waypoints::add);
+
+		return waypoints;
+	}
+
+	/**
+	 * Read the waypoints from the JSON file one at a time, passing each to the provided consumer as it is read
+	 *
+	 * @param consumer the consumer to pass each waypoint to
+	 * @throws WaypointException if an error occurs reading the waypoints, or a waypoint is missing its ID or coordinates
+	 */
+	@Override
+	public void forEachWaypoint(Consumer<Waypoint> consumer) throws WaypointException {
+		try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(jsonFile)))) {
+			if (reader.peek() != JsonToken.BEGIN_ARRAY)
+				throw new WaypointException("The waypoints in: " + jsonFile + " must be a JSON array");
+
+			reader.beginArray();
+
+			while (reader.hasNext())
+				consumer.accept(readWaypoint(reader));
+
+			reader.endArray();
+		} catch (WaypointException ex) {
+			throw ex;
 		} catch (IOException ex) {
 			throw new WaypointException("Failed to read waypoints from: " + jsonFile, ex);
-		} catch (JsonParseException ex) {
-			throw new WaypointException("Failed to read JSON", ex);
 		}
 	}
+
+	/**
+	 * Read the next waypoint object from the provided reader. Unknown properties are skipped
+	 * @param reader the reader positioned at the start of the waypoint
+	 * @return the read waypoint
+	 * @throws IOException if the file can't be read or isn't valid JSON
+	 * @throws WaypointException if the waypoint is malformed or missing its ID or coordinates
+	 */
+	private Waypoint readWaypoint(JsonReader reader) throws IOException, WaypointException {
+		String path = reader.getPath();
+		Long id = null;
+		String name = null;
+		Double latitude = null, longitude = null;
+
+		try {
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				String property = reader.nextName();
+
+				if (reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if (property.equals("id")) {
+					id = reader.nextLong();
+				} else if (property.equals("name")) {
+					name = reader.nextString();
+				} else if (property.equals("latitude")) {
+					latitude = reader.nextDouble();
+				} else if (property.equals("longitude")) {
+					longitude = reader.nextDouble();
+				} else {
+					reader.skipValue();
+				}
+			}
+
+			reader.endObject();
+		} catch (IllegalStateException | NumberFormatException ex) {
+			throw new WaypointException("Malformed waypoint at " + path + " in: " + jsonFile, ex);
+		}
+
+		if (id == null || latitude == null || longitude == null)
+			throw new WaypointException("The waypoint at " + path + " in: " + jsonFile + " must have an id, latitude and longitude");
+
+		return new Waypoint(id, name, latitude, longitude);
+	}
 }
@@ -0,0 +1,143 @@
+package ie.ul.routeplanning.routes.waypoints;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class is an in-memory index of waypoints by name, ignoring case. The normalised names are kept in one sorted
+ * array alongside the waypoints, so a name is found with a binary search, and the names starting with a prefix are the
+ * contiguous run of the array after the position of the prefix. Where several waypoints have the same name, the one
+ * with the lowest ID comes first.
+ *
+ * The index of a graph is built the first time it is requested for the graph, so a new graph gets a new index, while the
+ * versions created by updating the edges of a graph share its index
+ */
+public class WaypointIndex {
+    /**
+     * The normalised names of the waypoints in sorted order
+     */
+    private final String[] names;
+    /**
+     * The waypoint of each name
+     */
+    private final Waypoint[] waypoints;
+
+    /**
+     * Build the index of the provided waypoints. Waypoints without names are left out
+     * @param waypoints the waypoints to index
+     */
+    public WaypointIndex(Collection<Waypoint> waypoints) {
+        List<Waypoint> sorted = new ArrayList<>();
+
+        for (Waypoint waypoint : waypoints) {
+            if (waypoint.getName() != null)
+                sorted.add(waypoint);
+        }
+
+        sorted.sort(Comparator.comparing((Waypoint waypoint) -> normalise(waypoint.getName()))
+                .thenComparing(Waypoint::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        this.names = new String[sorted.size()];
+        this.waypoints = sorted.toArray(new Waypoint[0]);
+
+        for (int i = 0; i < names.length; i++)
+            names[i] = normalise(this.waypoints[i].getName());
+    }
+
+    /**
+     * Get the index of the waypoints of the provided graph, building it the first time it is requested for the graph
+     * @param graph the graph to get the index of
+     * @return the waypoint index of the graph
+     */
+    public static WaypointIndex forGraph(CompactGraph graph) {
+        return graph.getVertexDerived(WaypointIndex.class, WaypointIndex::build);
+    }
+
+    /**
+     * Build the index of the vertices of the provided graph
+     * @param graph the graph to index
+     * @return the built index
+     */
+    private static WaypointIndex build(CompactGraph graph) {
+        List<Waypoint> vertices = new ArrayList<>(graph.getVertexCount());
+
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++)
+            vertices.add(graph.getVertex(vertex));
+
+        return new WaypointIndex(vertices);
+    }
+
+    /**
+     * Normalise the provided name so names differing only in case or surrounding whitespace are equal
+     * @param name the name to normalise
+     * @return the normalised name
+     */
+    private static String normalise(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the position of the first name that is not less than the provided name
+     * @param name the normalised name to search for
+     * @return the position of the first name not less than it, or the number of names if there is none
+     */
+    private int lowerBound(String name) {
+        int low = 0, high = names.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (names[middle].compareTo(name) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+     * Find the waypoint with the provided name, ignoring case
+     * @param name the name of the waypoint
+     * @return the waypoint with the lowest ID with the name, or null if there is none
+     */
+    public Waypoint find(String name) {
+        String normalised = normalise(name);
+        int position = lowerBound(normalised);
+
+        return (position < names.length && names[position].equals(normalised)) ? waypoints[position]:null;
+    }
+
+    /**
+     * Find the waypoints with names starting with the provided prefix, ignoring case, in order of their names. Only the
+     * first waypoint with each name is included
+     * @param prefix the prefix of the names
+     * @param limit the maximum number of waypoints to return
+     * @return the waypoints found
+     */
+    public List<Waypoint> complete(String prefix, int limit) {
+        String normalised = normalise(prefix);
+        List<Waypoint> found = new ArrayList<>();
+
+        for (int i = lowerBound(normalised); i < names.length && found.size() < limit && names[i].startsWith(normalised); i++) {
+            if (i == 0 || !names[i].equals(names[i - 1]))
+                found.add(waypoints[i]);
+        }
+
+        return found;
+    }
+
+    /**
+     * Get the number of waypoints in the index
+     * @return the number of waypoints
+     */
+    public int size() {
+        return names.length;
+    }
+}
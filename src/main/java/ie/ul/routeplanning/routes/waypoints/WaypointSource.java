@@ -3,6 +3,7 @@ package ie.ul.routeplanning.routes.waypoints;
 import ie.ul.routeplanning.routes.Waypoint;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This interface describes an object that can retrieve waypoints from somewhere and read them into the system
@@ -15,4 +16,14 @@ public interface WaypointSource {
 	 * @throws WaypointException if an error occurs reading the waypoints
 	 */
 	List<Waypoint> getWaypoints() throws WaypointException;
+
+	/**
+	 * Pass each waypoint of the waypoint source to the provided consumer in turn. Sources that read their waypoints
+	 * incrementally override this so the waypoints don't all have to be held in a list at once
+	 * @param consumer the consumer to pass each waypoint to
+	 * @throws WaypointException if an error occurs reading the waypoints
+	 */
+	default void forEachWaypoint(Consumer<Waypoint> consumer) throws WaypointException {
+		getWaypoints().forEach(consumer);
+	}
 }
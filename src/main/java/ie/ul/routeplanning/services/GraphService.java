@@ -1,17 +1,42 @@
 package ie.ul.routeplanning.services;
 
+import ie.ul.routeplanning.routes.graph.EdgeUpdate;
 import ie.ul.routeplanning.routes.graph.Graph;
 import ie.ul.routeplanning.routes.graph.creation.BuilderException;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This service provides a service for loading and returning a graph
  */
 public interface GraphService {
     /**
-     * Loads the graph as a singleton instance and returns a copy of it.
+     * Loads the graph as a singleton instance and returns it. The returned graph is frozen and shared between all
+     * callers, so it cannot be modified. Call {@link Graph#copy()} if a modifiable graph is required
      *
      * @return the loaded graph
      * @throws BuilderException if an error occurred creating the graph
      */
     Graph loadGraph() throws BuilderException;
+
+    /**
+     * Rebuild the graph in the background and swap it in as the graph returned by {@link #loadGraph()}. Callers that
+     * already loaded the previous graph can keep using it, and the new graph has a greater version
+     *
+     * @return the future completed with the reloaded graph, or exceptionally if it couldn't be built
+     */
+    CompletableFuture<Graph> reloadGraph();
+
+    /**
+     * Apply the provided update to the edges of the graph and swap the updated version in as the graph returned by
+     * {@link #loadGraph()}. The updated version shares the unchanged edges with the previous graph, which callers that
+     * already loaded it can keep using. Updates are only held in memory, so reloading the graph applies them again to
+     * the rebuilt graph, skipping any that no longer apply to it
+     *
+     * @param update the update to apply
+     * @return the updated graph
+     * @throws BuilderException if an error occurred creating the graph to update
+     * @throws IllegalStateException if the update refers to waypoints that aren't in the graph, or edges that don't exist
+     */
+    Graph updateGraph(EdgeUpdate update) throws BuilderException;
 }
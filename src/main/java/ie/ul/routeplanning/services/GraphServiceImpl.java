@@ -4,23 +4,67 @@ import ie.ul.routeplanning.repositories.TransportMethodRepository;
 import ie.ul.routeplanning.repositories.WaypointRepository;
 import ie.ul.routeplanning.routes.Waypoint;
 import ie.ul.routeplanning.routes.waypoints.SourceFactory;
+import ie.ul.routeplanning.routes.graph.CompactGraph;
+import ie.ul.routeplanning.routes.graph.EdgeUpdate;
 import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphSnapshot;
 import ie.ul.routeplanning.routes.graph.creation.BuilderException;
 import ie.ul.routeplanning.routes.graph.creation.BuilderFactory;
+import ie.ul.routeplanning.routes.graph.landmarks.Landmarks;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
 import ie.ul.routeplanning.transport.TransportMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
 
 /**
- * This is an implementation of the GraphService interface
+ * This is an implementation of the GraphService interface.
+ *
+ * If a snapshot file is configured, the graph is loaded from the snapshot when it is newer than the edges and waypoints
+ * files, which memory-maps the graph instead of parsing the edges. Otherwise the graph is built from the edges file and
+ * the snapshot is written, so the next start up can load it.
+ *
+ * The graph can be reloaded while the application is running, either on request or when the edges file changes. The
+ * new graph is built and prepared in the background while requests keep using the current graph, and then swapped in
+ * atomically. A request that loaded the previous graph finishes on it, and the results derived from each graph are
+ * told apart by its version. The edges of the graph can also be updated in place of a reload, which swaps in a new
+ * version sharing the unchanged edges with the current graph. Updates are only held in memory, so a reload applies
+ * them again to the rebuilt graph before swapping it in
  */
 @Service
 public class GraphServiceImpl implements GraphService {
+    /**
+     * The file the edges of the graph are read from
+     */
+    public static final String EDGES_FILE = "edges.json";
+    /**
+     * The file the waypoints in the database are loaded from, so a snapshot older than it is out of date
+     */
+    public static final String WAYPOINTS_FILE = "waypoints.json";
+    /**
+     * The logger for snapshots that couldn't be written and graph reloads
+     */
+    private static final Logger logger = LoggerFactory.getLogger(GraphServiceImpl.class);
     /**
      * Our repository for finding waypoints
      */
@@ -30,40 +74,333 @@ public class GraphServiceImpl implements GraphService {
      */
     private final TransportMethodRepository transportMethodRepository;
     /**
-     * The singleton graph instance which is lazily initialised by loadGraph
+     * The frozen graph instance shared by all requests. It is lazily built by loadGraph and replaced by each reload
+     */
+    private final AtomicReference<Graph> graphInstance = new AtomicReference<>();
+    /**
+     * The updates swapped in since the graph was first loaded, in the order they were swapped in. Guarded by itself,
+     * which is held while swapping in an update or a reloaded graph so that no update is swapped in without being added
+     */
+    private final List<EdgeUpdate> appliedUpdates = new ArrayList<>();
+    /**
+     * The snapshot file of the graph, or null if the graph isn't snapshotted
+     */
+    private final Path snapshotFile;
+    /**
+     * The single thread reloading the graph and polling the edges file for changes
+     */
+    private final ScheduledExecutorService reloader;
+    /**
+     * The reload that has been requested but not started yet, or null if there is none. Requests made before it starts
+     * share it rather than building the graph again. Guarded by this
      */
-    private static Graph GRAPH_INSTANCE = null;
+    private CompletableFuture<Graph> queuedReload;
+    /**
+     * The time the edges file was last modified when the current graph started being built
+     */
+    private volatile long edgesModified;
+    /**
+     * The service recording the time taken to build, prepare and update the graph
+     */
+    private final MetricsService metricsService;
 
     /**
-     * Creates a GraphServiceImpl with the provided dependencies
+     * Creates a GraphServiceImpl with the provided dependencies, registering the size and version of the graph with the
+     * metrics service
      * @param waypointRepository the repository for loading waypoints
      * @param transportMethodRepository the repository for loading transport methods
+     * @param metricsService the service recording the time taken by graph operations
+     * @param snapshotFile the snapshot file of the graph, or an empty string if the graph isn't snapshotted
+     * @param pollSeconds the number of seconds between checks of the edges file for changes, or 0 to not check
      */
     @Autowired
-    public GraphServiceImpl(WaypointRepository waypointRepository, TransportMethodRepository transportMethodRepository) {
+    public GraphServiceImpl(WaypointRepository waypointRepository, TransportMethodRepository transportMethodRepository, MetricsService metricsService,
+                            @Value("${graph.snapshot:}") String snapshotFile, @Value("${graph.reload.poll-seconds:0}") long pollSeconds) {
         this.waypointRepository = waypointRepository;
         this.transportMethodRepository = transportMethodRepository;
+        this.metricsService = metricsService;
+        this.snapshotFile = (snapshotFile == null || snapshotFile.isBlank()) ? null:Paths.get(snapshotFile);
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "graph-reloader");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        if (pollSeconds > 0)
+            reloader.scheduleWithFixedDelay(this::checkEdgesFile, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+
+        metricsService.registerGauge("graph_version", "The version of the current graph, or 0 before it is loaded",
+                () -> currentGraphSize(CompactGraph::getVersion));
+        metricsService.registerGauge("graph_vertices", "The number of vertices of the current graph",
+                () -> currentGraphSize(CompactGraph::getVertexCount));
+        metricsService.registerGauge("graph_edges", "The number of edges of the current graph",
+                () -> currentGraphSize(CompactGraph::getEdgeCount));
+    }
+
+    /**
+     * Get a number describing the current graph for its metrics, without loading the graph
+     * @param size the function getting the number from the compact graph
+     * @return the number, or 0 if the graph hasn't been loaded
+     */
+    private double currentGraphSize(ToLongFunction<CompactGraph> size) {
+        Graph graph = graphInstance.get();
+
+        return (graph == null) ? 0:size.applyAsLong(graph.compact());
+    }
+
+    /**
+     * Builds the graph from the snapshot if it is up to date and allowed, or else from the edges file and the waypoints
+     * in the database, writing the snapshot of the built graph
+     * @param useSnapshot true if the graph can be loaded from an up to date snapshot
+     * @return the built graph
+     * @throws BuilderException if an error occurred creating the graph
+     */
+    private Graph buildGraph(boolean useSnapshot) throws BuilderException {
+        Map<String, TransportMethod> transportMethodMap = new HashMap<>();
+        long started = System.nanoTime();
+
+        edgesModified = new File(EDGES_FILE).lastModified(); // before reading it, so a change made while building is seen
+        transportMethodRepository.findAll().forEach(t -> transportMethodMap.put(t.getName(), t));
+
+        if (useSnapshot && isSnapshotCurrent()) {
+            Graph graph = BuilderFactory.fromSnapshot(snapshotFile, transportMethodMap).buildGraph();
+            metricsService.recordGraphOperation("snapshot", System.nanoTime() - started);
+
+            return graph;
+        }
+
+        List<Waypoint> waypoints = new ArrayList<>();
+        waypointRepository.findAll().forEach(waypoints::add);
+
+        Graph graph = BuilderFactory.fromFile(EDGES_FILE, SourceFactory.fromList(waypoints), transportMethodMap).buildGraph();
+        metricsService.recordGraphOperation("build", System.nanoTime() - started);
+
+        if (snapshotFile != null)
+            writeSnapshot(graph);
+
+        return graph;
+    }
+
+    /**
+     * Determine if the snapshot exists and was written after the edges and waypoints files were last modified
+     * @return true if the graph can be loaded from the snapshot
+     */
+    private boolean isSnapshotCurrent() {
+        if (snapshotFile == null)
+            return false;
+
+        long written = snapshotFile.toFile().lastModified(); // 0 if the snapshot doesn't exist
+
+        return written > 0 && written >= new File(EDGES_FILE).lastModified() && written >= new File(WAYPOINTS_FILE).lastModified();
+    }
+
+    /**
+     * Write the snapshot of the provided graph. The snapshot is written to a temporary file first and then moved over
+     * the snapshot, so a snapshot is never left half written. Failing to write it doesn't stop the graph being used
+     * @param graph the graph to write the snapshot of
+     */
+    private void writeSnapshot(Graph graph) {
+        Path written = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try {
+            GraphSnapshot.write(graph, written);
+            Files.move(written, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            logger.warn("The graph snapshot {} could not be written", snapshotFile, ex);
+        }
+    }
+
+    /**
+     * Freeze the provided graph and precompute the data that queries on it depend on, so that the first requests don't
+     * have to wait for it
+     * @param graph the graph to prepare
+     * @return the frozen graph
+     */
+    private Graph prepareGraph(Graph graph) {
+        long started = System.nanoTime();
+        graph.freeze();
+        precompute(graph.compact());
+
+        for (WeightProfile profile : WeightProfile.values())
+            Landmarks.forGraph(graph.compact(), profile);
+
+        metricsService.recordGraphOperation("prepare", System.nanoTime() - started);
+
+        return graph;
+    }
+
+    /**
+     * Precompute the weights of the compact graph for each weight profile. The contraction hierarchies aren't built
+     * here, since no route query uses them, so they are only built by the first contraction hierarchy query on each graph
+     * @param graph the compact graph to precompute the weights of
+     */
+    private void precompute(CompactGraph graph) {
+        for (WeightProfile profile : WeightProfile.values())
+            graph.getWeights(profile);
     }
 
     /**
-     * Loads the graph as a singleton instance and returns a copy of it.
+     * Loads the graph as a singleton instance and returns it. The graph is frozen and prepared before it is published, so
+     * the same instance is safely shared by every request without copying it.
      *
      * @return the loaded graph or a builder exception if it failed to be created
      * @throws BuilderException if an error occurred creating the graph
      */
     @Override
     public Graph loadGraph() throws BuilderException {
-        if (GRAPH_INSTANCE == null) {
-            Map<String, TransportMethod> transportMethodMap = new HashMap<>();
+        Graph graph = graphInstance.get();
+
+        if (graph == null) {
+            synchronized (graphInstance) { // only let one request build the graph, the others wait to use it
+                graph = graphInstance.get();
+
+                if (graph == null) {
+                    graph = prepareGraph(buildGraph(true));
+
+                    if (!graphInstance.compareAndSet(null, graph))
+                        graph = graphInstance.get(); // a reload finished first, and its graph is newer
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Rebuild the graph from the edges file and the waypoints in the database in the background, and swap it in once it
+     * is prepared. Requests keep using the current graph until then. If a reload is already waiting to start, it is
+     * returned instead of queueing another
+     *
+     * @return the future completed with the reloaded graph, or exceptionally if it couldn't be built
+     */
+    @Override
+    public synchronized CompletableFuture<Graph> reloadGraph() {
+        if (queuedReload == null) {
+            CompletableFuture<Graph> reload = new CompletableFuture<>();
+            queuedReload = reload;
+            reloader.execute(() -> performReload(reload));
+        }
+
+        return queuedReload;
+    }
+
+    /**
+     * Build and prepare the reloaded graph, apply the updates swapped in so far to it, then publish it as the graph
+     * instance and complete the reload with it. If an update is swapped in while they are being applied, they are
+     * applied again so that it isn't lost
+     * @param reload the future of the reload to complete
+     */
+    private void performReload(CompletableFuture<Graph> reload) {
+        synchronized (this) {
+            queuedReload = null; // a change from now on needs another reload
+        }
+
+        try {
+            Graph built = prepareGraph(buildGraph(false));
+            Graph graph;
+            List<EdgeUpdate> replayed;
 
-            transportMethodRepository.findAll().forEach(t -> transportMethodMap.put(t.getName(), t));
+            while (true) {
+                List<EdgeUpdate> updates;
 
-            List<Waypoint> waypoints = new ArrayList<>();
-            waypointRepository.findAll().forEach(waypoints::add);
-            GRAPH_INSTANCE = BuilderFactory.fromFile("edges.json",
-                    SourceFactory.fromList(waypoints), transportMethodMap).buildGraph();
+                synchronized (appliedUpdates) {
+                    updates = new ArrayList<>(appliedUpdates);
+                }
+
+                replayed = new ArrayList<>();
+                graph = replayUpdates(built, updates, replayed);
+
+                synchronized (appliedUpdates) {
+                    if (appliedUpdates.size() == updates.size()) { // the list only grows while no reload is swapped in
+                        appliedUpdates.clear();
+                        appliedUpdates.addAll(replayed);
+                        graphInstance.set(graph);
+                        break;
+                    }
+                }
+            }
+
+            logger.info("Reloaded the graph as version {} with {} vertices and {} edges after applying {} updates", graph.compact().getVersion(),
+                    graph.compact().getVertexCount(), graph.compact().getEdgeCount(), replayed.size());
+            reload.complete(graph);
+        } catch (BuilderException | RuntimeException ex) {
+            logger.warn("The graph could not be reloaded, so the current graph is kept", ex);
+            reload.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Apply the provided updates in order to the reloaded graph. An update that no longer applies, e.g. because the
+     * edge it closes was removed from the edges file, is skipped with a warning and isn't applied to later reloads
+     * @param graph the reloaded graph
+     * @param updates the updates to apply
+     * @param replayed the list the updates that were applied are added to
+     * @return the updated graph, or the reloaded graph if there are no updates
+     */
+    private Graph replayUpdates(Graph graph, List<EdgeUpdate> updates, List<EdgeUpdate> replayed) {
+        for (EdgeUpdate update : updates) {
+            try {
+                graph = graph.update(update);
+                replayed.add(update);
+            } catch (IllegalStateException ex) {
+                logger.warn("The update {} no longer applies to the reloaded graph, so it is discarded", update, ex);
+            }
         }
 
-        return GRAPH_INSTANCE.copy();
+        if (!replayed.isEmpty())
+            precompute(graph.compact());
+
+        return graph;
+    }
+
+    /**
+     * Apply the update to the current graph and swap the updated version in. Updates don't block each other or the
+     * requests: if another update or a reload swapped a graph in while this one was being applied, it is applied again
+     * to that graph. The update is kept so that reloads apply it again to the rebuilt graph. The weights of the updated version are calculated before it is swapped in, which only calculates
+     * the weights of the changed edges, so an update costs time and memory in proportion to the change. Its landmarks
+     * aren't selected, since a changed edge can make the bounds of the previous landmarks overestimate, so they are
+     * only selected by the first landmark query on the version
+     *
+     * @param update the update to apply
+     * @return the updated graph
+     * @throws BuilderException if an error occurred creating the graph to update
+     */
+    @Override
+    public Graph updateGraph(EdgeUpdate update) throws BuilderException {
+        while (true) {
+            Graph graph = loadGraph();
+            long started = System.nanoTime();
+            Graph updated = graph.update(update);
+            precompute(updated.compact());
+
+            metricsService.recordGraphOperation("update", System.nanoTime() - started);
+
+            synchronized (appliedUpdates) { // only held for the swap, so updates are still applied concurrently
+                if (graphInstance.compareAndSet(graph, updated)) {
+                    appliedUpdates.add(update);
+                    logger.debug("Updated the graph to version {} with {}", updated.compact().getVersion(), update);
+
+                    return updated;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reload the graph if the edges file has been modified since the current graph was built. Nothing is reloaded
+     * before the graph is first loaded, since it will be read then
+     */
+    private void checkEdgesFile() {
+        if (graphInstance.get() != null && new File(EDGES_FILE).lastModified() != edgesModified)
+            reloadGraph();
+    }
+
+    /**
+     * Stop reloading the graph. A reload in progress is abandoned and the current graph is kept
+     */
+    @PreDestroy
+    public void shutdown() {
+        reloader.shutdownNow();
     }
 }
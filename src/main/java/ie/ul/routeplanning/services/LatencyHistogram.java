@@ -0,0 +1,122 @@
+package ie.ul.routeplanning.services;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a histogram of the durations of an operation, such as a route query, counted in fixed buckets.
+ *
+ * Recording a duration only increments the counter of its bucket and adds it to the sum, both of which are LongAdders,
+ * so many threads can record durations at the same time without contending on a lock
+ */
+public class LatencyHistogram {
+    /**
+     * The default upper bounds of the buckets in seconds, from a millisecond up to half a minute
+     */
+    public static final double[] DEFAULT_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    /**
+     * The inclusive upper bound of each bucket in seconds
+     */
+    private final double[] buckets;
+    /**
+     * The inclusive upper bound of each bucket in nanoseconds
+     */
+    private final long[] bounds;
+    /**
+     * The number of durations recorded in each bucket, with a last bucket for the durations above every bound
+     */
+    private final LongAdder[] counts;
+    /**
+     * The sum of the recorded durations in nanoseconds
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Create a histogram with the provided buckets
+     * @param buckets the upper bounds of the buckets in seconds, in increasing order
+     */
+    public LatencyHistogram(double... buckets) {
+        this.buckets = buckets.clone();
+        this.bounds = new long[buckets.length];
+        this.counts = new LongAdder[buckets.length + 1];
+
+        for (int i = 0; i < buckets.length; i++) {
+            bounds[i] = (long) (buckets[i] * TimeUnit.SECONDS.toNanos(1));
+
+            if (i > 0 && bounds[i] <= bounds[i - 1])
+                throw new IllegalStateException("The buckets of a histogram must be in increasing order");
+        }
+
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Create a histogram with the default buckets
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Record a duration in the bucket with the smallest upper bound that is at least the duration
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int bucket = Arrays.binarySearch(bounds, nanos);
+
+        counts[(bucket < 0) ? -bucket - 1:bucket].increment(); // a missing duration gives the insertion point, i.e. the next bound up
+        sum.add(nanos);
+    }
+
+    /**
+     * Get the upper bounds of the buckets in seconds
+     * @return the upper bound of each bucket
+     */
+    public double[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * Get the cumulative counts of the buckets, i.e. the number of durations at most the upper bound of each bucket.
+     * The last count is the number of durations recorded
+     * @return a count for each bucket followed by the total count
+     */
+    public long[] getCumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * Get the number of durations recorded
+     * @return the number of durations
+     */
+    public long getCount() {
+        return Arrays.stream(counts).mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Get the sum of the recorded durations in seconds
+     * @return the sum of the durations
+     */
+    public double getSumSeconds() {
+        return sum.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns a string representation of the histogram
+     * @return a string representation of the histogram
+     */
+    @Override
+    public String toString() {
+        return String.format("%d durations taking %.3f seconds", getCount(), getSumSeconds());
+    }
+}
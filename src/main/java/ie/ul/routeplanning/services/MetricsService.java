@@ -0,0 +1,55 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.routes.algorithms.SearchStatistics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * This service records what route queries and graph operations cost, and writes the metrics in the Prometheus text
+ * format so they can be scraped
+ */
+public interface MetricsService {
+    /**
+     * Determines if metrics are being recorded
+     * @return true if enabled, false if recording is a no-op
+     */
+    boolean isEnabled();
+
+    /**
+     * Record a query performed by an algorithm
+     * @param algorithm the name of the algorithm, which labels its metrics
+     * @param nanos the time taken by the query in nanoseconds
+     * @param statistics the statistics of the searches performed by the query, or null if the algorithm has none
+     */
+    void recordSearch(String algorithm, long nanos, SearchStatistics statistics);
+
+    /**
+     * Record an operation on the graph, such as building, preparing or updating it
+     * @param operation the name of the operation, which labels its metrics
+     * @param nanos the time taken by the operation in nanoseconds
+     */
+    void recordGraphOperation(String operation, long nanos);
+
+    /**
+     * Register a gauge whose value is read when the metrics are written, replacing any metric registered with the name
+     * @param name the name of the metric
+     * @param help the description of the metric
+     * @param value the supplier of the current value
+     */
+    void registerGauge(String name, String help, DoubleSupplier value);
+
+    /**
+     * Register a counter, i.e. a value that only increases, which is read when the metrics are written. Any metric
+     * registered with the name is replaced
+     * @param name the name of the metric, which should end with _total
+     * @param help the description of the metric
+     * @param value the supplier of the current value
+     */
+    void registerCounter(String name, String help, DoubleSupplier value);
+
+    /**
+     * Write every metric in the Prometheus text exposition format
+     * @return the metrics
+     */
+    String scrape();
+}
@@ -0,0 +1,290 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.routes.algorithms.SearchStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The implementation of our metrics service. Metrics are kept in LongAdders, so recording a query or graph operation
+ * never takes a lock. The searches count their work in local variables and the query is recorded once it completes, so
+ * the search loops aren't slowed down by the metrics. Gauges and counters registered by other services are read when
+ * the metrics are scraped, rather than updated as they change
+ */
+@Service
+public class MetricsServiceImpl implements MetricsService {
+    /**
+     * The prefix of the name of every metric
+     */
+    private static final String PREFIX = "routeplanning_";
+    /**
+     * True if metrics are recorded
+     */
+    private final boolean enabled;
+    /**
+     * The metrics of the queries of each algorithm, keyed by the name of the algorithm
+     */
+    private final Map<String, SearchMetrics> searches = new ConcurrentSkipListMap<>();
+    /**
+     * The durations of each graph operation, keyed by the name of the operation
+     */
+    private final Map<String, LatencyHistogram> graphOperations = new ConcurrentSkipListMap<>();
+    /**
+     * The registered gauges and counters, keyed by their name
+     */
+    private final Map<String, FunctionMetric> functionMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a MetricsServiceImpl
+     * @param enabled true if metrics are recorded, false to make recording a no-op
+     */
+    @Autowired
+    public MetricsServiceImpl(@Value("${metrics.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Determines if metrics are being recorded
+     *
+     * @return true if enabled, false if recording is a no-op
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a query performed by an algorithm
+     *
+     * @param algorithm  the name of the algorithm, which labels its metrics
+     * @param nanos      the time taken by the query in nanoseconds
+     * @param statistics the statistics of the searches performed by the query, or null if the algorithm has none
+     */
+    @Override
+    public void recordSearch(String algorithm, long nanos, SearchStatistics statistics) {
+        if (!enabled)
+            return;
+
+        SearchMetrics metrics = searches.computeIfAbsent(algorithm, a -> new SearchMetrics());
+        metrics.latency.record(nanos);
+
+        if (statistics != null)
+            metrics.statistics.add(statistics);
+    }
+
+    /**
+     * Record an operation on the graph, such as building, preparing or updating it
+     *
+     * @param operation the name of the operation, which labels its metrics
+     * @param nanos     the time taken by the operation in nanoseconds
+     */
+    @Override
+    public void recordGraphOperation(String operation, long nanos) {
+        if (enabled)
+            graphOperations.computeIfAbsent(operation, o -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Register a gauge whose value is read when the metrics are written, replacing any metric registered with the name
+     *
+     * @param name  the name of the metric
+     * @param help  the description of the metric
+     * @param value the supplier of the current value
+     */
+    @Override
+    public void registerGauge(String name, String help, DoubleSupplier value) {
+        functionMetrics.put(name, new FunctionMetric("gauge", help, value));
+    }
+
+    /**
+     * Register a counter, i.e. a value that only increases, which is read when the metrics are written. Any metric
+     * registered with the name is replaced
+     *
+     * @param name  the name of the metric, which should end with _total
+     * @param help  the description of the metric
+     * @param value the supplier of the current value
+     */
+    @Override
+    public void registerCounter(String name, String help, DoubleSupplier value) {
+        functionMetrics.put(name, new FunctionMetric("counter", help, value));
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format. The metrics of each algorithm and graph operation
+     * are labelled with its name
+     *
+     * @return the metrics
+     */
+    @Override
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+
+        writeHistograms(out, "search_duration_seconds", "The time taken by route queries that weren't cached",
+                "algorithm", searches, metrics -> metrics.latency);
+        writeCounters(out, "searches_total", "The number of searches performed by route queries, several for queries finding more than one route",
+                searches, metrics -> metrics.statistics.getSearches());
+        writeCounters(out, "search_vertices_settled_total", "The number of vertices settled by route queries",
+                searches, metrics -> metrics.statistics.getSettled());
+        writeCounters(out, "search_edges_relaxed_total", "The number of edges relaxed by route queries",
+                searches, metrics -> metrics.statistics.getRelaxed());
+        writeCounters(out, "search_queue_pushes_total", "The number of vertices pushed onto the queues of route queries",
+                searches, metrics -> metrics.statistics.getPushed());
+        writeHistograms(out, "graph_operation_duration_seconds", "The time taken to build, prepare and update the graph",
+                "operation", graphOperations, histogram -> histogram);
+
+        new ConcurrentSkipListMap<>(functionMetrics).forEach((name, metric) -> {
+            writeHeader(out, name, metric.help, metric.type);
+            out.append(PREFIX).append(name).append(' ').append(format(metric.value.getAsDouble())).append('\n');
+        });
+
+        return out.toString();
+    }
+
+    /**
+     * Write the histograms of the provided metrics as one metric labelled by the key of each histogram
+     * @param out the output to write to
+     * @param name the name of the metric without the prefix
+     * @param help the description of the metric
+     * @param label the name of the label holding the key
+     * @param metrics the metrics to write, keyed by the value of the label
+     * @param histogram the function getting the histogram of each metric
+     * @param <T> the type of the metrics
+     */
+    private static <T> void writeHistograms(StringBuilder out, String name, String help, String label, Map<String, T> metrics,
+                                            Function<T, LatencyHistogram> histogram) {
+        if (metrics.isEmpty())
+            return;
+
+        writeHeader(out, name, help, "histogram");
+
+        metrics.forEach((key, value) -> {
+            LatencyHistogram latency = histogram.apply(value);
+            String labels = label + "=\"" + escape(key) + "\"";
+            double[] buckets = latency.getBuckets();
+            long[] counts = latency.getCumulativeCounts(); // read once, so the buckets, +Inf and count agree
+
+            for (int i = 0; i < buckets.length; i++)
+                writeSample(out, name + "_bucket", labels + ",le=\"" + format(buckets[i]) + "\"", counts[i]);
+
+            writeSample(out, name + "_bucket", labels + ",le=\"+Inf\"", counts[buckets.length]);
+            out.append(PREFIX).append(name).append("_sum{").append(labels).append("} ").append(format(latency.getSumSeconds())).append('\n');
+            writeSample(out, name + "_count", labels, counts[buckets.length]);
+        });
+    }
+
+    /**
+     * Write a counter of each of the provided search metrics as one metric labelled by the name of the algorithm
+     * @param out the output to write to
+     * @param name the name of the metric without the prefix
+     * @param help the description of the metric
+     * @param metrics the metrics of each algorithm
+     * @param counter the function getting the counter of each metric
+     */
+    private static void writeCounters(StringBuilder out, String name, String help, Map<String, SearchMetrics> metrics,
+                                      ToLongFunction<SearchMetrics> counter) {
+        if (metrics.isEmpty())
+            return;
+
+        writeHeader(out, name, help, "counter");
+        metrics.forEach((algorithm, value) -> writeSample(out, name, "algorithm=\"" + escape(algorithm) + "\"", counter.applyAsLong(value)));
+    }
+
+    /**
+     * Write the HELP and TYPE lines of a metric
+     * @param out the output to write to
+     * @param name the name of the metric without the prefix
+     * @param help the description of the metric
+     * @param type the Prometheus type of the metric
+     */
+    private static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a sample of a metric with an integer value
+     * @param out the output to write to
+     * @param name the name of the sample without the prefix
+     * @param labels the labels of the sample, without the braces
+     * @param value the value of the sample
+     */
+    private static void writeSample(StringBuilder out, String name, String labels, long value) {
+        out.append(PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Escape the provided label value
+     * @param value the value to escape
+     * @return the escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Format the provided value as Prometheus expects, writing whole numbers without a fraction
+     * @param value the value to format
+     * @return the formatted value
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value))
+            return "NaN";
+        else if (Double.isInfinite(value))
+            return (value > 0) ? "+Inf":"-Inf";
+        else if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        else
+            return Double.toString(value);
+    }
+
+    /**
+     * The metrics of the queries of one algorithm
+     */
+    private static class SearchMetrics {
+        /**
+         * The durations of the queries
+         */
+        private final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * The total statistics of the searches performed by the queries
+         */
+        private final SearchStatistics statistics = new SearchStatistics();
+    }
+
+    /**
+     * A gauge or counter whose value is read when the metrics are written
+     */
+    private static class FunctionMetric {
+        /**
+         * The Prometheus type of the metric
+         */
+        private final String type;
+        /**
+         * The description of the metric
+         */
+        private final String help;
+        /**
+         * The supplier of the current value
+         */
+        private final DoubleSupplier value;
+
+        /**
+         * Construct a function metric
+         * @param type the Prometheus type of the metric
+         * @param help the description of the metric
+         * @param value the supplier of the current value
+         */
+        private FunctionMetric(String type, String help, DoubleSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
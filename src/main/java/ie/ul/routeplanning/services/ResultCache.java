@@ -0,0 +1,282 @@
+package ie.ul.routeplanning.services;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class is a bounded in-process cache of the results of expensive operations, such as route generation.
+ *
+ * Each value has a weight given by a weigher, and once the total weight of the cache goes over its maximum weight, the
+ * least recently used values are evicted until it fits again. A value also expires once it has been in the cache for
+ * longer than the time to live, after which it is treated as missing. The cache counts its hits, misses, evictions and
+ * expirations so its effectiveness can be monitored.
+ *
+ * All operations are synchronized on the cache, so it can be shared between request threads
+ * @param <K> the type of the keys, which must implement equals and hashCode
+ * @param <V> the type of the cached values
+ */
+public class ResultCache<K, V> {
+    /**
+     * The maximum total weight of the values in the cache
+     */
+    private final long maxWeight;
+    /**
+     * The function giving the weight of a value
+     */
+    private final ToLongFunction<V> weigher;
+    /**
+     * The time to live of a value in nanoseconds
+     */
+    private final long timeToLive;
+    /**
+     * The clock giving the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+    /**
+     * The cached entries in order of access, least recently used first
+     */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The total weight of the values in the cache
+     */
+    private long weight;
+    /**
+     * The number of lookups that found a value
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of lookups that didn't find a value
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The number of values evicted to keep the cache within its maximum weight
+     */
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * The number of values removed because they expired
+     */
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Create a cache with the provided parameters
+     * @param maxWeight the maximum total weight of the values in the cache
+     * @param weigher the function giving the weight of a value, which must not change while it is cached
+     * @param timeToLive how long a value stays in the cache after it is added
+     * @param clock the clock giving the current time in nanoseconds, e.g. System::nanoTime
+     */
+    public ResultCache(long maxWeight, ToLongFunction<V> weigher, Duration timeToLive, LongSupplier clock) {
+        if (maxWeight < 0)
+            throw new IllegalStateException("The maximum weight of a cache cannot be negative");
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.timeToLive = timeToLive.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Create a cache of at most maxEntries values, using the system clock
+     * @param maxEntries the maximum number of values in the cache
+     * @param timeToLive how long a value stays in the cache after it is added
+     */
+    public ResultCache(long maxEntries, Duration timeToLive) {
+        this(maxEntries, value -> 1, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * Get the value cached under the provided key, marking it as the most recently used
+     * @param key the key of the value
+     * @return the cached value, or null if there is none or it has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null && isExpired(entry)) {
+            remove(key);
+            expirations.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses.increment();
+
+            return null;
+        }
+
+        hits.increment();
+
+        return entry.value;
+    }
+
+    /**
+     * Cache the provided value under the provided key, replacing any value already cached under it, and evict the least
+     * recently used values if the cache goes over its maximum weight. A value heavier than the maximum weight is not
+     * cached
+     * @param key the key of the value
+     * @param value the value to cache
+     */
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+
+        remove(key);
+
+        if (valueWeight > maxWeight)
+            return;
+
+        entries.put(key, new Entry<>(value, valueWeight, clock.getAsLong() + timeToLive));
+        weight += valueWeight;
+
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+
+        while (weight > maxWeight) { // the new value is the most recently used, so it is never evicted here
+            Entry<V> eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+
+            if (isExpired(eldest))
+                expirations.increment();
+            else
+                evictions.increment();
+        }
+    }
+
+    /**
+     * Remove the value cached under the provided key
+     * @param key the key of the value to remove
+     */
+    private void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+
+        if (entry != null)
+            weight -= entry.weight;
+    }
+
+    /**
+     * Determines if the provided entry has expired
+     * @param entry the entry to check
+     * @return true if expired, false if not
+     */
+    private boolean isExpired(Entry<V> entry) {
+        return clock.getAsLong() - entry.expiresAt >= 0;
+    }
+
+    /**
+     * Remove every value matching the provided predicate, e.g. values that refer to data that was deleted
+     * @param predicate the predicate matching the values to remove
+     */
+    public synchronized void invalidateIf(Predicate<V> predicate) {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+
+            if (predicate.test(entry.value)) {
+                iterator.remove();
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Remove every value from the cache
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the number of values in the cache, including any that have expired but not yet been removed
+     * @return the number of values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the total weight of the values in the cache
+     * @return the total weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the number of lookups that found a value
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that didn't find a value
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of values evicted to keep the cache within its maximum weight
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of values removed because they expired
+     * @return the number of expirations
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * Returns a string representation of the cache counters
+     * @return a string representation of the cache counters
+     */
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d evictions and %d expirations", getHits(), getMisses(),
+                getEvictions(), getExpirations());
+    }
+
+    /**
+     * A value in the cache
+     * @param <V> the type of the value
+     */
+    private static class Entry<V> {
+        /**
+         * The cached value
+         */
+        private final V value;
+        /**
+         * The weight of the value
+         */
+        private final long weight;
+        /**
+         * The time in nanoseconds the value expires at
+         */
+        private final long expiresAt;
+
+        /**
+         * Construct an entry with the provided parameters
+         * @param value the cached value
+         * @param weight the weight of the value
+         * @param expiresAt the time in nanoseconds the value expires at
+         */
+        private Entry(V value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
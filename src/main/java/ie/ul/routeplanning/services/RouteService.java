@@ -3,6 +3,7 @@ package ie.ul.routeplanning.services;
 import ie.ul.routeplanning.routes.Route;
 import ie.ul.routeplanning.routes.SavedRoute;
 import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.SearchTrace;
 import ie.ul.routeplanning.routes.graph.Graph;
 import ie.ul.routeplanning.users.User;
 
@@ -31,6 +32,59 @@ public interface RouteService {
      */
     List<Route> generateRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time);
 
+    /**
+     * Generate the routes as generateRoutes does, explaining the query if a trace is provided. An explained query is
+     * always computed rather than answered from the cache, and records its algorithm, the time taken by each phase and
+     * each search it performed in the trace. Its routes aren't saved or cached, so they have no IDs
+     * @param graph the graph to generate the route with
+     * @param start the starting waypoint
+     * @param end the end waypoint
+     * @param ecoFriendly true if the routes should be CO2 aware
+     * @param time        true if time should be factored into the route duration
+     * @param trace       the trace to explain the query in, or null if it isn't explained
+     * @return the list of generated routes
+     */
+    List<Route> generateRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time, SearchTrace trace);
+
+    /**
+     * Generate every trade-off between distance, time and CO2 emissions using the provided graph and waypoints, i.e. the
+     * routes that no other route beats in all three. The first route in the list, if any, is the best route by the
+     * ecoFriendly and time parameters, with the others ordered by the same parameters
+     * @param graph the graph to generate the route with
+     * @param start the starting waypoint
+     * @param end the end waypoint
+     * @param ecoFriendly true if the routes should be ordered with CO2 taken into account
+     * @param time        true if the routes should be ordered with time taken into account
+     * @return the list of generated routes
+     */
+    List<Route> generateParetoRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time);
+
+    /**
+     * Generate every trade-off as generateParetoRoutes does, explaining the query if a trace is provided. An explained
+     * query is always computed rather than answered from the cache, and its routes aren't saved or cached
+     * @param graph the graph to generate the route with
+     * @param start the starting waypoint
+     * @param end the end waypoint
+     * @param ecoFriendly true if the routes should be ordered with CO2 taken into account
+     * @param time        true if the routes should be ordered with time taken into account
+     * @param trace       the trace to explain the query in, or null if it isn't explained
+     * @return the list of generated routes
+     */
+    List<Route> generateParetoRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time, SearchTrace trace);
+
+    /**
+     * Calculate the weight of the best route from each source waypoint to each target waypoint, without generating or
+     * saving the routes
+     * @param graph the graph to calculate the weights with
+     * @param sources the source waypoints, one for each row of the matrix
+     * @param targets the target waypoints, one for each column of the matrix
+     * @param ecoFriendly true if the weights should be CO2 aware
+     * @param time        true if time should be factored into the weights
+     * @return the weight from each source to each target, indexed by source then target, or infinity if the target can't
+     * be reached from the source
+     */
+    double[][] calculateDistanceMatrix(Graph graph, List<Waypoint> sources, List<Waypoint> targets, boolean ecoFriendly, boolean time);
+
     /**
      * Save the route with the given user as a SavedRoute
      * @param user the user to save the route on
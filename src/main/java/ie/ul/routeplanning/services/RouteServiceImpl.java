@@ -10,66 +10,202 @@ import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
 import ie.ul.routeplanning.routes.graph.weights.WeightFunctionBuilder;
 import ie.ul.routeplanning.users.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
- * The implementation for our route service
+ * The implementation for our route service. It is shared by every request, so it holds no per-query state: each query
+ * creates its own algorithm and context, the graph is frozen, and the route cache and storage are thread-safe
  */
 @Service
 public class RouteServiceImpl implements RouteService {
+    /**
+     * The default maximum number of route legs held by the route cache
+     */
+    public static final long DEFAULT_CACHE_MAX_LEGS = 100_000;
+    /**
+     * The default number of seconds generated routes are cached for
+     */
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 600;
     /**
      * The RouteRepository for saving/loading routes
      */
     private final RouteRepository routeRepository;
     /**
-     * The context for working with algorithms
+     * The service storing the generated routes
      */
-    private final AlgorithmContext<Route> algorithmContext = new AlgorithmContext<>();
+    private final RouteStorageService routeStorageService;
+    /**
+     * The cache of the saved routes generated for each query, weighed by their number of legs. The key of a query
+     * includes the version of the graph it was generated on, so results are never reused on a different graph
+     */
+    private final ResultCache<List<Object>, List<Route>> routeCache;
+    /**
+     * The newest version of the graph the cached routes were generated on
+     */
+    private final AtomicLong cachedGraphVersion = new AtomicLong();
+    /**
+     * The service recording the cost of the queries
+     */
+    private final MetricsService metricsService;
 
     /**
-     * Creates a RouteServiceImpl with the provided route repository dependency
+     * Creates a RouteServiceImpl with the provided dependencies and route cache parameters, registering the metrics of
+     * the route cache and storage with the metrics service
      * @param routeRepository the route repository for saving/loading routes
+     * @param routeStorageService the service storing the generated routes
+     * @param metricsService the service recording the cost of the queries
+     * @param cacheMaxLegs the maximum total number of route legs in the cached routes
+     * @param cacheTtlSeconds the number of seconds generated routes are cached for
      */
     @Autowired
-    public RouteServiceImpl(RouteRepository routeRepository) {
+    public RouteServiceImpl(RouteRepository routeRepository, RouteStorageService routeStorageService, MetricsService metricsService,
+                            @Value("${routes.cache.max-legs:" + DEFAULT_CACHE_MAX_LEGS + "}") long cacheMaxLegs,
+                            @Value("${routes.cache.ttl-seconds:" + DEFAULT_CACHE_TTL_SECONDS + "}") long cacheTtlSeconds) {
         this.routeRepository = routeRepository;
+        this.routeStorageService = routeStorageService;
+        this.metricsService = metricsService;
+        this.routeCache = new ResultCache<>(cacheMaxLegs, RouteServiceImpl::countLegs, Duration.ofSeconds(cacheTtlSeconds), System::nanoTime);
+
+        metricsService.registerCounter("route_cache_hits_total", "The number of route queries answered from the route cache", routeCache::getHits);
+        metricsService.registerCounter("route_cache_misses_total", "The number of route queries that had to be computed", routeCache::getMisses);
+        metricsService.registerCounter("route_cache_evictions_total", "The number of results evicted to keep the route cache within its maximum weight", routeCache::getEvictions);
+        metricsService.registerGauge("route_cache_hit_ratio", "The fraction of route queries answered from the route cache", this::getCacheHitRatio);
+        metricsService.registerGauge("route_cache_legs", "The total number of route legs in the route cache", routeCache::getWeight);
+        metricsService.registerGauge("route_storage_pending", "The number of generated routes waiting to be written to the database", routeStorageService::getPendingCount);
+        metricsService.registerCounter("route_storage_failed_writes_total", "The number of generated routes that could not be written to the database", routeStorageService::getFailedCount);
+
+        routeStorageService.addFailureListener(this::invalidateRoute); // its ID will never be found, so stop handing it out
     }
 
     /**
-     * Retrieve the route with the provided ID
+     * Creates a RouteServiceImpl with the provided dependencies and route cache parameters, recording its metrics in a
+     * metrics service of its own
+     * @param routeRepository the route repository for saving/loading routes
+     * @param routeStorageService the service storing the generated routes
+     * @param cacheMaxLegs the maximum total number of route legs in the cached routes
+     * @param cacheTtlSeconds the number of seconds generated routes are cached for
+     */
+    public RouteServiceImpl(RouteRepository routeRepository, RouteStorageService routeStorageService, long cacheMaxLegs, long cacheTtlSeconds) {
+        this(routeRepository, routeStorageService, new MetricsServiceImpl(true), cacheMaxLegs, cacheTtlSeconds);
+    }
+
+    /**
+     * Creates a RouteServiceImpl with the provided dependencies and the default route cache parameters
+     * @param routeRepository the route repository for saving/loading routes
+     * @param routeStorageService the service storing the generated routes
+     */
+    public RouteServiceImpl(RouteRepository routeRepository, RouteStorageService routeStorageService) {
+        this(routeRepository, routeStorageService, DEFAULT_CACHE_MAX_LEGS, DEFAULT_CACHE_TTL_SECONDS);
+    }
+
+    /**
+     * Count the legs of the provided routes, which is used as the weight of the routes in the cache
+     * @param routes the routes to count the legs of
+     * @return the total number of legs
+     */
+    private static long countLegs(List<Route> routes) {
+        return routes.stream().mapToLong(route -> route.getRouteLegs().size()).sum() + 1; // + 1 so an empty result still has a weight
+    }
+
+    /**
+     * Get the cache of generated routes, e.g. to monitor its hits and misses
+     * @return the route cache
+     */
+    public ResultCache<List<Object>, List<Route>> getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * Get the fraction of the lookups of the route cache that found the routes
+     * @return the hit ratio, or 0 if nothing has been looked up
+     */
+    private double getCacheHitRatio() {
+        long hits = routeCache.getHits(), lookups = hits + routeCache.getMisses();
+
+        return (lookups == 0) ? 0:(double) hits / lookups;
+    }
+
+    /**
+     * Retrieve the route with the provided ID, including a generated route that hasn't been written to the database yet
      *
      * @param id the id of the route to retrieve
      * @return the found route, or null if not found
      */
     @Override
     public Route getRoute(Long id) {
-        return routeRepository.findById(id).orElse(null);
+        Route pending = routeStorageService.getPendingRoute(id);
+
+        return (pending != null) ? pending:routeRepository.findById(id).orElse(null);
     }
 
     /**
-     * Sets up the algorithm context for this algorithm execution and returns the result
-     * @param graph       the graph to generate the route with
+     * Perform the algorithm on the graph in a context of its own, so concurrent requests never share an algorithm or
+     * context and don't need to be serialised. The time taken and the statistics of the algorithm are recorded with
+     * the metrics service
+     * @param graph     the graph to generate the route with
+     * @param kind      the kind of algorithm, which labels its metrics
+     * @param algorithm the algorithm to perform
+     * @param trace     the trace to explain the query in, or null if it isn't explained
+     * @param <T>       the type of the results of the algorithm
+     * @return the list of results
+     */
+    private <T> List<T> performAlgorithm(Graph graph, String kind, Algorithm<T> algorithm, SearchTrace trace) {
+        if (trace != null) {
+            trace.setAlgorithm(algorithm.getClass().getSimpleName());
+            algorithm.setTrace(trace);
+        }
+
+        long started = System.nanoTime();
+        List<T> results = new ArrayList<>(new AlgorithmContext<>(algorithm, graph).perform().collect());
+
+        metricsService.recordSearch(kind, System.nanoTime() - started, algorithm.getStatistics());
+
+        return results;
+    }
+
+    /**
+     * Get the saved routes generated for the provided query from the cache, or generate and save them if they aren't
+     * cached. The cache is cleared the first time a query arrives on a newer graph, since the routes cached for the
+     * previous graph will never be requested again. Queries still finishing on an older graph don't clear it. A query
+     * being explained is always generated, so there is a search to trace, and its routes are returned without being
+     * saved or cached, so explaining a query has no side effects
+     * @param graph       the graph to generate the routes with
      * @param start       the starting waypoint
      * @param end         the end waypoint
      * @param ecoFriendly true if the routes should be CO2 aware
      * @param time        true if time should be factored into the route duration
-     * @return the list of generated routes
+     * @param kind        the kind of routes generated by the algorithm, to tell apart queries for different algorithms
+     * @param algorithm   the supplier of the algorithm to generate the routes with if they aren't cached
+     * @param trace       the trace to explain the query in, or null if it isn't explained
+     * @return a new list of the saved routes, or of the unsaved routes if the query is explained
      */
-    private List<Route> performAlgorithm(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time) {
-        WeightFunction weightFunction = new WeightFunctionBuilder().withEmissions(ecoFriendly).withTime(time).build();
-        // since topKPaths is an extension of dijkstras, we can ask for 4 routes and the 1st route will be the best
-        Algorithm<Route> algorithm = AlgorithmFactory.topKPathsAlgorithm(start, end, weightFunction, 4);
+    private List<Route> cachedRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time,
+                                     String kind, Supplier<Algorithm<Route>> algorithm, SearchTrace trace) {
+        long version = graph.compact().getVersion();
+
+        if (cachedGraphVersion.getAndAccumulate(version, Math::max) < version) // graph versions only increase
+            routeCache.invalidateAll();
+
+        if (trace != null)
+            return performAlgorithm(graph, kind, algorithm.get(), trace);
 
-        algorithmContext.setAlgorithm(algorithm);
-        algorithmContext.setGraph(graph);
-        Result<Route> result = algorithmContext.perform();
+        List<Object> key = Arrays.asList(version, kind, start.getId(), end.getId(), ecoFriendly, time);
+        List<Route> routes = routeCache.get(key);
 
-        algorithmContext.reset();
+        if (routes == null) {
+            routes = routeStorageService.storeRoutes(performAlgorithm(graph, kind, algorithm.get(), null)); // the routes now have IDs, so a cache hit returns the same rows
+            routeCache.put(key, List.copyOf(routes));
+        }
 
-        return new ArrayList<>(result.collect());
+        return new ArrayList<>(routes); // callers may modify the list they are given
     }
 
     /**
@@ -85,10 +221,85 @@ public class RouteServiceImpl implements RouteService {
      */
     @Override
     public List<Route> generateRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time) {
-        List<Route> routes = performAlgorithm(graph, start, end, ecoFriendly, time);
-        routeRepository.saveAll(routes);
+        return generateRoutes(graph, start, end, ecoFriendly, time, null);
+    }
+
+    /**
+     * Generate the routes as generateRoutes does, explaining the query if a trace is provided. An explained query is
+     * always computed rather than answered from the cache, and records its algorithm, the time taken by each phase and
+     * each search it performed in the trace. Its routes aren't saved or cached, so they have no IDs
+     *
+     * @param graph       the graph to generate the route with
+     * @param start       the starting waypoint
+     * @param end         the end waypoint
+     * @param ecoFriendly true if the routes should be CO2 aware
+     * @param time        true if time should be factored into the route duration
+     * @param trace       the trace to explain the query in, or null if it isn't explained
+     * @return the list of generated routes
+     */
+    @Override
+    public List<Route> generateRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time, SearchTrace trace) {
+        WeightFunction weightFunction = new WeightFunctionBuilder().withEmissions(ecoFriendly).withTime(time).build();
+        // since topKPaths is an extension of dijkstras, we can ask for 4 routes and the 1st route will be the best
+        return cachedRoutes(graph, start, end, ecoFriendly, time, "topK",
+                () -> AlgorithmFactory.topKPathsAlgorithm(start, end, weightFunction, 4), trace);
+    }
+
+    /**
+     * Generate every trade-off between distance, time and CO2 emissions using the provided graph and waypoints, i.e. the
+     * routes that no other route beats in all three. The routes are ordered by the weight built from the ecoFriendly
+     * and time parameters, so the first route is the best one for those parameters
+     *
+     * @param graph       the graph to generate the route with
+     * @param start       the starting waypoint
+     * @param end         the end waypoint
+     * @param ecoFriendly true if the routes should be ordered with CO2 taken into account
+     * @param time        true if the routes should be ordered with time taken into account
+     * @return the list of generated routes
+     */
+    @Override
+    public List<Route> generateParetoRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time) {
+        return generateParetoRoutes(graph, start, end, ecoFriendly, time, null);
+    }
+
+    /**
+     * Generate every trade-off as generateParetoRoutes does, explaining the query if a trace is provided. An explained
+     * query is always computed rather than answered from the cache, and its routes aren't saved or cached
+     *
+     * @param graph       the graph to generate the route with
+     * @param start       the starting waypoint
+     * @param end         the end waypoint
+     * @param ecoFriendly true if the routes should be ordered with CO2 taken into account
+     * @param time        true if the routes should be ordered with time taken into account
+     * @param trace       the trace to explain the query in, or null if it isn't explained
+     * @return the list of generated routes
+     */
+    @Override
+    public List<Route> generateParetoRoutes(Graph graph, Waypoint start, Waypoint end, boolean ecoFriendly, boolean time, SearchTrace trace) {
+        WeightFunction weightFunction = new WeightFunctionBuilder().withEmissions(ecoFriendly).withTime(time).build();
+
+        return cachedRoutes(graph, start, end, ecoFriendly, time, "pareto",
+                () -> AlgorithmFactory.paretoAlgorithm(start, end, weightFunction), trace);
+    }
+
+    /**
+     * Calculate the weight of the best route from each source waypoint to each target waypoint, without generating or
+     * saving the routes
+     *
+     * @param graph       the graph to calculate the weights with
+     * @param sources     the source waypoints, one for each row of the matrix
+     * @param targets     the target waypoints, one for each column of the matrix
+     * @param ecoFriendly true if the weights should be CO2 aware
+     * @param time        true if time should be factored into the weights
+     * @return the weight from each source to each target, indexed by source then target, or infinity if the target can't
+     * be reached from the source
+     */
+    @Override
+    public double[][] calculateDistanceMatrix(Graph graph, List<Waypoint> sources, List<Waypoint> targets, boolean ecoFriendly, boolean time) {
+        WeightFunction weightFunction = new WeightFunctionBuilder().withEmissions(ecoFriendly).withTime(time).build();
+        Algorithm<double[]> algorithm = AlgorithmFactory.distanceMatrixAlgorithm(sources, targets, weightFunction);
 
-        return routes;
+        return performAlgorithm(graph, "distanceMatrix", algorithm, null).toArray(new double[0][]);
     }
 
     /**
@@ -99,6 +310,9 @@ public class RouteServiceImpl implements RouteService {
      */
     @Override
     public void saveRoute(User user, Route route) {
+        if (routeStorageService.getPendingRoute(route.getId()) != null)
+            routeStorageService.flush(); // the saved route refers to the row of the route, so it must be written first
+
         SavedRoute savedRoute = new SavedRoute(null, user, route);
         routeRepository.save(savedRoute);
     }
@@ -111,6 +325,15 @@ public class RouteServiceImpl implements RouteService {
     @Override
     public void deleteRoute(Long id) {
         routeRepository.deleteById(id);
+        invalidateRoute(id); // don't hand out a deleted row
+    }
+
+    /**
+     * Remove the cached results including the route with the provided ID, so its ID isn't handed out again
+     * @param id the id of the route
+     */
+    private void invalidateRoute(Long id) {
+        routeCache.invalidateIf(routes -> routes.stream().anyMatch(route -> id.equals(route.getId())));
     }
 
     /**
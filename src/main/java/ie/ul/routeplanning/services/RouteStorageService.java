@@ -0,0 +1,51 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.routes.Route;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A service for storing generated routes. Routes are given their IDs straight away, but may be written to the database
+ * later, so a route that is waiting to be written must be looked up with getPendingRoute
+ */
+public interface RouteStorageService {
+    /**
+     * Store the provided routes, identifying each by the hash of its leg sequence. A route identical to one already
+     * stored, or waiting to be stored, is replaced by that route rather than stored again
+     * @param routes the generated routes to store
+     * @return the stored routes in the same order, each with its ID
+     */
+    List<Route> storeRoutes(List<Route> routes);
+
+    /**
+     * Get the route with the provided ID if it is waiting to be written to the database
+     * @param id the ID of the route
+     * @return the route, or null if it isn't waiting to be written
+     */
+    Route getPendingRoute(Long id);
+
+    /**
+     * Get the number of routes waiting to be written to the database
+     * @return the number of pending routes
+     */
+    int getPendingCount();
+
+    /**
+     * Get the number of routes that could not be written to the database, even after retrying. Their IDs were handed
+     * out when they were stored, but can't be looked up once they are no longer pending
+     * @return the number of failed writes
+     */
+    long getFailedCount();
+
+    /**
+     * Add a listener called with the ID of each route that could not be written, e.g. to stop handing the ID out
+     * @param listener the listener to call from the thread writing the routes
+     */
+    void addFailureListener(Consumer<Long> listener);
+
+    /**
+     * Wait until every route stored before this call has been written to the database
+     */
+    void flush();
+}
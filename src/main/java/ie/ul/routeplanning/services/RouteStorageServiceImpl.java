@@ -0,0 +1,420 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.repositories.RouteRepository;
+import ie.ul.routeplanning.routes.Route;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The implementation of the route storage service, writing the routes behind the requests that generate them.
+ *
+ * A new route is given its ID from the route sequence and queued, and a background writer inserts the queued routes in
+ * batches, so generating routes doesn't wait for them to be inserted. Until a route is written, it is kept in memory
+ * under its ID and hash, so it can be looked up and isn't stored twice. The queue is bounded, so if routes are generated
+ * faster than they can be written, storing routes waits for space in the queue rather than using more memory. The routes
+ * still queued are written before the service is shut down.
+ *
+ * A route that can't be written is retried a few times. If it still can't be written, it is counted as a failed write
+ * and the failure listeners are told its ID, since the ID was already handed out and will never be found
+ */
+@Service
+public class RouteStorageServiceImpl implements RouteStorageService {
+    /**
+     * The default maximum number of routes waiting to be written
+     */
+    public static final int DEFAULT_CAPACITY = 10_000;
+    /**
+     * The default maximum number of routes written in one transaction
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    /**
+     * The number of times a route is written in its own transaction before it is counted as failed
+     */
+    public static final int WRITE_ATTEMPTS = 3;
+    /**
+     * The milliseconds waited after the first failed attempt to write a route, doubled after each further attempt
+     */
+    private static final long RETRY_DELAY_MILLIS = 50;
+    /**
+     * The logger for routes that couldn't be written
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RouteStorageServiceImpl.class);
+    /**
+     * The repository to find stored routes in
+     */
+    private final RouteRepository routeRepository;
+    /**
+     * The entity manager to generate IDs and insert routes with
+     */
+    private final EntityManager entityManager;
+    /**
+     * The template for running work in a transaction
+     */
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * The maximum number of routes written in one transaction
+     */
+    private final int batchSize;
+    /**
+     * The routes waiting to be written, in the order they were stored
+     */
+    private final BlockingQueue<Route> queue;
+    /**
+     * The routes that haven't been written yet by their ID, including those taken off the queue but not yet committed
+     */
+    private final Map<Long, Route> pendingById = new ConcurrentHashMap<>();
+    /**
+     * The routes that haven't been written yet by their hash
+     */
+    private final Map<String, Route> pendingByHash = new ConcurrentHashMap<>();
+    /**
+     * The lock notified every time a batch of routes has been written
+     */
+    private final Object writtenLock = new Object();
+    /**
+     * The number of routes that couldn't be written
+     */
+    private final LongAdder failedWrites = new LongAdder();
+    /**
+     * The listeners called with the ID of each route that couldn't be written
+     */
+    private final List<Consumer<Long>> failureListeners = new CopyOnWriteArrayList<>();
+    /**
+     * The thread writing the queued routes
+     */
+    private final Thread writer;
+    /**
+     * False once the service is shutting down, after which no more routes can be stored
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a RouteStorageServiceImpl with the provided dependencies and queue parameters, starting its writer
+     * @param routeRepository the repository to find stored routes in
+     * @param entityManager the entity manager to generate IDs and insert routes with
+     * @param transactionManager the transaction manager to write the routes with
+     * @param capacity the maximum number of routes waiting to be written
+     * @param batchSize the maximum number of routes written in one transaction
+     */
+    @Autowired
+    public RouteStorageServiceImpl(RouteRepository routeRepository, EntityManager entityManager, PlatformTransactionManager transactionManager,
+                                   @Value("${routes.write-behind.capacity:" + DEFAULT_CAPACITY + "}") int capacity,
+                                   @Value("${routes.write-behind.batch-size:" + DEFAULT_BATCH_SIZE + "}") int batchSize) {
+        if (capacity < 1 || batchSize < 1)
+            throw new IllegalStateException("The capacity and batch size of the route storage must be at least 1");
+
+        this.routeRepository = routeRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::writeRoutes, "route-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Store the provided routes, identifying each by the hash of its leg sequence. A route identical to one already
+     * stored, or waiting to be stored, is replaced by that route rather than stored again
+     *
+     * @param routes the generated routes to store
+     * @return the stored routes in the same order, each with its ID
+     */
+    @Override
+    public List<Route> storeRoutes(List<Route> routes) {
+        if (!running)
+            throw new IllegalStateException("Routes cannot be stored once the route storage has shut down");
+
+        Map<String, Route> stored = new HashMap<>();
+        List<Route> unstored = new ArrayList<>();
+
+        for (Route route : routes) {
+            route.setHash(route.calculateHash());
+            Route pending = pendingByHash.get(route.getHash());
+
+            if (pending != null)
+                stored.put(route.getHash(), pending);
+        }
+
+        // the pending routes are checked first, since a route is only removed from them once it can be found in the database
+        Set<String> missing = routes.stream().map(Route::getHash).filter(hash -> !stored.containsKey(hash)).collect(Collectors.toSet());
+
+        if (!missing.isEmpty())
+            routeRepository.findByHashIn(missing).forEach(route -> stored.put(route.getHash(), route));
+
+        for (Route route : routes) {
+            if (stored.putIfAbsent(route.getHash(), route) == null)
+                unstored.add(route);
+        }
+
+        assignIds(unstored);
+
+        for (Route route : unstored) {
+            pendingById.put(route.getId(), route); // before it can be found by its hash, so its ID can always be looked up
+            Route pending = pendingByHash.putIfAbsent(route.getHash(), route);
+
+            if (pending != null) {
+                pendingById.remove(route.getId());
+                stored.put(route.getHash(), pending); // another request stored the same route in the meantime
+            } else {
+                enqueue(route);
+            }
+        }
+
+        return routes.stream().map(route -> stored.get(route.getHash())).collect(Collectors.toList());
+    }
+
+    /**
+     * Give each of the provided routes the next ID from the route sequence
+     * @param routes the routes to give IDs to
+     */
+    private void assignIds(List<Route> routes) {
+        if (routes.isEmpty())
+            return;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+            IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Route.class).getIdentifierGenerator();
+
+            for (Route route : routes)
+                route.setId((Long) generator.generate(session, route));
+        });
+    }
+
+    /**
+     * Queue the provided route to be written, waiting for space in the queue if it is full
+     * @param route the route to queue
+     */
+    private void enqueue(Route route) {
+        try {
+            queue.put(route);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            release(List.of(route));
+
+            throw new IllegalStateException("Interrupted while waiting to store a route", ex);
+        }
+    }
+
+    /**
+     * Write the queued routes in batches until the service shuts down and the queue is empty
+     */
+    private void writeRoutes() {
+        List<Route> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Route route = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (route != null) {
+                    batch.add(route);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException ex) {
+                // the writer only stops once the service shuts down and the queue is empty
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write the provided routes in one transaction. If that fails, e.g. because another instance of the application
+     * stored one of the routes first, each route is written in its own transaction so only the routes that fail are lost
+     * @param batch the routes to write
+     */
+    private void writeBatch(List<Route> batch) {
+        List<Route> failed = new ArrayList<>();
+
+        try {
+            insert(batch);
+        } catch (RuntimeException ex) {
+            for (Route route : batch) {
+                if (!writeRoute(route))
+                    failed.add(route);
+            }
+        } finally {
+            release(batch);
+        }
+
+        for (Route route : failed) { // after the route is released, so a listener never sees it pending
+            failedWrites.increment();
+            failureListeners.forEach(listener -> listener.accept(route.getId()));
+        }
+    }
+
+    /**
+     * Write the provided route in its own transaction, retrying up to WRITE_ATTEMPTS times with a growing delay in case
+     * the failure is temporary, e.g. a lost connection
+     * @param route the route to write
+     * @return true if the route was written, false if every attempt failed
+     */
+    private boolean writeRoute(Route route) {
+        long delay = RETRY_DELAY_MILLIS;
+
+        for (int attempt = 1; ; attempt++) {
+            Route copy = new Route(route.getRouteLegs()); // the legs were given IDs by the failed transaction
+            copy.setId(route.getId());
+            copy.setHash(route.getHash());
+
+            try {
+                insert(List.of(copy));
+
+                return true;
+            } catch (RuntimeException ex) {
+                if (attempt == WRITE_ATTEMPTS) {
+                    logger.warn("Route {} could not be written after {} attempts, so its ID will not be found", route.getId(), attempt, ex);
+
+                    return false;
+                }
+
+                logger.debug("Route {} could not be written, retrying in {} ms", route.getId(), delay, ex);
+            }
+
+            try {
+                Thread.sleep(delay);
+                delay *= 2;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while retrying to write route {}, so its ID will not be found", route.getId());
+
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Insert the provided routes and their legs in one transaction. The routes are saved rather than merged, so their IDs
+     * are kept without looking each of them up first
+     * @param routes the routes to insert
+     */
+    private void insert(List<Route> routes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            routes.forEach(session::save);
+        });
+    }
+
+    /**
+     * Stop treating the provided routes as pending, since they have been written or never will be, and wake up any
+     * threads waiting for them
+     * @param routes the routes to release
+     */
+    private void release(List<Route> routes) {
+        for (Route route : routes) {
+            pendingById.remove(route.getId());
+            pendingByHash.remove(route.getHash(), route);
+        }
+
+        synchronized (writtenLock) {
+            writtenLock.notifyAll();
+        }
+    }
+
+    /**
+     * Get the route with the provided ID if it is waiting to be written to the database
+     *
+     * @param id the ID of the route
+     * @return the route, or null if it isn't waiting to be written
+     */
+    @Override
+    public Route getPendingRoute(Long id) {
+        return (id == null) ? null:pendingById.get(id);
+    }
+
+    /**
+     * Get the number of routes waiting to be written to the database
+     *
+     * @return the number of pending routes
+     */
+    @Override
+    public int getPendingCount() {
+        return pendingById.size();
+    }
+
+    /**
+     * Get the number of routes that could not be written to the database, even after retrying
+     *
+     * @return the number of failed writes
+     */
+    @Override
+    public long getFailedCount() {
+        return failedWrites.sum();
+    }
+
+    /**
+     * Add a listener called with the ID of each route that could not be written
+     *
+     * @param listener the listener to call from the thread writing the routes
+     */
+    @Override
+    public void addFailureListener(Consumer<Long> listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * Wait until every route stored before this call has been written to the database
+     */
+    @Override
+    public void flush() {
+        Set<Long> waiting = new HashSet<>(pendingById.keySet());
+
+        synchronized (writtenLock) {
+            while (waiting.stream().anyMatch(pendingById::containsKey)) {
+                try {
+                    writtenLock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+
+                    throw new IllegalStateException("Interrupted while waiting for routes to be written", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting routes and wait for the writer to write the routes still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Route> late = new ArrayList<>();
+        queue.drainTo(late); // routes queued by a request that was storing them as the writer stopped
+
+        if (!late.isEmpty())
+            writeBatch(late);
+    }
+}
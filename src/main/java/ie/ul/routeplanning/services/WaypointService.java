@@ -2,14 +2,25 @@ package ie.ul.routeplanning.services;
 
 import ie.ul.routeplanning.routes.Waypoint;
 
+import java.util.List;
+
 /**
  * A service for working with waypoints
  */
 public interface WaypointService {
     /**
-     * Finds the first waypoint with the provided name
+     * Finds the first waypoint with the provided name, ignoring case
      * @param name the name of the waypoint to find
-     * @return the first waypoint containing the provided name, null if none found
+     * @return the first waypoint with the provided name, null if none found
      */
     Waypoint findWaypoint(String name);
+
+    /**
+     * Finds the waypoints with names starting with the provided prefix, ignoring case, e.g. to suggest waypoints as a
+     * name is typed
+     * @param prefix the prefix of the waypoint names
+     * @param limit the maximum number of waypoints to return
+     * @return the waypoints found in order of their names
+     */
+    List<Waypoint> completeWaypoint(String prefix, int limit);
 }
@@ -2,39 +2,94 @@ package ie.ul.routeplanning.services;
 
 import ie.ul.routeplanning.repositories.WaypointRepository;
 import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.routes.waypoints.WaypointIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * An implementation of the WaypointService interface
+ * An implementation of the WaypointService interface. Waypoints are looked up in the index of the waypoints of the
+ * graph, which is rebuilt along with the graph, so lookups don't query the database. The database is only queried if
+ * the graph can't be loaded
  */
 @Service
 public class WaypointServiceImpl implements WaypointService {
+    /**
+     * The logger for lookups made without the waypoint index
+     */
+    private static final Logger logger = LoggerFactory.getLogger(WaypointServiceImpl.class);
     /**
      * The waypoint repository for accessing waypoints
      */
     private WaypointRepository waypointRepository;
+    /**
+     * The service for loading the graph the waypoints are indexed from
+     */
+    private GraphService graphService;
 
     /**
      * Creates a WaypointServiceImpl with the provided dependencies
      * @param waypointRepository the waypoint repository for accessing waypoints
+     * @param graphService the service for loading the graph the waypoints are indexed from
      */
     @Autowired
-    public WaypointServiceImpl(WaypointRepository waypointRepository) {
+    public WaypointServiceImpl(WaypointRepository waypointRepository, GraphService graphService) {
         this.waypointRepository = waypointRepository;
+        this.graphService = graphService;
+    }
+
+    /**
+     * Get the waypoint index of the current graph, logging a warning with the lookup and its fallback if the graph
+     * couldn't be loaded
+     * @param lookup the lookup needing the index, for the log message
+     * @param fallback what the lookup does without the index, for the log message
+     * @return the waypoint index, or null if the graph couldn't be loaded
+     */
+    private WaypointIndex loadIndex(String lookup, String fallback) {
+        try {
+            return WaypointIndex.forGraph(graphService.loadGraph().compact());
+        } catch (BuilderException ex) {
+            logger.warn("The waypoint index could not be built for {}, so {}", lookup, fallback, ex);
+
+            return null;
+        }
     }
 
     /**
-     * Finds the first waypoint with the provided name
+     * Finds the first waypoint with the provided name, ignoring case
      *
      * @param name the name of the waypoint to find
-     * @return the first waypoint containing the provided name, null if none found
+     * @return the first waypoint with the provided name, null if none found
      */
     @Override
     public Waypoint findWaypoint(String name) {
+        WaypointIndex index = loadIndex("the waypoint named " + name, "it is looked up in the database instead");
+
+        if (index != null)
+            return index.find(name);
+
         return waypointRepository.findByName(name)
                 .stream()
                 .findFirst()
                 .orElse(null);
     }
+
+    /**
+     * Finds the waypoints with names starting with the provided prefix, ignoring case
+     *
+     * @param prefix the prefix of the waypoint names
+     * @param limit the maximum number of waypoints to return
+     * @return the waypoints found in order of their names, or an empty list if the graph couldn't be loaded
+     */
+    @Override
+    public List<Waypoint> completeWaypoint(String prefix, int limit) {
+        WaypointIndex index = loadIndex("waypoints starting with " + prefix, "no completions are returned");
+
+        return (index == null) ? new ArrayList<>():index.complete(prefix, limit);
+    }
 }
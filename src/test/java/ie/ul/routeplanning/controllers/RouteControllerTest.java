@@ -5,6 +5,7 @@ import ie.ul.routeplanning.routes.RouteLeg;
 import ie.ul.routeplanning.routes.SavedRoute;
 import ie.ul.routeplanning.routes.Waypoint;
 import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
 import ie.ul.routeplanning.services.*;
 import ie.ul.routeplanning.transport.TransportFactory;
 import ie.ul.routeplanning.users.User;
@@ -22,6 +23,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -367,4 +372,131 @@ public class RouteControllerTest {
 
         verify(authenticationServiceMock).isAuthenticated();
     }
+
+    /**
+     * Tests that the distance matrix endpoint returns the costs calculated by the route service as JSON, with null for
+     * targets that can't be reached
+     */
+    @Test
+    void shouldReturnDistanceMatrixAsJson() throws Exception {
+        List<Waypoint> sources = List.of(TEST_WAYPOINTS[0], TEST_WAYPOINTS[1]);
+        List<Waypoint> targets = List.of(TEST_WAYPOINTS[2]);
+
+        for (Waypoint waypoint : TEST_WAYPOINTS)
+            when(waypointServiceMock.findWaypoint(waypoint.getName()))
+                    .thenReturn(waypoint);
+
+        when(graphServiceMock.loadGraph())
+                .thenReturn(TEST_GRAPH);
+        when(routeServiceMock.calculateDistanceMatrix(TEST_GRAPH, sources, targets, false, true))
+                .thenReturn(new double[][]{{350.0}, {Double.POSITIVE_INFINITY}});
+
+        mockMvc.perform(get("/routes/matrix")
+                .param("sources", "Tralee", "Cork")
+                .param("targets", "Dublin")
+                .param("time", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sources", contains("Tralee", "Cork")))
+                .andExpect(jsonPath("$.targets", contains("Dublin")))
+                .andExpect(jsonPath("$.costs[0][0]", is(350.0)))
+                .andExpect(jsonPath("$.costs[1][0]", nullValue()));
+
+        verify(routeServiceMock).calculateDistanceMatrix(TEST_GRAPH, sources, targets, false, true);
+    }
+
+    /**
+     * Tests that the distance matrix endpoint returns an error if a waypoint can't be found
+     */
+    @Test
+    void shouldReturnDistanceMatrixErrorForUnknownWaypoint() throws Exception {
+        mockMvc.perform(get("/routes/matrix")
+                .param("sources", "Nowhere"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("No waypoint found with name Nowhere")));
+    }
+
+    /**
+     * Tests that the waypoint suggestion endpoint returns the names of the waypoints found for the prefix, capping the limit
+     */
+    @Test
+    void shouldReturnWaypointSuggestionsAsJson() throws Exception {
+        when(waypointServiceMock.completeWaypoint("co", 50))
+                .thenReturn(List.of(new Waypoint("Cork", 51.8985, -8.4756), new Waypoint("Cobh", 51.8503, -8.2967)));
+
+        mockMvc.perform(get("/routes/waypoints")
+                .param("prefix", "co")
+                .param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", contains("Cork", "Cobh")));
+
+        verify(waypointServiceMock).completeWaypoint("co", 50);
+
+        mockMvc.perform(get("/routes/waypoints")
+                .param("prefix", " "))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", empty()));
+    }
+
+    /**
+     * Tests that the explain endpoint returns the generated routes as JSON along with the trace of the query
+     */
+    @Test
+    void shouldExplainRoutesAsJson() throws Exception {
+        Waypoint startWaypoint = TEST_WAYPOINTS[0];
+        Waypoint endWaypoint = TEST_WAYPOINTS[2];
+
+        when(waypointServiceMock.findWaypoint(startWaypoint.getName()))
+                .thenReturn(startWaypoint);
+        when(waypointServiceMock.findWaypoint(endWaypoint.getName()))
+                .thenReturn(endWaypoint);
+        when(graphServiceMock.loadGraph())
+                .thenReturn(TEST_GRAPH);
+        when(routeServiceMock.generateRoutes(eq(TEST_GRAPH), eq(startWaypoint), eq(endWaypoint), eq(false), eq(true), notNull()))
+                .thenReturn(TEST_ROUTES);
+
+        mockMvc.perform(get("/routes/explain")
+                .param("startWaypoint", "Tralee")
+                .param("endWaypoint", "Dublin")
+                .param("time", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.routes", hasSize(2)))
+                .andExpect(jsonPath("$.routes[0].waypoints", contains("Tralee", "Cork")))
+                .andExpect(jsonPath("$.routes[0].distance", is(120.0)))
+                .andExpect(jsonPath("$.routes[1].waypoints", contains("Tralee", "Dublin", "Cork")))
+                .andExpect(jsonPath("$.explain.phaseMillis.graph", notNullValue()));
+
+        verify(routeServiceMock).generateRoutes(eq(TEST_GRAPH), eq(startWaypoint), eq(endWaypoint), eq(false), eq(true), notNull());
+        verify(routeServiceMock, never()).generateRoutes(TEST_GRAPH, startWaypoint, endWaypoint, false, true);
+    }
+
+    /**
+     * Tests that the explain endpoint responds with an error if the waypoints are invalid or the graph can't be loaded,
+     * without generating any routes
+     */
+    @Test
+    void shouldNotExplainRoutesOnError() throws Exception {
+        Waypoint startWaypoint = TEST_WAYPOINTS[0];
+        Waypoint endWaypoint = TEST_WAYPOINTS[2];
+
+        when(waypointServiceMock.findWaypoint(startWaypoint.getName()))
+                .thenReturn(startWaypoint);
+        when(waypointServiceMock.findWaypoint(endWaypoint.getName()))
+                .thenReturn(endWaypoint);
+        when(graphServiceMock.loadGraph())
+                .thenThrow(new BuilderException("The edges file could not be read"));
+
+        mockMvc.perform(get("/routes/explain")
+                .param("startWaypoint", "Tralee")
+                .param("endWaypoint", "Tralee"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("You cannot create a route with the same start and end waypoints")));
+
+        mockMvc.perform(get("/routes/explain")
+                .param("startWaypoint", "Tralee")
+                .param("endWaypoint", "Dublin"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.error", is("An error occurred loading the graph, please try again")));
+
+        verify(routeServiceMock, never()).generateRoutes(notNull(), notNull(), notNull(), anyBoolean(), anyBoolean(), notNull());
+    }
 }
@@ -0,0 +1,404 @@
+package ie.ul.routeplanning.routes.algorithms;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.graph.GraphUtils;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunctionBuilder;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to unit test the path finding algorithms
+ */
+public class PathFindingAlgorithmTest {
+    /**
+     * Array of waypoints used for testing purposes
+     */
+    private Waypoint[] TEST_WAYPOINTS;
+    /**
+     * A graph we use for testing purposes
+     */
+    private Graph TEST_GRAPH;
+
+    /**
+     * Initialises the test objects
+     */
+    @BeforeEach
+    private void init() {
+        TEST_GRAPH = new Graph();
+
+        Waypoint[] waypoints = {
+                new Waypoint(1L, "Tralee", 52.27, -9.70),
+                new Waypoint(2L, "Limerick", 52.66, -8.63),
+                new Waypoint(3L, "Cork", 51.90, -8.47),
+                new Waypoint(4L, "Dublin", 53.35, -6.26),
+                new Waypoint(5L, "Galway", 53.27, -9.05)
+        };
+
+        TransportMethod bus = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.BUS);
+        TransportMethod train = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.TRAIN);
+        TransportMethod car = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.CAR);
+
+        RouteLeg[] edges = {
+                new RouteLeg(waypoints[0], waypoints[1], bus, 105.0),
+                new RouteLeg(waypoints[0], waypoints[2], train, 115.0),
+                new RouteLeg(waypoints[1], waypoints[3], train, 200.0),
+                new RouteLeg(waypoints[2], waypoints[3], car, 260.0),
+                new RouteLeg(waypoints[1], waypoints[4], bus, 100.0),
+                new RouteLeg(waypoints[4], waypoints[3], car, 210.0)
+        };
+
+        for (RouteLeg edge : edges)
+            TEST_GRAPH.addEdge(edge);
+
+        TEST_WAYPOINTS = waypoints;
+    }
+
+    /**
+     * Get the waypoints visited by the route in order
+     * @param route the route to get the waypoints of
+     * @return the names of the visited waypoints
+     */
+    private String[] visitedWaypoints(Route route) {
+        List<RouteLeg> legs = route.getRouteLegs();
+        String[] names = new String[legs.size() + 1];
+
+        names[0] = route.getStart().getName();
+
+        for (int i = 0; i < legs.size(); i++)
+            names[i + 1] = legs.get(i).getEnd().getName();
+
+        return names;
+    }
+
+    /**
+     * Build a square grid of waypoints 0.1 degrees apart, connected to their neighbours in both directions by edges a bit
+     * longer than the great-circle distance between them. Edges alternate between car and train
+     * @param size the number of waypoints along each side of the grid
+     * @return the grid graph, where the waypoint in row r and column c has the id r * size + c
+     */
+    private Graph gridGraph(int size) {
+        Graph graph = new Graph();
+        Waypoint[] waypoints = new Waypoint[size * size];
+        TransportMethod car = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.CAR);
+        TransportMethod train = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.TRAIN);
+
+        for (int i = 0; i < waypoints.length; i++)
+            waypoints[i] = new Waypoint((long) i, "Waypoint " + i, 52.0 + (i / size) * 0.1, -9.0 + (i % size) * 0.1);
+
+        for (int i = 0; i < waypoints.length; i++) {
+            for (int j : new int[]{i + 1, i + size}) {
+                if (j < waypoints.length && (j != i + 1 || j % size != 0)) {
+                    Waypoint a = waypoints[i], b = waypoints[j];
+                    double distance = GraphUtils.greatCircleDistance(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude()) * 1.2;
+                    TransportMethod method = (i % 2 == 0) ? car:train;
+
+                    graph.addEdge(new RouteLeg(a, b, method, distance));
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * This test tests that A* finds routes with the same cost as dijkstra's for each weight function, while settling
+     * fewer vertices
+     */
+    @Test
+    void shouldFindShortestRouteSettlingFewerVerticesWithAStar() {
+        int size = 20;
+        Graph graph = gridGraph(size).freeze();
+        Waypoint start = graph.getVertex(10L * size), end = graph.getVertex(10L * size + size - 1);
+        WeightFunction[] weightFunctions = {
+                new WeightFunctionBuilder().build(),
+                new WeightFunctionBuilder().withTime(true).build(),
+                new WeightFunctionBuilder().withEmissions(true).withTime(true).build()
+        };
+
+        for (WeightFunction weightFunction : weightFunctions) {
+            DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(start, end, weightFunction);
+            AStarAlgorithm aStar = new AStarAlgorithm(start, end, weightFunction);
+
+            Route dijkstraRoute = dijkstra.perform(graph).collect().get(0);
+            Route aStarRoute = aStar.perform(graph).collect().get(0);
+
+            double dijkstraWeight = dijkstraRoute.getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+            double aStarWeight = aStarRoute.getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+
+            assertThat(aStarWeight, closeTo(dijkstraWeight, 0.0001));
+            assertThat(aStar.getStatistics().getSettled(), lessThan(dijkstra.getStatistics().getSettled()));
+        }
+    }
+
+    /**
+     * This test tests that bidirectional dijkstra's finds a route with the same cost as dijkstra's while settling fewer
+     * vertices, and finds the same route on the test graph
+     */
+    @Test
+    void shouldFindShortestRouteSettlingFewerVerticesBidirectionally() {
+        int size = 20;
+        Graph graph = gridGraph(size).freeze();
+        Waypoint start = graph.getVertex(0L), end = graph.getVertex((long) size * size - 1);
+        WeightFunction weightFunction = new WeightFunctionBuilder().withTime(true).build();
+        DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(start, end, weightFunction);
+        BidirectionalDijkstraAlgorithm bidirectional = new BidirectionalDijkstraAlgorithm(start, end, weightFunction);
+
+        double dijkstraWeight = dijkstra.perform(graph).collect().get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+        double bidirectionalWeight = bidirectional.perform(graph).collect().get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+
+        assertThat(bidirectionalWeight, closeTo(dijkstraWeight, 0.0001));
+        assertThat(bidirectional.getStatistics().getSettled(), lessThan(dijkstra.getStatistics().getSettled()));
+
+        List<Route> routes = AlgorithmFactory.bidirectionalDijkstraAlgorithm(TEST_WAYPOINTS[0], TEST_WAYPOINTS[3],
+                new WeightFunctionBuilder().build()).perform(TEST_GRAPH).collect();
+
+        assertThat(routes, hasSize(1));
+        assertThat(visitedWaypoints(routes.get(0)), arrayContaining("Tralee", "Limerick", "Dublin"));
+    }
+
+    /**
+     * This test tests that the contraction hierarchy of each weight profile finds routes with the same cost as
+     * dijkstra's between every pair of waypoints, and that the unpacked routes travel the edges of the graph
+     */
+    @Test
+    void shouldFindShortestRoutesWithContractionHierarchy() {
+        int size = 8;
+        Graph graph = gridGraph(size).freeze();
+
+        for (WeightProfile profile : WeightProfile.values()) {
+            WeightFunction weightFunction = profile.createWeightFunction();
+
+            for (long from = 0; from < size * size; from += 3) {
+                for (long to = 0; to < size * size; to += 5) {
+                    Waypoint start = graph.getVertex(from), end = graph.getVertex(to);
+                    List<Route> expected = AlgorithmFactory.dijkstraAlgorithm(start, end, weightFunction).perform(graph).collect();
+                    List<Route> routes = AlgorithmFactory.contractionHierarchyAlgorithm(start, end, weightFunction).perform(graph).collect();
+
+                    assertThat(routes, hasSize(1));
+                    assertThat(routes.get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum(),
+                            closeTo(expected.get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum(), 0.0001));
+
+                    if (from != to)
+                        assertThat(visitedWaypoints(routes.get(0))[routes.get(0).getRouteLegs().size()], is(end.getName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * This test tests that ALT finds routes with the same cost as dijkstra's for each weight profile, settling fewer
+     * vertices, even when the coordinates of the waypoints are scrambled so that they say nothing about the distances
+     */
+    @Test
+    void shouldFindShortestRouteSettlingFewerVerticesWithLandmarks() {
+        int size = 20;
+        Graph grid = gridGraph(size), graph = new Graph();
+
+        for (Waypoint waypoint : grid.getVertices()) {
+            Waypoint scrambled = grid.getVertex(waypoint.getId() * 7 % (size * size)); // take the coordinates of another waypoint
+            graph.addVertex(new Waypoint(waypoint.getId(), waypoint.getName(), scrambled.getLatitude(), scrambled.getLongitude()));
+        }
+
+        for (Waypoint waypoint : grid.getVertices()) {
+            for (Edge edge : grid.getNeighbours(waypoint))
+                graph.addEdge(new RouteLeg(graph.getVertex(edge.getStart().getId()), graph.getVertex(edge.getEnd().getId()),
+                        edge.getTransportMethod(), edge.getDistance()), false);
+        }
+
+        graph.freeze();
+        Waypoint start = graph.getVertex(10L * size), end = graph.getVertex(10L * size + size - 1);
+
+        for (WeightProfile profile : WeightProfile.values()) {
+            WeightFunction weightFunction = profile.createWeightFunction();
+            DijkstraAlgorithm dijkstra = new DijkstraAlgorithm(start, end, weightFunction);
+            LandmarkAlgorithm landmarks = new LandmarkAlgorithm(start, end, weightFunction);
+
+            double dijkstraWeight = dijkstra.perform(graph).collect().get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+            double landmarkWeight = landmarks.perform(graph).collect().get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+
+            assertThat(landmarkWeight, closeTo(dijkstraWeight, 0.0001));
+            assertThat(landmarks.getStatistics().getSettled(), lessThan(dijkstra.getStatistics().getSettled()));
+        }
+    }
+
+    /**
+     * This test tests that dijkstra's finds the shortest route by distance
+     */
+    @Test
+    void shouldFindShortestRoute() {
+        Algorithm<Route> algorithm = AlgorithmFactory.dijkstraAlgorithm(TEST_WAYPOINTS[0], TEST_WAYPOINTS[3],
+                new WeightFunctionBuilder().build());
+
+        List<Route> routes = algorithm.perform(TEST_GRAPH).collect();
+
+        assertThat(routes, hasSize(1));
+        assertThat(visitedWaypoints(routes.get(0)), arrayContaining("Tralee", "Limerick", "Dublin"));
+        assertThat(routes.get(0).calculateDistance(), closeTo(305.0, 0.0001));
+    }
+
+    /**
+     * This test tests that the top k algorithm returns routes in order of increasing distance and does not modify
+     * the graph it is performed on, so it can be performed on a frozen graph
+     */
+    @Test
+    void shouldFindTopKRoutesWithoutModifyingGraph() {
+        TEST_GRAPH.freeze();
+        String graphBefore = TEST_GRAPH.toString();
+        Algorithm<Route> algorithm = AlgorithmFactory.topKPathsAlgorithm(TEST_WAYPOINTS[0], TEST_WAYPOINTS[3],
+                new WeightFunctionBuilder().build(), 4);
+
+        List<Route> routes = algorithm.perform(TEST_GRAPH).collect();
+
+        assertThat(routes, hasSize(2));
+        assertThat(visitedWaypoints(routes.get(0)), arrayContaining("Tralee", "Limerick", "Dublin"));
+        assertThat(visitedWaypoints(routes.get(1)), arrayContaining("Tralee", "Cork", "Dublin"));
+        assertThat(TEST_GRAPH.toString(), is(graphBefore));
+    }
+
+    /**
+     * This test tests that Yen's algorithm returns every loopless route in order of increasing distance, including
+     * routes that deviate after the first leg, and traces its adjacency and every spur search
+     */
+    @Test
+    void shouldFindKShortestLooplessRoutes() {
+        TEST_GRAPH.freeze();
+        Algorithm<Route> algorithm = AlgorithmFactory.kShortestPathsAlgorithm(TEST_WAYPOINTS[0], TEST_WAYPOINTS[3],
+                new WeightFunctionBuilder().build(), 4);
+        SearchTrace trace = new SearchTrace();
+        algorithm.setTrace(trace);
+
+        List<Route> routes = algorithm.perform(TEST_GRAPH).collect();
+
+        assertThat(trace.getPhaseMillis().keySet(), hasItems(SearchTrace.ADJACENCY, SearchTrace.SEARCH, SearchTrace.RECONSTRUCTION));
+        assertThat(trace.getSearches(), hasSize(greaterThan(routes.size())));
+
+        assertThat(routes, hasSize(3));
+        assertThat(visitedWaypoints(routes.get(0)), arrayContaining("Tralee", "Limerick", "Dublin"));
+        assertThat(visitedWaypoints(routes.get(1)), arrayContaining("Tralee", "Cork", "Dublin"));
+        assertThat(visitedWaypoints(routes.get(2)), arrayContaining("Tralee", "Limerick", "Galway", "Dublin"));
+        assertThat(routes.get(2).calculateDistance(), closeTo(415.0, 0.0001));
+    }
+
+    /**
+     * Calculate the distance, time in hours and emissions of the route
+     * @param route the route to calculate the criteria of
+     * @return the criteria of the route
+     */
+    private double[] criteria(Route route) {
+        double time = 0;
+
+        for (RouteLeg leg : route.getRouteLegs())
+            time += leg.calculateDistance() / leg.getTransportMethod().getAverageSpeed();
+
+        return new double[]{route.calculateDistance(), time, route.calculateCO2Emissions()};
+    }
+
+    /**
+     * This test tests that the Pareto search returns routes that don't dominate each other, including the best route
+     * of every weight profile, with the best route of the weight function first
+     */
+    @Test
+    void shouldFindParetoFrontOfRoutes() {
+        int size = 6;
+        Graph graph = gridGraph(size).freeze();
+        Waypoint start = graph.getVertex(0L), end = graph.getVertex((long) (size * size - 1));
+
+        for (WeightProfile profile : WeightProfile.values()) {
+            WeightFunction weightFunction = profile.createWeightFunction();
+            List<Route> front = AlgorithmFactory.paretoAlgorithm(start, end, weightFunction).perform(graph).collect();
+            Route best = AlgorithmFactory.dijkstraAlgorithm(start, end, weightFunction).perform(graph).next();
+
+            assertThat(front, not(empty()));
+            assertThat(front.get(0).getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum(),
+                    closeTo(best.getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum(), 0.0001));
+
+            for (Route route : front) {
+                double[] criteria = criteria(route);
+
+                for (Route other : front) {
+                    double[] otherCriteria = criteria(other);
+                    boolean dominated = route != other && otherCriteria[0] <= criteria[0] && otherCriteria[1] <= criteria[1]
+                            && otherCriteria[2] <= criteria[2];
+
+                    assertThat(dominated, is(false));
+                }
+            }
+        }
+    }
+
+    /**
+     * This test tests that the distance matrix holds the same weights as dijkstra's for every pair, searching both
+     * forwards (fewer sources) and backwards (fewer targets), with infinity for a waypoint that can't be reached
+     */
+    @Test
+    void shouldCalculateDistanceMatrix() {
+        Waypoint unreachable = new Waypoint(6L, "Belfast", 54.60, -5.93);
+        TEST_GRAPH.addVertex(unreachable);
+        TEST_GRAPH.freeze();
+
+        WeightFunction weightFunction = new WeightFunctionBuilder().withTime(true).build();
+        Waypoint[] many = {TEST_WAYPOINTS[0], TEST_WAYPOINTS[1], TEST_WAYPOINTS[4], unreachable};
+        Waypoint[] few = {TEST_WAYPOINTS[3], TEST_WAYPOINTS[4]};
+
+        for (Waypoint[][] query : new Waypoint[][][]{{few, many}, {many, few}}) {
+            Waypoint[] sources = query[0], destinations = query[1];
+            List<double[]> matrix = AlgorithmFactory.distanceMatrixAlgorithm(List.of(sources), List.of(destinations), weightFunction)
+                    .perform(TEST_GRAPH).collect();
+
+            assertThat(matrix, hasSize(sources.length));
+
+            for (int i = 0; i < sources.length; i++) {
+                for (int j = 0; j < destinations.length; j++) {
+                    Route route = AlgorithmFactory.dijkstraAlgorithm(sources[i], destinations[j], weightFunction).perform(TEST_GRAPH).next();
+                    double expected = (route == null) ? Double.POSITIVE_INFINITY
+                            :route.getRouteLegs().stream().mapToDouble(weightFunction::calculate).sum();
+
+                    assertThat(matrix.get(i)[j], (route == null) ? is(expected):closeTo(expected, 0.0001));
+                }
+            }
+        }
+    }
+
+    /**
+     * This test tests that no route is returned if the end cannot be reached
+     */
+    @Test
+    void shouldReturnNoRouteIfUnreachable() {
+        Waypoint unreachable = new Waypoint(6L, "Belfast", 54.60, -5.93);
+        TEST_GRAPH.addVertex(unreachable);
+
+        Algorithm<Route> algorithm = AlgorithmFactory.dijkstraAlgorithm(TEST_WAYPOINTS[0], unreachable,
+                new WeightFunctionBuilder().build());
+
+        assertThat(algorithm.perform(TEST_GRAPH).hasNext(), is(false));
+    }
+
+    /**
+     * This test tests that the bidirectional search returns no route if the end is in a different component of the
+     * graph, rather than a route to a vertex only one of its searches reached
+     */
+    @Test
+    void shouldReturnNoRouteIfUnreachableBidirectionally() {
+        Waypoint derry = new Waypoint(6L, "Derry", 55.00, -7.32);
+        Waypoint belfast = new Waypoint(7L, "Belfast", 54.60, -5.93);
+        TEST_GRAPH.addEdge(new RouteLeg(derry, belfast, TransportFactory.getTransportMethod(TransportFactory.TransportMethods.CAR), 117.0));
+
+        Algorithm<Route> algorithm = AlgorithmFactory.bidirectionalDijkstraAlgorithm(TEST_WAYPOINTS[0], belfast,
+                new WeightFunctionBuilder().build());
+
+        assertThat(algorithm.perform(TEST_GRAPH).hasNext(), is(false));
+    }
+}
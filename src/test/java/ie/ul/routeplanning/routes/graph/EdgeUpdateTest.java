@@ -0,0 +1,213 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.RouteLeg;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.AlgorithmFactory;
+import ie.ul.routeplanning.routes.algorithms.DistanceMatrixAlgorithm;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.routes.graph.creation.BuilderFactory;
+import ie.ul.routeplanning.routes.graph.weights.WeightFunction;
+import ie.ul.routeplanning.routes.graph.weights.WeightProfile;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class is used to unit test updating the edges of frozen graphs
+ */
+public class EdgeUpdateTest {
+    /**
+     * The car transport method used by the added edges
+     */
+    private static final TransportMethod CAR = TransportFactory.getTransportMethod(TransportFactory.TransportMethods.CAR);
+
+    /**
+     * Describe the outgoing edges of the provided waypoint by their end, transport method and distance
+     * @param graph the graph of the waypoint
+     * @param waypoint the waypoint to describe the edges of
+     * @return the description of each edge in order
+     */
+    private static List<String> describe(Graph graph, Waypoint waypoint) {
+        List<String> edges = new ArrayList<>();
+        graph.getNeighbours(waypoint).forEach(edge -> edges.add(describe(edge)));
+
+        return edges;
+    }
+
+    /**
+     * Describe the provided edge by its end, transport method and distance
+     * @param edge the edge to describe
+     * @return the description of the edge
+     */
+    private static String describe(Edge edge) {
+        return edge.getEnd().getId() + " " + edge.getTransportMethod().getName() + " " + edge.getDistance();
+    }
+
+    /**
+     * Check that the incoming edges and the weights of every vertex of the provided graph agree with its outgoing edges
+     * @param graph the graph to check
+     */
+    private static void assertConsistent(CompactGraph graph) {
+        List<Set<Integer>> incoming = new ArrayList<>();
+
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++)
+            incoming.add(new HashSet<>());
+
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++) {
+            for (int edge = graph.getEdgesStart(vertex); edge < graph.getEdgesEnd(vertex); edge++) {
+                assertThat(graph.isRemoved(edge), is(false));
+                incoming.get(graph.getTarget(edge)).add(edge);
+            }
+        }
+
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++) {
+            Set<Integer> reverse = new HashSet<>();
+
+            for (int position = graph.getReverseEdgesStart(vertex); position < graph.getReverseEdgesEnd(vertex); position++)
+                reverse.add(graph.getReverseEdge(position));
+
+            assertThat(reverse, equalTo(incoming.get(vertex)));
+        }
+
+        for (WeightProfile profile : WeightProfile.values()) {
+            WeightFunction weightFunction = profile.createWeightFunction();
+            double[] weights = graph.getWeights(profile);
+
+            for (Set<Integer> edges : incoming) {
+                for (int edge : edges)
+                    assertThat(weights[edge], is(weightFunction.calculate(graph.getEdge(edge))));
+            }
+        }
+    }
+
+    /**
+     * This test tests that an update closes, reprices and adds edges in a new version of the graph, leaving the updated
+     * graph unchanged, and that routes on the new version use the changed edges
+     */
+    @Test
+    void shouldApplyTheUpdateToANewVersion() throws BuilderException {
+        Graph graph = BuilderFactory.synthetic(2_500, 7).buildGraph().freeze();
+        Waypoint start = graph.getVertex(1), end = graph.getVertex(2_500);
+        List<Edge> edges = graph.getNeighbours(start);
+        Edge closed = edges.get(0), repriced = edges.get(1);
+        List<String> before = describe(graph, start);
+
+        Graph updated = graph.update(new EdgeUpdate()
+                .closeEdge(start, closed.getEnd(), closed.getTransportMethod(), false)
+                .repriceEdge(start, repriced.getEnd(), repriced.getTransportMethod(), repriced.getDistance() * 2, false)
+                .addEdge(new RouteLeg(start, end, CAR, 1.0)));
+
+        assertThat(describe(graph, start), equalTo(before));
+        assertThat(updated.compact().getVersion(), greaterThan(graph.compact().getVersion()));
+        assertThat(describe(updated, start), not(hasItem(describe(closed))));
+        assertThat(describe(updated, start), hasItem(describe(new RouteLeg(start, repriced.getEnd(), repriced.getTransportMethod(), repriced.getDistance() * 2))));
+        assertThat(describe(updated, end), hasItem(describe(new RouteLeg(end, start, CAR, 1.0))));
+        assertThat(updated.getNeighbours(end).get(updated.getNeighbours(end).size() - 1).getEnd(), sameInstance(start));
+        assertConsistent(updated.compact());
+
+        WeightFunction weightFunction = WeightProfile.DISTANCE.createWeightFunction();
+        Route route = AlgorithmFactory.dijkstraAlgorithm(start, end, weightFunction).perform(updated).collect().get(0);
+        Route previousRoute = AlgorithmFactory.dijkstraAlgorithm(start, end, weightFunction).perform(graph).collect().get(0);
+        Route bidirectionalRoute = AlgorithmFactory.bidirectionalDijkstraAlgorithm(end, start, weightFunction).perform(updated).collect().get(0);
+
+        assertThat(route.getRouteLegs(), hasSize(1));
+        assertThat(bidirectionalRoute.getRouteLegs(), hasSize(1));
+        assertThat(previousRoute.getRouteLegs(), hasSize(greaterThan(1)));
+
+        List<Waypoint> sources = new ArrayList<>(updated.getVertices()).subList(0, 20);
+        double[] costs = new DistanceMatrixAlgorithm(sources, List.of(end), weightFunction).perform(updated).collect().get(0);
+        double[] flattenedCosts = new DistanceMatrixAlgorithm(sources, List.of(end), weightFunction)
+                .perform(Graph.fromCompact(updated.compact().flatten())).collect().get(0);
+
+        assertThat(costs, equalTo(flattenedCosts));
+    }
+
+    /**
+     * This test tests that many updates applied one after another, including updates of versions that were already
+     * updated, give the same edges as applying them to a plain description of the graph, and that the versions are
+     * flattened along the way
+     */
+    @Test
+    void shouldChainUpdatesAcrossVersions() throws BuilderException {
+        Graph graph = BuilderFactory.synthetic(400, 11).buildGraph().freeze();
+        List<Waypoint> vertices = new ArrayList<>(graph.getVertices());
+        Map<Waypoint, List<String>> expected = new HashMap<>();
+        Random random = new Random(3);
+        boolean flattened = false;
+
+        for (Waypoint vertex : vertices)
+            expected.put(vertex, describe(graph, vertex));
+
+        for (int i = 0; i < 300; i++) {
+            Waypoint start = vertices.get(random.nextInt(vertices.size()));
+            List<Edge> edges = graph.getNeighbours(start);
+            EdgeUpdate update = new EdgeUpdate();
+            List<String> expectedEdges = new ArrayList<>(expected.get(start));
+
+            if (edges.isEmpty() || random.nextInt(3) == 0) {
+                Waypoint end = vertices.get(random.nextInt(vertices.size() - 1));
+                Edge added = new RouteLeg(start, (end == start) ? vertices.get(vertices.size() - 1):end, CAR, (double) random.nextInt(100));
+                update.addEdge(added, false);
+
+                if (!expectedEdges.contains(describe(added)))
+                    expectedEdges.add(describe(added));
+            } else {
+                Edge edge = edges.get(random.nextInt(edges.size()));
+                String match = edge.getEnd().getId() + " " + edge.getTransportMethod().getName() + " ";
+
+                if (random.nextBoolean()) {
+                    update.closeEdge(start, edge.getEnd(), edge.getTransportMethod(), false);
+                    expectedEdges.removeIf(e -> e.startsWith(match));
+                } else {
+                    update.repriceEdge(start, edge.getEnd(), edge.getTransportMethod(), edge.getDistance() + 1, false);
+                    expectedEdges.replaceAll(e -> e.startsWith(match) ? match + (edge.getDistance() + 1):e);
+                }
+            }
+
+            Graph updated = graph.update(update);
+            expected.put(start, expectedEdges);
+            flattened |= !(updated.compact() instanceof PatchedCompactGraph);
+
+            if (i % 50 == 0) { // updating the old version again must not change the new one
+                List<String> updatedEdges = describe(updated, start);
+                graph.update(new EdgeUpdate().addEdge(new RouteLeg(start, vertices.get((start == vertices.get(0)) ? 1:0), CAR, 1_000.0), false));
+
+                assertThat(describe(updated, start), equalTo(updatedEdges));
+            }
+
+            graph = updated;
+        }
+
+        for (Waypoint vertex : vertices)
+            assertThat(describe(graph, vertex), equalTo(expected.get(vertex)));
+
+        assertThat(flattened, is(true));
+        assertConsistent(graph.compact());
+    }
+
+    /**
+     * This test tests that updates of graphs that aren't frozen, of waypoints that aren't in the graph, and of edges
+     * that don't exist are rejected
+     */
+    @Test
+    void shouldRejectInvalidUpdates() throws BuilderException {
+        Graph graph = BuilderFactory.synthetic(100, 7).buildGraph();
+        Waypoint start = graph.getVertex(1), end = graph.getVertex(100);
+        Waypoint unknown = new Waypoint(1_000L, "Unknown", 0.0, 0.0);
+
+        assertThrows(IllegalStateException.class, () -> graph.update(new EdgeUpdate().addEdge(new RouteLeg(start, end, CAR, 1.0))));
+
+        graph.freeze();
+
+        assertThrows(IllegalStateException.class, () -> graph.update(new EdgeUpdate().addEdge(new RouteLeg(start, unknown, CAR, 1.0))));
+        assertThrows(IllegalStateException.class, () -> graph.update(new EdgeUpdate().closeEdge(start, end, CAR, false)));
+        assertThrows(IllegalStateException.class, () -> graph.update(new EdgeUpdate().repriceEdge(unknown, end, CAR, 1.0, false)));
+    }
+}
@@ -0,0 +1,101 @@
+package ie.ul.routeplanning.routes.graph;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.DijkstraAlgorithm;
+import ie.ul.routeplanning.routes.graph.creation.BuilderException;
+import ie.ul.routeplanning.routes.graph.creation.BuilderFactory;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class is used to unit test writing and loading graph snapshots
+ */
+public class GraphSnapshotTest {
+    /**
+     * The directory the snapshots are written to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Create one of each transport method by name
+     * @return the transport methods
+     */
+    private static Map<String, TransportMethod> transportMethods() {
+        Map<String, TransportMethod> transportMethods = new HashMap<>();
+
+        for (TransportFactory.TransportMethods method : TransportFactory.TransportMethods.values())
+            transportMethods.put(method.label, TransportFactory.getTransportMethod(method));
+
+        return transportMethods;
+    }
+
+    /**
+     * This test tests that a loaded snapshot has the same vertices, edges and routes as the graph it was written from
+     */
+    @Test
+    void shouldLoadTheGraphItWasWrittenFrom() throws IOException {
+        Map<String, TransportMethod> transportMethods = transportMethods();
+        Graph graph = BuilderFactory.synthetic(2_500, 7, transportMethods).buildGraph().freeze();
+        Path file = directory.resolve("graph.snapshot");
+
+        GraphSnapshot.write(graph, file);
+        Graph loaded = BuilderFactory.fromSnapshot(file, transportMethods).buildGraph();
+        CompactGraph compact = graph.compact(), loadedCompact = loaded.compact();
+
+        assertThat(loaded.isFrozen(), is(true));
+        assertThat(loadedCompact.getVertexCount(), is(compact.getVertexCount()));
+        assertThat(loadedCompact.getEdgeCount(), is(compact.getEdgeCount()));
+
+        for (int vertex = 0; vertex < compact.getVertexCount(); vertex++) {
+            assertThat(loadedCompact.getVertex(vertex), equalTo(compact.getVertex(vertex)));
+            assertThat(loadedCompact.getEdgesStart(vertex), is(compact.getEdgesStart(vertex)));
+        }
+
+        for (int edge = 0; edge < compact.getEdgeCount(); edge++) {
+            assertThat(loadedCompact.getTarget(edge), is(compact.getTarget(edge)));
+            assertThat(loadedCompact.getEdge(edge), equalTo(compact.getEdge(edge)));
+        }
+
+        Waypoint start = graph.getVertex(1), end = graph.getVertex(2_500);
+        List<Route> routes = new DijkstraAlgorithm(start, end).perform(graph).collect();
+        List<Route> loadedRoutes = new DijkstraAlgorithm(loaded.getVertex(1), loaded.getVertex(2_500)).perform(loaded).collect();
+
+        assertThat(loadedRoutes.get(0).getRouteLegs(), equalTo(routes.get(0).getRouteLegs()));
+        assertThat(loaded.getNeighbours(loaded.getVertex(1)), equalTo(graph.getNeighbours(start)));
+        assertThat(loaded.copy().getNeighbours(start), equalTo(graph.getNeighbours(start)));
+    }
+
+    /**
+     * This test tests that files that aren't complete snapshots are rejected
+     */
+    @Test
+    void shouldRejectInvalidSnapshots() throws IOException {
+        Map<String, TransportMethod> transportMethods = transportMethods();
+        Path file = directory.resolve("graph.snapshot");
+
+        GraphSnapshot.write(BuilderFactory.synthetic(100, 7, transportMethods).buildGraph(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(BuilderException.class, () -> BuilderFactory.fromSnapshot(file, transportMethods).buildGraph());
+
+        Files.writeString(file, "[]");
+        assertThrows(BuilderException.class, () -> BuilderFactory.fromSnapshot(file, transportMethods).buildGraph());
+    }
+}
@@ -0,0 +1,96 @@
+package ie.ul.routeplanning.routes.graph.creation;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.routes.waypoints.SourceFactory;
+import ie.ul.routeplanning.transport.TransportFactory;
+import ie.ul.routeplanning.transport.TransportMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class is used to unit test building graphs from JSON files
+ */
+public class JSONGraphBuilderTest {
+    /**
+     * The waypoints file read by the tests, including a duplicate ID and an unknown property
+     */
+    private static final String WAYPOINTS = "[{\"id\": 1, \"name\": \"Cork\", \"latitude\": 51.9, \"longitude\": -8.47},"
+            + "{\"id\": 2, \"name\": \"Dublin\", \"latitude\": 53.35, \"longitude\": -6.26, \"country\": \"Ireland\"},"
+            + "{\"id\": 2, \"name\": \"Galway\", \"latitude\": 53.27, \"longitude\": -9.05}]";
+    /**
+     * The directory the test files are written to
+     */
+    @TempDir
+    File directory;
+
+    /**
+     * Write the provided JSON to a file in the test directory
+     * @param name the name of the file
+     * @param json the JSON to write
+     * @return the path of the written file
+     * @throws IOException if the file can't be written
+     */
+    private String write(String name, String json) throws IOException {
+        File file = new File(directory, name);
+        Files.writeString(file.toPath(), json);
+
+        return file.getPath();
+    }
+
+    /**
+     * Build the graph of the provided edges JSON and the test waypoints
+     * @param edges the edges JSON
+     * @return the built graph
+     * @throws IOException if the files can't be written or the graph can't be built
+     */
+    private Graph build(String edges) throws IOException {
+        Map<String, TransportMethod> transportMethods = Map.of(
+                "Car", TransportFactory.getTransportMethod(TransportFactory.TransportMethods.CAR),
+                "Train", TransportFactory.getTransportMethod(TransportFactory.TransportMethods.TRAIN));
+
+        return BuilderFactory.fromFile(write("edges.json", edges), SourceFactory.fromFile(write("waypoints.json", WAYPOINTS)),
+                transportMethods).buildGraph();
+    }
+
+    /**
+     * This test tests that the edges are read in both directions unless they are one way, and that the first waypoint
+     * with each ID is used
+     */
+    @Test
+    void shouldBuildGraphFromEdges() throws IOException {
+        Graph graph = build("[{\"start\": 1, \"end\": 2, \"transportMethod\": \"Car\", \"distance\": 260.0},"
+                + "{\"start\": 2, \"end\": 1, \"transportMethod\": \"Train\", \"distance\": 250.5, \"bidirectional\": false, \"notes\": [1, 2]}]");
+        Waypoint cork = graph.getVertex(1), dublin = graph.getVertex(2);
+        List<Edge> fromDublin = graph.getNeighbours(dublin);
+
+        assertThat(dublin.getName(), is("Dublin"));
+        assertThat(graph.getNeighbours(cork), hasSize(1));
+        assertThat(fromDublin, hasSize(2));
+        assertThat(fromDublin.get(1).getTransportMethod().getName(), is("Train"));
+        assertThat(fromDublin.get(1).getDistance(), is(250.5));
+    }
+
+    /**
+     * This test tests that edges referring to unknown waypoints, missing properties, or with malformed values are rejected
+     */
+    @Test
+    void shouldRejectInvalidEdges() {
+        assertThrows(BuilderException.class, () -> build("[{\"start\": 1, \"end\": 3, \"transportMethod\": \"Car\", \"distance\": 1.0}]"));
+        assertThrows(BuilderException.class, () -> build("[{\"start\": 1, \"end\": 2, \"transportMethod\": \"Car\"}]"));
+        assertThrows(BuilderException.class, () -> build("[{\"start\": \"Cork\", \"end\": 2, \"transportMethod\": \"Car\", \"distance\": 1.0}]"));
+        assertThrows(BuilderException.class, () -> build("{\"start\": 1}"));
+        assertThrows(BuilderException.class, () -> build("[{\"start\": 1, \"end\": 2,"));
+    }
+}
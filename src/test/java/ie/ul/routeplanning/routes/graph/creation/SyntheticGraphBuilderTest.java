@@ -0,0 +1,78 @@
+package ie.ul.routeplanning.routes.graph.creation;
+
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.DijkstraAlgorithm;
+import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.Graph;
+import ie.ul.routeplanning.transport.TransportFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to unit test the synthetic graph builder
+ */
+public class SyntheticGraphBuilderTest {
+    /**
+     * The number of waypoints in the graphs generated by the tests, enough to have every kind of overlay
+     */
+    private static final int VERTICES = 10_000;
+
+    /**
+     * This test tests that the same size and seed generate the same graph, and a different seed a different graph
+     */
+    @Test
+    void shouldGenerateTheSameGraphFromTheSameSeed() throws BuilderException {
+        Graph graph = BuilderFactory.synthetic(VERTICES, 42).buildGraph();
+
+        assertThat(graph.getVertices().size(), is(VERTICES));
+        assertThat(describe(BuilderFactory.synthetic(VERTICES, 42).buildGraph()), equalTo(describe(graph)));
+        assertThat(describe(BuilderFactory.synthetic(VERTICES, 43).buildGraph()), not(equalTo(describe(graph))));
+    }
+
+    /**
+     * This test tests that the generated graph uses every transport method, and that opposite corners are connected
+     */
+    @Test
+    void shouldGenerateAConnectedMultimodalNetwork() throws BuilderException {
+        Graph graph = BuilderFactory.synthetic(VERTICES, 1).buildGraph();
+        Set<String> transportMethods = new HashSet<>();
+
+        for (Waypoint waypoint : graph.getVertices())
+            graph.getNeighbours(waypoint).forEach(edge -> transportMethods.add(edge.getTransportMethod().getName()));
+
+        for (TransportFactory.TransportMethods method : TransportFactory.TransportMethods.values())
+            assertThat(transportMethods, hasItem(method.label));
+
+        List<Route> routes = new DijkstraAlgorithm(graph.getVertex(1), graph.getVertex(VERTICES)).perform(graph.freeze()).collect();
+
+        assertThat(routes, hasSize(1));
+    }
+
+    /**
+     * Describe every edge of the provided graph in the order of the waypoint IDs
+     * @param graph the graph to describe
+     * @return the descriptions of the edges
+     */
+    private List<String> describe(Graph graph) {
+        List<String> edges = new ArrayList<>();
+        int vertices = graph.getVertices().size(); // getVertices copies the vertices, so only call it once
+
+        for (long id = 1; id <= vertices; id++) {
+            Waypoint waypoint = graph.getVertex(id);
+
+            for (Edge edge : graph.getNeighbours(waypoint))
+                edges.add(waypoint.getLatitude() + "," + waypoint.getLongitude() + "->" + edge.getEnd().getId() + ":"
+                        + edge.getTransportMethod().getName() + ":" + edge.getDistance());
+        }
+
+        return edges;
+    }
+}
@@ -0,0 +1,65 @@
+package ie.ul.routeplanning.routes.waypoints;
+
+import ie.ul.routeplanning.routes.Waypoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to unit test the waypoint index
+ */
+public class WaypointIndexTest {
+    /**
+     * The waypoints indexed by the tests, including two with the same name
+     */
+    private static final List<Waypoint> WAYPOINTS = List.of(
+            new Waypoint(1L, "Cork", 51.8985, -8.4756),
+            new Waypoint(2L, "Dublin", 53.3498, -6.2603),
+            new Waypoint(3L, "Cobh", 51.8503, -8.2967),
+            new Waypoint(4L, "New Ross", 52.3960, -6.9366),
+            new Waypoint(5L, "Newbridge", 53.1819, -6.7967),
+            new Waypoint(6L, "Cork", 51.9, -8.47)
+    );
+
+    /**
+     * This test tests that waypoints are found by their full name ignoring case, preferring the lowest ID
+     */
+    @Test
+    void shouldFindWaypointsIgnoringCase() {
+        WaypointIndex index = new WaypointIndex(WAYPOINTS);
+
+        assertThat(index.size(), is(6));
+        assertThat(index.find("cork").getId(), is(1L));
+        assertThat(index.find("NEW ROSS ").getId(), is(4L));
+        assertThat(index.find("New"), nullValue());
+        assertThat(index.find("Galway"), nullValue());
+    }
+
+    /**
+     * This test tests that the waypoints starting with a prefix are returned in order of their names, once per name and
+     * up to the limit
+     */
+    @Test
+    void shouldCompleteWaypointNames() {
+        WaypointIndex index = new WaypointIndex(WAYPOINTS);
+
+        assertThat(names(index.complete("co", 10)), contains("Cobh", "Cork"));
+        assertThat(names(index.complete("NEW", 10)), contains("New Ross", "Newbridge"));
+        assertThat(names(index.complete("new", 1)), contains("New Ross"));
+        assertThat(index.complete("Galway", 10), empty());
+        assertThat(index.complete("z", 10), empty());
+    }
+
+    /**
+     * Get the names of the provided waypoints
+     * @param waypoints the waypoints to get the names of
+     * @return the names in the same order
+     */
+    private static List<String> names(List<Waypoint> waypoints) {
+        return waypoints.stream().map(Waypoint::getName).collect(Collectors.toList());
+    }
+}
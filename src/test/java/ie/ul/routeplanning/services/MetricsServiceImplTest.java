@@ -0,0 +1,73 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.routes.algorithms.SearchStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to unit test the metrics service
+ */
+public class MetricsServiceImplTest {
+    /**
+     * This test tests that durations are counted in the bucket with the smallest upper bound that is at least the
+     * duration, and that the counts are cumulative
+     */
+    @Test
+    void shouldCountDurationsInCumulativeBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(0.001, 0.01);
+
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1)); // on the bound, so in the first bucket
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(histogram.getCumulativeCounts(), is(new long[]{2, 3, 4}));
+        assertThat(histogram.getCount(), is(4L));
+        assertThat(histogram.getSumSeconds(), closeTo(1.0065, 1e-9));
+    }
+
+    /**
+     * This test tests that the recorded searches, graph operations and registered gauges are written in the Prometheus
+     * text format, and that nothing is recorded when metrics are disabled
+     */
+    @Test
+    void shouldScrapeRecordedMetrics() {
+        MetricsServiceImpl metricsService = new MetricsServiceImpl(true);
+        SearchStatistics statistics = new SearchStatistics();
+
+        statistics.record(10, 20, 12);
+        statistics.record(5, 8, 6);
+        metricsService.recordSearch("topK", TimeUnit.MILLISECONDS.toNanos(3), statistics);
+        metricsService.recordSearch("topK", TimeUnit.MILLISECONDS.toNanos(40), null);
+        metricsService.recordGraphOperation("build", TimeUnit.SECONDS.toNanos(2));
+        metricsService.registerGauge("route_cache_hit_ratio", "The fraction of route queries answered from the route cache", () -> 0.25);
+
+        List<String> lines = Arrays.asList(metricsService.scrape().split("\n"));
+
+        assertThat(lines, hasItems(
+                "# TYPE routeplanning_search_duration_seconds histogram",
+                "routeplanning_search_duration_seconds_bucket{algorithm=\"topK\",le=\"0.001\"} 0",
+                "routeplanning_search_duration_seconds_bucket{algorithm=\"topK\",le=\"0.005\"} 1",
+                "routeplanning_search_duration_seconds_bucket{algorithm=\"topK\",le=\"0.05\"} 2",
+                "routeplanning_search_duration_seconds_bucket{algorithm=\"topK\",le=\"+Inf\"} 2",
+                "routeplanning_search_duration_seconds_count{algorithm=\"topK\"} 2",
+                "routeplanning_searches_total{algorithm=\"topK\"} 2",
+                "routeplanning_search_vertices_settled_total{algorithm=\"topK\"} 15",
+                "routeplanning_search_edges_relaxed_total{algorithm=\"topK\"} 28",
+                "routeplanning_search_queue_pushes_total{algorithm=\"topK\"} 18",
+                "routeplanning_graph_operation_duration_seconds_sum{operation=\"build\"} 2",
+                "# TYPE routeplanning_route_cache_hit_ratio gauge",
+                "routeplanning_route_cache_hit_ratio 0.25"));
+
+        MetricsServiceImpl disabled = new MetricsServiceImpl(false);
+        disabled.recordSearch("topK", 1, statistics);
+
+        assertThat(disabled.scrape(), is(""));
+    }
+}
@@ -0,0 +1,79 @@
+package ie.ul.routeplanning.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to unit test the result cache
+ */
+public class ResultCacheTest {
+    /**
+     * This test tests that the least recently used values are evicted once the cache goes over its maximum weight
+     */
+    @Test
+    void shouldEvictLeastRecentlyUsedByWeight() {
+        ResultCache<String, String> cache = new ResultCache<>(5, String::length, Duration.ofHours(1), System::nanoTime);
+
+        cache.put("a", "aa");
+        cache.put("b", "bb");
+        assertThat(cache.get("a"), is("aa")); // b is now the least recently used
+
+        cache.put("c", "cc");
+
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.get("a"), is("aa"));
+        assertThat(cache.get("c"), is("cc"));
+        assertThat(cache.getWeight(), is(4L));
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.getHits(), is(3L));
+        assertThat(cache.getMisses(), is(1L));
+
+        cache.put("d", "dddddd"); // heavier than the whole cache
+
+        assertThat(cache.get("d"), nullValue());
+        assertThat(cache.size(), is(2));
+    }
+
+    /**
+     * This test tests that values expire once they have been cached for longer than the time to live
+     */
+    @Test
+    void shouldExpireValuesAfterTimeToLive() {
+        AtomicLong clock = new AtomicLong();
+        ResultCache<String, String> cache = new ResultCache<>(10, value -> 1, Duration.ofNanos(100), clock::get);
+
+        cache.put("a", "a");
+        clock.set(99);
+        assertThat(cache.get("a"), is("a"));
+
+        clock.set(100);
+        assertThat(cache.get("a"), nullValue());
+        assertThat(cache.getExpirations(), is(1L));
+        assertThat(cache.size(), is(0));
+    }
+
+    /**
+     * This test tests that values can be invalidated by a predicate or all at once
+     */
+    @Test
+    void shouldInvalidateValues() {
+        ResultCache<String, String> cache = new ResultCache<>(10, Duration.ofHours(1));
+
+        cache.put("a", "x");
+        cache.put("b", "y");
+        cache.invalidateIf(value -> value.equals("x"));
+
+        assertThat(cache.get("a"), nullValue());
+        assertThat(cache.get("b"), is("y"));
+
+        cache.invalidateAll();
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getWeight(), is(0L));
+    }
+}
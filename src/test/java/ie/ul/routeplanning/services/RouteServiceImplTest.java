@@ -0,0 +1,271 @@
+package ie.ul.routeplanning.services;
+
+import ie.ul.routeplanning.repositories.RouteRepository;
+import ie.ul.routeplanning.routes.Route;
+import ie.ul.routeplanning.routes.Waypoint;
+import ie.ul.routeplanning.routes.algorithms.SearchTrace;
+import ie.ul.routeplanning.routes.graph.Edge;
+import ie.ul.routeplanning.routes.graph.EdgeUpdate;
+import ie.ul.routeplanning.routes.graph.Graph;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * This class is used to test the route service against the database
+ */
+@SpringBootTest
+public class RouteServiceImplTest {
+    /**
+     * The number of times each thread of the concurrency test runs every query
+     */
+    private static final int ROUNDS = 5;
+    /**
+     * The repository the routes are stored in
+     */
+    @Autowired
+    private RouteRepository routeRepository;
+    /**
+     * The service storing the generated routes
+     */
+    @Autowired
+    private RouteStorageService routeStorageService;
+    /**
+     * The service loading the graph
+     */
+    @Autowired
+    private GraphService graphService;
+
+    /**
+     * Find a waypoint two legs away from the provided waypoint, so there are several routes between them
+     * @param graph the graph to find the waypoint in
+     * @param start the waypoint to start from
+     * @return the waypoint found
+     */
+    private static Waypoint twoLegsFrom(Graph graph, Waypoint start) {
+        Edge edge = graph.getNeighbours(start).get(0);
+
+        return graph.getNeighbours(edge.getEnd()).stream()
+                .map(Edge::getEnd)
+                .filter(waypoint -> !waypoint.equals(start))
+                .findFirst()
+                .orElse(edge.getEnd());
+    }
+
+    /**
+     * This test tests that generating the same routes again reuses the stored routes rather than storing them again,
+     * even without the route cache
+     */
+    @Test
+    void shouldStoreIdenticalRoutesOnce() throws Exception {
+        Graph graph = graphService.loadGraph();
+        Waypoint start = graph.getVertices().stream().min(Comparator.comparing(Waypoint::getId)).orElseThrow();
+        Waypoint end = twoLegsFrom(graph, start);
+
+        RouteServiceImpl routeService = new RouteServiceImpl(routeRepository, routeStorageService, 0, 0); // nothing is cached
+
+        List<Route> routes = routeService.generateRoutes(graph, start, end, false, false);
+        routeStorageService.flush();
+        long stored = routeRepository.count();
+        List<Route> generatedAgain = routeService.generateRoutes(graph, start, end, false, false);
+
+        assertThat(routes, not(empty()));
+        assertThat(routeRepository.count(), is(stored));
+        assertThat(generatedAgain.stream().map(Route::getId).collect(Collectors.toList()),
+                is(routes.stream().map(Route::getId).collect(Collectors.toList())));
+        assertThat(routeService.getRouteCache().getHits(), is(0L));
+    }
+
+    /**
+     * This test tests that generated routes have IDs that can be looked up straight away, before the routes are written
+     * to the database, and that the routes are written with those IDs
+     */
+    @Test
+    void shouldGiveRoutesIdsBeforeTheyAreWritten() throws Exception {
+        Graph graph = graphService.loadGraph();
+        Waypoint start = graph.getVertices().stream().max(Comparator.comparing(Waypoint::getId)).orElseThrow();
+        Waypoint end = twoLegsFrom(graph, start);
+
+        RouteServiceImpl routeService = new RouteServiceImpl(routeRepository, routeStorageService, 0, 0);
+        List<Route> routes = routeService.generateRoutes(graph, start, end, true, false);
+
+        assertThat(routes, not(empty()));
+
+        for (Route route : routes) {
+            assertThat(route.getId(), notNullValue());
+            assertThat(routeService.getRoute(route.getId()).getHash(), is(route.getHash()));
+        }
+
+        routeStorageService.flush();
+
+        for (Route route : routes) {
+            Route stored = routeRepository.findById(route.getId()).orElseThrow();
+
+            assertThat(stored.getHash(), is(route.getHash()));
+            assertThat(routeStorageService.getPendingRoute(route.getId()), nullValue());
+        }
+    }
+
+    /**
+     * This test tests that the route service can be shared by many threads generating routes at the same time, by checking
+     * every thread gets the same routes, with the same IDs, as generating them one query at a time
+     */
+    @Test
+    void shouldGenerateRoutesConcurrently() throws Exception {
+        Graph graph = graphService.loadGraph();
+        List<Waypoint[]> queries = new ArrayList<>();
+
+        graph.getVertices().stream()
+                .sorted(Comparator.comparing(Waypoint::getId))
+                .filter(waypoint -> !graph.getNeighbours(waypoint).isEmpty())
+                .limit(16)
+                .forEach(waypoint -> queries.add(new Waypoint[]{waypoint, twoLegsFrom(graph, waypoint)}));
+
+        RouteServiceImpl routeService = new RouteServiceImpl(routeRepository, routeStorageService, 0, 0); // every query is computed
+        List<List<Long>> expected = new ArrayList<>();
+
+        for (int i = 0; i < queries.size(); i++)
+            expected.add(routeIds(routeService, graph, queries.get(i), i));
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            List<Integer> order = new ArrayList<>();
+
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < queries.size(); i++)
+                    order.add(i);
+            }
+
+            Collections.shuffle(order, new Random(t)); // so the threads run different queries at the same time
+
+            tasks.add(() -> {
+                for (int i : order)
+                    assertThat(routeIds(routeService, graph, queries.get(i), i), is(expected.get(i)));
+
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks, 2, TimeUnit.MINUTES))
+                future.get(); // rethrows any failed assertion
+        } finally {
+            executor.shutdownNow();
+        }
+
+        routeStorageService.flush();
+        assertThat(routeStorageService.getPendingCount(), is(0));
+    }
+
+    /**
+     * This test tests that reloading the graph swaps in a newer version while the previous graph stays usable, and that
+     * queries finishing on the previous graph don't clear the routes cached for the new one
+     */
+    @Test
+    void shouldKeepRoutingOnThePreviousGraphAcrossAReload() throws Exception {
+        Graph previous = graphService.loadGraph();
+        Graph reloaded = graphService.reloadGraph().get(2, TimeUnit.MINUTES);
+
+        assertThat(reloaded.compact().getVersion(), greaterThan(previous.compact().getVersion()));
+        assertThat(graphService.loadGraph(), sameInstance(reloaded));
+
+        Waypoint start = previous.getVertices().stream().min(Comparator.comparing(Waypoint::getId)).orElseThrow();
+        Waypoint end = twoLegsFrom(previous, start);
+        RouteServiceImpl routeService = new RouteServiceImpl(routeRepository, routeStorageService, 100_000, 600);
+
+        List<Route> reloadedRoutes = routeService.generateRoutes(reloaded, reloaded.getVertex(start.getId()), reloaded.getVertex(end.getId()), false, false);
+        List<Route> previousRoutes = routeService.generateRoutes(previous, start, end, false, false);
+
+        assertThat(previousRoutes.stream().map(Route::getHash).collect(Collectors.toList()),
+                is(reloadedRoutes.stream().map(Route::getHash).collect(Collectors.toList())));
+
+        routeService.generateRoutes(reloaded, reloaded.getVertex(start.getId()), reloaded.getVertex(end.getId()), false, false);
+        assertThat(routeService.getRouteCache().getHits(), is(1L));
+    }
+
+    /**
+     * This test tests that the updates applied to the graph are applied again to the graph rebuilt by a reload
+     */
+    @Test
+    void shouldApplyUpdatesAgainAfterAReload() throws Exception {
+        Graph graph = graphService.loadGraph();
+        Waypoint start = graph.getVertices().stream().min(Comparator.comparing(Waypoint::getId)).orElseThrow();
+        Edge edge = graph.getNeighbours(start).get(0);
+        double distance = edge.getDistance();
+
+        graphService.updateGraph(new EdgeUpdate().repriceEdge(start, edge.getEnd(), edge.getTransportMethod(), distance * 2, false));
+
+        try {
+            Graph reloaded = graphService.reloadGraph().get(2, TimeUnit.MINUTES);
+            Waypoint reloadedStart = reloaded.getVertex(start.getId());
+
+            assertThat(reloaded.getNeighbours(reloadedStart).stream()
+                    .filter(e -> e.getEnd().getId().equals(edge.getEnd().getId()) && e.getTransportMethod().getName().equals(edge.getTransportMethod().getName()))
+                    .map(Edge::getDistance)
+                    .collect(Collectors.toList()), hasItem(distance * 2));
+        } finally {
+            graphService.updateGraph(new EdgeUpdate().repriceEdge(start, edge.getEnd(), edge.getTransportMethod(), distance, false)); // leave the graph as the other tests expect
+        }
+    }
+
+    /**
+     * This test tests that an explained query is computed even when its routes are cached, gives the same routes without
+     * saving them, and records its algorithm, phases and a search for each route found by the top k algorithm
+     */
+    @Test
+    void shouldExplainQueriesWithoutTheCache() throws Exception {
+        Graph graph = graphService.loadGraph();
+        Waypoint start = graph.getVertices().stream().min(Comparator.comparing(Waypoint::getId)).orElseThrow();
+        Waypoint end = twoLegsFrom(graph, start);
+        RouteServiceImpl routeService = new RouteServiceImpl(routeRepository, routeStorageService, 100_000, 600);
+
+        List<Route> routes = routeService.generateRoutes(graph, start, end, false, false);
+        SearchTrace trace = new SearchTrace();
+        List<Route> explained = routeService.generateRoutes(graph, start, end, false, false, trace);
+
+        assertThat(explained.stream().map(Route::calculateDistance).collect(Collectors.toList()),
+                is(routes.stream().map(Route::calculateDistance).collect(Collectors.toList())));
+        assertThat(explained.stream().map(Route::getId).filter(Objects::nonNull).count(), is(0L));
+        assertThat(routeService.getRouteCache().getHits(), is(0L));
+        assertThat(trace.getAlgorithm(), is("TopKAlgorithm"));
+        assertThat(trace.getPhaseMillis().keySet(), containsInAnyOrder(SearchTrace.ADJACENCY, SearchTrace.SEARCH,
+                SearchTrace.RECONSTRUCTION));
+        assertThat(trace.getSearches(), hasSize(greaterThanOrEqualTo(routes.size())));
+        assertThat(trace.getSearches().get(0).isFound(), is(true));
+        assertThat(trace.getSearches().get(0).getSettled(), greaterThan(0L));
+        assertThat(trace.getSearches().get(0).getFrontier().size(), lessThanOrEqualTo(SearchTrace.MAX_FRONTIER));
+    }
+
+    /**
+     * Generate the routes of the provided query and get their IDs
+     * @param routeService the route service to generate the routes with
+     * @param graph the graph to generate the routes on
+     * @param query the start and end waypoints
+     * @param index the index of the query, which decides the weight function so the queries vary
+     * @return the IDs of the generated routes in order
+     */
+    private static List<Long> routeIds(RouteServiceImpl routeService, Graph graph, Waypoint[] query, int index) {
+        return routeService.generateRoutes(graph, query[0], query[1], index % 2 == 0, index % 3 == 0).stream()
+                .map(Route::getId)
+                .collect(Collectors.toList());
+    }
+}